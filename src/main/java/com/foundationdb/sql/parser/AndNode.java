@@ -50,6 +50,11 @@ public class AndNode extends BinaryLogicalOperatorNode
      */
 
     public void init(Object leftOperand, Object rightOperand) {
+        init((ValueNode)leftOperand, (ValueNode)rightOperand);
+    }
+
+    /** Typed version of the above, for {@link NodeFactory#getBinaryOperatorNode}. */
+    public void init(ValueNode leftOperand, ValueNode rightOperand) {
         super.init(leftOperand, rightOperand, "and");
         this.shortCircuitValue = false;
     }
@@ -56,6 +56,11 @@ public class BinaryArithmeticOperatorNode extends BinaryOperatorNode
      */
 
     public void init(Object leftOperand, Object rightOperand) {
+        init((ValueNode)leftOperand, (ValueNode)rightOperand);
+    }
+
+    /** Typed version of the above, for {@link NodeFactory#getBinaryOperatorNode}. */
+    public void init(ValueNode leftOperand, ValueNode rightOperand) {
         super.init(leftOperand, rightOperand,
                    ValueClassName.NumberDataValue, ValueClassName.NumberDataValue);
     }
@@ -63,6 +63,11 @@ public class BinaryRelationalOperatorNode extends BinaryComparisonOperatorNode
     private int operatorType;
 
     public void init(Object leftOperand, Object rightOperand) {
+        init((ValueNode)leftOperand, (ValueNode)rightOperand);
+    }
+
+    /** Typed version of the above, for {@link NodeFactory#getBinaryOperatorNode}. */
+    public void init(ValueNode leftOperand, ValueNode rightOperand) {
         String methodName = "";
         String operatorName = "";
 
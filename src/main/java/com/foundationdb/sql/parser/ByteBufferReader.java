@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.io.CharConversionException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * {@link Reader} that decodes the bytes of a {@link ByteBuffer}, such
+ * as a {@link java.nio.MappedByteBuffer} over a file, as they are
+ * read, straight into the caller's array.
+ * <p>
+ * Bytes that cannot be decoded fail the read with a {@link
+ * CharConversionException} giving their offset, once the characters
+ * before them have been returned.
+ */
+public class ByteBufferReader extends Reader
+{
+    private final ByteBuffer bytes;
+    private final int startPosition;
+    private final CharsetDecoder decoder;
+    private boolean flushed;
+    private CharBuffer pending;
+
+    /** Read from <code>bytes</code>, which is consumed as it is read. */
+    public ByteBufferReader(ByteBuffer bytes, Charset charset) {
+        this.bytes = bytes;
+        this.startPosition = bytes.position();
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (pending != null) {
+            cbuf[off] = pending.get();
+            if (!pending.hasRemaining())
+                pending = null;
+            return 1;
+        }
+        if (flushed)
+            return -1;
+        CharBuffer chars = CharBuffer.wrap(cbuf, off, len);
+        decode(chars);
+        int nc = chars.position() - off;
+        if ((nc == 0) && !flushed) {
+            // Not enough room for a surrogate pair: decode it on the
+            // side and return half now.
+            pending = CharBuffer.allocate(2);
+            decode(pending);
+            pending.flip();
+            if (pending.hasRemaining()) {
+                cbuf[off] = pending.get();
+                nc = 1;
+            }
+            if (!pending.hasRemaining())
+                pending = null;
+        }
+        if ((nc == 0) && flushed)
+            return -1;
+        return nc;
+    }
+
+    private void decode(CharBuffer chars) throws IOException {
+        int start = chars.position();
+        CoderResult result = decoder.decode(bytes, chars, true);
+        if (result.isError()) {
+            // The bad bytes are left in place, so return what came
+            // before them and fail on the next read.
+            if (chars.position() == start)
+                throw decodeError(result);
+            return;
+        }
+        if (!bytes.hasRemaining() && !result.isOverflow()) {
+            // Everything decoded; get anything held back.
+            result = decoder.flush(chars);
+            if (result.isError())
+                throw decodeError(result);
+            if (!result.isOverflow())
+                flushed = true;
+        }
+    }
+
+    private IOException decodeError(CoderResult result) {
+        return new CharConversionException((result.isMalformed() ? "Malformed" : "Unmappable") +
+                                           " " + decoder.charset().name() +
+                                           " input at byte " + (bytes.position() - startPosition));
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -57,15 +57,24 @@ public final class CharConstantNode extends ConstantNode
                        Boolean.TRUE,
                        0);
         }
+        else if (arg1 instanceof LiteralText) {
+            setType(TypeId.CHAR_ID,
+                    false,
+                    ((LiteralText)arg1).unquotedLength('\''));
+            setValue(arg1);
+        }
         else {
-            String val = (String)arg1;
+            init((String)arg1);
+        }
+    }
 
-            super.init(TypeId.CHAR_ID,
-                       (val == null) ? Boolean.TRUE : Boolean.FALSE,
-                       (val != null) ? charLength(val) : 0);
+    /** Typed initializer for a value, for {@link NodeFactory#getCharConstantNode}. */
+    public void init(String val) throws StandardException {
+        setType(TypeId.CHAR_ID,
+                (val == null),
+                (val != null) ? charLength(val) : 0);
 
-            setValue(val);
-        }
+        setValue(val);
     }
 
     /**
@@ -107,7 +116,7 @@ public final class CharConstantNode extends ConstantNode
      */
 
     public String getString() throws StandardException {
-        return (String)value;
+        return (String)getValue();
     }
 
     /**
@@ -123,7 +132,12 @@ public final class CharConstantNode extends ConstantNode
      * @exception StandardException Thrown on error
      */
     Object getConstantValueAsObject() throws StandardException {
-        return (String)value;
+        return (String)getValue();
+    }
+
+    @Override
+    Object decodeValue(LiteralText text) {
+        return text.unquote('\'');
     }
 
     public static int charLength(String s) {
@@ -0,0 +1,305 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * {@link CharStream} that reads from any {@link CharSequence}, such
+ * as a {@link java.nio.CharBuffer} over a <code>char[]</code> or
+ * native memory, without copying it.
+ * <p>
+ * Normally, line and column are kept up to date as each character
+ * is read. With {@link #setLazyLines}, only offsets are tracked and
+ * line and column are worked out when asked for, moving forward from
+ * the last position asked for or else from the start of its line.
+ * The results are the same either way. A generated token manager asks
+ * for them for every token, so that work is deferred, not saved.
+ */
+public class CharSequenceCharStream implements CharStream
+{
+    private static final IOException EOF = new EOFException();
+
+    private CharSequence text;
+    private int beginIndex, currentIndex; // 0-based, exclusive end.
+    private int currentLine, currentColumn; // 1-based.
+    // End represents the position of the last character returned, and
+    // in particular if a newline was returned, it at the end of the
+    // previous line.
+    private int beginLine, beginColumn, endLine, endColumn;
+
+    private IdentifierTable identifierTable;
+    private boolean lazyLines;
+    // When lazy, the line and column of the character at
+    // positionIndex, as currentLine / currentColumn would have been
+    // just before reading it.
+    private int positionIndex, positionLine, positionColumn;
+    // Offsets at which each line after the first starts, built when
+    // first needed to move backwards.
+    private int[] lineStarts;
+    private int nlineStarts;
+    
+    public CharSequenceCharStream(CharSequence text) {
+        init(text);
+    }
+
+    public void ReInit(CharSequence text) {
+        init(text);
+    }
+
+    protected void init(CharSequence text) {
+        this.text = text;
+        beginIndex = currentIndex = 0;
+        currentLine = currentColumn = beginLine = beginColumn = endLine = endColumn = 1;
+        positionIndex = 0;
+        positionLine = positionColumn = 1;
+        lineStarts = null;
+    }
+
+    public IdentifierTable getIdentifierTable() {
+        return identifierTable;
+    }
+
+    /** Set a table from which to take the images of keywords and
+     * identifiers, rather than making new strings.
+     */
+    public void setIdentifierTable(IdentifierTable identifierTable) {
+        this.identifierTable = identifierTable;
+    }
+
+    public boolean isLazyLines() {
+        return lazyLines;
+    }
+
+    /** Set whether line and column are only worked out when asked for.
+     * Must be set before reading.
+     */
+    public void setLazyLines(boolean lazyLines) {
+        this.lazyLines = lazyLines;
+    }
+    
+    @Override
+    public char BeginToken() throws java.io.IOException {
+        beginIndex = currentIndex;
+        if (!lazyLines) {
+            beginLine = currentLine;
+            beginColumn = currentColumn;
+        }
+        return readChar();
+    }
+
+    @Override
+    public char readChar() throws java.io.IOException {
+        if (currentIndex >= text.length())
+            throw EOF;
+
+        if (lazyLines)
+            return text.charAt(currentIndex++);
+        return advance();
+    }
+
+    @Override
+    public void backup(int amount) {
+        int target = currentIndex - amount;
+        assert (target >= beginIndex);
+        if (lazyLines) {
+            currentIndex = target;
+            return;
+        }
+        currentIndex = beginIndex;
+        currentLine = beginLine;
+        currentColumn = beginColumn;
+        while (currentIndex < target)
+            advance();          // Adjusting line / column.
+    }
+
+    private char advance() {
+        endLine = currentLine;
+        endColumn = currentColumn;
+        char ch = text.charAt(currentIndex++);
+        switch (ch) {
+        case '\r':
+            if ((currentIndex < text.length()) &&
+                (text.charAt(currentIndex) == '\n')) {
+                currentColumn++;
+                break;
+            }
+            /* else falls through (bare CR) */
+        case '\n':
+            currentLine++;
+            currentColumn = 1;
+            break;
+        case '\t':
+            endColumn += (8 - (endColumn & 7));
+            currentColumn = endColumn + 1;
+            break;
+        default:
+            currentColumn++;
+            break;
+        }
+        return ch;
+    }
+
+    @Override
+    public int getBeginOffset() {
+        return beginIndex;
+    }
+    @Override
+    public int getEndOffset() {
+        return currentIndex - 1;   // Want inclusive.
+    }
+
+    @Override
+    public int getBeginLine() {
+        if (lazyLines) {
+            moveTo(beginIndex);
+            return positionLine;
+        }
+        return beginLine;
+    }
+    @Override
+    public int getBeginColumn() {
+        if (lazyLines) {
+            moveTo(beginIndex);
+            return positionColumn;
+        }
+        return beginColumn;
+    }
+
+    @Override
+    public int getEndLine() {
+        if (lazyLines) {
+            if (currentIndex == 0) return 1;
+            moveTo(currentIndex - 1);
+            return positionLine;
+        }
+        return endLine;
+    }
+    @Override
+    public int getEndColumn() {
+        if (lazyLines) {
+            if (currentIndex == 0) return 1;
+            moveTo(currentIndex - 1);
+            if (text.charAt(positionIndex) == '\t')
+                return positionColumn + (8 - (positionColumn & 7));
+            return positionColumn;
+        }
+        return endColumn;
+    }
+
+    /** Set the lazy position to the given offset, following the
+     * same rules as {@link #advance}.
+     */
+    private void moveTo(int index) {
+        if (index < positionIndex) {
+            int line = lineContaining(index);
+            positionIndex = (line == 0) ? 0 : lineStarts[line - 1];
+            positionLine = line + 1;
+            positionColumn = 1;
+        }
+        int length = text.length();
+        while (positionIndex < index) {
+            char ch = text.charAt(positionIndex++);
+            switch (ch) {
+            case '\r':
+                if ((positionIndex < length) &&
+                    (text.charAt(positionIndex) == '\n')) {
+                    positionColumn++;
+                    break;
+                }
+                /* else falls through (bare CR) */
+            case '\n':
+                positionLine++;
+                positionColumn = 1;
+                break;
+            case '\t':
+                positionColumn += (8 - (positionColumn & 7)) + 1;
+                break;
+            default:
+                positionColumn++;
+                break;
+            }
+        }
+    }
+
+    /** Get the 0-based line containing the given offset. */
+    private int lineContaining(int index) {
+        if (lineStarts == null) {
+            lineStarts = new int[16];
+            nlineStarts = 0;
+            int length = text.length();
+            for (int i = 0; i < length; i++) {
+                char ch = text.charAt(i);
+                if ((ch == '\n') ||
+                    ((ch == '\r') && ((i + 1 >= length) || (text.charAt(i + 1) != '\n')))) {
+                    if (nlineStarts == lineStarts.length)
+                        lineStarts = Arrays.copyOf(lineStarts, nlineStarts * 2);
+                    lineStarts[nlineStarts++] = i + 1;
+                }
+            }
+        }
+        // Number of lines starting at or before index.
+        int lo = 0, hi = nlineStarts;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lineStarts[mid] <= index)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    @Override
+    public int getLine() {
+        return getEndLine();
+    }
+    @Override
+    public int getColumn() {
+        return getEndColumn();
+    }
+
+    @Override
+    public String GetImage() {
+        if ((identifierTable != null) && 
+            IdentifierTable.isName(text, beginIndex, currentIndex))
+            return identifierTable.intern(text, beginIndex, currentIndex);
+        // For a String, this is just substring.
+        return text.subSequence(beginIndex, currentIndex).toString();
+    }
+
+    @Override
+    public char[] GetSuffix(int len) {
+        char[] result = new char[len];
+        int start = currentIndex - len;
+        if (text instanceof String) {
+            ((String)text).getChars(start, currentIndex, result, 0);
+        }
+        else {
+            for (int i = 0; i < len; i++)
+                result[i] = text.charAt(start + i);
+        }
+        return result;
+    }
+
+    @Override
+    public void Done() {
+    }
+
+}
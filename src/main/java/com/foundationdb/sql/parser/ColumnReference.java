@@ -77,10 +77,19 @@ public class ColumnReference extends ValueNode
                      Object tableName,
                      Object tokBeginOffset,
                      Object tokEndOffset) {
-        this.columnName = (String)columnName;
-        this.tableName = (TableName)tableName;
-        this.setBeginOffset(((Integer)tokBeginOffset).intValue());
-        this.setEndOffset(((Integer)tokEndOffset).intValue());
+        init((String)columnName, (TableName)tableName,
+             ((Integer)tokBeginOffset).intValue(), ((Integer)tokEndOffset).intValue());
+    }
+
+    /** Typed version of the above, for {@link NodeFactory#getColumnReference}. */
+    public void init(String columnName, 
+                     TableName tableName,
+                     int tokBeginOffset,
+                     int tokEndOffset) {
+        this.columnName = columnName;
+        this.tableName = tableName;
+        this.setBeginOffset(tokBeginOffset);
+        this.setEndOffset(tokEndOffset);
     }
 
     /**
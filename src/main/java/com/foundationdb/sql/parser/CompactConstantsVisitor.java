@@ -0,0 +1,31 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+/**
+ * A visitor that takes literals kept compactly as they are, rather
+ * than as nodes. Visiting the children of an {@link InListOperatorNode}
+ * with a {@link ConstantInList} or a {@link RowsResultSetNode} with
+ * {@link ConstantRows} does not make nodes for them, as it would for
+ * any other visitor. The visitor gets the values from {@link
+ * InListOperatorNode#getRightOperandConstants} and {@link
+ * RowsResultSetNode#getConstantRows} when it visits those nodes.
+ */
+public interface CompactConstantsVisitor extends Visitor
+{
+}
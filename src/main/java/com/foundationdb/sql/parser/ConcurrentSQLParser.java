@@ -0,0 +1,371 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A parser that can be shared by any number of threads.
+ * <p>
+ * {@link SQLParser} keeps the state of the parse in progress in its
+ * fields, so a single instance must not be used by more than one
+ * thread at a time. This class keeps one <code>SQLParser</code> per
+ * thread, each configured from the same settings, which are fixed
+ * when it is constructed. Since nothing is shared between the
+ * per-thread parsers except an optional {@link StatementCache} and
+ * {@link IdentifierTable}, there is no locking when parsing, save
+ * when a name is seen for the first time.
+ * <p>
+ * The per-thread parser is also available directly from {@link
+ * #getParser}, for access to the parameters of the statement just
+ * parsed. It must not be handed to another thread.
+ */
+public class ConcurrentSQLParser
+{
+    private final Set<SQLParserFeature> features;
+    private final int maxStringLiteralLength;
+    private final int maxIdentifierLength;
+    private final String messageLocale;
+    private final boolean parameterizeLiterals;
+    private final StatementCache statementCache;
+    private final IdentifierTable identifierTable;
+    private final boolean recycleTokens;
+    private final int compactInListMinimum;
+    private final int compactValuesMinimum;
+    private final boolean lazyLiterals;
+    private final boolean failFast;
+    private final int maxTokenCount, maxNestingDepth, maxNodeCount;
+    private final long maxParseMillis;
+
+    private final ThreadLocal<SQLParser> parsers = new ThreadLocal<SQLParser>() {
+            @Override
+            protected SQLParser initialValue() {
+                return newParser();
+            }
+        };
+
+    /** Make a new concurrent parser with default settings. */
+    public ConcurrentSQLParser() {
+        this(new SQLParser());
+    }
+
+    /**
+     * Make a new concurrent parser whose per-thread parsers have the
+     * same settings as the given one.
+     * <p>
+     * The features, length and resource limits, message locale,
+     * literal parameterization, statement cache, identifier table,
+     * token recycling, compact IN list and VALUES minimums, lazy
+     * literals and failing fast are copied. The node
+     * factory is not, since it need not be safe to share; each
+     * per-thread parser gets the default one.
+     * @param template A parser that is only used to get settings.
+     */
+    public ConcurrentSQLParser(SQLParser template) {
+        this.features = Collections.unmodifiableSet(EnumSet.copyOf(template.getFeatures()));
+        this.maxStringLiteralLength = template.getMaxStringLiteralLength();
+        this.maxIdentifierLength = template.getMaxIdentifierLength();
+        this.messageLocale = template.getMessageLocale();
+        this.parameterizeLiterals = template.isParameterizeLiterals();
+        this.statementCache = template.getStatementCache();
+        this.identifierTable = template.getIdentifierTable();
+        this.recycleTokens = template.isRecycleTokens();
+        this.compactInListMinimum = template.getCompactInListMinimum();
+        this.compactValuesMinimum = template.getCompactValuesMinimum();
+        this.lazyLiterals = template.isLazyLiterals();
+        this.failFast = template.isFailFast();
+        this.maxTokenCount = template.getMaxTokenCount();
+        this.maxNestingDepth = template.getMaxNestingDepth();
+        this.maxNodeCount = template.getMaxNodeCount();
+        this.maxParseMillis = template.getMaxParseMillis();
+    }
+
+    /** Make a parser for a new thread, configured from the settings. */
+    protected SQLParser newParser() {
+        SQLParser parser = new SQLParser();
+        Set<SQLParserFeature> parserFeatures = parser.getFeatures();
+        parserFeatures.clear();
+        parserFeatures.addAll(features);
+        parser.setMaxStringLiteralLength(maxStringLiteralLength);
+        parser.setMaxIdentifierLength(maxIdentifierLength);
+        parser.setMessageLocale(messageLocale);
+        parser.setParameterizeLiterals(parameterizeLiterals);
+        parser.setStatementCache(statementCache);
+        parser.setIdentifierTable(identifierTable);
+        parser.setRecycleTokens(recycleTokens);
+        parser.setCompactInListMinimum(compactInListMinimum);
+        parser.setCompactValuesMinimum(compactValuesMinimum);
+        parser.setLazyLiterals(lazyLiterals);
+        parser.setFailFast(failFast);
+        parser.setMaxTokenCount(maxTokenCount);
+        parser.setMaxNestingDepth(maxNestingDepth);
+        parser.setMaxNodeCount(maxNodeCount);
+        parser.setMaxParseMillis(maxParseMillis);
+        return parser;
+    }
+
+    /** Get the parser belonging to the calling thread. */
+    public SQLParser getParser() {
+        return parsers.get();
+    }
+
+    /** Parse a statement with the calling thread's parser. */
+    public StatementNode parseStatement(String sqlText) throws StandardException {
+        return getParser().parseStatement(sqlText);
+    }
+
+    /** Parse multiple statements with the calling thread's parser. */
+    public List<StatementNode> parseStatements(String sqlText) throws StandardException {
+        return getParser().parseStatements(sqlText);
+    }
+
+    /** Scan multiple statements for a listener with the calling
+     * thread's parser.
+     * @see SQLParser#scanStatements
+     */
+    public void scanStatements(String sqlText, SQLParserListener listener) 
+            throws StandardException {
+        getParser().scanStatements(sqlText, listener);
+    }
+
+    /** Fingerprint a statement with the calling thread's parser.
+     * @see SQLParser#fingerprintStatement(CharSequence)
+     */
+    public long fingerprintStatement(CharSequence sqlText) throws StandardException {
+        return getParser().fingerprintStatement(sqlText);
+    }
+
+    /** Get the 128-bit fingerprint of a statement with the calling
+     * thread's parser.
+     * @see SQLParser#fingerprintStatement(CharSequence,long[])
+     */
+    public void fingerprintStatement(CharSequence sqlText, long[] fingerprint) 
+            throws StandardException {
+        getParser().fingerprintStatement(sqlText, fingerprint);
+    }
+
+    /** Normalize a statement with the calling thread's parser.
+     * @see SQLParser#normalizeStatement
+     */
+    public String normalizeStatement(CharSequence sqlText) throws StandardException {
+        return getParser().normalizeStatement(sqlText);
+    }
+
+    /**
+     * Parse multiple statements delimited by semicolons, using the
+     * given executor to parse pieces of the script in parallel.
+     * <p>
+     * The script is divided at top-level semicolons by a {@link
+     * StatementSplitter} and the statements are parsed in batches by
+     * the executor's threads, each with its own parser. The result is
+     * the same as {@link SQLParser#parseStatements}: statements are
+     * in order and their offsets, as well as the position of any
+     * error, are relative to the whole script. (The line number in an
+     * error message is relative to the batch, though.)
+     */
+    public List<StatementNode> parseStatements(final String sqlText, 
+                                               ExecutorService executor)
+            throws StandardException {
+        int[] bounds = new StatementSplitter(features).split(sqlText);
+        int nstatements = bounds.length / 2;
+        if (nstatements == 0)
+            // Let the parser report the error.
+            return parseStatements(sqlText);
+        int batchSize = Math.max(1, nstatements / (Runtime.getRuntime().availableProcessors() * 8));
+        List<Future<List<StatementNode>>> batches = new ArrayList<Future<List<StatementNode>>>();
+        List<Integer> batchOffsets = new ArrayList<Integer>();
+        for (int i = 0; i < nstatements; i += batchSize) {
+            final int begin = bounds[i * 2];
+            final int end = bounds[Math.min(i + batchSize, nstatements) * 2 - 1];
+            batches.add(executor.submit(new Callable<List<StatementNode>>() {
+                    public List<StatementNode> call() throws StandardException {
+                        List<StatementNode> result = 
+                            parseStatements(sqlText.substring(begin, end));
+                        OffsetShifter shifter = new OffsetShifter(begin);
+                        for (StatementNode statement : result) {
+                            statement.accept(shifter);
+                        }
+                        return result;
+                    }
+                }));
+            batchOffsets.add(begin);
+        }
+        List<StatementNode> result = new ArrayList<StatementNode>(nstatements);
+        try {
+            for (int i = 0; i < batches.size(); i++) {
+                try {
+                    result.addAll(batches.get(i).get());
+                }
+                catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof SQLParserException)
+                        throw ((SQLParserException)cause)
+                            .withPositionOffset(batchOffsets.get(i));
+                    if (cause instanceof StandardException)
+                        throw (StandardException)cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw new StandardException(cause);
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new StandardException(ex);
+        }
+        finally {
+            for (Future<List<StatementNode>> batch : batches) {
+                batch.cancel(false);
+            }
+        }
+        return result;
+    }
+
+    /** Move the offsets of a tree parsed from part of a script.
+     * Literals kept compactly have no offsets, so they stay compact.
+     */
+    static class OffsetShifter implements CompactConstantsVisitor {
+        private final int delta;
+
+        public OffsetShifter(int delta) {
+            this.delta = delta;
+        }
+
+        public Visitable visit(Visitable node) {
+            QueryTreeNode queryTreeNode = (QueryTreeNode)node;
+            if (queryTreeNode.getBeginOffset() >= 0)
+                queryTreeNode.setBeginOffset(queryTreeNode.getBeginOffset() + delta);
+            if (queryTreeNode.getEndOffset() >= 0)
+                queryTreeNode.setEndOffset(queryTreeNode.getEndOffset() + delta);
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+    }
+
+    /** Get the features enabled for all parsers. */
+    public Set<SQLParserFeature> getFeatures() {
+        return features;
+    }
+
+    public boolean hasFeature(SQLParserFeature feature) {
+        return features.contains(feature);
+    }
+
+    /** Get maximum length of a string literal. */
+    public int getMaxStringLiteralLength() {
+        return maxStringLiteralLength;
+    }
+
+    /** Get maximum length of an identifier. */
+    public int getMaxIdentifierLength() {
+        return maxIdentifierLength;
+    }
+
+    /** Get the most tokens in a statement, or <code>0</code> for no limit. */
+    public int getMaxTokenCount() {
+        return maxTokenCount;
+    }
+
+    /** Get the most levels of nested expressions and queries, or
+     * <code>0</code> for no limit.
+     */
+    public int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+
+    /** Get the most nodes in the tree for a statement, or
+     * <code>0</code> for no limit.
+     */
+    public int getMaxNodeCount() {
+        return maxNodeCount;
+    }
+
+    /** Get the most milliseconds that a parse may take, or
+     * <code>0</code> for no limit.
+     */
+    public long getMaxParseMillis() {
+        return maxParseMillis;
+    }
+
+    public String getMessageLocale() {
+        return messageLocale;
+    }
+
+    /** Are literals turned into parameters? */
+    public boolean isParameterizeLiterals() {
+        return parameterizeLiterals;
+    }
+
+    /** Get the cache shared by all parsers, if any. */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /** Get the table of names shared by all parsers, if any. */
+    public IdentifierTable getIdentifierTable() {
+        return identifierTable;
+    }
+
+    /** Do the per-thread parsers reuse token objects? */
+    public boolean isRecycleTokens() {
+        return recycleTokens;
+    }
+
+    /** Get the number of literals from which IN lists are compact. */
+    public int getCompactInListMinimum() {
+        return compactInListMinimum;
+    }
+
+    /** Get the number of rows from which VALUES are compact. */
+    public int getCompactValuesMinimum() {
+        return compactValuesMinimum;
+    }
+
+    /** Are the values of literals decoded only when asked for? */
+    public boolean isLazyLiterals() {
+        return lazyLiterals;
+    }
+
+    /** Are syntax errors reported without their message until it is
+     * asked for?
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+}
@@ -0,0 +1,374 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.Arrays;
+
+/**
+ * The right side of an IN list whose elements are all numeric or all
+ * character literals, kept as an array of values rather than a
+ * constant node for each one.
+ * <p>
+ * The parser makes one for a long enough list when {@link
+ * SQLParser#setCompactInListMinimum} asks for it. {@link
+ * InListOperatorNode} only turns it into nodes if they are needed.
+ * <p>
+ * Lists are not modified once made, so they can be shared.
+ */
+public final class ConstantInList
+{
+    public enum Kind {
+        /** Integers, which would be <code>INTEGER</code> or
+         * <code>BIGINT</code> constant nodes. */
+        LONG,
+        /** Approximate numbers: <code>DOUBLE</code> constant nodes. */
+        DOUBLE,
+        /** Character strings: <code>CHAR</code> constant nodes. */
+        STRING
+    }
+
+    private final Kind kind;
+    private final long[] longs;
+    private final double[] doubles;
+    private final String[] strings;
+    private final int size;
+    private final boolean sorted;
+
+    private ConstantInList(Kind kind, long[] longs, double[] doubles, String[] strings,
+                           int size, boolean sorted) {
+        this.kind = kind;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.strings = strings;
+        this.size = size;
+        this.sorted = sorted;
+    }
+
+    public static ConstantInList of(long... values) {
+        return new ConstantInList(Kind.LONG, values.clone(), null, null, 
+                                  values.length, false);
+    }
+
+    public static ConstantInList of(double... values) {
+        return new ConstantInList(Kind.DOUBLE, null, values.clone(), null, 
+                                  values.length, false);
+    }
+
+    public static ConstantInList of(String... values) {
+        for (String value : values) {
+            if (value == null)
+                throw new NullPointerException("NULL is not a constant of a list");
+        }
+        return new ConstantInList(Kind.STRING, null, null, values.clone(), 
+                                  values.length, false);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Are the values in ascending order with no duplicates? */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    public long getLong(int index) {
+        checkKind(Kind.LONG);
+        return longs[index];
+    }
+
+    public double getDouble(int index) {
+        checkKind(Kind.DOUBLE);
+        return doubles[index];
+    }
+
+    public String getString(int index) {
+        checkKind(Kind.STRING);
+        return strings[index];
+    }
+
+    /** Get a value as the constant node for it would have it: an
+     * <code>Integer</code>, <code>Long</code>, <code>Double</code> or
+     * <code>String</code>.
+     */
+    public Object getValue(int index) {
+        switch (kind) {
+        case LONG:
+            return boxLong(longs[index]);
+        case DOUBLE:
+            return Double.valueOf(doubles[index]);
+        default:
+            return strings[index];
+        }
+    }
+
+    private static Object boxLong(long value) {
+        if ((value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE))
+            return Integer.valueOf((int)value);
+        else
+            return Long.valueOf(value);
+    }
+
+    private void checkKind(Kind expected) {
+        if (kind != expected)
+            throw new IllegalStateException("List of " + kind + ", not " + expected);
+    }
+
+    /**
+     * Is the given value in the list? By binary search if the list is
+     * sorted, otherwise by looking at each one. A list of another
+     * kind contains no such value.
+     */
+    public boolean contains(long value) {
+        if (kind != Kind.LONG)
+            return false;
+        if (sorted)
+            return (Arrays.binarySearch(longs, 0, size, value) >= 0);
+        for (int i = 0; i < size; i++) {
+            if (longs[i] == value)
+                return true;
+        }
+        return false;
+    }
+
+    /** Is the given value in the list? Values are compared as by
+     * {@link Double#compare}, so <code>-0.0</code> is not
+     * <code>0.0</code>.
+     */
+    public boolean contains(double value) {
+        if (kind != Kind.DOUBLE)
+            return false;
+        if (sorted)
+            return (Arrays.binarySearch(doubles, 0, size, value) >= 0);
+        for (int i = 0; i < size; i++) {
+            if (Double.compare(doubles[i], value) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    /** Is the given string in the list? Strings are compared exactly,
+     * without any collation.
+     */
+    public boolean contains(String value) {
+        if (kind != Kind.STRING)
+            return false;
+        if (sorted)
+            return (Arrays.binarySearch(strings, 0, size, value) >= 0);
+        for (int i = 0; i < size; i++) {
+            if (strings[i].equals(value))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get a list of the same values in ascending order without
+     * duplicates, which {@link #contains} can search more quickly.
+     * Since membership is all that matters to <code>IN</code>, the
+     * list can replace this one, although the statement will no
+     * longer print the same.
+     */
+    public ConstantInList sortedDistinct() {
+        if (sorted)
+            return this;
+        int n = 0;
+        switch (kind) {
+        case LONG:
+            {
+                long[] values = Arrays.copyOf(longs, size);
+                Arrays.sort(values);
+                for (int i = 0; i < values.length; i++) {
+                    if ((n == 0) || (values[i] != values[n-1]))
+                        values[n++] = values[i];
+                }
+                return new ConstantInList(kind, trim(values, n), null, null, n, true);
+            }
+        case DOUBLE:
+            {
+                double[] values = Arrays.copyOf(doubles, size);
+                Arrays.sort(values);
+                for (int i = 0; i < values.length; i++) {
+                    if ((n == 0) || (Double.compare(values[i], values[n-1]) != 0))
+                        values[n++] = values[i];
+                }
+                return new ConstantInList(kind, null, trim(values, n), null, n, true);
+            }
+        default:
+            {
+                String[] values = Arrays.copyOf(strings, size);
+                Arrays.sort(values);
+                for (int i = 0; i < values.length; i++) {
+                    if ((n == 0) || !values[i].equals(values[n-1]))
+                        values[n++] = values[i];
+                }
+                return new ConstantInList(kind, null, null, trim(values, n), n, true);
+            }
+        }
+    }
+
+    private static long[] trim(long[] values, int n) {
+        return (n == values.length) ? values : Arrays.copyOf(values, n);
+    }
+    private static double[] trim(double[] values, int n) {
+        return (n == values.length) ? values : Arrays.copyOf(values, n);
+    }
+    private static String[] trim(String[] values, int n) {
+        return (n == values.length) ? values : Arrays.copyOf(values, n);
+    }
+
+    /**
+     * Make the nodes that the parser would have made for the list:
+     * a row constructor with a constant node for each value.
+     */
+    public RowConstructorNode toRowConstructor(NodeFactory nodeFactory, 
+                                               SQLParserContext parserContext)
+            throws StandardException {
+        ValueNodeList list = (ValueNodeList)
+            nodeFactory.getNode(NodeTypes.VALUE_NODE_LIST, parserContext);
+        for (int i = 0; i < size; i++) {
+            ValueNode constant;
+            switch (kind) {
+            case LONG:
+                {
+                    Object value = boxLong(longs[i]);
+                    constant = (ValueNode)
+                        nodeFactory.getNode((value instanceof Integer) ?
+                                            NodeTypes.INT_CONSTANT_NODE :
+                                            NodeTypes.LONGINT_CONSTANT_NODE,
+                                            value, parserContext);
+                }
+                break;
+            case DOUBLE:
+                constant = (ValueNode)
+                    nodeFactory.getNode(NodeTypes.DOUBLE_CONSTANT_NODE,
+                                        Double.valueOf(doubles[i]), parserContext);
+                break;
+            default:
+                constant = nodeFactory.getCharConstantNode(strings[i], parserContext);
+                break;
+            }
+            list.addValueNode(constant);
+        }
+        return (RowConstructorNode)
+            nodeFactory.getNode(NodeTypes.ROW_CTOR_NODE,
+                                list, new int[] { 1 }, parserContext);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ConstantInList))
+            return false;
+        ConstantInList other = (ConstantInList)o;
+        if ((kind != other.kind) || (size != other.size))
+            return false;
+        switch (kind) {
+        case LONG:
+            return Arrays.equals(longs, other.longs);
+        case DOUBLE:
+            return Arrays.equals(doubles, other.doubles);
+        default:
+            return Arrays.equals(strings, other.strings);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        switch (kind) {
+        case LONG:
+            return Arrays.hashCode(longs);
+        case DOUBLE:
+            return Arrays.hashCode(doubles) * 31 + 1;
+        default:
+            return Arrays.hashCode(strings) * 31 + 2;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(kind).append('[').append(size).append(']');
+        if (sorted)
+            str.append(" sorted");
+        return str.toString();
+    }
+
+    /** Accumulate the values of a list as the parser reads them. */
+    static class Builder {
+        private Kind kind;
+        private long[] longs;
+        private double[] doubles;
+        private String[] strings;
+        private int size;
+
+        public void addLong(long value) {
+            if (longs == null) {
+                start(Kind.LONG);
+                longs = new long[16];
+            }
+            else if (size == longs.length)
+                longs = Arrays.copyOf(longs, size * 2);
+            longs[size++] = value;
+        }
+
+        public void addDouble(double value) {
+            if (doubles == null) {
+                start(Kind.DOUBLE);
+                doubles = new double[16];
+            }
+            else if (size == doubles.length)
+                doubles = Arrays.copyOf(doubles, size * 2);
+            doubles[size++] = value;
+        }
+
+        public void addString(String value) {
+            if (strings == null) {
+                start(Kind.STRING);
+                strings = new String[16];
+            }
+            else if (size == strings.length)
+                strings = Arrays.copyOf(strings, size * 2);
+            strings[size++] = value;
+        }
+
+        private void start(Kind kind) {
+            if (this.kind != null)
+                throw new IllegalStateException("Mixed " + this.kind + " and " + kind);
+            this.kind = kind;
+        }
+
+        public ConstantInList build() {
+            if (kind == null)
+                throw new IllegalStateException("No values");
+            return new ConstantInList(kind,
+                                      (longs == null) ? null : trim(longs, size),
+                                      (doubles == null) ? null : trim(doubles, size),
+                                      (strings == null) ? null : trim(strings, size),
+                                      size, false);
+        }
+    }
+
+}
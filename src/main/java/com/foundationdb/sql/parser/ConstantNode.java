@@ -61,7 +61,7 @@ import com.foundationdb.sql.types.TypeId;
  */
 public abstract class ConstantNode extends ValueNode
 {
-    Object value;
+    Object value;               // Or LiteralText until first needed.
 
     /**
      * Initializer for non-numeric types
@@ -95,9 +95,22 @@ public abstract class ConstantNode extends ValueNode
      * Get the value in this ConstantNode
      */
     public Object getValue() {
+        Object value = this.value;
+        if (value instanceof LiteralText) {
+            value = decodeValue((LiteralText)value);
+            this.value = value;
+        }
         return value;
     }
 
+    /**
+     * Get the value of a literal whose decoding was put off by {@link
+     * SQLParser#setLazyLiterals}.
+     */
+    Object decodeValue(LiteralText text) {
+        return text.toString();
+    }
+
     /**
      * Set the value in this ConstantNode.
      */
@@ -113,7 +126,7 @@ public abstract class ConstantNode extends ValueNode
      */
 
     public String toString() {
-        return "value: " + value + "\n" +
+        return "value: " + getValue() + "\n" +
             super.toString();
     }
 
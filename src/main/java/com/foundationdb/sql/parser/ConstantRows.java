@@ -0,0 +1,451 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * The rows of a multi-row <code>VALUES</code> whose elements are all
+ * literals, stored by column in arrays of values rather than as a
+ * result column and constant node for each one.
+ * <p>
+ * The parser makes one for enough rows when {@link
+ * SQLParser#setCompactValuesMinimum} asks for it. {@link
+ * RowsResultSetNode} only turns it into nodes if they are needed.
+ * Values can be read by row and column, or streamed with a {@link
+ * Cursor}.
+ * <p>
+ * Each column has the arrays needed for the kinds of value in it. A
+ * column whose values are not all of one kind, such as integers with
+ * some <code>NULL</code>s, also has a byte per row for the kind.
+ * <p>
+ * Rows are not modified once made, so they can be shared.
+ */
+public final class ConstantRows
+{
+    public enum Kind {
+        /** <code>NULL</code>. */
+        NULL,
+        /** Integers, which would be <code>INTEGER</code> or
+         * <code>BIGINT</code> constant nodes. */
+        LONG,
+        /** Approximate numbers: <code>DOUBLE</code> constant nodes. */
+        DOUBLE,
+        /** Exact numbers with a decimal point or too big for a
+         * <code>long</code>, kept as written. */
+        DECIMAL,
+        /** Character strings: <code>CHAR</code> constant nodes. */
+        STRING,
+        /** <code>TRUE</code> or <code>FALSE</code>. */
+        BOOLEAN
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    static final class Column {
+        private Kind kind;              // Of every value, or null if they differ.
+        private byte[] kinds;           // Ordinal for each row if they differ.
+        private long[] longs;           // LONG and BOOLEAN (as 0 or 1).
+        private double[] doubles;       // DOUBLE.
+        private String[] strings;       // STRING and DECIMAL.
+
+        private Kind getKind(int row) {
+            return (kind != null) ? kind : KINDS[kinds[row]];
+        }
+
+        private boolean equals(Column other) {
+            return (kind == other.kind) &&
+                Arrays.equals(kinds, other.kinds) &&
+                Arrays.equals(longs, other.longs) &&
+                Arrays.equals(doubles, other.doubles) &&
+                Arrays.equals(strings, other.strings);
+        }
+
+        private int hash() {
+            int hash = (kind == null) ? Arrays.hashCode(kinds) : kind.hashCode();
+            hash = hash * 31 + Arrays.hashCode(longs);
+            hash = hash * 31 + Arrays.hashCode(doubles);
+            hash = hash * 31 + Arrays.hashCode(strings);
+            return hash;
+        }
+    }
+
+    private final int nrows;
+    private final Column[] columns;
+
+    private ConstantRows(int nrows, Column[] columns) {
+        this.nrows = nrows;
+        this.columns = columns;
+    }
+
+    public int getRowCount() {
+        return nrows;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /** Get the kind of every value in the given column, or
+     * <code>null</code> if they are not all the same.
+     */
+    public Kind getColumnKind(int column) {
+        return columns[column].kind;
+    }
+
+    public Kind getKind(int row, int column) {
+        checkRow(row);
+        return columns[column].getKind(row);
+    }
+
+    public boolean isNull(int row, int column) {
+        return (getKind(row, column) == Kind.NULL);
+    }
+
+    public long getLong(int row, int column) {
+        checkKind(row, column, Kind.LONG);
+        return columns[column].longs[row];
+    }
+
+    public double getDouble(int row, int column) {
+        checkKind(row, column, Kind.DOUBLE);
+        return columns[column].doubles[row];
+    }
+
+    public BigDecimal getDecimal(int row, int column) {
+        checkKind(row, column, Kind.DECIMAL);
+        return new BigDecimal(columns[column].strings[row]);
+    }
+
+    public String getString(int row, int column) {
+        checkKind(row, column, Kind.STRING);
+        return columns[column].strings[row];
+    }
+
+    public boolean getBoolean(int row, int column) {
+        checkKind(row, column, Kind.BOOLEAN);
+        return (columns[column].longs[row] != 0);
+    }
+
+    /** Get a value as the constant node for it would have it:
+     * <code>null</code>, an <code>Integer</code>, <code>Long</code>,
+     * <code>Double</code>, <code>BigDecimal</code>,
+     * <code>String</code> or <code>Boolean</code>.
+     */
+    public Object getValue(int row, int column) {
+        Column col = columns[column];
+        switch (getKind(row, column)) {
+        case NULL:
+            return null;
+        case LONG:
+            return boxLong(col.longs[row]);
+        case DOUBLE:
+            return Double.valueOf(col.doubles[row]);
+        case DECIMAL:
+            return new BigDecimal(col.strings[row]);
+        case STRING:
+            return col.strings[row];
+        case BOOLEAN:
+        default:
+            return Boolean.valueOf(col.longs[row] != 0);
+        }
+    }
+
+    private static Object boxLong(long value) {
+        if ((value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE))
+            return Integer.valueOf((int)value);
+        else
+            return Long.valueOf(value);
+    }
+
+    private void checkRow(int row) {
+        if ((row < 0) || (row >= nrows))
+            throw new IndexOutOfBoundsException("Row " + row + " of " + nrows);
+    }
+
+    private void checkKind(int row, int column, Kind expected) {
+        Kind kind = getKind(row, column);
+        if (kind != expected)
+            throw new IllegalStateException("Value at " + row + "," + column + 
+                                            " is " + kind + ", not " + expected);
+    }
+
+    /** Get a cursor positioned before the first row. */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** Reads the rows in order. */
+    public final class Cursor {
+        private int row = -1;
+
+        private Cursor() {
+        }
+
+        /** Move to the next row, returning <code>false</code> if there
+         * are no more. */
+        public boolean next() {
+            if (row >= nrows)
+                return false;
+            return (++row < nrows);
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        public Kind getKind(int column) {
+            return ConstantRows.this.getKind(row, column);
+        }
+
+        public boolean isNull(int column) {
+            return ConstantRows.this.isNull(row, column);
+        }
+
+        public long getLong(int column) {
+            return ConstantRows.this.getLong(row, column);
+        }
+
+        public double getDouble(int column) {
+            return ConstantRows.this.getDouble(row, column);
+        }
+
+        public BigDecimal getDecimal(int column) {
+            return ConstantRows.this.getDecimal(row, column);
+        }
+
+        public String getString(int column) {
+            return ConstantRows.this.getString(row, column);
+        }
+
+        public boolean getBoolean(int column) {
+            return ConstantRows.this.getBoolean(row, column);
+        }
+
+        public Object getValue(int column) {
+            return ConstantRows.this.getValue(row, column);
+        }
+    }
+
+    /** Make the constant node that the parser would have made for a value. */
+    public ValueNode toConstantNode(int row, int column,
+                                    NodeFactory nodeFactory, 
+                                    SQLParserContext parserContext)
+            throws StandardException {
+        Column col = columns[column];
+        switch (getKind(row, column)) {
+        case NULL:
+            return (ValueNode)nodeFactory.getNode(NodeTypes.UNTYPED_NULL_CONSTANT_NODE,
+                                                  parserContext);
+        case LONG:
+            {
+                Object value = boxLong(col.longs[row]);
+                return (ValueNode)nodeFactory.getNode((value instanceof Integer) ?
+                                                      NodeTypes.INT_CONSTANT_NODE :
+                                                      NodeTypes.LONGINT_CONSTANT_NODE,
+                                                      value, parserContext);
+            }
+        case DOUBLE:
+            return (ValueNode)nodeFactory.getNode(NodeTypes.DOUBLE_CONSTANT_NODE,
+                                                  Double.valueOf(col.doubles[row]),
+                                                  parserContext);
+        case DECIMAL:
+            return (ValueNode)nodeFactory.getNode(NodeTypes.DECIMAL_CONSTANT_NODE,
+                                                  col.strings[row],
+                                                  parserContext);
+        case STRING:
+            return nodeFactory.getCharConstantNode(col.strings[row], parserContext);
+        case BOOLEAN:
+        default:
+            return (ValueNode)nodeFactory.getNode(NodeTypes.BOOLEAN_CONSTANT_NODE,
+                                                  Boolean.valueOf(col.longs[row] != 0),
+                                                  parserContext);
+        }
+    }
+
+    /** Make the nodes that the parser would have made for a row. */
+    public RowResultSetNode toRowResultSet(int row,
+                                           NodeFactory nodeFactory, 
+                                           SQLParserContext parserContext)
+            throws StandardException {
+        checkRow(row);
+        ResultColumnList resultColumns = (ResultColumnList)
+            nodeFactory.getNode(NodeTypes.RESULT_COLUMN_LIST, parserContext);
+        for (int column = 0; column < columns.length; column++) {
+            resultColumns.addResultColumn(
+                nodeFactory.getResultColumn((String)null,
+                                            toConstantNode(row, column,
+                                                           nodeFactory, parserContext),
+                                            parserContext));
+        }
+        return (RowResultSetNode)
+            nodeFactory.getNode(NodeTypes.ROW_RESULT_SET_NODE,
+                                resultColumns, null, parserContext);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ConstantRows))
+            return false;
+        ConstantRows other = (ConstantRows)o;
+        if ((nrows != other.nrows) || (columns.length != other.columns.length))
+            return false;
+        for (int i = 0; i < columns.length; i++) {
+            if (!columns[i].equals(other.columns[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = nrows;
+        for (Column column : columns) {
+            hash = hash * 31 + column.hash();
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(nrows).append(" rows (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) str.append(", ");
+            Kind kind = columns[i].kind;
+            str.append((kind == null) ? "MIXED" : kind.name());
+        }
+        str.append(")");
+        return str.toString();
+    }
+
+    /** Accumulate rows as the parser reads them. */
+    static class Builder {
+        private Column[] columns;
+        // Columns of the first row, whose number is not yet known.
+        private Column[] pending = new Column[8];
+        private int nrows, capacity;
+        private int column;     // Next in the current row.
+
+        /** Finish the current row, checking that it is the same size
+         * as the others. */
+        public void endRow() throws StandardException {
+            if (columns == null) {
+                columns = Arrays.copyOf(pending, column);
+                pending = null;
+            }
+            else if (column != columns.length)
+                throw new StandardException("Row value size is different");
+            nrows++;
+            column = 0;
+        }
+
+        public int getRowCount() {
+            return nrows;
+        }
+
+        private Column nextColumn(Kind kind) throws StandardException {
+            Column col;
+            if (columns == null) {
+                if (column == pending.length)
+                    pending = Arrays.copyOf(pending, column * 2);
+                col = pending[column] = new Column();
+                col.kind = kind;
+                if (capacity == 0)
+                    capacity = 16;
+            }
+            else {
+                if (column >= columns.length)
+                    throw new StandardException("Row value size is different");
+                col = columns[column];
+                if (nrows == capacity) {
+                    capacity *= 2;
+                    for (Column c : columns) {
+                        if (c.kinds != null) c.kinds = Arrays.copyOf(c.kinds, capacity);
+                        if (c.longs != null) c.longs = Arrays.copyOf(c.longs, capacity);
+                        if (c.doubles != null) c.doubles = Arrays.copyOf(c.doubles, capacity);
+                        if (c.strings != null) c.strings = Arrays.copyOf(c.strings, capacity);
+                    }
+                }
+                if ((col.kind != kind) && (col.kinds == null)) {
+                    col.kinds = new byte[capacity];
+                    Arrays.fill(col.kinds, 0, nrows, (byte)col.kind.ordinal());
+                    col.kind = null;
+                }
+            }
+            if (col.kinds != null)
+                col.kinds[nrows] = (byte)kind.ordinal();
+            column++;
+            return col;
+        }
+
+        public void addNull() throws StandardException {
+            nextColumn(Kind.NULL);
+        }
+
+        public void addLong(long value) throws StandardException {
+            Column col = nextColumn(Kind.LONG);
+            if (col.longs == null) col.longs = new long[capacity];
+            col.longs[nrows] = value;
+        }
+
+        public void addBoolean(boolean value) throws StandardException {
+            Column col = nextColumn(Kind.BOOLEAN);
+            if (col.longs == null) col.longs = new long[capacity];
+            col.longs[nrows] = value ? 1 : 0;
+        }
+
+        public void addDouble(double value) throws StandardException {
+            Column col = nextColumn(Kind.DOUBLE);
+            if (col.doubles == null) col.doubles = new double[capacity];
+            col.doubles[nrows] = value;
+        }
+
+        public void addDecimal(String image) throws StandardException {
+            Column col = nextColumn(Kind.DECIMAL);
+            if (col.strings == null) col.strings = new String[capacity];
+            col.strings[nrows] = image;
+        }
+
+        public void addString(String value) throws StandardException {
+            Column col = nextColumn(Kind.STRING);
+            if (col.strings == null) col.strings = new String[capacity];
+            col.strings[nrows] = value;
+        }
+
+        public ConstantRows build() {
+            for (Column c : columns) {
+                if (c.kinds != null) c.kinds = Arrays.copyOf(c.kinds, nrows);
+                if (c.longs != null) c.longs = Arrays.copyOf(c.longs, nrows);
+                if (c.doubles != null) c.doubles = Arrays.copyOf(c.doubles, nrows);
+                if (c.strings != null) c.strings = Arrays.copyOf(c.strings, nrows);
+            }
+            return new ConstantRows(nrows, columns);
+        }
+    }
+
+}
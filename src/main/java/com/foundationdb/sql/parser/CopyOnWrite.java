@@ -0,0 +1,227 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sharing of trees between copies, for {@link
+ * NodeFactory#copyNode(QueryTreeNode,SQLParserContext,boolean)}.
+ * <p>
+ * A node is copied with <code>Object.clone</code>, along with any
+ * lists or arrays that it keeps its children in, so that putting
+ * copies of them in their place does not change the original.
+ * <p>
+ * Before a copy is visited, its children are copied too, as are the
+ * elements of any child that is a list, since a list is part of its
+ * parent. So a visitor can change the node it is visiting and those
+ * children, as binding does to result columns and tables, without
+ * changing the shared tree. Nodes further down are only copied when
+ * they are visited themselves.
+ */
+final class CopyOnWrite
+{
+    private CopyOnWrite() {
+    }
+
+    /** Mark the given node and every node it refers to as shared, if
+     * it is not already. Children are marked before their parents
+     * and the root last, so a shared root means a shared tree. Any
+     * literals are decoded first, so that nothing is written to a
+     * shared node afterwards.
+     */
+    static void share(QueryTreeNode root) {
+        if (root.isShared())
+            return;
+        List<QueryTreeNode> nodes = new ArrayList<QueryTreeNode>();
+        Set<QueryTreeNode> seen = 
+            Collections.newSetFromMap(new IdentityHashMap<QueryTreeNode,Boolean>());
+        Deque<Object> pending = new ArrayDeque<Object>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Object value = pending.pop();
+            if (value instanceof QueryTreeNode) {
+                QueryTreeNode node = (QueryTreeNode)value;
+                if (node.isShared() || !seen.add(node))
+                    continue;
+                if (node instanceof ConstantNode)
+                    ((ConstantNode)node).getValue();
+                nodes.add(node);
+                for (Field field : NodeSerializer.classInfo(node.getClass()).fields) {
+                    Object fieldValue = get(field, node);
+                    if (fieldValue != null)
+                        pending.push(fieldValue);
+                }
+            }
+            else if (value instanceof Collection) {
+                for (Object element : (Collection<?>)value) {
+                    if (element != null)
+                        pending.push(element);
+                }
+            }
+            else if (value instanceof Map) {
+                for (Object element : ((Map<?,?>)value).values()) {
+                    if (element != null)
+                        pending.push(element);
+                }
+            }
+            else if (value instanceof Object[]) {
+                for (Object element : (Object[])value) {
+                    if (element != null)
+                        pending.push(element);
+                }
+            }
+        }
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            nodes.get(i).setShared();
+        }
+        assert recordHash(root);
+    }
+
+    // The structural hash of each shared tree when it was shared, so
+    // that a change to it can be caught. Only kept with assertions on.
+    private static final Map<QueryTreeNode,Integer> sharedHashes = 
+        Collections.synchronizedMap(new WeakHashMap<QueryTreeNode,Integer>());
+
+    private static boolean recordHash(QueryTreeNode root) {
+        sharedHashes.put(root, root.structuralHashCode());
+        return true;
+    }
+
+    /** Check that the given shared tree has not been changed since
+     * it was shared, for an assertion. */
+    static boolean isUnchanged(QueryTreeNode root) {
+        Integer hash = sharedHashes.get(root);
+        return ((hash == null) || (hash == root.structuralHashCode()));
+    }
+
+    /** Make an unshared copy of just the given node, whose children
+     * are still shared. */
+    static QueryTreeNode copy(QueryTreeNode node) {
+        QueryTreeNode copy = node.shallowCopy();
+        copy.setSharedChildren(true);
+        for (Field field : containerFields(node.getClass())) {
+            Object value = get(field, copy);
+            if (value instanceof List) {
+                set(field, copy, new ArrayList<Object>((List<?>)value));
+            }
+            else if (value != null) {
+                int length = Array.getLength(value);
+                Object array = Array.newInstance(value.getClass().getComponentType(), length);
+                System.arraycopy(value, 0, array, 0, length);
+                set(field, copy, array);
+            }
+        }
+        return copy;
+    }
+
+    /** Replace the shared children of a copy with copies of their
+     * own, copying the elements of any that are lists as well. */
+    @SuppressWarnings("unchecked")
+    static void copyChildren(QueryTreeNode node) {
+        node.setSharedChildren(false);
+        // Lists and arrays were copied along with the node.
+        for (Field field : containerFields(node.getClass())) {
+            Object value = get(field, node);
+            if (value instanceof List) {
+                List<Object> list = (List<Object>)value;
+                for (int i = 0; i < list.size(); i++) {
+                    Object element = list.get(i);
+                    if (isShared(element))
+                        list.set(i, copyChild((QueryTreeNode)element));
+                }
+            }
+            else if (value != null) {
+                for (int i = 0; i < Array.getLength(value); i++) {
+                    Object element = Array.get(value, i);
+                    if (isShared(element))
+                        Array.set(value, i, copyChild((QueryTreeNode)element));
+                }
+            }
+        }
+        for (Field field : NodeSerializer.classInfo(node.getClass()).fields) {
+            Object value = get(field, node);
+            if (isShared(value))
+                set(field, node, copyChild((QueryTreeNode)value));
+        }
+    }
+
+    private static boolean isShared(Object value) {
+        return ((value instanceof QueryTreeNode) && ((QueryTreeNode)value).isShared());
+    }
+
+    private static QueryTreeNode copyChild(QueryTreeNode child) {
+        QueryTreeNode copy = copy(child);
+        if (copy instanceof QueryTreeNodeList)
+            copyChildren(copy);
+        return copy;
+    }
+
+    private static final Map<Class<?>,Field[]> containerFieldsByClass = 
+        new ConcurrentHashMap<Class<?>,Field[]>();
+
+    /** Get the fields of a node class that can hold nodes in a list or
+     * array. */
+    static Field[] containerFields(Class<?> cls) {
+        Field[] result = containerFieldsByClass.get(cls);
+        if (result == null) {
+            List<Field> fields = new ArrayList<Field>();
+            for (Field field : NodeSerializer.classInfo(cls).fields) {
+                Class<?> type = field.getType();
+                if (List.class.isAssignableFrom(type) ||
+                    (type.isArray() && !type.getComponentType().isPrimitive() &&
+                     (type.getComponentType() != String.class)))
+                    fields.add(field);
+            }
+            result = fields.toArray(new Field[fields.size()]);
+            containerFieldsByClass.put(cls, result);
+        }
+        return result;
+    }
+
+    private static Object get(Field field, Object object) {
+        try {
+            return field.get(object);
+        }
+        catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void set(Field field, Object object, Object value) {
+        try {
+            field.set(object, value);
+        }
+        catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
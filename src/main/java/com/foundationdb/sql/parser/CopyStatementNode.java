@@ -146,6 +146,7 @@ public class CopyStatementNode extends StatementNode
         super.copyFrom(node);
         
         CopyStatementNode other = (CopyStatementNode)node;
+        this.mode = other.mode;
         this.tableName = (TableName)getNodeFactory().copyNode(other.tableName,
                                                                 getParserContext());
         this.subquery = (SubqueryNode)getNodeFactory().copyNode(other.subquery,
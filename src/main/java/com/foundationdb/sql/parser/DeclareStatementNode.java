@@ -55,6 +55,7 @@ public class DeclareStatementNode extends StatementNode
         super.copyFrom(node);
         
         DeclareStatementNode other = (DeclareStatementNode)node;
+        this.name = other.name;
         this.statement = (StatementNode)getNodeFactory().copyNode(other.statement,
                                                                   getParserContext());
     }
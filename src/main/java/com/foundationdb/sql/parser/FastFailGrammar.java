@@ -0,0 +1,70 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+/**
+ * {@link SQLGrammar} that can report syntax errors cheaply.
+ * <p>
+ * Normally, a syntax error rescans every lookahead that was tried at
+ * the point of failure, so as to list the tokens that were expected,
+ * and then builds the message from them. When failing fast, the
+ * exception only records where the error is and gets no stack trace.
+ * It is then up to the caller to work out a message, if one is
+ * wanted, by parsing again without failing fast.
+ */
+class FastFailGrammar extends SQLGrammar
+{
+    private boolean failFast;
+
+    public FastFailGrammar(SQLGrammarTokenManager tokenManager) {
+        super(tokenManager);
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    @Override
+    public ParseException generateParseException() {
+        if (!failFast)
+            return super.generateParseException();
+        return new FastFailParseException(token.next.beginOffset);
+    }
+
+    /** A syntax error with only the offset of the unexpected token. */
+    static class FastFailParseException extends ParseException {
+        private final int errorOffset;
+
+        public FastFailParseException(int errorOffset) {
+            this.errorOffset = errorOffset;
+        }
+
+        public int getErrorOffset() {
+            return errorOffset;
+        }
+
+        @Override
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
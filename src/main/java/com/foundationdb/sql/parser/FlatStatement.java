@@ -0,0 +1,417 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A statement's tree stored in an array of <code>int</code>s rather
+ * than as a node object for each node, for holding many statements
+ * for analysis.
+ * <p>
+ * Nodes are numbered in prefix order, with the statement as node
+ * <code>0</code>. For each node there is its type from {@link
+ * NodeTypes}, its parent, the number just past its last descendant,
+ * its offsets in the SQL text, and the index of its name,
+ * qualifier and value in a pool of identifiers and
+ * literals. Which nodes have those is given by {@link #getName},
+ * {@link #getQualifier} and {@link #getValue}. The name of the table
+ * of a {@link FromBaseTable}, which is not otherwise a child, is
+ * stored as a <code>TABLE_NAME</code> node under it.
+ * <p>
+ * Nodes can be read by number, or navigated with a {@link
+ * Cursor}. When the full tree is needed, {@link #toStatementNode}
+ * parses the SQL text again, with the same features and identifier
+ * case as the first time.
+ * <p>
+ * The flat form is made by walking a tree that the parser has already
+ * built, so getting it is somewhat slower than parsing alone. What it
+ * saves is memory, for statements that are kept.
+ * <p>
+ * A flat statement is not modified once made, so it can be shared.
+ */
+public final class FlatStatement
+{
+    // Fields of each node in nodes.
+    private static final int TYPE = 0, PARENT = 1, SUBTREE_END = 2,
+        BEGIN_OFFSET = 3, END_OFFSET = 4, POOL_INDEX = 5, NFIELDS = 6;
+    // Flags in TYPE saying what is in the pool: a name, a name
+    // followed by a qualifier, or a value.
+    private static final int TYPE_MASK = 0xFFFF, NAMED = 1 << 16, 
+        QUALIFIED = 1 << 17, VALUED = 1 << 18;
+
+    private final String sqlText;
+    private final int[] nodes;
+    private final Object[] pool;
+    // What the statement was parsed with: a bit for each feature.
+    private final int features;
+    private final SQLParserContext.IdentifierCase identifierCase;
+
+    private FlatStatement(String sqlText, int[] nodes, Object[] pool,
+                          int features, SQLParserContext.IdentifierCase identifierCase) {
+        this.sqlText = sqlText;
+        this.nodes = nodes;
+        this.pool = pool;
+        this.features = features;
+        this.identifierCase = identifierCase;
+    }
+
+    /** Parse the given SQL text into a flat statement. This is not
+     * faster than {@link SQLParser#parseStatement}, which it calls. */
+    public static FlatStatement parse(SQLParser parser, String sqlText) 
+            throws StandardException {
+        return of(sqlText, parser.parseStatement(sqlText));
+    }
+
+    /**
+     * Make a flat statement from a tree.
+     * @param sqlText The text from which <code>statement</code> was parsed.
+     */
+    public static FlatStatement of(String sqlText, StatementNode statement) 
+            throws StandardException {
+        Builder builder = new Builder();
+        statement.accept(builder);
+        return builder.build(sqlText, statement.getParserContext());
+    }
+
+    /** Get the text from which the statement was parsed. */
+    public String getSQLText() {
+        return sqlText;
+    }
+
+    /** Get the parser features the statement was parsed with. */
+    public Set<SQLParserFeature> getFeatures() {
+        Set<SQLParserFeature> result = EnumSet.noneOf(SQLParserFeature.class);
+        for (SQLParserFeature feature : SQLParserFeature.values()) {
+            if ((features & (1 << feature.ordinal())) != 0)
+                result.add(feature);
+        }
+        return result;
+    }
+
+    /** Get the identifier case the statement was parsed with. */
+    public SQLParserContext.IdentifierCase getIdentifierCase() {
+        return identifierCase;
+    }
+
+    /** Get the number of nodes. */
+    public int size() {
+        return nodes.length / NFIELDS;
+    }
+
+    /** Get the type of a node, from {@link NodeTypes}. */
+    public int getNodeType(int node) {
+        return nodes[node * NFIELDS + TYPE] & TYPE_MASK;
+    }
+
+    /** Get the parent of a node, or <code>-1</code> for the statement. */
+    public int getParent(int node) {
+        return nodes[node * NFIELDS + PARENT];
+    }
+
+    /** Get the first child of a node, or <code>-1</code> if it has none. */
+    public int getFirstChild(int node) {
+        int child = node + 1;
+        return (child < nodes[node * NFIELDS + SUBTREE_END]) ? child : -1;
+    }
+
+    /** Get the next child of a node's parent, or <code>-1</code> if
+     * it is the last.
+     */
+    public int getNextSibling(int node) {
+        int parent = nodes[node * NFIELDS + PARENT];
+        if (parent < 0) return -1;
+        int sibling = nodes[node * NFIELDS + SUBTREE_END];
+        return (sibling < nodes[parent * NFIELDS + SUBTREE_END]) ? sibling : -1;
+    }
+
+    /** Get the number of the node just past the last descendant of a
+     * node, which are all those in between.
+     */
+    public int getSubtreeEnd(int node) {
+        return nodes[node * NFIELDS + SUBTREE_END];
+    }
+
+    public int getBeginOffset(int node) {
+        return nodes[node * NFIELDS + BEGIN_OFFSET];
+    }
+
+    public int getEndOffset(int node) {
+        return nodes[node * NFIELDS + END_OFFSET];
+    }
+
+    /**
+     * Get the name of a node, or <code>null</code>: the name of a
+     * column reference, table name, result column, aggregate or
+     * method call, the correlation name of a table in
+     * <code>FROM</code>, or the operator of a unary or binary
+     * operator.
+     */
+    public String getName(int node) {
+        return (String)poolEntry(node, NAMED, 0);
+    }
+
+    /** Get the qualifier of a node, or <code>null</code>: the table of
+     * a column reference or the schema of a table name.
+     */
+    public String getQualifier(int node) {
+        return (String)poolEntry(node, QUALIFIED, 1);
+    }
+
+    /** Get the value of a node, or <code>null</code>: the value of a
+     * constant, the number of a parameter, as an {@link Integer}, or
+     * the {@link ConstantInList} of an IN list or the {@link
+     * ConstantRows} of a <code>VALUES</code> kept compactly, which
+     * have no nodes under them for those literals.
+     */
+    public Object getValue(int node) {
+        int type = nodes[node * NFIELDS + TYPE];
+        return poolEntry(node, VALUED, Integer.bitCount(type & (NAMED | QUALIFIED)));
+    }
+
+    private Object poolEntry(int node, int flag, int delta) {
+        int base = node * NFIELDS;
+        if ((nodes[base + TYPE] & flag) == 0)
+            return null;
+        return pool[nodes[base + POOL_INDEX] + delta];
+    }
+
+    /** Get a cursor positioned on the statement. */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Make the full tree by parsing the SQL text again.
+     * @param parser A parser with the same features and identifier
+     * case as the one that parsed the statement originally.
+     */
+    public StatementNode toStatementNode(SQLParser parser) throws StandardException {
+        if (!parser.getFeatures().equals(getFeatures()) ||
+            (parser.getIdentifierCase() != identifierCase))
+            throw new StandardException("Parser features or identifier case differ " +
+                                        "from those the statement was parsed with");
+        return parser.parseStatement(sqlText);
+    }
+
+    /** A position in a flat statement. */
+    public final class Cursor {
+        private int node;
+
+        private Cursor() {
+        }
+
+        /** Get the number of the current node. */
+        public int getNode() {
+            return node;
+        }
+
+        /** Move to the given node. */
+        public void moveTo(int node) {
+            if ((node < 0) || (node >= size()))
+                throw new IndexOutOfBoundsException("Node " + node + " of " + size());
+            this.node = node;
+        }
+
+        /** Move to the next node in prefix order, returning
+         * <code>false</code> if there are no more. */
+        public boolean next() {
+            if (node + 1 >= size())
+                return false;
+            node++;
+            return true;
+        }
+
+        /** Move to the first child, returning <code>false</code> and
+         * staying put if there are none. */
+        public boolean firstChild() {
+            return moveIfFound(getFirstChild(node));
+        }
+
+        /** Move to the next sibling, returning <code>false</code> and
+         * staying put if there are none. */
+        public boolean nextSibling() {
+            return moveIfFound(getNextSibling(node));
+        }
+
+        /** Move to the parent, returning <code>false</code> and
+         * staying put at the statement. */
+        public boolean parent() {
+            return moveIfFound(getParent(node));
+        }
+
+        private boolean moveIfFound(int found) {
+            if (found < 0)
+                return false;
+            node = found;
+            return true;
+        }
+
+        public int getNodeType() {
+            return FlatStatement.this.getNodeType(node);
+        }
+
+        public int getBeginOffset() {
+            return FlatStatement.this.getBeginOffset(node);
+        }
+
+        public int getEndOffset() {
+            return FlatStatement.this.getEndOffset(node);
+        }
+
+        public String getName() {
+            return FlatStatement.this.getName(node);
+        }
+
+        public String getQualifier() {
+            return FlatStatement.this.getQualifier(node);
+        }
+
+        public Object getValue() {
+            return FlatStatement.this.getValue(node);
+        }
+    }
+
+    /** Add nodes in prefix order, recursing itself so as to know
+     * each node's parent and when its subtree ends.
+     */
+    static class Builder implements CompactConstantsVisitor {
+        private int[] nodes = new int[NFIELDS * 32];
+        private int nnodes, parent = -1;
+        private Object[] pool = new Object[16];
+        private int npool;
+
+        public Visitable visit(Visitable node) throws StandardException {
+            QueryTreeNode queryTreeNode = (QueryTreeNode)node;
+            int index = add(queryTreeNode);
+            int saveParent = parent;
+            parent = index;
+            if (queryTreeNode instanceof FromBaseTable) {
+                TableName tableName = ((FromBaseTable)queryTreeNode).getOrigTableName();
+                if (tableName != null)
+                    tableName.accept(this);
+            }
+            queryTreeNode.acceptChildren(this);
+            parent = saveParent;
+            nodes[index * NFIELDS + SUBTREE_END] = nnodes;
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return true;        // visit does them.
+        }
+
+        private int add(QueryTreeNode node) {
+            if ((nnodes + 1) * NFIELDS > nodes.length)
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            int base = nnodes * NFIELDS;
+            int type = node.getNodeType();
+            int poolIndex = npool;
+            if (node instanceof ColumnReference) {
+                type |= addToPool(((ColumnReference)node).getColumnName(),
+                                  ((ColumnReference)node).getTableName());
+            }
+            else if (node instanceof TableName) {
+                type |= addToPool(((TableName)node).getTableName(),
+                                  ((TableName)node).getSchemaName());
+            }
+            else if (node instanceof ResultColumn) {
+                type |= addToPool(((ResultColumn)node).getName(), null);
+            }
+            else if (node instanceof FromTable) {
+                type |= addToPool(((FromTable)node).getCorrelationName(), null);
+                if ((node instanceof RowsResultSetNode) &&
+                    addToPool(((RowsResultSetNode)node).getConstantRows()))
+                    type |= VALUED;
+            }
+            else if (node instanceof AggregateNode) {
+                type |= addToPool(((AggregateNode)node).getAggregateName(), null);
+            }
+            else if (node instanceof MethodCallNode) {
+                type |= addToPool(((MethodCallNode)node).getMethodName(), null);
+            }
+            else if (node instanceof BinaryOperatorNode) {
+                type |= addToPool(((BinaryOperatorNode)node).getOperator(), null);
+            }
+            else if (node instanceof UnaryOperatorNode) {
+                type |= addToPool(((UnaryOperatorNode)node).getOperator(), null);
+            }
+            else if (node instanceof ConstantNode) {
+                if (addToPool(((ConstantNode)node).getValue()))
+                    type |= VALUED;
+            }
+            else if (node instanceof InListOperatorNode) {
+                if (addToPool(((InListOperatorNode)node).getRightOperandConstants()))
+                    type |= VALUED;
+            }
+            else if (node instanceof ParameterNode) {
+                addToPool(((ParameterNode)node).getParameterNumber());
+                type |= VALUED;
+            }
+            nodes[base + TYPE] = type;
+            nodes[base + PARENT] = parent;
+            nodes[base + BEGIN_OFFSET] = node.getBeginOffset();
+            nodes[base + END_OFFSET] = node.getEndOffset();
+            nodes[base + POOL_INDEX] = poolIndex;
+            return nnodes++;
+        }
+
+        /** Add a name and qualifier, returning the flags for those
+         * that there are. */
+        private int addToPool(String name, String qualifier) {
+            if (name == null)
+                return 0;
+            addToPool(name);
+            if (!addToPool(qualifier))
+                return NAMED;
+            return NAMED | QUALIFIED;
+        }
+
+        private boolean addToPool(Object entry) {
+            if (entry == null)
+                return false;
+            if (npool >= pool.length)
+                pool = Arrays.copyOf(pool, pool.length * 2);
+            pool[npool++] = entry;
+            return true;
+        }
+
+        FlatStatement build(String sqlText, SQLParserContext pc) {
+            int features = 0;
+            for (SQLParserFeature feature : SQLParserFeature.values()) {
+                if (pc.hasFeature(feature))
+                    features |= 1 << feature.ordinal();
+            }
+            return new FlatStatement(sqlText, 
+                                     Arrays.copyOf(nodes, nnodes * NFIELDS),
+                                     Arrays.copyOf(pool, npool),
+                                     features, pc.getIdentifierCase());
+        }
+    }
+
+}
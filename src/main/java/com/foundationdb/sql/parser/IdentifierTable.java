@@ -0,0 +1,219 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.util.Locale;
+
+/**
+ * A table of identifier and keyword strings, so that each distinct
+ * name is only kept once, however many statements it appears in.
+ * <p>
+ * Lookups take the characters in place and only make a new
+ * <code>String</code> the first time a name is seen. Folding to upper
+ * or lower case is done on the fly for ASCII, falling back to the
+ * rules of <code>Locale.ENGLISH</code> for anything else.
+ * <p>
+ * Lookups do not lock, so one table can be shared by parsers in
+ * different threads (see {@link SQLParser#setIdentifierTable}). Once
+ * the table is full, new names are still returned but no longer kept.
+ */
+public class IdentifierTable
+{
+    public static final int DEFAULT_MAX_SIZE = 65536;
+    /** Longer names are not kept. */
+    public static final int MAX_LENGTH = 128;
+
+    private static final int NO_FOLD = 0, FOLD_UPPER = 1, FOLD_LOWER = 2;
+
+    private final int maxSize;
+    // Open addressing, at most half full. Entries are only added,
+    // under the lock, so a lookup that does not find a name checks
+    // again with the lock held.
+    private volatile String[] entries;
+    private int size;
+
+    public IdentifierTable() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public IdentifierTable(int maxSize) {
+        this.maxSize = maxSize;
+        entries = new String[64];
+    }
+
+    /** Get the number of names kept. */
+    public synchronized int size() {
+        return size;
+    }
+
+    /** Get the string for the given characters, exactly. */
+    public String intern(CharSequence chars, int begin, int end) {
+        return lookup(chars, begin, end, NO_FOLD, null);
+    }
+
+    /** Get the table's copy of the given string. */
+    public String intern(String str) {
+        return lookup(str, 0, str.length(), NO_FOLD, str);
+    }
+
+    /** Get the given identifier in upper case. */
+    public String toUpperCase(String str) {
+        return lookup(str, 0, str.length(), FOLD_UPPER, str);
+    }
+
+    /** Get the given identifier in lower case. */
+    public String toLowerCase(String str) {
+        return lookup(str, 0, str.length(), FOLD_LOWER, str);
+    }
+
+    /** Could a token with these characters be a keyword or an
+     * undelimited identifier, rather than a literal or operator?
+     */
+    static boolean isName(CharSequence chars, int begin, int end) {
+        if (begin >= end) 
+            return false;
+        char first = chars.charAt(begin);
+        char last = chars.charAt(end - 1);
+        return (Character.isLetter(first) || (first == '_')) &&
+            (Character.isLetterOrDigit(last) || (last == '_') || (last == '$'));
+    }
+
+    private static char fold(char ch, int fold) {
+        switch (fold) {
+        case FOLD_UPPER:
+            if ((ch >= 'a') && (ch <= 'z'))
+                return (char)(ch - ('a' - 'A'));
+            break;
+        case FOLD_LOWER:
+            if ((ch >= 'A') && (ch <= 'Z'))
+                return (char)(ch + ('a' - 'A'));
+            break;
+        }
+        return ch;
+    }
+
+    /** 
+     * Find the (folded) characters in the table, adding them if not
+     * there.
+     * @param str the same characters as a string, if available.
+     */
+    private String lookup(CharSequence chars, int begin, int end, int fold, String str) {
+        int length = end - begin;
+        if (length > MAX_LENGTH)
+            return makeString(chars, begin, end, fold, str);
+        int hash = 0;
+        boolean folded = false;
+        for (int i = begin; i < end; i++) {
+            char ch = chars.charAt(i);
+            if (fold != NO_FOLD) {
+                if (ch >= 0x80)
+                    // Not ASCII: fold the slow way and look that up.
+                    return intern(makeString(chars, begin, end, fold, str));
+                char fch = fold(ch, fold);
+                if (fch != ch) {
+                    ch = fch;
+                    folded = true;
+                }
+            }
+            hash = 31 * hash + ch;
+        }
+        String[] entries = this.entries;
+        String found = find(entries, chars, begin, end, fold, hash);
+        if (found != null)
+            return found;
+        if (!folded && (str != null) && (begin == 0) && (end == str.length()))
+            // Already in the right form.
+            return add(str, hash);
+        return add(makeString(chars, begin, end, fold, str), hash);
+    }
+
+    private static String find(String[] entries, CharSequence chars, int begin, int end, 
+                               int fold, int hash) {
+        int length = end - begin;
+        int mask = entries.length - 1;
+        int index = spread(hash) & mask;
+        while (true) {
+            String entry = entries[index];
+            if (entry == null)
+                return null;
+            if ((entry.hashCode() == hash) && (entry.length() == length)) {
+                int i = 0;
+                while ((i < length) && 
+                       (entry.charAt(i) == fold(chars.charAt(begin + i), fold))) {
+                    i++;
+                }
+                if (i == length)
+                    return entry;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private static String findString(String[] entries, String str, int hash) {
+        return find(entries, str, 0, str.length(), NO_FOLD, hash);
+    }
+
+    private synchronized String add(String str, int hash) {
+        String[] entries = this.entries;
+        String found = findString(entries, str, hash);
+        if (found != null)
+            return found;
+        if (size >= maxSize)
+            return str;
+        if ((size + 1) * 2 > entries.length) {
+            String[] newEntries = new String[entries.length * 2];
+            for (String entry : entries) {
+                if (entry != null)
+                    put(newEntries, entry, entry.hashCode());
+            }
+            put(newEntries, str, hash);
+            this.entries = newEntries;
+        }
+        else {
+            put(entries, str, hash);
+        }
+        size++;
+        return str;
+    }
+
+    private static void put(String[] entries, String str, int hash) {
+        int mask = entries.length - 1;
+        int index = spread(hash) & mask;
+        while (entries[index] != null) {
+            index = (index + 1) & mask;
+        }
+        entries[index] = str;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static String makeString(CharSequence chars, int begin, int end, int fold, String str) {
+        if (str == null)
+            str = chars.subSequence(begin, end).toString();
+        switch (fold) {
+        case FOLD_UPPER:
+            return str.toUpperCase(Locale.ENGLISH);
+        case FOLD_LOWER:
+            return str.toLowerCase(Locale.ENGLISH);
+        default:
+            return str;
+        }
+    }
+
+}
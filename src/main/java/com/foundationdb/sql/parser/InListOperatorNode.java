@@ -42,19 +42,27 @@ import com.foundationdb.sql.StandardException;
 
 /**
  * An InListOperatorNode represents an IN list.
- *
+ * <p>
+ * A long list of literals may be kept as a {@link ConstantInList}
+ * instead of a row constructor of constant nodes. The nodes are only
+ * made when something asks for them, by getting the right operand
+ * list or visiting the children, except with a {@link
+ * CompactConstantsVisitor}. Code that can work with the values
+ * directly should check {@link #getRightOperandConstants} first.
  */
 public final class InListOperatorNode extends ValueNode
 {
     protected RowConstructorNode leftOperand;
     protected RowConstructorNode rightOperandList;
+    protected ConstantInList rightOperandConstants;
     protected boolean negated;
     
     /**
      * Initializer for a InListOperatorNode
      *
      * @param leftOperand The left operand of the node
-     * @param rightOperandList The right operand list of the node
+     * @param rightOperandList The right operand list of the node,
+     * either a row constructor or a {@link ConstantInList}
      */
     @Override
     public void init(Object leftOperand, Object rightOperandList) throws StandardException
@@ -76,7 +84,10 @@ public final class InListOperatorNode extends ValueNode
                                                                  getParserContext());
             
         }
-        this.rightOperandList = (RowConstructorNode) rightOperandList;
+        if (rightOperandList instanceof ConstantInList)
+            this.rightOperandConstants = (ConstantInList) rightOperandList;
+        else
+            this.rightOperandList = (RowConstructorNode) rightOperandList;
     }
 
     /**
@@ -90,6 +101,8 @@ public final class InListOperatorNode extends ValueNode
         InListOperatorNode other = (InListOperatorNode) node;
         this.leftOperand = (RowConstructorNode) getNodeFactory().copyNode(other.leftOperand, getParserContext());
         this.rightOperandList = (RowConstructorNode) getNodeFactory().copyNode(other.rightOperandList, getParserContext());
+        // Not modified, so can be shared.
+        this.rightOperandConstants = other.rightOperandConstants;
     }
 
     /**
@@ -127,6 +140,18 @@ public final class InListOperatorNode extends ValueNode
             printLabel(depth, "rightOperandList: ");
             rightOperandList.treePrint(depth + 1);
         }
+        else if (rightOperandConstants != null)
+        {
+            // Print the same as once made into nodes, without keeping them.
+            printLabel(depth, "rightOperandList: ");
+            try {
+                rightOperandConstants.toRowConstructor(getNodeFactory(), getParserContext())
+                    .treePrint(depth + 1);
+            }
+            catch (StandardException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
     }
 
     /**
@@ -158,18 +183,49 @@ public final class InListOperatorNode extends ValueNode
     public void setRightOperandList(RowConstructorNode newRightOperandList)
     {
         rightOperandList = newRightOperandList;
+        rightOperandConstants = null;
     }
 
     /**
-     * Get the rightOperandList
+     * Get the rightOperandList, making it from the compact constants
+     * first if need be. It then replaces them, since it can be changed.
      *
      * @return The current rightOperandList.
      */
     public RowConstructorNode getRightOperandList()
     {
+        if ((rightOperandList == null) && (rightOperandConstants != null)) {
+            try {
+                rightOperandList = rightOperandConstants.toRowConstructor(getNodeFactory(), 
+                                                                          getParserContext());
+            }
+            catch (StandardException ex) {
+                throw new IllegalStateException(ex);
+            }
+            rightOperandConstants = null;
+        }
         return rightOperandList;
     }
 
+    /**
+     * Get the constants of the right side if they are still kept
+     * compactly, or <code>null</code> if they are nodes.
+     */
+    public ConstantInList getRightOperandConstants()
+    {
+        return rightOperandConstants;
+    }
+
+    /**
+     * Replace the right side with the given constants, for instance
+     * their {@link ConstantInList#sortedDistinct} form.
+     */
+    public void setRightOperandConstants(ConstantInList newRightOperandConstants)
+    {
+        rightOperandConstants = newRightOperandConstants;
+        rightOperandList = null;
+    }
+
     /**
      * Return whether or not this expression tree represents a constant expression.
      *
@@ -179,7 +235,8 @@ public final class InListOperatorNode extends ValueNode
     public boolean isConstantExpression()
     {
         return (leftOperand.isConstantExpression()
-                && rightOperandList.isConstantExpression());
+                && ((rightOperandConstants != null) ||
+                    rightOperandList.isConstantExpression()));
     }
 
     /**
@@ -198,9 +255,14 @@ public final class InListOperatorNode extends ValueNode
             leftOperand = (RowConstructorNode) leftOperand.accept(v);
         }
 
-        if (rightOperandList != null)
+        if ((rightOperandConstants != null) && (v instanceof CompactConstantsVisitor))
         {
-            rightOperandList = (RowConstructorNode) rightOperandList.accept(v);
+            return;
+        }
+
+        if ((rightOperandList != null) || (rightOperandConstants != null))
+        {
+            rightOperandList = (RowConstructorNode) getRightOperandList().accept(v);
         }
     }
 
@@ -215,8 +277,11 @@ public final class InListOperatorNode extends ValueNode
         }
 
         InListOperatorNode other = (InListOperatorNode) o;
-        if (!leftOperand.isEquivalent(other.getLeftOperand())
-                || !rightOperandList.isEquivalent(other.rightOperandList))
+        if (!leftOperand.isEquivalent(other.getLeftOperand()))
+            return false;
+        if ((rightOperandConstants != null) && (other.rightOperandConstants != null))
+            return rightOperandConstants.equals(other.rightOperandConstants);
+        if (!getRightOperandList().isEquivalent(other.getRightOperandList()))
             return false;
 
         return true;
@@ -32,7 +32,7 @@ public class IndexColumnList extends QueryTreeNodeList<IndexColumn>
         // ADD MORE AS NEEDED
     }
 
-    private static class FunctionApplication
+    static class FunctionApplication
     {
         public FunctionApplication(FunctionType functionType,
                                    int firstArgumentPosition,
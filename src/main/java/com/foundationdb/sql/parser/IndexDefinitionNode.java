@@ -53,7 +53,7 @@ public class IndexDefinitionNode extends TableElementNode implements IndexDefini
      */
     public void copyFrom(QueryTreeNode node) throws StandardException {
         super.copyFrom(node);
-        CreateIndexNode other = (CreateIndexNode)node;
+        IndexDefinitionNode other = (IndexDefinitionNode)node;
         this.unique = other.unique;
         this.columnList = (IndexColumnList)
             getNodeFactory().copyNode(other.columnList, getParserContext());
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replace numeric and character literals in a DML statement with
+ * parameters, so that statements differing only in those literals
+ * share a single tree.
+ *
+ * Only constants the grammar made from literal tokens are candidates,
+ * so that constants it makes up itself (interval codes and the like)
+ * are left alone. Ordinal positions in <code>ORDER BY</code> and
+ * <code>GROUP BY</code> are left alone, too, since they would mean
+ * something different as parameters.
+ */
+class LiteralParameterizer implements Visitor
+{
+    private Map<ValueNode,ValueNode> candidates, exempt, found;
+    private Map<ValueNode,ParameterNode> replacements;
+
+    private LiteralParameterizer(List<ValueNode> literals) {
+        candidates = new IdentityHashMap<ValueNode,ValueNode>(literals.size());
+        for (ValueNode literal : literals) {
+            if ((literal instanceof NumericConstantNode) ||
+                (literal instanceof CharConstantNode))
+                candidates.put(literal, literal);
+        }
+        exempt = new IdentityHashMap<ValueNode,ValueNode>();
+        found = new IdentityHashMap<ValueNode,ValueNode>(literals.size());
+    }
+
+    /**
+     * Replace literals in the given statement.
+     *
+     * @param statement The parsed statement.
+     * @param literals Constants made from literals, in statement order.
+     * @param parameterList The statement's parameters, to which new ones are added.
+     * @param parserContext The context for new parameter nodes.
+     *
+     * @return The values of all the parameters, indexed by parameter
+     * number, with <code>null</code> for those that were explicit in
+     * the statement, or <code>null</code> if nothing was replaced.
+     */
+    public static Object[] parameterize(StatementNode statement,
+                                        List<ValueNode> literals,
+                                        List<ParameterNode> parameterList,
+                                        SQLParserContext parserContext)
+            throws StandardException {
+        if (literals.isEmpty() || !(statement instanceof DMLStatementNode))
+            return null;
+        LiteralParameterizer visitor = new LiteralParameterizer(literals);
+        // First pass finds the ones that can be replaced.
+        statement.accept(visitor);
+        if (visitor.found.isEmpty())
+            return null;
+        // Number those in statement order, after any explicit parameters.
+        int number = parameterList.size();
+        Object[] values = new Object[number + visitor.found.size()];
+        visitor.replacements = new IdentityHashMap<ValueNode,ParameterNode>(visitor.found.size());
+        for (ValueNode literal : literals) {
+            if (visitor.found.containsKey(literal)) {
+                ParameterNode parameter = (ParameterNode)
+                    parserContext.getNodeFactory().getNode(NodeTypes.PARAMETER_NODE,
+                                                           number,
+                                                           null,
+                                                           parserContext);
+                visitor.replacements.put(literal, parameter);
+                parameterList.add(parameter);
+                values[number++] = ((ConstantNode)literal).getValue();
+            }
+        }
+        // Second pass puts them in.
+        statement.accept(visitor);
+        return values;
+    }
+
+    public Visitable visit(Visitable node) throws StandardException {
+        if (replacements == null) {
+            if (node instanceof OrderByColumn)
+                exempt.put(((OrderByColumn)node).getExpression(), null);
+            else if (node instanceof GroupByColumn)
+                exempt.put(((GroupByColumn)node).getColumnExpression(), null);
+            else if (candidates.containsKey(node) && !exempt.containsKey(node))
+                found.put((ValueNode)node, null);
+            return node;
+        }
+        else {
+            ParameterNode parameter = replacements.get(node);
+            if (parameter != null)
+                return parameter;
+            return node;
+        }
+    }
+
+    public boolean visitChildrenFirst(Visitable node) {
+        return false;
+    }
+
+    public boolean stopTraversal() {
+        return false;
+    }
+
+    public boolean skipChildren(Visitable node) {
+        return false;
+    }
+}
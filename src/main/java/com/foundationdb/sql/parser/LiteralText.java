@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+/**
+ * The text of a literal, kept by a {@link ConstantNode} in place of
+ * its value until that is first asked for.
+ * <p>
+ * It is a slice of the literal's token image: the digits of an exact
+ * number, whose sign is a separate token, or what is between the
+ * quotes of a string, with any doubled quotes still doubled. As a
+ * <code>CharSequence</code>, it is the number with its sign or the
+ * string's contents as written.
+ */
+final class LiteralText implements CharSequence
+{
+    private final String source;
+    private final int begin, end;
+    private final boolean negative;
+
+    public LiteralText(String source, int begin, int end, boolean negative) {
+        this.source = source;
+        this.begin = begin;
+        this.end = end;
+        this.negative = negative;
+    }
+
+    @Override
+    public int length() {
+        return (end - begin) + (negative ? 1 : 0);
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (negative) {
+            if (index == 0)
+                return '-';
+            index--;
+        }
+        return source.charAt(begin + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String str = source.substring(begin, end);
+        if (negative)
+            str = "-".concat(str);
+        return str;
+    }
+
+    /** Get the value of a string quoted by <code>quote</code>. */
+    public String unquote(char quote) {
+        int qpos = source.indexOf(quote, begin);
+        if ((qpos < 0) || (qpos >= end))
+            return source.substring(begin, end);
+        StringBuilder str = new StringBuilder(end - begin - 1);
+        int pos = begin;
+        while ((qpos >= 0) && (qpos < end)) {
+            // Quotes inside are always doubled.
+            str.append(source, pos, qpos + 1);
+            pos = qpos + 2;
+            qpos = source.indexOf(quote, pos);
+        }
+        str.append(source, pos, end);
+        return str.toString();
+    }
+
+    /** Get the length of {@link #unquote} as {@link
+     * CharConstantNode#charLength} counts it, without making it.
+     */
+    public int unquotedLength(char quote) {
+        int length = source.codePointCount(begin, end);
+        int qpos = source.indexOf(quote, begin);
+        while ((qpos >= 0) && (qpos < end)) {
+            length--;
+            qpos = source.indexOf(quote, qpos + 2);
+        }
+        return length;
+    }
+
+}
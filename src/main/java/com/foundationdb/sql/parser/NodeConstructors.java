@@ -0,0 +1,397 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+/**
+ * Construct nodes by type without reflection.
+ * <p>
+ * GENERATED by <code>NodeFactoryGenerator</code> (in the tests) from
+ * {@link NodeFactoryImpl#nodeName}. Do not edit.
+ */
+final class NodeConstructors
+{
+    private NodeConstructors() {
+    }
+
+    /** Make a new node of the given type, or <code>null</code> if unknown. */
+    static QueryTreeNode newNode(int nodeType) {
+        switch (nodeType) {
+        case NodeTypes.AGGREGATE_NODE:
+            return new AggregateNode();
+        case NodeTypes.AGGREGATE_WINDOW_FUNCTION_NODE:
+            return new AggregateWindowFunctionNode();
+        case NodeTypes.ALL_RESULT_COLUMN:
+            return new AllResultColumn();
+        case NodeTypes.AT_DROP_INDEX_NODE:
+            return new AlterDropIndexNode();
+        case NodeTypes.ALTER_SERVER_NODE:
+            return new AlterServerNode();
+        case NodeTypes.ALTER_TABLE_NODE:
+            return new AlterTableNode();
+        case NodeTypes.AT_RENAME_COLUMN_NODE:
+            return new AlterTableRenameColumnNode();
+        case NodeTypes.AT_RENAME_NODE:
+            return new AlterTableRenameNode();
+        case NodeTypes.AND_NODE:
+            return new AndNode();
+        case NodeTypes.BASE_COLUMN_NODE:
+            return new BaseColumnNode();
+        case NodeTypes.BETWEEN_OPERATOR_NODE:
+            return new BetweenOperatorNode();
+        case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIV_OPERATOR_NODE:
+        case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
+        case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
+        case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
+        case NodeTypes.MOD_OPERATOR_NODE:
+            return new BinaryArithmeticOperatorNode();
+        case NodeTypes.BINARY_BIT_OPERATOR_NODE:
+            return new BinaryBitOperatorNode();
+        case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
+            return new BinaryRelationalOperatorNode();
+        case NodeTypes.BIT_CONSTANT_NODE:
+            return new BitConstantNode();
+        case NodeTypes.BOOLEAN_CONSTANT_NODE:
+            return new BooleanConstantNode();
+        case NodeTypes.CALL_STATEMENT_NODE:
+            return new CallStatementNode();
+        case NodeTypes.CAST_NODE:
+            return new CastNode();
+        case NodeTypes.CHAR_CONSTANT_NODE:
+        case NodeTypes.CLOB_CONSTANT_NODE:
+        case NodeTypes.LONGVARCHAR_CONSTANT_NODE:
+        case NodeTypes.VARCHAR_CONSTANT_NODE:
+            return new CharConstantNode();
+        case NodeTypes.CLOSE_STATEMENT_NODE:
+            return new CloseStatementNode();
+        case NodeTypes.COALESCE_FUNCTION_NODE:
+            return new CoalesceFunctionNode();
+        case NodeTypes.COLUMN_DEFINITION_NODE:
+            return new ColumnDefinitionNode();
+        case NodeTypes.COLUMN_REFERENCE:
+            return new ColumnReference();
+        case NodeTypes.CONCATENATION_OPERATOR_NODE:
+            return new ConcatenationOperatorNode();
+        case NodeTypes.CONDITIONAL_NODE:
+            return new ConditionalNode();
+        case NodeTypes.CONSTRAINT_DEFINITION_NODE:
+            return new ConstraintDefinitionNode();
+        case NodeTypes.COPY_STATEMENT_NODE:
+            return new CopyStatementNode();
+        case NodeTypes.CREATE_ALIAS_NODE:
+            return new CreateAliasNode();
+        case NodeTypes.CREATE_INDEX_NODE:
+            return new CreateIndexNode();
+        case NodeTypes.CREATE_ROLE_NODE:
+            return new CreateRoleNode();
+        case NodeTypes.CREATE_SCHEMA_NODE:
+            return new CreateSchemaNode();
+        case NodeTypes.CREATE_SEQUENCE_NODE:
+            return new CreateSequenceNode();
+        case NodeTypes.CREATE_TABLE_NODE:
+            return new CreateTableNode();
+        case NodeTypes.CREATE_TRIGGER_NODE:
+            return new CreateTriggerNode();
+        case NodeTypes.CREATE_VIEW_NODE:
+            return new CreateViewNode();
+        case NodeTypes.CURRENT_DATETIME_OPERATOR_NODE:
+            return new CurrentDatetimeOperatorNode();
+        case NodeTypes.CURRENT_OF_NODE:
+            return new CurrentOfNode();
+        case NodeTypes.CURRENT_ROW_LOCATION_NODE:
+            return new CurrentRowLocationNode();
+        case NodeTypes.CURRENT_SEQUENCE_NODE:
+            return new CurrentSequenceNode();
+        case NodeTypes.CURSOR_NODE:
+            return new CursorNode();
+        case NodeTypes.DEALLOCATE_STATEMENT_NODE:
+            return new DeallocateStatementNode();
+        case NodeTypes.DECLARE_STATEMENT_NODE:
+            return new DeclareStatementNode();
+        case NodeTypes.DEFAULT_NODE:
+            return new DefaultNode();
+        case NodeTypes.DELETE_NODE:
+            return new DeleteNode();
+        case NodeTypes.DISTINCT_NODE:
+            return new DistinctNode();
+        case NodeTypes.DROP_ALIAS_NODE:
+            return new DropAliasNode();
+        case NodeTypes.DROP_GROUP_NODE:
+            return new DropGroupNode();
+        case NodeTypes.DROP_INDEX_NODE:
+            return new DropIndexNode();
+        case NodeTypes.DROP_ROLE_NODE:
+            return new DropRoleNode();
+        case NodeTypes.DROP_SCHEMA_NODE:
+            return new DropSchemaNode();
+        case NodeTypes.DROP_SEQUENCE_NODE:
+            return new DropSequenceNode();
+        case NodeTypes.DROP_TABLE_NODE:
+            return new DropTableNode();
+        case NodeTypes.DROP_TRIGGER_NODE:
+            return new DropTriggerNode();
+        case NodeTypes.DROP_VIEW_NODE:
+            return new DropViewNode();
+        case NodeTypes.EXECUTE_STATEMENT_NODE:
+            return new ExecuteStatementNode();
+        case NodeTypes.EXPLAIN_STATEMENT_NODE:
+            return new ExplainStatementNode();
+        case NodeTypes.EXPLICIT_COLLATE_NODE:
+            return new ExplicitCollateNode();
+        case NodeTypes.EXTRACT_OPERATOR_NODE:
+            return new ExtractOperatorNode();
+        case NodeTypes.FK_CONSTRAINT_DEFINITION_NODE:
+            return new FKConstraintDefinitionNode();
+        case NodeTypes.FETCH_STATEMENT_NODE:
+            return new FetchStatementNode();
+        case NodeTypes.FROM_BASE_TABLE:
+            return new FromBaseTable();
+        case NodeTypes.FROM_LIST:
+            return new FromList();
+        case NodeTypes.FROM_SUBQUERY:
+            return new FromSubquery();
+        case NodeTypes.FROM_VTI:
+            return new FromVTI();
+        case NodeTypes.FULL_OUTER_JOIN_NODE:
+            return new FullOuterJoinNode();
+        case NodeTypes.GENERATION_CLAUSE_NODE:
+            return new GenerationClauseNode();
+        case NodeTypes.GET_CURRENT_CONNECTION_NODE:
+            return new GetCurrentConnectionNode();
+        case NodeTypes.GRANT_NODE:
+            return new GrantNode();
+        case NodeTypes.GRANT_ROLE_NODE:
+            return new GrantRoleNode();
+        case NodeTypes.GROUP_BY_COLUMN:
+            return new GroupByColumn();
+        case NodeTypes.GROUP_BY_LIST:
+            return new GroupByList();
+        case NodeTypes.GROUP_CONCAT_NODE:
+            return new GroupConcatNode();
+        case NodeTypes.HALF_OUTER_JOIN_NODE:
+            return new HalfOuterJoinNode();
+        case NodeTypes.IN_LIST_OPERATOR_NODE:
+            return new InListOperatorNode();
+        case NodeTypes.INDEX_COLUMN:
+            return new IndexColumn();
+        case NodeTypes.INDEX_COLUMN_LIST:
+            return new IndexColumnList();
+        case NodeTypes.INDEX_DEFINITION_NODE:
+            return new IndexDefinitionNode();
+        case NodeTypes.INDEX_HINT_LIST:
+            return new IndexHintList();
+        case NodeTypes.INDEX_HINT_NODE:
+            return new IndexHintNode();
+        case NodeTypes.INSERT_NODE:
+            return new InsertNode();
+        case NodeTypes.INTERSECT_OR_EXCEPT_NODE:
+            return new IntersectOrExceptNode();
+        case NodeTypes.IS_NODE:
+            return new IsNode();
+        case NodeTypes.IS_NOT_NULL_NODE:
+        case NodeTypes.IS_NULL_NODE:
+            return new IsNullNode();
+        case NodeTypes.JAVA_TO_SQL_VALUE_NODE:
+            return new JavaToSQLValueNode();
+        case NodeTypes.JOIN_NODE:
+            return new JoinNode();
+        case NodeTypes.LEFT_FN_NODE:
+        case NodeTypes.RIGHT_FN_NODE:
+            return new LeftRightFuncOperatorNode();
+        case NodeTypes.CHAR_LENGTH_OPERATOR_NODE:
+            return new LengthOperatorNode();
+        case NodeTypes.LIKE_OPERATOR_NODE:
+            return new LikeEscapeOperatorNode();
+        case NodeTypes.LOCK_TABLE_NODE:
+            return new LockTableNode();
+        case NodeTypes.DROP_COLUMN_NODE:
+        case NodeTypes.MODIFY_COLUMN_CONSTRAINT_NODE:
+        case NodeTypes.MODIFY_COLUMN_CONSTRAINT_NOT_NULL_NODE:
+        case NodeTypes.MODIFY_COLUMN_DEFAULT_NODE:
+        case NodeTypes.MODIFY_COLUMN_TYPE_NODE:
+            return new ModifyColumnNode();
+        case NodeTypes.NOP_STATEMENT_NODE:
+            return new NOPStatementNode();
+        case NodeTypes.NEW_INVOCATION_NODE:
+            return new NewInvocationNode();
+        case NodeTypes.NEXT_SEQUENCE_NODE:
+            return new NextSequenceNode();
+        case NodeTypes.NON_STATIC_METHOD_CALL_NODE:
+            return new NonStaticMethodCallNode();
+        case NodeTypes.NOT_NODE:
+            return new NotNode();
+        case NodeTypes.DECIMAL_CONSTANT_NODE:
+        case NodeTypes.DOUBLE_CONSTANT_NODE:
+        case NodeTypes.FLOAT_CONSTANT_NODE:
+        case NodeTypes.INT_CONSTANT_NODE:
+        case NodeTypes.LONGINT_CONSTANT_NODE:
+        case NodeTypes.SMALLINT_CONSTANT_NODE:
+        case NodeTypes.TINYINT_CONSTANT_NODE:
+            return new NumericConstantNode();
+        case NodeTypes.OCTET_LENGTH_OPERATOR_NODE:
+            return new OctetLengthOperatorNode();
+        case NodeTypes.OR_NODE:
+            return new OrNode();
+        case NodeTypes.ORDER_BY_COLUMN:
+            return new OrderByColumn();
+        case NodeTypes.ORDER_BY_LIST:
+            return new OrderByList();
+        case NodeTypes.PARAMETER_NODE:
+            return new ParameterNode();
+        case NodeTypes.PARTITION_BY_COLUMN:
+            return new PartitionByColumn();
+        case NodeTypes.PARTITION_BY_LIST:
+            return new PartitionByList();
+        case NodeTypes.PREPARE_STATEMENT_NODE:
+            return new PrepareStatementNode();
+        case NodeTypes.PRIVILEGE_NODE:
+            return new PrivilegeNode();
+        case NodeTypes.RENAME_NODE:
+            return new RenameNode();
+        case NodeTypes.RESULT_COLUMN:
+            return new ResultColumn();
+        case NodeTypes.RESULT_COLUMN_LIST:
+            return new ResultColumnList();
+        case NodeTypes.REVOKE_NODE:
+            return new RevokeNode();
+        case NodeTypes.REVOKE_ROLE_NODE:
+            return new RevokeRoleNode();
+        case NodeTypes.ROW_CTOR_NODE:
+            return new RowConstructorNode();
+        case NodeTypes.ROW_COUNT_NODE:
+            return new RowCountNode();
+        case NodeTypes.ROW_NUMBER_FUNCTION_NODE:
+            return new RowNumberFunctionNode();
+        case NodeTypes.ROW_RESULT_SET_NODE:
+            return new RowResultSetNode();
+        case NodeTypes.ROWS_RESULT_SET_NODE:
+            return new RowsResultSetNode();
+        case NodeTypes.SQL_BOOLEAN_CONSTANT_NODE:
+            return new SQLBooleanConstantNode();
+        case NodeTypes.SQL_TO_JAVA_VALUE_NODE:
+            return new SQLToJavaValueNode();
+        case NodeTypes.SAVEPOINT_NODE:
+            return new SavepointNode();
+        case NodeTypes.SELECT_NODE:
+            return new SelectNode();
+        case NodeTypes.SET_CONFIGURATION_NODE:
+            return new SetConfigurationNode();
+        case NodeTypes.SET_CONSTRAINTS_NODE:
+            return new SetConstraintsNode();
+        case NodeTypes.SET_ROLE_NODE:
+            return new SetRoleNode();
+        case NodeTypes.SET_SCHEMA_NODE:
+            return new SetSchemaNode();
+        case NodeTypes.SET_TRANSACTION_ACCESS_NODE:
+            return new SetTransactionAccessNode();
+        case NodeTypes.SET_TRANSACTION_ISOLATION_NODE:
+            return new SetTransactionIsolationNode();
+        case NodeTypes.SHOW_CONFIGURATION_NODE:
+            return new ShowConfigurationNode();
+        case NodeTypes.SIMPLE_CASE_NODE:
+            return new SimpleCaseNode();
+        case NodeTypes.SIMPLE_STRING_OPERATOR_NODE:
+            return new SimpleStringOperatorNode();
+        case NodeTypes.CURRENT_ISOLATION_NODE:
+        case NodeTypes.CURRENT_ROLE_NODE:
+        case NodeTypes.CURRENT_SCHEMA_NODE:
+        case NodeTypes.CURRENT_USER_NODE:
+        case NodeTypes.IDENTITY_VAL_NODE:
+        case NodeTypes.SESSION_USER_NODE:
+        case NodeTypes.SYSTEM_USER_NODE:
+        case NodeTypes.USER_NODE:
+            return new SpecialFunctionNode();
+        case NodeTypes.STATIC_CLASS_FIELD_REFERENCE_NODE:
+            return new StaticClassFieldReferenceNode();
+        case NodeTypes.STATIC_METHOD_CALL_NODE:
+            return new StaticMethodCallNode();
+        case NodeTypes.STORAGE_FORMAT_NODE:
+            return new StorageFormatNode();
+        case NodeTypes.SUBQUERY_LIST:
+            return new SubqueryList();
+        case NodeTypes.SUBQUERY_NODE:
+            return new SubqueryNode();
+        case NodeTypes.TABLE_ELEMENT_LIST:
+            return new TableElementList();
+        case NodeTypes.TABLE_ELEMENT_NODE:
+            return new TableElementNode();
+        case NodeTypes.TABLE_NAME:
+            return new TableName();
+        case NodeTypes.TABLE_NAME_LIST:
+            return new TableNameList();
+        case NodeTypes.TABLE_PRIVILEGES_NODE:
+            return new TablePrivilegesNode();
+        case NodeTypes.LOCATE_FUNCTION_NODE:
+        case NodeTypes.SUBSTRING_OPERATOR_NODE:
+        case NodeTypes.TIMESTAMP_ADD_FN_NODE:
+        case NodeTypes.TIMESTAMP_DIFF_FN_NODE:
+            return new TernaryOperatorNode();
+        case NodeTypes.TEST_CONSTRAINT_NODE:
+            return new TestConstraintNode();
+        case NodeTypes.TIMESTAMP_OPERATOR_NODE:
+            return new TimestampOperatorNode();
+        case NodeTypes.TRANSACTION_CONTROL_NODE:
+            return new TransactionControlNode();
+        case NodeTypes.TRIM_OPERATOR_NODE:
+            return new TrimOperatorNode();
+        case NodeTypes.ABSOLUTE_OPERATOR_NODE:
+        case NodeTypes.SQRT_OPERATOR_NODE:
+        case NodeTypes.UNARY_MINUS_OPERATOR_NODE:
+        case NodeTypes.UNARY_PLUS_OPERATOR_NODE:
+            return new UnaryArithmeticOperatorNode();
+        case NodeTypes.UNARY_BITNOT_OPERATOR_NODE:
+            return new UnaryBitOperatorNode();
+        case NodeTypes.UNARY_DATE_TIMESTAMP_OPERATOR_NODE:
+            return new UnaryDateTimestampOperatorNode();
+        case NodeTypes.UNION_NODE:
+            return new UnionNode();
+        case NodeTypes.UNTYPED_NULL_CONSTANT_NODE:
+            return new UntypedNullConstantNode();
+        case NodeTypes.UPDATE_NODE:
+            return new UpdateNode();
+        case NodeTypes.USERTYPE_CONSTANT_NODE:
+            return new UserTypeConstantNode();
+        case NodeTypes.VALUE_NODE_LIST:
+            return new ValueNodeList();
+        case NodeTypes.BLOB_CONSTANT_NODE:
+        case NodeTypes.LONGVARBIT_CONSTANT_NODE:
+        case NodeTypes.VARBIT_CONSTANT_NODE:
+            return new VarbitConstantNode();
+        case NodeTypes.VIRTUAL_COLUMN_NODE:
+            return new VirtualColumnNode();
+        case NodeTypes.WINDOW_DEFINITION_NODE:
+            return new WindowDefinitionNode();
+        case NodeTypes.WINDOW_REFERENCE_NODE:
+            return new WindowReferenceNode();
+        case NodeTypes.XML_EXISTS_OPERATOR_NODE:
+        case NodeTypes.XML_QUERY_OPERATOR_NODE:
+            return new XMLBinaryOperatorNode();
+        case NodeTypes.XML_CONSTANT_NODE:
+            return new XMLConstantNode();
+        case NodeTypes.XML_PARSE_OPERATOR_NODE:
+        case NodeTypes.XML_SERIALIZE_OPERATOR_NODE:
+            return new XMLUnaryOperatorNode();
+        default:
+            return null;
+        }
+    }
+}
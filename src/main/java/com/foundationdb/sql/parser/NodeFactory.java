@@ -572,6 +572,56 @@ public abstract class NodeFactory
         return retval;
     }
 
+    /**
+     * Make a deep copy of the given node for the given context that
+     * is marked as shared, for {@link
+     * #copyNode(QueryTreeNode,SQLParserContext,boolean)}. The given
+     * node is not changed.
+     * <p>
+     * A shared tree is not changed again by visitors. Instead, when a
+     * visitor reaches a shared node a copy of just that node is
+     * visited and takes its place in the parent. Before that copy is
+     * visited, its children and the elements of its lists are copied
+     * too, so the visitor may change them from there. A shared tree
+     * must not be changed in any other way, including nodes further
+     * down that a visitor gets to from the node it is visiting. It
+     * can be used from several threads once it has been safely
+     * published, as by a <code>volatile</code> field.
+     */
+    public QueryTreeNode shareNode(QueryTreeNode node, SQLParserContext pc)
+            throws StandardException {
+        if (node == null) return null;
+
+        QueryTreeNode retval = copyNode(node, pc);
+        CopyOnWrite.share(retval);
+        return retval;
+    }
+
+    /**
+     * Make a copy of the given node for the given context, which
+     * either is deep or, if the node is from {@link #shareNode}, is
+     * only a new top node and its children, which share the nodes
+     * below them with it until they are visited.
+     * <p>
+     * So the nodes on the path to any node of a shared copy that has
+     * been visited belong to the copy, as do their children, and the
+     * rest stays shared. Copies of shared nodes keep the original
+     * context.
+     * @param share Whether to share subtrees.
+     */
+    public QueryTreeNode copyNode(QueryTreeNode node, SQLParserContext pc, boolean share)
+            throws StandardException {
+        if (!share || (node == null) || !node.isShared())
+            return copyNode(node, pc);
+
+        assert CopyOnWrite.isUnchanged(node) : "Shared tree was changed";
+        QueryTreeNode retval = CopyOnWrite.copy(node);
+        // The caller may change what it gets back without visiting it.
+        CopyOnWrite.copyChildren(retval);
+        retval.setParserContext(pc);
+        return retval;
+    }
+
     /**
      * Copy node's user data.
      *
@@ -584,6 +634,113 @@ public abstract class NodeFactory
         return userData;
     }
 
+    /*
+     * Typed versions of getNode for the most common nodes, which
+     * avoid boxing and casting the initializer arguments.
+     */
+
+    public ColumnReference getColumnReference(String columnName,
+                                              TableName tableName,
+                                              int tokBeginOffset,
+                                              int tokEndOffset,
+                                              SQLParserContext pc)
+            throws StandardException {
+        ColumnReference retval = (ColumnReference)getNode(NodeTypes.COLUMN_REFERENCE, pc);
+        retval.init(columnName, tableName, tokBeginOffset, tokEndOffset);
+        return retval;
+    }
+
+    /**
+     * @param nodeType <code>TABLE_NAME</code> or a subtype of it.
+     */
+    public TableName getTableName(int nodeType,
+                                  String schemaName,
+                                  String tableName,
+                                  int tokBeginOffset,
+                                  int tokEndOffset,
+                                  SQLParserContext pc)
+            throws StandardException {
+        TableName retval = (TableName)getNode(nodeType, pc);
+        retval.init(schemaName, tableName, tokBeginOffset, tokEndOffset);
+        return retval;
+    }
+
+    public ResultColumn getResultColumn(String name,
+                                        ValueNode expression,
+                                        SQLParserContext pc)
+            throws StandardException {
+        ResultColumn retval = (ResultColumn)getNode(NodeTypes.RESULT_COLUMN, pc);
+        retval.init(name, expression);
+        return retval;
+    }
+
+    public ResultColumn getResultColumn(ColumnReference reference,
+                                        ValueNode expression,
+                                        SQLParserContext pc)
+            throws StandardException {
+        ResultColumn retval = (ResultColumn)getNode(NodeTypes.RESULT_COLUMN, pc);
+        retval.init(reference, expression);
+        return retval;
+    }
+
+    /**
+     * Get a binary comparison, arithmetic or logical operator node.
+     *
+     * @param nodeType One of the <code>BINARY_*_OPERATOR_NODE</code>
+     * types for a relational or arithmetic operator,
+     * <code>MOD_OPERATOR_NODE</code>, <code>AND_NODE</code> or
+     * <code>OR_NODE</code>.
+     */
+    public BinaryOperatorNode getBinaryOperatorNode(int nodeType,
+                                                    ValueNode leftOperand,
+                                                    ValueNode rightOperand,
+                                                    SQLParserContext pc)
+            throws StandardException {
+        QueryTreeNode retval = getNode(nodeType, pc);
+        switch (nodeType) {
+        case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+            ((BinaryRelationalOperatorNode)retval).init(leftOperand, rightOperand);
+            break;
+        case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
+        case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
+        case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIV_OPERATOR_NODE:
+        case NodeTypes.MOD_OPERATOR_NODE:
+            ((BinaryArithmeticOperatorNode)retval).init(leftOperand, rightOperand);
+            break;
+        case NodeTypes.AND_NODE:
+            ((AndNode)retval).init(leftOperand, rightOperand);
+            break;
+        case NodeTypes.OR_NODE:
+            ((OrNode)retval).init(leftOperand, rightOperand);
+            break;
+        default:
+            retval.init(leftOperand, rightOperand);
+            break;
+        }
+        return (BinaryOperatorNode)retval;
+    }
+
+    public CharConstantNode getCharConstantNode(String value, SQLParserContext pc)
+            throws StandardException {
+        CharConstantNode retval = (CharConstantNode)getNode(NodeTypes.CHAR_CONSTANT_NODE, pc);
+        retval.init(value);
+        return retval;
+    }
+
+    public ParameterNode getParameterNode(int parameterNumber, SQLParserContext pc)
+            throws StandardException {
+        ParameterNode retval = (ParameterNode)getNode(NodeTypes.PARAMETER_NODE, pc);
+        retval.init(parameterNumber);
+        return retval;
+    }
+
     /**
      * Get one of the several types of create alias nodes. Carved out of parser
      * so this could be used by ALTER PUBLICATION.
@@ -49,22 +49,6 @@ import com.foundationdb.sql.StandardException;
 
 public final class NodeFactoryImpl extends NodeFactory
 {
-    private static class ClassInfo {
-        Class clazz;
-
-        ClassInfo(Class clazz) {
-            this.clazz = clazz;
-        }
-
-        // TODO: The Derby version optimized this by caching the
-        // Method. Is that still necessary?
-        Object getNewInstance() throws InstantiationException, IllegalAccessException {
-            return clazz.newInstance();
-        }
-    }
-
-    private final ClassInfo[] nodeCi = new ClassInfo[NodeTypes.FINAL_VALUE+1];
-
     /**
      * Get a node that takes no initializer arguments.
      *
@@ -78,40 +62,25 @@ public final class NodeFactoryImpl extends NodeFactory
     public QueryTreeNode getNode(int nodeType, SQLParserContext pc)
             throws StandardException {
 
-        ClassInfo ci = nodeCi[nodeType];
-
-        Class nodeClass = null;
-        if (ci == null) {
-            String nodeName = nodeName(nodeType);
-
-            try {
-                nodeClass = Class.forName(nodeName);
-            }
-            catch (ClassNotFoundException cnfe) {
-                throw new StandardException(cnfe);
-            }
-
-            ci = new ClassInfo(nodeClass);
-            nodeCi[nodeType] = ci;
-        }
-
-        QueryTreeNode retval = null;
-
-        try {
-            retval = (QueryTreeNode)ci.getNewInstance();
-        }
-        catch (Exception iae) {
-            throw new StandardException(iae);
-        }
+        // Generated from nodeName() below, so no reflection and no
+        // per-factory state.
+        QueryTreeNode retval = NodeConstructors.newNode(nodeType);
+        if (retval == null)
+            throw new StandardException("Not implemented");
 
         retval.setParserContext(pc);
         retval.setNodeType(nodeType);
+        if (pc instanceof SQLParser)
+            ((SQLParser)pc).countNode();
 
         return retval;
     }
 
     /**
      * Translate a node type from NodeTypes to a class name
+     * <p>
+     * After changing this, run <code>NodeFactoryGenerator</code> to
+     * update {@link NodeConstructors}.
      *
      * @param nodeType A node type identifier from NodeTypes
      *
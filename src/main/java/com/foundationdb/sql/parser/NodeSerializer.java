@@ -0,0 +1,999 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.CharacterTypeAttributes;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+import com.foundationdb.sql.types.JSQLType;
+import com.foundationdb.sql.types.MethodAliasInfo;
+import com.foundationdb.sql.types.RoutineAliasInfo;
+import com.foundationdb.sql.types.SynonymAliasInfo;
+import com.foundationdb.sql.types.TypeId;
+import com.foundationdb.sql.types.UDTAliasInfo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write trees of nodes in a compact binary form and read them back,
+ * so that statements can be kept parsed across processes.
+ * <p>
+ * Every field of every node is written, save the parser context and
+ * user data, along with the objects that they refer to: lists, maps,
+ * arrays, types, compact constant lists and so on. An object referred
+ * to more than once is written once. The fields of a class are found
+ * by reflection. A node is written as its type from {@link
+ * NodeTypes}. Any other object's class must be one that node fields
+ * hold or one of a few lists, maps and arrays; it is written as its
+ * index among them. No class is ever named in the tree, so reading
+ * one only makes objects of these classes. A hash of the fields of
+ * all of them heads the tree, so that a tree written by a different
+ * version of a class is refused rather than misread. An object that
+ * is not a node is made with a constructor chosen for its class ahead
+ * of time before its fields are set. A tree whose lengths or indexes
+ * are out of bounds is refused as corrupt. Literals that have not yet
+ * been decoded are decoded first.
+ * <p>
+ * Trees are read from a {@link ByteBuffer}, which can map a file
+ * shared by several processes. Any number of trees can be written one
+ * after another; each is read from the buffer's position, which is
+ * left just after it.
+ * <p>
+ * A serializer has no state of its own and can be shared.
+ */
+public class NodeSerializer
+{
+    public static final int MAGIC = 0x46534E54; // FSNT
+    public static final int FORMAT_VERSION = 1;
+
+    // Tags before each value that is not a primitive field.
+    private static final int NULL = 0, REFERENCE = 1, STRING = 2,
+        INTEGER = 3, LONG = 4, SHORT = 5, BYTE = 6, CHARACTER = 7,
+        FALSE = 8, TRUE = 9, DOUBLE = 10, FLOAT = 11, 
+        BIG_DECIMAL = 12, BIG_INTEGER = 13, ENUM = 14, 
+        ARRAY = 15, LIST = 16, MAP = 17, TYPE_ID = 18, OBJECT = 19, NODE = 20;
+
+    /** Write a tree to a new array. */
+    public byte[] serialize(QueryTreeNode node) throws StandardException {
+        Writer writer = new Writer();
+        writer.writeTree(node);
+        return Arrays.copyOf(writer.bytes, writer.length);
+    }
+
+    /** Write a tree to a stream. */
+    public void serialize(QueryTreeNode node, OutputStream stream) 
+            throws StandardException, IOException {
+        Writer writer = new Writer();
+        writer.writeTree(node);
+        stream.write(writer.bytes, 0, writer.length);
+    }
+
+    /** Read a tree from an array. */
+    public QueryTreeNode deserialize(byte[] bytes, SQLParserContext pc)
+            throws StandardException {
+        return deserialize(ByteBuffer.wrap(bytes), pc);
+    }
+
+    /**
+     * Read a tree from the buffer's position.
+     * @param pc The parser context for the nodes read.
+     */
+    public QueryTreeNode deserialize(ByteBuffer buffer, SQLParserContext pc)
+            throws StandardException {
+        try {
+            return new Reader(buffer, pc).readTree();
+        }
+        catch (BufferUnderflowException ex) {
+            throw new StandardException("Serialized tree is truncated", ex);
+        }
+    }
+
+    /** What is needed to read and write objects of a class. */
+    static final class ClassInfo {
+        final Class<?> cls;
+        final int layoutHash;
+        final Field[] fields;
+        final char[] fieldKinds; // Primitive type letter or 'L' for objects.
+
+        ClassInfo(Class<?> cls) {
+            this.cls = cls;
+            List<Field> fieldList = new ArrayList<Field>();
+            // Only the names of arrays, enums and library classes are needed.
+            if (!cls.isArray() && !cls.isEnum() && !cls.getName().startsWith("java")) {
+                // Superclass fields first, then by name within each class.
+                List<Class<?>> classes = new ArrayList<Class<?>>();
+                for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass())
+                    classes.add(0, c);
+                for (Class<?> c : classes) {
+                    Field[] declared = c.getDeclaredFields();
+                    Arrays.sort(declared, new Comparator<Field>() {
+                            public int compare(Field f1, Field f2) {
+                                return f1.getName().compareTo(f2.getName());
+                            }
+                        });
+                    for (Field field : declared) {
+                        int modifiers = field.getModifiers();
+                        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers))
+                            continue;
+                        if ((c == QueryTreeNode.class) &&
+                            (field.getName().equals("pc") || field.getName().equals("userData")))
+                            continue;
+                        field.setAccessible(true);
+                        fieldList.add(field);
+                    }
+                }
+            }
+            fields = fieldList.toArray(new Field[fieldList.size()]);
+            fieldKinds = new char[fields.length];
+            int hash = cls.getName().hashCode();
+            for (int i = 0; i < fields.length; i++) {
+                Class<?> type = fields[i].getType();
+                fieldKinds[i] = type.isPrimitive() ? primitiveKind(type) : 'L';
+                hash = hash * 31 + fields[i].getName().hashCode();
+                hash = hash * 31 + type.getName().hashCode();
+            }
+            if (cls.isEnum()) {
+                for (Object constant : cls.getEnumConstants()) {
+                    hash = hash * 31 + ((Enum<?>)constant).name().hashCode();
+                }
+            }
+            layoutHash = hash;
+        }
+
+        static char primitiveKind(Class<?> type) {
+            if (type == boolean.class) return 'Z';
+            if (type == byte.class) return 'B';
+            if (type == char.class) return 'C';
+            if (type == short.class) return 'S';
+            if (type == int.class) return 'I';
+            if (type == long.class) return 'J';
+            if (type == float.class) return 'F';
+            return 'D';
+        }
+    }
+
+    private static final Map<Class<?>,ClassInfo> classInfos = 
+        new ConcurrentHashMap<Class<?>,ClassInfo>();
+
+    static ClassInfo classInfo(Class<?> cls) {
+        ClassInfo info = classInfos.get(cls);
+        if (info == null) {
+            info = new ClassInfo(cls);
+            classInfos.put(cls, info);
+        }
+        return info;
+    }
+
+    /** A constructor chosen ahead of time for a class and default
+     * arguments for it, to make an object whose fields are then read. */
+    static final class Maker {
+        private final Constructor<?> constructor;
+        private final Object[] args;
+
+        Maker(Class<?> cls, Class<?>... parameterTypes) {
+            try {
+                constructor = cls.getDeclaredConstructor(parameterTypes);
+            }
+            catch (NoSuchMethodException ex) {
+                throw new IllegalStateException(ex);
+            }
+            constructor.setAccessible(true);
+            args = new Object[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (parameterTypes[i].isPrimitive())
+                    args[i] = Array.get(Array.newInstance(parameterTypes[i], 1), 0);
+            }
+        }
+
+        Object newInstance() throws StandardException {
+            try {
+                return constructor.newInstance(args);
+            }
+            catch (Exception ex) {
+                throw new StandardException("Cannot make " + 
+                                            constructor.getDeclaringClass().getName(), ex);
+            }
+        }
+    }
+
+    /** The class made for each node type, the other classes that
+     * their fields are likely to hold, and a hash of all their
+     * fields. Only these classes are ever written or read.
+     */
+    static final class NodeClasses {
+        static final Class<?>[] classes = new Class<?>[NodeTypes.FINAL_VALUE + 1];
+        static final List<Class<?>> knownClasses = new ArrayList<Class<?>>();
+        static final Map<Class<?>,Integer> knownClassIndexes = new HashMap<Class<?>,Integer>();
+        // How to make each known class that is not an array or an enum.
+        static final Map<Class<?>,Maker> makers = new HashMap<Class<?>,Maker>();
+        static final int layoutHash;
+
+        private static void maker(Class<?> cls, Class<?>... parameterTypes) {
+            makers.put(cls, new Maker(cls, parameterTypes));
+        }
+
+        static {
+            maker(ArrayList.class);
+            maker(LinkedList.class);
+            maker(HashMap.class);
+            maker(LinkedHashMap.class);
+            maker(Properties.class);
+            maker(CharacterTypeAttributes.class, String.class, String.class,
+                  CharacterTypeAttributes.CollationDerivation.class);
+            maker(ConstantInList.class, ConstantInList.Kind.class, long[].class, 
+                  double[].class, String[].class, int.class, boolean.class);
+            maker(ConstantRows.class, int.class, ConstantRows.Column[].class);
+            maker(ConstantRows.Column.class);
+            maker(DataTypeDescriptor.class, TypeId.class, boolean.class, int.class);
+            maker(IndexColumnList.FunctionApplication.class, 
+                  IndexColumnList.FunctionType.class, int.class, int.class);
+            maker(JSQLType.class, byte.class);
+            maker(MethodAliasInfo.class, String.class);
+            maker(RoutineAliasInfo.class, String.class, int.class, String[].class,
+                  DataTypeDescriptor[].class, int[].class, int.class, String.class,
+                  String.class, RoutineAliasInfo.SQLAllowed.class, boolean.class,
+                  boolean.class, boolean.class, DataTypeDescriptor.class);
+            maker(RoutineDesignator.class, boolean.class, TableName.class, 
+                  boolean.class, List.class);
+            maker(SynonymAliasInfo.class, String.class, String.class);
+            maker(TypeId.class, String.class, String.class, String.class);
+            maker(UDTAliasInfo.class);
+            int hash = 0;
+            Set<Class<?>> known = new TreeSet<Class<?>>(new Comparator<Class<?>>() {
+                    public int compare(Class<?> c1, Class<?> c2) {
+                        return c1.getName().compareTo(c2.getName());
+                    }
+                });
+            List<Class<?>> pending = new ArrayList<Class<?>>();
+            for (int nodeType = 0; nodeType < classes.length; nodeType++) {
+                QueryTreeNode node = NodeConstructors.newNode(nodeType);
+                if (node != null) {
+                    classes[nodeType] = node.getClass();
+                    hash = hash * 31 + nodeType;
+                    hash = hash * 31 + classInfo(node.getClass()).layoutHash;
+                    pending.add(node.getClass());
+                }
+            }
+            known.addAll(makers.keySet());
+            pending.addAll(makers.keySet());
+            known.addAll(Arrays.<Class<?>>asList(boolean[].class, byte[].class, char[].class,
+                                                 short[].class, int[].class, long[].class,
+                                                 float[].class, double[].class));
+            while (!pending.isEmpty()) {
+                for (Field field : classInfo(pending.remove(pending.size() - 1)).fields) {
+                    Class<?> type = field.getType();
+                    if (type.isArray() && !type.getComponentType().isPrimitive() &&
+                        known.add(type))
+                        type = type.getComponentType();
+                    if (type.isPrimitive() || type.getName().startsWith("java") ||
+                        QueryTreeNode.class.isAssignableFrom(type) ||
+                        (!type.isArray() && !type.isEnum() &&
+                         (type.isInterface() || Modifier.isAbstract(type.getModifiers()))))
+                        continue;
+                    if (known.add(type))
+                        pending.add(type);
+                }
+            }
+            for (Class<?> cls : known) {
+                knownClassIndexes.put(cls, knownClasses.size());
+                knownClasses.add(cls);
+                hash = hash * 31 + classInfo(cls).layoutHash;
+            }
+            layoutHash = hash;
+        }
+
+        static boolean isNodeClass(QueryTreeNode node) {
+            int nodeType = node.getNodeType();
+            return ((nodeType >= 0) && (nodeType < classes.length) &&
+                    (classes[nodeType] == node.getClass()));
+        }
+
+        static boolean isCollectionClass(Class<?> cls) {
+            return (makers.containsKey(cls) &&
+                    (List.class.isAssignableFrom(cls) || Map.class.isAssignableFrom(cls)));
+        }
+    }
+
+    /** The built-in types, which are kept unique. */
+    private static final Map<TypeId,String> typeIdNames = 
+        new IdentityHashMap<TypeId,String>();
+    private static final Map<String,TypeId> typeIdsByName = 
+        new HashMap<String,TypeId>();
+    static {
+        for (Field field : TypeId.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) &&
+                Modifier.isFinal(field.getModifiers()) &&
+                (field.getType() == TypeId.class)) {
+                try {
+                    field.setAccessible(true);
+                    TypeId typeId = (TypeId)field.get(null);
+                    if ((typeId != null) && !typeIdNames.containsKey(typeId)) {
+                        typeIdNames.put(typeId, field.getName());
+                        typeIdsByName.put(field.getName(), typeId);
+                    }
+                }
+                catch (IllegalAccessException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }
+    }
+
+    static class Writer {
+        byte[] bytes = new byte[256];
+        int length;
+        private final Map<Object,Integer> handles = new IdentityHashMap<Object,Integer>();
+
+        void writeTree(QueryTreeNode node) throws StandardException {
+            writeFixedInt(MAGIC);
+            writeInt(FORMAT_VERSION);
+            writeFixedInt(NodeClasses.layoutHash);
+            writeValue(node);
+        }
+
+        private void ensure(int n) {
+            if (length + n > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[length++] = (byte)b;
+        }
+
+        void writeFixedInt(int i) {
+            ensure(4);
+            bytes[length++] = (byte)(i >>> 24);
+            bytes[length++] = (byte)(i >>> 16);
+            bytes[length++] = (byte)(i >>> 8);
+            bytes[length++] = (byte)i;
+        }
+
+        void writeFixedLong(long l) {
+            writeFixedInt((int)(l >>> 32));
+            writeFixedInt((int)l);
+        }
+
+        /** Unsigned variable length, seven bits a byte. */
+        void writeUnsigned(long l) {
+            ensure(10);
+            while ((l & ~0x7FL) != 0) {
+                bytes[length++] = (byte)((l & 0x7F) | 0x80);
+                l >>>= 7;
+            }
+            bytes[length++] = (byte)l;
+        }
+
+        /** Signed variable length, so that small negatives are short too. */
+        void writeInt(int i) {
+            writeUnsigned(((i << 1) ^ (i >> 31)) & 0xFFFFFFFFL);
+        }
+
+        void writeLong(long l) {
+            writeUnsigned((l << 1) ^ (l >> 63));
+        }
+
+        void writeChars(String s) {
+            int n = s.length();
+            writeUnsigned(n);
+            for (int i = 0; i < n; i++) {
+                char ch = s.charAt(i);
+                if (ch < 0x80) {
+                    ensure(1);
+                    bytes[length++] = (byte)ch;
+                }
+                else
+                    writeUnsigned(ch);
+            }
+        }
+
+        /** Write a class as its index among those known to both sides. */
+        void writeClass(Class<?> cls) throws StandardException {
+            Integer index = NodeClasses.knownClassIndexes.get(cls);
+            if (index == null)
+                throw new StandardException("Cannot serialize " + cls.getName());
+            writeUnsigned(index);
+        }
+
+        /** Write a value with a tag, giving it a handle if it could
+         * be referred to again. */
+        void writeValue(Object value) throws StandardException {
+            if (value == null) {
+                writeByte(NULL);
+                return;
+            }
+            if (value instanceof Integer) {
+                writeByte(INTEGER);
+                writeInt((Integer)value);
+                return;
+            }
+            if (value instanceof Long) {
+                writeByte(LONG);
+                writeLong((Long)value);
+                return;
+            }
+            if (value instanceof Boolean) {
+                writeByte(((Boolean)value) ? TRUE : FALSE);
+                return;
+            }
+            if (value instanceof Short) {
+                writeByte(SHORT);
+                writeInt((Short)value);
+                return;
+            }
+            if (value instanceof Byte) {
+                writeByte(BYTE);
+                writeInt((Byte)value);
+                return;
+            }
+            if (value instanceof Character) {
+                writeByte(CHARACTER);
+                writeUnsigned((Character)value);
+                return;
+            }
+            if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeFixedLong(Double.doubleToRawLongBits((Double)value));
+                return;
+            }
+            if (value instanceof Float) {
+                writeByte(FLOAT);
+                writeFixedInt(Float.floatToRawIntBits((Float)value));
+                return;
+            }
+            if (value instanceof Enum) {
+                writeByte(ENUM);
+                writeClass(((Enum<?>)value).getDeclaringClass());
+                writeUnsigned(((Enum<?>)value).ordinal());
+                return;
+            }
+            if (value instanceof TypeId) {
+                String name = typeIdNames.get(value);
+                if (name != null) {
+                    writeByte(TYPE_ID);
+                    writeChars(name);
+                    return;
+                }
+            }
+            Integer handle = handles.get(value);
+            if (handle != null) {
+                writeByte(REFERENCE);
+                writeUnsigned(handle);
+                return;
+            }
+            handles.put(value, handles.size());
+            if (value instanceof String) {
+                writeByte(STRING);
+                writeChars((String)value);
+            }
+            else if (value instanceof BigDecimal) {
+                writeByte(BIG_DECIMAL);
+                writeInt(((BigDecimal)value).scale());
+                writeBytes(((BigDecimal)value).unscaledValue().toByteArray());
+            }
+            else if (value instanceof BigInteger) {
+                writeByte(BIG_INTEGER);
+                writeBytes(((BigInteger)value).toByteArray());
+            }
+            else if (value.getClass().isArray()) {
+                writeByte(ARRAY);
+                writeClass(value.getClass());
+                writeArray(value);
+            }
+            else if (value instanceof List) {
+                writeByte(LIST);
+                writeClass(collectionClass(value));
+                List<?> list = (List<?>)value;
+                writeUnsigned(list.size());
+                for (int i = 0; i < list.size(); i++) {
+                    writeValue(list.get(i));
+                }
+            }
+            else if (value instanceof Map) {
+                writeByte(MAP);
+                writeClass(collectionClass(value));
+                Map<?,?> map = (Map<?,?>)value;
+                writeUnsigned(map.size());
+                for (Map.Entry<?,?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            }
+            else {
+                Class<?> cls = value.getClass();
+                if (value instanceof ConstantNode)
+                    ((ConstantNode)value).getValue(); // Decode any literal text.
+                if ((value instanceof QueryTreeNode) &&
+                    NodeClasses.isNodeClass((QueryTreeNode)value)) {
+                    writeByte(NODE);
+                    writeUnsigned(((QueryTreeNode)value).getNodeType());
+                }
+                else {
+                    if (!NodeClasses.makers.containsKey(cls))
+                        throw new StandardException("Cannot serialize " + cls.getName());
+                    writeByte(OBJECT);
+                    writeClass(cls);
+                }
+                writeFields(value, classInfo(cls));
+            }
+        }
+
+        /** Lists and maps are read back as the same class if it is
+         * known, or else a plain one. */
+        private static Class<?> collectionClass(Object value) {
+            Class<?> cls = value.getClass();
+            if (NodeClasses.isCollectionClass(cls))
+                return cls;
+            return (value instanceof List) ? ArrayList.class : HashMap.class;
+        }
+
+        void writeBytes(byte[] value) {
+            writeUnsigned(value.length);
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+        }
+
+        void writeArray(Object array) throws StandardException {
+            Class<?> componentType = array.getClass().getComponentType();
+            int n = Array.getLength(array);
+            if (componentType == byte.class) {
+                writeBytes((byte[])array);
+                return;
+            }
+            writeUnsigned(n);
+            if (!componentType.isPrimitive()) {
+                for (Object object : (Object[])array) {
+                    writeValue(object);
+                }
+                return;
+            }
+            switch (ClassInfo.primitiveKind(componentType)) {
+            case 'Z':
+                for (boolean z : (boolean[])array) writeByte(z ? 1 : 0);
+                break;
+            case 'C':
+                for (char c : (char[])array) writeUnsigned(c);
+                break;
+            case 'S':
+                for (short sh : (short[])array) writeInt(sh);
+                break;
+            case 'I':
+                for (int i : (int[])array) writeInt(i);
+                break;
+            case 'J':
+                for (long l : (long[])array) writeLong(l);
+                break;
+            case 'F':
+                for (float f : (float[])array) writeFixedInt(Float.floatToRawIntBits(f));
+                break;
+            default:
+                for (double d : (double[])array) writeFixedLong(Double.doubleToRawLongBits(d));
+                break;
+            }
+        }
+
+        void writePrimitive(char kind, Object value) {
+            switch (kind) {
+            case 'Z':
+                writeByte(((Boolean)value) ? 1 : 0);
+                break;
+            case 'B':
+                writeByte((Byte)value);
+                break;
+            case 'C':
+                writeUnsigned((Character)value);
+                break;
+            case 'S':
+                writeInt((Short)value);
+                break;
+            case 'I':
+                writeInt((Integer)value);
+                break;
+            case 'J':
+                writeLong((Long)value);
+                break;
+            case 'F':
+                writeFixedInt(Float.floatToRawIntBits((Float)value));
+                break;
+            default:
+                writeFixedLong(Double.doubleToRawLongBits((Double)value));
+                break;
+            }
+        }
+
+        void writeFields(Object object, ClassInfo info) throws StandardException {
+            try {
+                for (int i = 0; i < info.fields.length; i++) {
+                    Field field = info.fields[i];
+                    switch (info.fieldKinds[i]) {
+                    case 'Z':
+                        writeByte(field.getBoolean(object) ? 1 : 0);
+                        break;
+                    case 'I':
+                        writeInt(field.getInt(object));
+                        break;
+                    case 'J':
+                        writeLong(field.getLong(object));
+                        break;
+                    case 'L':
+                        writeValue(field.get(object));
+                        break;
+                    default:
+                        writePrimitive(info.fieldKinds[i], field.get(object));
+                        break;
+                    }
+                }
+            }
+            catch (IllegalAccessException ex) {
+                throw new StandardException(ex);
+            }
+        }
+    }
+
+    static class Reader {
+        private final ByteBuffer buffer;
+        private final SQLParserContext pc;
+        private final List<Object> handles = new ArrayList<Object>();
+        private char[] chars = new char[64];
+
+        Reader(ByteBuffer buffer, SQLParserContext pc) {
+            this.buffer = buffer;
+            this.pc = pc;
+        }
+
+        QueryTreeNode readTree() throws StandardException {
+            if (buffer.getInt() != MAGIC)
+                throw new StandardException("Not a serialized tree");
+            int version = readInt();
+            if (version != FORMAT_VERSION)
+                throw new StandardException("Serialized tree has format version " + version +
+                                            ", not " + FORMAT_VERSION);
+            if (buffer.getInt() != NodeClasses.layoutHash)
+                throw new StandardException("Serialized tree's nodes do not match this version");
+            Object value = readValue();
+            if (!(value instanceof QueryTreeNode))
+                throw new StandardException("Serialized value is not a node");
+            return (QueryTreeNode)value;
+        }
+
+        long readUnsigned() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                byte b = buffer.get();
+                result |= (long)(b & 0x7F) << shift;
+                if (b >= 0)
+                    return result;
+                shift += 7;
+            }
+        }
+
+        int readInt() {
+            int n = (int)readUnsigned();
+            return (n >>> 1) ^ -(n & 1);
+        }
+
+        long readLong() {
+            long n = readUnsigned();
+            return (n >>> 1) ^ -(n & 1);
+        }
+
+        /** Read the number of things that follow, each at least a
+         * byte long, so that a corrupt one cannot claim more. */
+        int readLength() throws StandardException {
+            long n = readUnsigned();
+            if ((n < 0) || (n > buffer.remaining()))
+                throw corrupt();
+            return (int)n;
+        }
+
+        String readChars() throws StandardException {
+            int n = readLength();
+            if (n > chars.length)
+                chars = new char[Math.max(n, chars.length * 2)];
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get();
+                if (b >= 0) {
+                    chars[i] = (char)b;
+                }
+                else {
+                    buffer.position(buffer.position() - 1);
+                    chars[i] = (char)readUnsigned();
+                }
+            }
+            return new String(chars, 0, n);
+        }
+
+        byte[] readBytes() throws StandardException {
+            byte[] result = new byte[readLength()];
+            buffer.get(result);
+            return result;
+        }
+
+        Class<?> readClass() throws StandardException {
+            long index = readUnsigned();
+            if ((index < 0) || (index >= NodeClasses.knownClasses.size()))
+                throw corrupt();
+            return NodeClasses.knownClasses.get((int)index);
+        }
+
+        Object readValue() throws StandardException {
+            int tag = buffer.get();
+            switch (tag) {
+            case NULL:
+                return null;
+            case REFERENCE:
+                {
+                    long handle = readUnsigned();
+                    if ((handle < 0) || (handle >= handles.size()))
+                        throw corrupt();
+                    return handles.get((int)handle);
+                }
+            case INTEGER:
+                return readInt();
+            case LONG:
+                return readLong();
+            case SHORT:
+                return (short)readInt();
+            case BYTE:
+                return (byte)readInt();
+            case CHARACTER:
+                return (char)readUnsigned();
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case DOUBLE:
+                return Double.longBitsToDouble(buffer.getLong());
+            case FLOAT:
+                return Float.intBitsToFloat(buffer.getInt());
+            case ENUM:
+                {
+                    Class<?> cls = readClass();
+                    long ordinal = readUnsigned();
+                    if (!cls.isEnum() || (ordinal < 0) ||
+                        (ordinal >= cls.getEnumConstants().length))
+                        throw corrupt();
+                    return cls.getEnumConstants()[(int)ordinal];
+                }
+            case TYPE_ID:
+                {
+                    String name = readChars();
+                    TypeId typeId = typeIdsByName.get(name);
+                    if (typeId == null)
+                        throw new StandardException("Unknown serialized type " + name);
+                    return typeId;
+                }
+            case STRING:
+                return handle(readChars());
+            case BIG_DECIMAL:
+                {
+                    int scale = readInt();
+                    return handle(new BigDecimal(new BigInteger(readBytes()), scale));
+                }
+            case BIG_INTEGER:
+                return handle(new BigInteger(readBytes()));
+            case ARRAY:
+                {
+                    Class<?> cls = readClass();
+                    if (!cls.isArray())
+                        throw corrupt();
+                    return readArray(cls);
+                }
+            case LIST:
+            case MAP:
+                {
+                    Class<?> cls = readClass();
+                    if (!NodeClasses.isCollectionClass(cls) ||
+                        (List.class.isAssignableFrom(cls) != (tag == LIST)))
+                        throw corrupt();
+                    return readCollection(tag, cls);
+                }
+            case OBJECT:
+                {
+                    Class<?> cls = readClass();
+                    Maker maker = NodeClasses.makers.get(cls);
+                    if (maker == null)
+                        throw corrupt();
+                    Object object = handle(maker.newInstance());
+                    readFields(object, classInfo(cls));
+                    return object;
+                }
+            case NODE:
+                {
+                    int nodeType = (int)readUnsigned();
+                    QueryTreeNode node = NodeConstructors.newNode(nodeType);
+                    if (node == null)
+                        throw new StandardException("Bad serialized node type " + nodeType);
+                    handle(node);
+                    node.setParserContext(pc);
+                    readFields(node, classInfo(node.getClass()));
+                    return node;
+                }
+            default:
+                throw new StandardException("Bad serialized tag " + tag);
+            }
+        }
+
+        private <T> T handle(T value) {
+            handles.add(value);
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        Object readCollection(int tag, Class<?> cls) throws StandardException {
+            Object collection = handle(NodeClasses.makers.get(cls).newInstance());
+            int n = readLength();
+            if (tag == LIST) {
+                Collection<Object> list = (Collection<Object>)collection;
+                for (int i = 0; i < n; i++) {
+                    list.add(readValue());
+                }
+            }
+            else {
+                Map<Object,Object> map = (Map<Object,Object>)collection;
+                for (int i = 0; i < n; i++) {
+                    Object key = readValue();
+                    map.put(key, readValue());
+                }
+            }
+            return collection;
+        }
+
+        Object readArray(Class<?> arrayClass) throws StandardException {
+            Class<?> componentType = arrayClass.getComponentType();
+            if (componentType == byte.class)
+                return handle(readBytes());
+            int n = readLength();
+            Object array = handle(Array.newInstance(componentType, n));
+            if (!componentType.isPrimitive()) {
+                Object[] objects = (Object[])array;
+                for (int i = 0; i < n; i++) {
+                    objects[i] = readValue();
+                }
+                return array;
+            }
+            switch (ClassInfo.primitiveKind(componentType)) {
+            case 'Z':
+                {
+                    boolean[] zs = (boolean[])array;
+                    for (int i = 0; i < n; i++) zs[i] = (buffer.get() != 0);
+                }
+                break;
+            case 'C':
+                {
+                    char[] cs = (char[])array;
+                    for (int i = 0; i < n; i++) cs[i] = (char)readUnsigned();
+                }
+                break;
+            case 'S':
+                {
+                    short[] ss = (short[])array;
+                    for (int i = 0; i < n; i++) ss[i] = (short)readInt();
+                }
+                break;
+            case 'I':
+                {
+                    int[] is = (int[])array;
+                    for (int i = 0; i < n; i++) is[i] = readInt();
+                }
+                break;
+            case 'J':
+                {
+                    long[] ls = (long[])array;
+                    for (int i = 0; i < n; i++) ls[i] = readLong();
+                }
+                break;
+            case 'F':
+                {
+                    float[] fs = (float[])array;
+                    for (int i = 0; i < n; i++) fs[i] = Float.intBitsToFloat(buffer.getInt());
+                }
+                break;
+            default:
+                {
+                    double[] ds = (double[])array;
+                    for (int i = 0; i < n; i++) ds[i] = Double.longBitsToDouble(buffer.getLong());
+                }
+                break;
+            }
+            return array;
+        }
+
+        Object readPrimitive(char kind) {
+            switch (kind) {
+            case 'Z':
+                return buffer.get() != 0;
+            case 'B':
+                return buffer.get();
+            case 'C':
+                return (char)readUnsigned();
+            case 'S':
+                return (short)readInt();
+            case 'I':
+                return readInt();
+            case 'J':
+                return readLong();
+            case 'F':
+                return Float.intBitsToFloat(buffer.getInt());
+            default:
+                return Double.longBitsToDouble(buffer.getLong());
+            }
+        }
+
+        static StandardException corrupt() {
+            return new StandardException("Corrupt serialized tree");
+        }
+
+        void readFields(Object object, ClassInfo info) throws StandardException {
+            try {
+                for (int i = 0; i < info.fields.length; i++) {
+                    Field field = info.fields[i];
+                    switch (info.fieldKinds[i]) {
+                    case 'Z':
+                        field.setBoolean(object, buffer.get() != 0);
+                        break;
+                    case 'I':
+                        field.setInt(object, readInt());
+                        break;
+                    case 'J':
+                        field.setLong(object, readLong());
+                        break;
+                    case 'L':
+                        field.set(object, readValue());
+                        break;
+                    default:
+                        field.set(object, readPrimitive(info.fieldKinds[i]));
+                        break;
+                    }
+                }
+            }
+            catch (IllegalAccessException ex) {
+                throw new StandardException(ex);
+            }
+            catch (IllegalArgumentException ex) {
+                throw new StandardException("Serialized field does not match", ex);
+            }
+        }
+    }
+
+}
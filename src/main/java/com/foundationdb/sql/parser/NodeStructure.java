@@ -0,0 +1,257 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Structural hashing and equality of trees of nodes.
+ * <p>
+ * Two subtrees are structurally equal when their nodes are of the
+ * same classes and types and all their fields are, save for offsets,
+ * the parser context and user data. Fields are found by reflection,
+ * as by {@link NodeSerializer}, so every node class is covered
+ * without code of its own. Lists, maps and arrays are compared by
+ * their elements and other objects by their fields, except for
+ * strings, numbers and other library classes, which are compared by
+ * value. Enums
+ * and classes are hashed by name, so that hashes are the same from
+ * one run to the next. Literals that have not yet been decoded are
+ * decoded first.
+ * <p>
+ * Hashes of nodes are remembered for as long as this object is kept,
+ * so the tree must not change in the meantime.
+ */
+class NodeStructure
+{
+    private final Map<Object,Integer> hashes = new IdentityHashMap<Object,Integer>();
+    private final Map<Object,Object> assumedEqual = new IdentityHashMap<Object,Object>();
+
+    /** Get the structural hash of a value. */
+    public int hash(Object value) {
+        if (value == null)
+            return 0;
+        if (value instanceof Enum)
+            return ((Enum<?>)value).getDeclaringClass().getName().hashCode() * 31 + 
+                ((Enum<?>)value).name().hashCode();
+        if (value instanceof Class)
+            return ((Class<?>)value).getName().hashCode();
+        if (isValue(value))
+            return value.hashCode();
+        Integer known = hashes.get(value);
+        if (known != null)
+            return known;
+        hashes.put(value, 0);   // Any cycle back here.
+        int hash = computeHash(value);
+        hashes.put(value, hash);
+        return hash;
+    }
+
+    private int computeHash(Object value) {
+        if (value instanceof List) {
+            int hash = 1;
+            for (Object element : (List<?>)value) {
+                hash = hash * 31 + hash(element);
+            }
+            return hash;
+        }
+        if (value instanceof Collection) {
+            // Order may not be meaningful.
+            int hash = 0;
+            for (Object element : (Collection<?>)value) {
+                hash += hash(element);
+            }
+            return hash;
+        }
+        if (value instanceof Map) {
+            int hash = 0;
+            for (Map.Entry<?,?> entry : ((Map<?,?>)value).entrySet()) {
+                hash += hash(entry.getKey()) ^ hash(entry.getValue());
+            }
+            return hash;
+        }
+        Class<?> cls = value.getClass();
+        int hash = cls.getName().hashCode();
+        if (cls.isArray()) {
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                hash = hash * 31 + hash(Array.get(value, i));
+            }
+            return hash;
+        }
+        if (value instanceof ConstantNode)
+            ((ConstantNode)value).getValue(); // Decode any literal text.
+        for (Field field : fields(cls)) {
+            hash = hash * 31 + hash(get(field, value));
+        }
+        return hash;
+    }
+
+    /** Are two values structurally equal? */
+    public boolean equal(Object v1, Object v2) {
+        if (v1 == v2)
+            return true;
+        if ((v1 == null) || (v2 == null) || (v1.getClass() != v2.getClass()))
+            return false;
+        if ((v1 instanceof Enum) || (v1 instanceof Class))
+            return false;       // Not identical.
+        if (isValue(v1))
+            return v1.equals(v2);
+        if (v1 instanceof QueryTreeNode)
+            return equalNodes((QueryTreeNode)v1, (QueryTreeNode)v2);
+        return equalObjects(v1, v2);
+    }
+
+    /** Are two nodes of the same class structurally equal? */
+    protected boolean equalNodes(QueryTreeNode n1, QueryTreeNode n2) {
+        if (n1.getNodeType() != n2.getNodeType())
+            return false;
+        Integer h1 = hashes.get(n1), h2 = hashes.get(n2);
+        if ((h1 != null) && (h2 != null) && !h1.equals(h2))
+            return false;
+        return equalObjects(n1, n2);
+    }
+
+    /** Compare two objects of the same class by their contents. */
+    protected boolean equalObjects(Object v1, Object v2) {
+        if (assumedEqual.get(v1) == v2)
+            return true;        // Cycle back to a comparison in progress.
+        assumedEqual.put(v1, v2);
+        boolean result = false;
+        try {
+            result = computeEqual(v1, v2);
+        }
+        finally {
+            if (!result)
+                assumedEqual.remove(v1);
+        }
+        return result;
+    }
+
+    private boolean computeEqual(Object v1, Object v2) {
+        if (v1 instanceof List) {
+            List<?> l1 = (List<?>)v1, l2 = (List<?>)v2;
+            if (l1.size() != l2.size())
+                return false;
+            Iterator<?> i1 = l1.iterator(), i2 = l2.iterator();
+            while (i1.hasNext()) {
+                if (!equal(i1.next(), i2.next()))
+                    return false;
+            }
+            return true;
+        }
+        if (v1 instanceof Collection) {
+            Collection<?> c1 = (Collection<?>)v1, c2 = (Collection<?>)v2;
+            if (c1.size() != c2.size())
+                return false;
+            List<Object> unmatched = new ArrayList<Object>(c2);
+            outer:
+            for (Object e1 : c1) {
+                for (Iterator<Object> i2 = unmatched.iterator(); i2.hasNext(); ) {
+                    if (equal(e1, i2.next())) {
+                        i2.remove();
+                        continue outer;
+                    }
+                }
+                return false;
+            }
+            return true;
+        }
+        if (v1 instanceof Map) {
+            Map<?,?> m1 = (Map<?,?>)v1, m2 = (Map<?,?>)v2;
+            if (m1.size() != m2.size())
+                return false;
+            for (Map.Entry<?,?> entry : m1.entrySet()) {
+                if (!m2.containsKey(entry.getKey()) ||
+                    !equal(entry.getValue(), m2.get(entry.getKey())))
+                    return false;
+            }
+            return true;
+        }
+        Class<?> cls = v1.getClass();
+        if (cls.isArray()) {
+            int length = Array.getLength(v1);
+            if (length != Array.getLength(v2))
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (!equal(Array.get(v1, i), Array.get(v2, i)))
+                    return false;
+            }
+            return true;
+        }
+        if (v1 instanceof ConstantNode) {
+            ((ConstantNode)v1).getValue();
+            ((ConstantNode)v2).getValue();
+        }
+        for (Field field : fields(cls)) {
+            if (!equal(get(field, v1), get(field, v2)))
+                return false;
+        }
+        return true;
+    }
+
+    /** Is this a library object, such as a string or number, or
+     * compact literals, compared by its own <code>equals</code>? */
+    private static boolean isValue(Object value) {
+        if ((value instanceof ConstantInList) || (value instanceof ConstantRows))
+            return true;
+        return (value.getClass().getName().startsWith("java") &&
+                !(value instanceof Collection) && !(value instanceof Map) &&
+                !value.getClass().isArray());
+    }
+
+    private static Object get(Field field, Object object) {
+        try {
+            return field.get(object);
+        }
+        catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final Map<Class<?>,Field[]> fieldsByClass = 
+        new ConcurrentHashMap<Class<?>,Field[]>();
+
+    /** Get the fields of a class that count, which are those that
+     * are serialized, less the offsets. */
+    static Field[] fields(Class<?> cls) {
+        Field[] result = fieldsByClass.get(cls);
+        if (result == null) {
+            List<Field> fields = new ArrayList<Field>();
+            for (Field field : NodeSerializer.classInfo(cls).fields) {
+                if ((field.getDeclaringClass() == QueryTreeNode.class) &&
+                    (field.getName().equals("beginOffset") || 
+                     field.getName().equals("endOffset")))
+                    continue;
+                fields.add(field);
+            }
+            result = fields.toArray(new Field[fields.size()]);
+            fieldsByClass.put(cls, result);
+        }
+        return result;
+    }
+
+}
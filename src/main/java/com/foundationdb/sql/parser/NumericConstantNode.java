@@ -50,7 +50,8 @@ public final class NumericConstantNode extends ConstantNode
     /**
      * Initializer for a typed null node
      *
-     * @param arg1 The TypeId for the type of node OR An object containing the value of the constant.
+     * @param arg1 The TypeId for the type of node OR An object containing the value of the constant
+     * OR The {@link LiteralText} from which to get the value when needed.
      *
      * @exception StandardException
      */
@@ -89,7 +90,7 @@ public final class NumericConstantNode extends ConstantNode
             if (valueInP) {
                 maxwidth = TypeId.INT_MAXWIDTH;
                 typeid = Types.INTEGER;
-                setValue((Integer)arg1);
+                setValue((arg1 instanceof LiteralText) ? arg1 : (Integer)arg1);
             }
             break;
 
@@ -109,16 +110,22 @@ public final class NumericConstantNode extends ConstantNode
             if (valueInP) {
                 maxwidth = TypeId.LONGINT_MAXWIDTH;
                 typeid = Types.BIGINT;
-                setValue((Long)arg1);
+                setValue((arg1 instanceof LiteralText) ? arg1 : (Long)arg1);
             }
             break;
 
         case NodeTypes.DECIMAL_CONSTANT_NODE:
             if (valueInP) {
                 typeid = Types.DECIMAL;
-                String image = (String)arg1;
+                CharSequence image = (CharSequence)arg1;
                 int length = image.length();
-                int idx = image.indexOf('.');
+                int idx = -1;
+                for (int i = 0; i < length; i++) {
+                    if (image.charAt(i) == '.') {
+                        idx = i;
+                        break;
+                    }
+                }
                 precision = length;
                 if (!Character.isDigit(image.charAt(0)) && (idx != 0))
                     precision--;                    // Has a sign.
@@ -129,7 +136,7 @@ public final class NumericConstantNode extends ConstantNode
                     scal = length - idx - 1;
                 }
                 maxwidth = length;
-                setValue(new BigDecimal(image));
+                setValue((arg1 instanceof LiteralText) ? arg1 : new BigDecimal((String)arg1));
             }
             else {
                 precision = TypeId.DEFAULT_DECIMAL_PRECISION;
@@ -183,7 +190,19 @@ public final class NumericConstantNode extends ConstantNode
      * @exception StandardException Thrown on error
      */
     Object getConstantValueAsObject() throws StandardException {
-        return value;
+        return getValue();
+    }
+
+    @Override
+    Object decodeValue(LiteralText text) {
+        switch (getNodeType()) {
+        case NodeTypes.INT_CONSTANT_NODE:
+            return Integer.valueOf(text.toString());
+        case NodeTypes.LONGINT_CONSTANT_NODE:
+            return Long.valueOf(text.toString());
+        default:
+            return new BigDecimal(text.toString());
+        }
     }
 
 }
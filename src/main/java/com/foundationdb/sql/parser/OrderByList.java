@@ -39,6 +39,8 @@
 
 package com.foundationdb.sql.parser;
 
+import com.foundationdb.sql.StandardException;
+
 import java.util.Properties;
 
 /**
@@ -82,6 +84,16 @@ public class OrderByList extends OrderedColumnList<OrderByColumn>
         return get(position);
     }
 
+    /**
+     * Fill this node with a deep copy of the given node.
+     */
+    public void copyFrom(QueryTreeNode node) throws StandardException {
+        super.copyFrom(node);
+
+        OrderByList other = (OrderByList)node;
+        this.allAscending = other.allAscending;
+    }
+
     public String toString() {
         return
             "allAscending: " + allAscending + "\n" +
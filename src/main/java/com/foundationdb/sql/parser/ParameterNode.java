@@ -70,7 +70,12 @@ public class ParameterNode extends ValueNode
      */
 
     public void init(Object parameterNumber, Object defaultValue) {
-        this.parameterNumber = ((Integer)parameterNumber).intValue();
+        init(((Integer)parameterNumber).intValue());
+    }
+
+    /** Typed initializer, for {@link NodeFactory#getParameterNode}. */
+    public void init(int parameterNumber) {
+        this.parameterNumber = parameterNumber;
     }
 
     /**
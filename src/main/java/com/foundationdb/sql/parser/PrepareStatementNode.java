@@ -55,6 +55,7 @@ public class PrepareStatementNode extends StatementNode
         super.copyFrom(node);
         
         PrepareStatementNode other = (PrepareStatementNode)node;
+        this.name = other.name;
         this.statement = (StatementNode)getNodeFactory().copyNode(other.statement,
                                                                   getParserContext());
     }
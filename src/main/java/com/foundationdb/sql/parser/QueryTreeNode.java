@@ -54,7 +54,7 @@ import java.io.Writer;
  *
  */
 
-public abstract class QueryTreeNode implements Visitable
+public abstract class QueryTreeNode implements Visitable, Cloneable
 {
     public static final int AUTOINCREMENT_START_INDEX = 0;
     public static final int AUTOINCREMENT_INC_INDEX     = 1;
@@ -69,6 +69,10 @@ public abstract class QueryTreeNode implements Visitable
     private int nodeType;
     private SQLParserContext pc;
     private Object userData;
+    // Part of a tree that copies share (see NodeFactory#shareNode).
+    private transient boolean shared;
+    // A copy of a shared node whose children are still shared.
+    private transient boolean sharedChildren;
 
     /**
      * Set the parser context for this node.
@@ -120,6 +124,25 @@ public abstract class QueryTreeNode implements Visitable
         this.userData = getNodeFactory().copyUserData(this, other.userData);
     }
 
+    /**
+     * Get a hash of this subtree that is the same for any that is
+     * {@linkplain #structurallyEquals structurally equal}, including
+     * from one run to the next.
+     */
+    public int structuralHashCode() {
+        return new NodeStructure().hash(this);
+    }
+
+    /**
+     * Is the given subtree the same as this one, save for offsets,
+     * the parser context and user data? The nodes must be of the same
+     * classes and types and all their fields equal, in turn.
+     * @see SubtreeTable
+     */
+    public boolean structurallyEquals(QueryTreeNode other) {
+        return new NodeStructure().equal(this, other);
+    }
+
     /**
      * Gets the beginning offset of the SQL substring which this
      * query node represents.
@@ -453,6 +476,14 @@ public abstract class QueryTreeNode implements Visitable
      * @exception StandardException on error
      */
     public final Visitable accept(Visitor v) throws StandardException {
+        if (shared)
+            // Leave the shared node as it is and visit a copy instead,
+            // which then takes its place.
+            return CopyOnWrite.copy(this).accept(v);
+        if (sharedChildren)
+            // What the visitor can get to from this node must be its own.
+            CopyOnWrite.copyChildren(this);
+
         final boolean childrenFirst = v.visitChildrenFirst(this);
         final boolean skipChildren = v.skipChildren(this);
 
@@ -469,6 +500,35 @@ public abstract class QueryTreeNode implements Visitable
         return ret;
     }
 
+    boolean isShared() {
+        return shared;
+    }
+
+    void setShared() {
+        shared = true;
+    }
+
+    boolean hasSharedChildren() {
+        return sharedChildren;
+    }
+
+    void setSharedChildren(boolean sharedChildren) {
+        this.sharedChildren = sharedChildren;
+    }
+
+    /** Make a copy of just this node, which is not shared. */
+    QueryTreeNode shallowCopy() {
+        try {
+            QueryTreeNode copy = (QueryTreeNode)super.clone();
+            copy.shared = false;
+            copy.sharedChildren = false;
+            return copy;
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     /**
      * Accept a visitor on all child nodes. All sub-classes that add fields
      * that should be visited, should override this method and call
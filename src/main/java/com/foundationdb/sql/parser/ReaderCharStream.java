@@ -0,0 +1,287 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * {@link CharStream} that reads from a {@link Reader} through a
+ * buffer of bounded size.
+ * <p>
+ * Offsets are from the start of the whole input. Characters are kept
+ * from the point given to {@link #release} onward, so that the text
+ * of the statement being parsed is available from {@link
+ * #getRetainedText}; older ones are discarded as the buffer is
+ * refilled. The buffer only grows if a single statement does not fit.
+ * <p>
+ * The token manager takes any <code>IOException</code> to be the end
+ * of the input, so one from the reader is kept instead, for {@link
+ * #getReadError}, and the input ends there.
+ */
+public class ReaderCharStream implements CharStream
+{
+    private static final IOException EOF = new EOFException();
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private Reader reader;
+    private char[] buffer;
+    private int bufferOffset, bufferLength; // Offset of buffer[0], number valid.
+    private int retainOffset;
+    private boolean atEOF;
+    private IOException readError;
+    private int beginIndex, currentIndex; // 0-based, exclusive end.
+    private int currentLine, currentColumn; // 1-based.
+    // As in StringCharStream, end is the position of the last
+    // character returned.
+    private int beginLine, beginColumn, endLine, endColumn;
+    private final RetainedText retainedText = new RetainedText();
+    private IdentifierTable identifierTable;
+
+    public ReaderCharStream(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ReaderCharStream(Reader reader, int bufferSize) {
+        buffer = new char[bufferSize];
+        init(reader);
+    }
+
+    public void ReInit(Reader reader) {
+        init(reader);
+    }
+
+    private void init(Reader reader) {
+        this.reader = reader;
+        bufferOffset = bufferLength = retainOffset = 0;
+        atEOF = false;
+        readError = null;
+        beginIndex = currentIndex = 0;
+        currentLine = currentColumn = beginLine = beginColumn = endLine = endColumn = 1;
+    }
+
+    public IdentifierTable getIdentifierTable() {
+        return identifierTable;
+    }
+
+    /** Set a table from which to take the images of keywords and
+     * identifiers, rather than making new strings.
+     */
+    public void setIdentifierTable(IdentifierTable identifierTable) {
+        this.identifierTable = identifierTable;
+    }
+
+    /** Get the error that ended the input early, if reading failed. */
+    public IOException getReadError() {
+        return readError;
+    }
+
+    /** Allow characters before the given offset to be discarded. */
+    public void release(int offset) {
+        if (offset > retainOffset)
+            retainOffset = offset;
+    }
+
+    /**
+     * Get the input from the last {@link #release} point through what
+     * has been read so far, indexed by offset from the start of the
+     * whole input.
+     */
+    public CharSequence getRetainedText() {
+        return retainedText;
+    }
+
+    /** Read more input, making room as necessary. */
+    private boolean fill() {
+        if (atEOF)
+            return false;
+        if (bufferLength == buffer.length) {
+            int keep = Math.min(retainOffset, beginIndex);
+            int discard = keep - bufferOffset;
+            if (discard > 0) {
+                System.arraycopy(buffer, discard, buffer, 0, bufferLength - discard);
+                bufferOffset = keep;
+                bufferLength -= discard;
+            }
+            if (bufferLength == buffer.length) {
+                char[] newBuffer = new char[buffer.length * 2];
+                System.arraycopy(buffer, 0, newBuffer, 0, bufferLength);
+                buffer = newBuffer;
+            }
+        }
+        while (true) {
+            int nc;
+            try {
+                nc = reader.read(buffer, bufferLength, buffer.length - bufferLength);
+            }
+            catch (IOException ex) {
+                readError = ex;
+                nc = -1;
+            }
+            if (nc < 0) {
+                atEOF = true;
+                return false;
+            }
+            if (nc > 0) {
+                bufferLength += nc;
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public char BeginToken() throws java.io.IOException {
+        beginIndex = currentIndex;
+        beginLine = currentLine;
+        beginColumn = currentColumn;
+        return readChar();
+    }
+
+    @Override
+    public char readChar() throws java.io.IOException {
+        if ((currentIndex >= bufferOffset + bufferLength) && !fill())
+            throw EOF;
+        // A CR's line ending depends on whether LF follows, so make
+        // sure that is in the buffer too.
+        if ((buffer[currentIndex - bufferOffset] == '\r') &&
+            (currentIndex + 1 >= bufferOffset + bufferLength))
+            fill();
+        return advance();
+    }
+
+    @Override
+    public void backup(int amount) {
+        int target = currentIndex - amount;
+        assert (target >= beginIndex);
+        currentIndex = beginIndex;
+        currentLine = beginLine;
+        currentColumn = beginColumn;
+        while (currentIndex < target)
+            advance();          // Adjusting line / column.
+    }
+
+    private char advance() {
+        endLine = currentLine;
+        endColumn = currentColumn;
+        char ch = buffer[currentIndex++ - bufferOffset];
+        switch (ch) {
+        case '\r':
+            if ((currentIndex < bufferOffset + bufferLength) &&
+                (buffer[currentIndex - bufferOffset] == '\n')) {
+                currentColumn++;
+                break;
+            }
+            /* else falls through (bare CR) */
+        case '\n':
+            currentLine++;
+            currentColumn = 1;
+            break;
+        case '\t':
+            endColumn += (8 - (endColumn & 7));
+            currentColumn = endColumn + 1;
+            break;
+        default:
+            currentColumn++;
+            break;
+        }
+        return ch;
+    }
+
+    @Override
+    public int getBeginOffset() {
+        return beginIndex;
+    }
+    @Override
+    public int getEndOffset() {
+        return currentIndex - 1;   // Want inclusive.
+    }
+
+    @Override
+    public int getBeginLine() {
+        return beginLine;
+    }
+    @Override
+    public int getBeginColumn() {
+        return beginColumn;
+    }
+
+    @Override
+    public int getEndLine() {
+        return endLine;
+    }
+    @Override
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    @Override
+    public int getLine() {
+        return getEndLine();
+    }
+    @Override
+    public int getColumn() {
+        return getEndColumn();
+    }
+
+    @Override
+    public String GetImage() {
+        if ((identifierTable != null) && 
+            IdentifierTable.isName(retainedText, beginIndex, currentIndex))
+            return identifierTable.intern(retainedText, beginIndex, currentIndex);
+        return new String(buffer, beginIndex - bufferOffset, currentIndex - beginIndex);
+    }
+
+    @Override
+    public char[] GetSuffix(int len) {
+        char[] result = new char[len];
+        System.arraycopy(buffer, currentIndex - len - bufferOffset, result, 0, len);
+        return result;
+    }
+
+    @Override
+    public void Done() {
+    }
+
+    /** View of the buffer by absolute offset. */
+    class RetainedText implements CharSequence {
+        @Override
+        public int length() {
+            return bufferOffset + bufferLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((index < bufferOffset) || (index >= bufferOffset + bufferLength))
+                throw new IndexOutOfBoundsException("Offset " + index + " not retained");
+            return buffer[index - bufferOffset];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if ((start < bufferOffset) || (end > bufferOffset + bufferLength) || (start > end))
+                throw new IndexOutOfBoundsException("Offsets " + start + "-" + end + " not retained");
+            return new String(buffer, start - bufferOffset, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, 0, bufferLength);
+        }
+    }
+
+}
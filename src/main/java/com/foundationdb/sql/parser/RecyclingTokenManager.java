@@ -0,0 +1,219 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+/**
+ * Token manager that can reuse the {@link Token} objects of
+ * statements that have already been parsed.
+ * <p>
+ * Tokens are handed out from a ring, oldest first. The grammar can
+ * reach back any number of tokens within a statement (the first
+ * token, the last identifier, and so on), so no fixed amount of
+ * lookahead makes a token safe to reuse. Instead, tokens are only
+ * released at points where the parser is known to be done with them:
+ * between statements ({@link #release}) and when starting over on new
+ * input. The ring grows to the size of the largest statement.
+ * <p>
+ * Nodes never keep tokens, only offsets and strings taken from them,
+ * so a tree is unaffected when its tokens are reused. The tokens
+ * referenced by a {@link ParseException} are {@linkplain #discard
+ * given up} instead, since the exception can outlive the parse.
+ * <p>
+ * It also enforces the limits on the number of tokens in a statement
+ * and on the time taken to parse it, and notices when the parse is
+ * cancelled, by throwing a {@link LimitError}.
+ * <p>
+ * When only scanning, every token is the same object, and neither
+ * images that are not fixed by the token kind nor lines and columns
+ * are worked out, since the caller only looks at each token's kind
+ * and offsets before getting the next.
+ */
+class RecyclingTokenManager extends SQLGrammarTokenManager
+{
+    private boolean recycling;
+    private Token[] ring = new Token[0];
+    private int first, live;    // Index of oldest token in use, number in use.
+    private int tokenCount, maxTokenCount;
+    private boolean hasDeadline;
+    private long deadline;      // System.nanoTime().
+    private volatile boolean cancelled;
+    private boolean scanning;
+    private Token scanningToken;
+
+    public RecyclingTokenManager(SQLGrammar parser, CharStream stream) {
+        super(parser, stream);
+    }
+
+    public boolean isRecycling() {
+        return recycling;
+    }
+
+    public void setRecycling(boolean recycling) {
+        this.recycling = recycling;
+        if (!recycling) {
+            ring = new Token[0];
+            first = live = 0;
+        }
+    }
+
+    @Override
+    public void ReInit(CharStream stream) {
+        super.ReInit(stream);
+        live = 0;
+        tokenCount = 0;
+    }
+
+    public boolean isScanning() {
+        return scanning;
+    }
+
+    public void setScanning(boolean scanning) {
+        this.scanning = scanning;
+        if (scanning && (scanningToken == null))
+            scanningToken = new Token();
+    }
+
+    /** Set the limits for the parse about to start and clear any
+     * cancellation.
+     * @param maxTokenCount Most tokens in a statement, or <code>0</code>.
+     * @param maxParseMillis Most time from now, or <code>0</code>.
+     */
+    public void setLimits(int maxTokenCount, long maxParseMillis) {
+        this.maxTokenCount = maxTokenCount;
+        hasDeadline = (maxParseMillis > 0);
+        if (hasDeadline)
+            deadline = System.nanoTime() + maxParseMillis * 1000000;
+        cancelled = false;
+    }
+
+    /** Make the parse in progress fail, from any thread. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    protected Token jjFillToken() {
+        tokenCount++;
+        if (cancelled)
+            throw new LimitError(SQLParserLimitException.Limit.CANCELLED,
+                                 "Parse cancelled", input_stream.getBeginOffset());
+        if ((maxTokenCount > 0) && (tokenCount > maxTokenCount))
+            throw new LimitError(SQLParserLimitException.Limit.TOKEN_COUNT,
+                                 "Statement has more than " + maxTokenCount + " tokens",
+                                 input_stream.getBeginOffset());
+        // Only look at the clock now and then.
+        if (hasDeadline && ((tokenCount & 0x3F) == 0) && (System.nanoTime() - deadline > 0))
+            throw new LimitError(SQLParserLimitException.Limit.PARSE_TIME,
+                                 "Statement took too long to parse",
+                                 input_stream.getBeginOffset());
+        if (scanning) {
+            scanningToken.kind = jjmatchedKind;
+            scanningToken.image = (jjmatchedPos < 0) ? null : jjstrLiteralImages[jjmatchedKind];
+            return scanningToken;
+        }
+        if (!recycling || (jjmatchedPos < 0))
+            return super.jjFillToken();
+        String image = jjstrLiteralImages[jjmatchedKind];
+        if (image == null)
+            image = input_stream.GetImage();
+        Token t = nextToken();
+        t.kind = jjmatchedKind;
+        t.image = image;
+        t.beginLine = input_stream.getBeginLine();
+        t.beginColumn = input_stream.getBeginColumn();
+        t.endLine = input_stream.getEndLine();
+        t.endColumn = input_stream.getEndColumn();
+        return t;
+    }
+
+    /** Get a free token from the ring, growing it if none are. */
+    private Token nextToken() {
+        if (live == ring.length) {
+            Token[] newRing = new Token[Math.max(64, ring.length * 2)];
+            for (int i = 0; i < live; i++) {
+                newRing[i] = ring[(first + i) % ring.length];
+            }
+            ring = newRing;
+            first = 0;
+        }
+        int index = (first + live++) % ring.length;
+        Token t = ring[index];
+        if (t == null) {
+            t = new Token();
+            ring[index] = t;
+        }
+        else {
+            t.next = null;
+            t.specialToken = null;
+        }
+        return t;
+    }
+
+    /** Allow the tokens before <code>oldest</code> to be reused. Does
+     * nothing if <code>oldest</code> did not come from the ring, save
+     * start counting tokens for the next statement.
+     */
+    public void release(Token oldest) {
+        tokenCount = 0;
+        for (int i = live - 1; i >= 0; i--) {
+            int index = (first + i) % ring.length;
+            if (ring[index] == oldest) {
+                first = index;
+                live -= i;
+                return;
+            }
+        }
+    }
+
+    /** Forget the tokens in use, so that they are never reused. */
+    public void discard() {
+        for (int i = 0; i < live; i++) {
+            ring[(first + i) % ring.length] = null;
+        }
+        live = 0;
+    }
+
+    /** Get the number of tokens allocated for the ring. */
+    int getCapacity() {
+        return ring.length;
+    }
+
+    /** Thrown out of the parser when a limit is exceeded, to be turned
+     * into a {@link SQLParserLimitException}.
+     */
+    static class LimitError extends TokenMgrError {
+        private final SQLParserLimitException.Limit limit;
+        private final int offset;
+
+        public LimitError(SQLParserLimitException.Limit limit, String message, int offset) {
+            super(message, LOOP_DETECTED);
+            this.limit = limit;
+            this.offset = offset;
+        }
+
+        public SQLParserLimitException toException() {
+            return new SQLParserLimitException(limit, getMessage(), offset + 1);
+        }
+
+        @Override
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+}
@@ -127,21 +127,10 @@ public class ResultColumn extends ValueNode
         // the first argument being null means it should be treated as
         // a String.
         if ((arg1 instanceof String) || (arg1 == null)) {
-            this.name = (String)arg1;
-            this.exposedName = this.name;
-            setExpression((ValueNode)arg2);
+            init((String)arg1, (ValueNode)arg2);
         }
         else if (arg1 instanceof ColumnReference) {
-            ColumnReference ref = (ColumnReference)arg1;
-
-            this.name = ref.getColumnName();
-            this.exposedName = ref.getColumnName();
-            /*
-              when we bind, we'll want to make sure
-              the reference has the right table name.
-            */
-            this.reference = ref; 
-            setExpression((ValueNode)arg2);
+            init((ColumnReference)arg1, (ValueNode)arg2);
         }
         else {
             setType((DataTypeDescriptor)arg1);
@@ -149,8 +138,32 @@ public class ResultColumn extends ValueNode
             if (arg2 instanceof ColumnReference) {
                 reference = (ColumnReference)arg2;
             }
+            checkDefaultColumn();
         }
+    }
+
+    /** Typed initializer for a named column, for {@link NodeFactory#getResultColumn}. */
+    public void init(String name, ValueNode expression) {
+        this.name = name;
+        this.exposedName = this.name;
+        setExpression(expression);
+        checkDefaultColumn();
+    }
+
+    /** Typed initializer for a column reference, for {@link NodeFactory#getResultColumn}. */
+    public void init(ColumnReference ref, ValueNode expression) {
+        this.name = ref.getColumnName();
+        this.exposedName = ref.getColumnName();
+        /*
+          when we bind, we'll want to make sure
+          the reference has the right table name.
+        */
+        this.reference = ref; 
+        setExpression(expression);
+        checkDefaultColumn();
+    }
 
+    private void checkDefaultColumn() {
         /* this result column represents a <default> keyword in an insert or
          * update statement
          */
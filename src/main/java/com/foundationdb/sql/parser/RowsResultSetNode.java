@@ -23,20 +23,32 @@ import java.util.List;
 
 /**
  * A RowsResultSetNode represents the result set for a multi row VALUES clause.
- *
+ * <p>
+ * Rows of literals may be kept as {@link ConstantRows} instead of a
+ * row node for each. The row nodes are only made when something asks
+ * for them, by getting or adding rows or visiting the children, except
+ * with a {@link CompactConstantsVisitor}. Code that can work with the
+ * values directly should check {@link #getConstantRows} first.
  */
 
 public class RowsResultSetNode extends FromTable
 {
     private List<RowResultSetNode> rows;
+    private ConstantRows constantRows;
 
     /**
      * Initializer for a RowsResultSetNode.
      *
-     * @param firstRow The initial row.
+     * @param firstRow The initial row, or all the rows as {@link ConstantRows}.
      */
     public void init(Object firstRow) throws StandardException {
         super.init(null, tableProperties);
+        if (firstRow instanceof ConstantRows) {
+            constantRows = (ConstantRows)firstRow;
+            resultColumns = constantRows.toRowResultSet(0, getNodeFactory(), getParserContext())
+                .getResultColumns();
+            return;
+        }
         RowResultSetNode row = (RowResultSetNode)firstRow;
         rows = new ArrayList<RowResultSetNode>();
         rows.add(row);
@@ -44,12 +56,42 @@ public class RowsResultSetNode extends FromTable
             getNodeFactory().copyNode(row.getResultColumns(), getParserContext());
     }
 
+    /**
+     * Get the rows, making them from the compact constants first if
+     * need be. They then replace the constants, since they can be changed.
+     */
     public List<RowResultSetNode> getRows() {
+        if (rows == null) {
+            try {
+                rows = makeRows();
+            }
+            catch (StandardException ex) {
+                throw new IllegalStateException(ex);
+            }
+            constantRows = null;
+        }
         return rows;
     }
 
+    private List<RowResultSetNode> makeRows() throws StandardException {
+        int nrows = constantRows.getRowCount();
+        List<RowResultSetNode> result = new ArrayList<RowResultSetNode>(nrows);
+        for (int i = 0; i < nrows; i++) {
+            result.add(constantRows.toRowResultSet(i, getNodeFactory(), getParserContext()));
+        }
+        return result;
+    }
+
     public void addRow(RowResultSetNode row) {
-        rows.add(row);
+        getRows().add(row);
+    }
+
+    /**
+     * Get the rows if they are still kept compactly, or
+     * <code>null</code> if they are nodes.
+     */
+    public ConstantRows getConstantRows() {
+        return constantRows;
     }
 
     public String statementToString() {
@@ -63,9 +105,16 @@ public class RowsResultSetNode extends FromTable
         super.copyFrom(node);
 
         RowsResultSetNode other = (RowsResultSetNode)node;
+        if (other.rows == null) {
+            // Not modified, so can be shared.
+            rows = null;
+            constantRows = other.constantRows;
+            return;
+        }
         rows = new ArrayList<RowResultSetNode>(other.rows.size());
         for (RowResultSetNode row : other.rows)
             rows.add((RowResultSetNode)getNodeFactory().copyNode(row, getParserContext()));
+        constantRows = null;
     }
 
     /**
@@ -77,6 +126,16 @@ public class RowsResultSetNode extends FromTable
 
     public void printSubNodes(int depth) {
         super.printSubNodes(depth);
+        List<RowResultSetNode> rows = this.rows;
+        if (rows == null) {
+            // Print the same as once made into nodes, without keeping them.
+            try {
+                rows = makeRows();
+            }
+            catch (StandardException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
         for (int index = 0; index < rows.size(); index++) {
             debugPrint(formatNodeString("[" + index + "]:", depth));
             RowResultSetNode row = rows.get(index);
@@ -94,6 +153,10 @@ public class RowsResultSetNode extends FromTable
     void acceptChildren(Visitor v) throws StandardException {
         super.acceptChildren(v);
 
+        if ((constantRows != null) && (v instanceof CompactConstantsVisitor))
+            return;
+
+        List<RowResultSetNode> rows = getRows();
         int size = rows.size();
         for (int index = 0; index < size; index++) {
             rows.set(index, (RowResultSetNode)rows.get(index).accept(v));
@@ -27,6 +27,16 @@ package com.foundationdb.sql.parser;
 
 import com.foundationdb.sql.StandardException;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -35,15 +45,19 @@ import java.util.Map;
 import java.util.Set;
 
 public class SQLParser implements SQLParserContext {
-    private String sqlText;
+    private CharSequence sqlText;
     private List<ParameterNode> parameterList;
+    private Object[] parameterValues;
     private boolean returnParameterFlag;
     private Map printedObjectsMap;
     private int generatedColumnNameIndex;
 
-    private StringCharStream charStream = null;
-    private SQLGrammarTokenManager tokenManager = null;
-    private SQLGrammar parser = null;
+    private CharSequenceCharStream charStream = null;
+    private ReaderCharStream readerCharStream = null;
+    private boolean parsingStatements;
+    private RecyclingTokenManager tokenManager = null;
+    private FastFailGrammar parser = null;
+    private StatementFingerprinter fingerprinter = null;
 
     private int maxStringLiteralLength = 65535;
     /* Identifiers (Constraint, Cursor, Function/Procedure, Index,
@@ -68,6 +82,23 @@ public class SQLParser implements SQLParserContext {
 
     NodeFactory nodeFactory;
 
+    private StatementCache statementCache;
+    private boolean parameterizeLiterals;
+    private IdentifierTable identifierTable = new IdentifierTable();
+    private boolean recycleTokens;
+    private int compactInListMinimum;
+    private int compactValuesMinimum;
+    private boolean lazyLiterals;
+    private boolean failFast;
+    private int maxTokenCount, maxNestingDepth, maxNodeCount;
+    private long maxParseMillis;
+    private int nodeCount;
+    private boolean countingNodes;  // Only while parsing.
+    // A copy of the settings for fail-fast errors, made when first
+    // needed and dropped by any setter. Features can be changed
+    // through getFeatures(), so they are compared instead.
+    private ConcurrentSQLParser settings;
+
     /** Make a new parser.
      * Parser can be reused.
      */
@@ -77,7 +108,7 @@ public class SQLParser implements SQLParserContext {
 
     /** Return the SQL string this parser just parsed. */
     public String getSQLText() {
-        return sqlText;
+        return (sqlText == null) ? null : sqlText.toString();
     }
 
     /** Return the parameters to the parsed statement. */
@@ -85,6 +116,16 @@ public class SQLParser implements SQLParserContext {
         return parameterList;
     }
 
+    /** Return the values of literals turned into parameters, indexed
+     * by parameter number, or <code>null</code> if there were none.
+     * Parameters that were explicit in the statement have a
+     * <code>null</code> value.
+     * @see #setParameterizeLiterals
+     */
+    public Object[] getParameterValues() {
+        return parameterValues;
+    }
+
     /**
      * Looks up an unnamed parameter given its parameter number.
      *
@@ -99,29 +140,195 @@ public class SQLParser implements SQLParserContext {
 
     /** Normal external parser entry. */
     public StatementNode parseStatement(String sqlText) throws StandardException {
+        if (statementCache != null)
+            return statementCache.parseStatement(this, sqlText);
+        return parseStatementUncached(sqlText);
+    }
+
+    /** Parse a statement from any sequence of characters, such as a
+     * {@link CharBuffer}, without first copying it into a string.
+     * The statement cache is only consulted for a <code>String</code>.
+     */
+    public StatementNode parseStatement(CharSequence sqlText) throws StandardException {
+        if (sqlText instanceof String)
+            return parseStatement((String)sqlText);
+        return parseSingleStatement(sqlText, null);
+    }
+
+    /** Parse a statement from part of a character array, without
+     * copying it.
+     */
+    public StatementNode parseStatement(char[] sqlChars, int offset, int length)
+            throws StandardException {
+        return parseStatement(CharBuffer.wrap(sqlChars, offset, length));
+    }
+
+    /** Parse a statement from encoded bytes, decoding them as they are
+     * lexed.
+     */
+    public StatementNode parseStatement(ByteBuffer sqlBytes, Charset charset)
+            throws StandardException {
+        return parseSingleStatement(null, new ByteBufferReader(sqlBytes, charset));
+    }
+
+    /** Parse a statement from a file, which is mapped into memory and
+     * decoded as it is lexed.
+     */
+    public StatementNode parseStatement(File sqlFile, Charset charset)
+            throws StandardException {
+        ByteBuffer sqlBytes;
         try {
-            reinit(sqlText);
-            return parser.parseStatement(sqlText, parameterList);
+            FileInputStream istr = new FileInputStream(sqlFile);
+            try {
+                FileChannel channel = istr.getChannel();
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE)
+                    throw new StandardException("SQL file too large to map: " + 
+                                                sqlFile + " is " + size + " bytes");
+                sqlBytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            finally {
+                istr.close();   // Mapping remains valid.
+            }
+        }
+        catch (IOException ex) {
+            throw new StandardException(ex);
+        }
+        return parseStatement(sqlBytes, charset);
+    }
+
+    /** Parse without consulting any statement cache. */
+    StatementNode parseStatementUncached(String sqlText) throws StandardException {
+        return parseSingleStatement(sqlText, null);
+    }
+
+    /** Parse a single statement from the given text or, if that is
+     * <code>null</code>, reader.
+     */
+    private StatementNode parseSingleStatement(CharSequence sqlText, Reader sqlReader)
+            throws StandardException {
+        try {
+            if (sqlReader == null)
+                reinit(sqlText);
+            else
+                reinit(sqlReader);
+            List<ValueNode> literals = null;
+            if (parameterizeLiterals)
+                literals = new ArrayList<ValueNode>();
+            StatementNode statement = parser.parseStatement(this.sqlText, parameterList, literals);
+            if (sqlReader != null)
+                checkReadError();
+            if (parameterizeLiterals)
+                parameterValues = LiteralParameterizer.parameterize(statement, literals,
+                                                                    parameterList, this);
+            return statement;
         }
         catch (ParseException ex) {
-            throw new SQLParserException(standardizeEol(ex.getMessage()),
-                                         ex, 
-                                         tokenErrorPosition(ex.currentToken, sqlText));
+            if (sqlReader != null)
+                checkReadError();
+            throw syntaxError(ex, this.sqlText, Entry.STATEMENT);
+        }
+        catch (TokenMgrError ex) {
+            if (sqlReader != null)
+                checkReadError();
+            throw lexicalError(ex, this.sqlText);
+        }
+        catch (StackOverflowError ex) {
+            throw nestedTooDeeply();
+        }
+        finally {
+            countingNodes = false;
+        }
+    }
+
+    /** Classify a statement from its leading tokens, without parsing
+     * it or building any nodes.
+     * A statement that cannot be lexed is {@link
+     * StatementClassification#UNKNOWN}.
+     */
+    public StatementClassification classifyStatement(CharSequence sqlText) 
+            throws StandardException {
+        try {
+            if (parser == null)
+                reinit(sqlText); // Token manager needs a parser for features.
+            this.sqlText = sqlText;
+            parsingStatements = false;
+            // Lex from the start, bypassing the parser.
+            if (charStream == null)
+                charStream = newCharStream(sqlText);
+            else
+                charStream.ReInit(sqlText);
+            tokenManager.ReInit(charStream);
+            tokenManager.setLimits(0, 0);
+            return StatementClassification.classify(tokenManager);
         }
         catch (TokenMgrError ex) {
-            // Throw away the cached parser.
-            parser = null;
             if (ex.errorCode == TokenMgrError.LEXICAL_ERROR)
-                throw new SQLParserException(ex.getMessage(),
-                                             ex,
-                                             lineColumnErrorPosition(ex.errorLine,
-                                                                     ex.errorColumn,
-                                                                     sqlText));
+                return StatementClassification.UNKNOWN;
             else
                 throw new StandardException(ex);
         }
     }
 
+    /** Get a hash of a statement that is the same for statements
+     * that differ only in their literals, white space, comments and
+     * the case of keywords and names, without parsing it.
+     * @see StatementFingerprinter
+     */
+    public long fingerprintStatement(CharSequence sqlText) throws StandardException {
+        return fingerprint(sqlText, null, null);
+    }
+
+    /** Get a 128-bit hash of a statement, as with {@link
+     * #fingerprintStatement(CharSequence)}, into the first two
+     * elements of the given array.
+     */
+    public void fingerprintStatement(CharSequence sqlText, long[] fingerprint) 
+            throws StandardException {
+        fingerprint(sqlText, fingerprint, null);
+    }
+
+    /** Get the text from which a statement's fingerprint is computed:
+     * its tokens separated by single spaces, keywords in upper case
+     * and names in lower case, and <code>?</code> in place of each
+     * literal or parameter. Since the statement is not parsed, a
+     * name that is also a non-reserved keyword is in upper case.
+     */
+    public String normalizeStatement(CharSequence sqlText) throws StandardException {
+        StringBuilder str = new StringBuilder(sqlText.length());
+        fingerprint(sqlText, null, str);
+        return str.toString();
+    }
+
+    private long fingerprint(CharSequence sqlText, long[] fingerprint, 
+                             StringBuilder normalized)
+            throws StandardException {
+        try {
+            if (parser == null)
+                reinit(sqlText); // Token manager needs a parser for features.
+            this.sqlText = sqlText;
+            parsingStatements = false;
+            if (charStream == null)
+                charStream = newCharStream(sqlText);
+            else
+                charStream.ReInit(sqlText);
+            tokenManager.ReInit(charStream);
+            tokenManager.setLimits(0, 0);
+            tokenManager.setScanning(true);
+            if (fingerprinter == null)
+                fingerprinter = new StatementFingerprinter();
+            return fingerprinter.fingerprint(tokenManager, sqlText, 
+                                             fingerprint, normalized);
+        }
+        catch (TokenMgrError ex) {
+            throw lexicalError(ex, sqlText);
+        }
+        finally {
+            if (tokenManager != null)
+                tokenManager.setScanning(false);
+        }
+    }
+
     /** Parse multiple statements delimited by semicolons. */
     public List<StatementNode> parseStatements(String sqlText) throws StandardException {
         try {
@@ -129,22 +336,277 @@ public class SQLParser implements SQLParserContext {
             return parser.parseStatements(sqlText);
         }
         catch (ParseException ex) {
+            throw syntaxError(ex, sqlText, Entry.STATEMENTS);
+        }
+        catch (TokenMgrError ex) {
+            throw lexicalError(ex, sqlText);
+        }
+        catch (StackOverflowError ex) {
+            throw nestedTooDeeply();
+        }
+        finally {
+            countingNodes = false;
+        }
+    }
+
+    /** Parse multiple statements delimited by semicolons only to
+     * tell the given listener what they refer to. The trees are
+     * dropped as soon as they are built and no statement cache is
+     * consulted. Unlike {@link #parseStatements}, parameters are allowed.
+     * <p>The grammar actions still build every node, since they read
+     * what they built; not building any would need a second grammar.
+     * So this allocates about as much as parsing and visiting does.
+     */
+    public void scanStatements(String sqlText, SQLParserListener listener) 
+            throws StandardException {
+        try {
+            reinit(sqlText);
+            parser.scanStatements(sqlText, listener);
+        }
+        catch (ParseException ex) {
+            throw syntaxError(ex, sqlText, Entry.SCAN);
+        }
+        catch (TokenMgrError ex) {
+            throw lexicalError(ex, sqlText);
+        }
+        catch (StackOverflowError ex) {
+            throw nestedTooDeeply();
+        }
+        finally {
+            countingNodes = false;
+        }
+    }
+
+    /** Begin parsing multiple statements delimited by semicolons from
+     * the given reader. The statements are returned one at a time by
+     * {@link #nextStatement}; only the text of the one being parsed is
+     * kept in memory.
+     */
+    public void beginStatements(Reader reader) throws StandardException {
+        try {
+            reinit(reader);
+        }
+        catch (TokenMgrError ex) {
+            // Cannot go on with the rest of the input.
+            parsingStatements = false;
+            checkReadError();
+            if (parser != null)
+                parser.recoverFromTokenError();
+            if (ex instanceof RecyclingTokenManager.LimitError)
+                throw ((RecyclingTokenManager.LimitError)ex).toException();
+            if (ex.errorCode == TokenMgrError.LEXICAL_ERROR)
+                throw new SQLParserException(ex.getMessage(),
+                                             ex,
+                                             readerCharStream.getEndOffset() + 1);
+            else
+                throw new StandardException(ex);
+        }
+        // The text of a failed statement is not kept for a message.
+        parser.setFailFast(false);
+        parser.beginStatements(readerCharStream.getRetainedText());
+        parsingStatements = true;
+    }
+
+    /** Begin parsing multiple statements delimited by semicolons from
+     * the given channel, decoded with the given character set.
+     * @see #beginStatements(Reader)
+     */
+    public void beginStatements(ReadableByteChannel channel, Charset charset) 
+            throws StandardException {
+        beginStatements(Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+
+    /** Parse the next statement from the input given to {@link
+     * #beginStatements}, returning <code>null</code> when there are no
+     * more.
+     * The statement's begin and end offsets, as well as the position
+     * of any error, are from the start of the whole input, so that a
+     * failed script can be resumed after the last statement that
+     * succeeded.
+     */
+    public StatementNode nextStatement() throws StandardException {
+        if (!parsingStatements)
+            throw new IllegalStateException("beginStatements not called");
+        try {
+            parameterList = new ArrayList<ParameterNode>();
+            startLimits();
+            StatementNode statement = parser.parseNextStatement();
+            // One ended by a semicolon is whole even if the input is not.
+            if (parser.token.kind != SQLGrammarConstants.SEMICOLON)
+                checkReadError();
+            // Text up to the end of this statement no longer needed.
+            readerCharStream.release(parser.token.endOffset + 1);
+            return statement;
+        }
+        catch (ParseException ex) {
+            checkReadError();
+            tokenManager.discard();
+            int position = 0;
+            if (ex.currentToken != null)
+                position = ex.currentToken.next.beginOffset + 1;
             throw new SQLParserException(standardizeEol(ex.getMessage()),
-                                         ex, 
-                                         tokenErrorPosition(ex.currentToken, sqlText));
+                                         ex, position);
         }
         catch (TokenMgrError ex) {
-            // Throw away the cached parser.
-            parser = null;
+            // Cannot go on with the rest of the input.
+            parsingStatements = false;
+            checkReadError();
+            if (parser != null)
+                parser.recoverFromTokenError();
+            if (ex instanceof RecyclingTokenManager.LimitError)
+                throw ((RecyclingTokenManager.LimitError)ex).toException();
             if (ex.errorCode == TokenMgrError.LEXICAL_ERROR)
                 throw new SQLParserException(ex.getMessage(),
                                              ex,
-                                             lineColumnErrorPosition(ex.errorLine,
-                                                                     ex.errorColumn,
-                                                                     sqlText));
+                                             readerCharStream.getEndOffset() + 1);
             else
                 throw new StandardException(ex);
         }
+        catch (StackOverflowError ex) {
+            parsingStatements = false;
+            throw nestedTooDeeply();
+        }
+        finally {
+            countingNodes = false;
+        }
+    }
+
+    /** If the reader being parsed from failed, then what looked like
+     * the end of the input, or an error from it being cut short, was
+     * not, so report the failure instead.
+     */
+    private void checkReadError() throws StandardException {
+        IOException ex = readerCharStream.getReadError();
+        if (ex != null) {
+            parsingStatements = false;
+            throw new StandardException("Error reading SQL: " + ex.getMessage(), ex);
+        }
+    }
+
+    /** What was being parsed, so that it can be parsed again to get
+     * the message for an error found while failing fast.
+     */
+    private enum Entry { STATEMENT, STATEMENTS, SCAN }
+
+    /** Make the exception for a syntax error in the given text. */
+    private StandardException syntaxError(ParseException ex, CharSequence sql, Entry entry) {
+        if (ex instanceof FastFailGrammar.FastFailParseException) {
+            // Holds no tokens, so they can be recycled.
+            int offset = ((FastFailGrammar.FastFailParseException)ex).getErrorOffset();
+            return new FastFailException(offset + 1, sql.toString(), entry,
+                                         getSettings());
+        }
+        tokenManager.discard();
+        return new SQLParserException(standardizeEol(ex.getMessage()),
+                                      ex, 
+                                      tokenErrorPosition(ex.currentToken, sql));
+    }
+
+    /** Make the exception for a lexical error in the given text. The
+     * parser is still good for the next statement.
+     */
+    private StandardException lexicalError(TokenMgrError ex, CharSequence sql) {
+        if (parser != null)     // Unless failed making it.
+            parser.recoverFromTokenError();
+        if (ex instanceof RecyclingTokenManager.LimitError)
+            return ((RecyclingTokenManager.LimitError)ex).toException();
+        if (ex.errorCode == TokenMgrError.LEXICAL_ERROR)
+            return new SQLParserException(ex.getMessage(),
+                                          ex,
+                                          lineColumnErrorPosition(ex.errorLine,
+                                                                  ex.errorColumn,
+                                                                  sql));
+        else
+            return new StandardException(ex);
+    }
+
+    /** Make the exception for running out of stack, which only a
+     * deeply nested statement should do. Where is not known.
+     */
+    private StandardException nestedTooDeeply() {
+        if (parser != null)
+            parser.recoverFromTokenError();
+        return new SQLParserLimitException(SQLParserLimitException.Limit.NESTING_DEPTH,
+                                           "Statement nested too deeply", 0);
+    }
+
+    /** Start enforcing limits on the statement about to be parsed. */
+    private void startLimits() {
+        tokenManager.setLimits(maxTokenCount, maxParseMillis);
+        nodeCount = 0;
+        countingNodes = (maxNodeCount > 0);
+    }
+
+    /** Get a copy of the current settings, which does not change. */
+    private ConcurrentSQLParser getSettings() {
+        if ((settings == null) || !settings.getFeatures().equals(features))
+            settings = new ConcurrentSQLParser(this);
+        return settings;
+    }
+
+    /** A syntax error found while failing fast, whose message is only
+     * worked out when asked for, by parsing the text again.
+     */
+    static class FastFailException extends SQLParserException {
+        private final String sql;
+        private final Entry entry;
+        private final ConcurrentSQLParser settings;
+        private String message;
+
+        FastFailException(int errorPosition, String sql, Entry entry, 
+                          ConcurrentSQLParser settings) {
+            super(null, null, errorPosition);
+            this.sql = sql;
+            this.entry = entry;
+            this.settings = settings;
+        }
+
+        @Override
+        public String getMessage() {
+            if (message == null) {
+                SQLParser parser = settings.newParser();
+                parser.setFailFast(false);
+                // Not stopping short of the error this time.
+                parser.setMaxTokenCount(0);
+                parser.setMaxNodeCount(0);
+                parser.setMaxParseMillis(0);
+                try {
+                    switch (entry) {
+                    case STATEMENT:
+                        parser.parseStatementUncached(sql);
+                        break;
+                    case STATEMENTS:
+                        parser.parseStatements(sql);
+                        break;
+                    case SCAN:
+                        parser.scanStatements(sql, null);
+                        break;
+                    }
+                    message = "Syntax error";
+                }
+                catch (StandardException ex) {
+                    message = ex.getMessage();
+                }
+            }
+            return message;
+        }
+
+        ConcurrentSQLParser getSettings() {
+            return settings;
+        }
+
+        @Override
+        SQLParserException withPositionOffset(int offset) {
+            FastFailException shifted = 
+                new FastFailException(shiftedPosition(offset), sql, entry, settings);
+            shifted.message = message;
+            return shifted;
+        }
+
+        @Override
+        public Throwable fillInStackTrace() {
+            return this;
+        }
     }
 
     /** Undo ParseException.initialise()'s eol handling. 
@@ -159,18 +621,20 @@ public class SQLParser implements SQLParserContext {
     }
 
     /** Translate position of token into linear position. */
-    private static int tokenErrorPosition(Token token, String sql) {
+    private static int tokenErrorPosition(Token token, CharSequence sql) {
         if (token == null) return 0;
         return lineColumnErrorPosition(token.next.beginLine, token.next.beginColumn, sql);
     }
 
     /** Translate line position into linear position. */
-    private static int lineColumnErrorPosition(int line, int column, String sql) {
+    private static int lineColumnErrorPosition(int line, int column, CharSequence sql) {
         if (line <= 0) return 0;
         int position = 0;
+        int length = sql.length();
         while (line-- > 1) {
-            position = sql.indexOf('\n', position);
-            if (position < 0)
+            while ((position < length) && (sql.charAt(position) != '\n'))
+                position++;
+            if (position >= length)
                 return 0;
             position++;
         }
@@ -178,40 +642,340 @@ public class SQLParser implements SQLParserContext {
         return position;
     }
 
-    protected void reinit(String sqlText) throws StandardException {
+    protected void reinit(CharSequence sqlText) throws StandardException {
         this.sqlText = sqlText;
+        parsingStatements = false;
         if (charStream == null) {
-            charStream = new StringCharStream(sqlText);
+            charStream = newCharStream(sqlText);
         }
         else {
             charStream.ReInit(sqlText);
         }
+        charStream.setIdentifierTable(identifierTable);
+        reinit(charStream);
+    }
+
+    /** The token manager asks for the line and column of every token,
+     * so they are all still worked out, but in one pass forward per
+     * token rather than per character read, and backing up over a
+     * lookahead is just a rewind.
+     */
+    private static CharSequenceCharStream newCharStream(CharSequence sqlText) {
+        CharSequenceCharStream charStream = new CharSequenceCharStream(sqlText);
+        charStream.setLazyLines(true);
+        return charStream;
+    }
+
+    protected void reinit(Reader reader) throws StandardException {
+        if (readerCharStream == null) {
+            readerCharStream = new ReaderCharStream(reader);
+        }
+        else {
+            readerCharStream.ReInit(reader);
+        }
+        readerCharStream.setIdentifierTable(identifierTable);
+        this.sqlText = readerCharStream.getRetainedText();
+        parsingStatements = false;
+        reinit(readerCharStream);
+    }
+
+    private void reinit(CharStream charStream) throws StandardException {
         if (tokenManager == null) {
-            tokenManager = new SQLGrammarTokenManager(null, charStream);
+            tokenManager = new RecyclingTokenManager(null, charStream);
         } 
         else {
             tokenManager.ReInit(charStream);
         }
+        startLimits();
         if (parser == null) {
-            parser = new SQLGrammar(tokenManager);
+            parser = new FastFailGrammar(tokenManager);
             parser.setParserContext(this);
         }
         else {
-            parser.ReInit(tokenManager);
+            parser.restart(tokenManager);
         }
+        parser.setIdentifierTable(identifierTable);
+        parser.setCompactInListMinimum(compactInListMinimum);
+        parser.setCompactValuesMinimum(compactValuesMinimum);
+        parser.setLazyLiterals(lazyLiterals);
+        parser.setFailFast(failFast);
+        parser.setMaxNestingDepth(maxNestingDepth);
         tokenManager.parser = parser;
+        tokenManager.setRecycling(recycleTokens);
         parameterList = new ArrayList<ParameterNode>();
+        parameterValues = null;
         returnParameterFlag = false;
         printedObjectsMap = null;
         generatedColumnNameIndex = 1;
     }
 
+    /** Reset state as though the given statement had just been parsed,
+     * when its tree actually came from a {@link StatementCache}.
+     */
+    void reinitFromCache(String sqlText, List<ParameterNode> parameterList,
+                         Object[] parameterValues) {
+        this.sqlText = sqlText;
+        this.parameterList = parameterList;
+        this.parameterValues = parameterValues;
+        parsingStatements = false;
+        returnParameterFlag = false;
+        printedObjectsMap = null;
+    }
+
+    /** Get the cache consulted by {@link #parseStatement}, if any. */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /** Set a cache for {@link #parseStatement} to consult, or
+     * <code>null</code> for none.
+     */
+    public void setStatementCache(StatementCache statementCache) {
+        settings = null;
+        this.statementCache = statementCache;
+    }
+
+    /** Get the table of names shared by parsed trees, if any. */
+    public IdentifierTable getIdentifierTable() {
+        return identifierTable;
+    }
+
+    /** Set the table from which the names of keywords and
+     * identifiers are taken, so that trees share a single copy of
+     * each one. The same table can be given to parsers in other
+     * threads. <code>null</code> means make new strings every time.
+     */
+    public void setIdentifierTable(IdentifierTable identifierTable) {
+        settings = null;
+        this.identifierTable = identifierTable;
+    }
+
+    /** Are numeric and character literals in DML statements turned
+     * into parameters?
+     */
+    public boolean isParameterizeLiterals() {
+        return parameterizeLiterals;
+    }
+
+    /** Set whether numeric and character literals in DML statements
+     * are turned into parameters. When they are, the parsed statement
+     * is a template that is the same for all statements differing
+     * only in those literals; the parameters added follow any that
+     * were explicit and their values are available from {@link
+     * #getParameterValues}.
+     * <p>Every statement is still parsed in full: a {@link
+     * StatementCache} is keyed on the exact text, so statements that
+     * differ only in their literals each miss it once. The template
+     * is for keying later caches, such as of plans.
+     */
+    public void setParameterizeLiterals(boolean parameterizeLiterals) {
+        settings = null;
+        this.parameterizeLiterals = parameterizeLiterals;
+    }
+
+    /** Are the token objects of statements already parsed reused? */
+    public boolean isRecycleTokens() {
+        return recycleTokens;
+    }
+
+    /** Set whether the token objects of statements already parsed
+     * are reused for later ones, rather than allocating new tokens
+     * throughout. This saves garbage when parsing many statements,
+     * whether from a single script or one at a time. The trees are
+     * the same either way, since nodes do not refer to tokens.
+     */
+    public void setRecycleTokens(boolean recycleTokens) {
+        settings = null;
+        this.recycleTokens = recycleTokens;
+    }
+
+    /** Get the number of literals from which an IN list is kept
+     * compactly, or <code>0</code> if never.
+     */
+    public int getCompactInListMinimum() {
+        return compactInListMinimum;
+    }
+
+    /** Set the number of literals, all integers, approximate numbers
+     * or strings, from which the right side of an IN list is kept as
+     * a {@link ConstantInList} rather than a node for each one. This
+     * makes very long lists much smaller and quicker to parse. The
+     * nodes are made if asked for, such as by a visitor. The default
+     * is <code>0</code>, meaning never. Lists are not compact when
+     * literals are parameterized.
+     * @see InListOperatorNode#getRightOperandConstants
+     */
+    public void setCompactInListMinimum(int compactInListMinimum) {
+        settings = null;
+        this.compactInListMinimum = compactInListMinimum;
+    }
+
+    /** Get the number of rows of literals from which a
+     * <code>VALUES</code> is kept compactly, or <code>0</code> if never.
+     */
+    public int getCompactValuesMinimum() {
+        return compactValuesMinimum;
+    }
+
+    /** Set the number of rows, each all numeric, string, boolean or
+     * <code>NULL</code> literals, from which a multi-row
+     * <code>VALUES</code> is kept as {@link ConstantRows} stored by
+     * column rather than a row node with result columns and constant
+     * nodes. If any row has something else, all are nodes. The nodes
+     * are made if asked for, such as by a visitor. The default is
+     * <code>0</code>, meaning never. Rows are not compact when
+     * literals are parameterized.
+     * @see RowsResultSetNode#getConstantRows
+     */
+    public void setCompactValuesMinimum(int compactValuesMinimum) {
+        settings = null;
+        this.compactValuesMinimum = compactValuesMinimum;
+    }
+
+    /** Are the values of literals decoded only when asked for? */
+    public boolean isLazyLiterals() {
+        return lazyLiterals;
+    }
+
+    /** Set whether exact numeric and single-quoted string literals
+     * keep their text, to be turned into an <code>Integer</code>,
+     * <code>Long</code>, <code>BigDecimal</code> or
+     * <code>String</code> only when {@link ConstantNode#getValue} is
+     * first called. The type of each constant is the same either way.
+     * This saves time when most values are never looked at, as when
+     * statements are only routed or printed.
+     */
+    public void setLazyLiterals(boolean lazyLiterals) {
+        settings = null;
+        this.lazyLiterals = lazyLiterals;
+    }
+
+    RecyclingTokenManager getTokenManager() {
+        return tokenManager;
+    }
+
+    /** Are syntax errors reported without their message until it is
+     * asked for?
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /** Set whether a syntax error is reported by a {@link
+     * SQLParserException} that knows only its position and has no
+     * stack trace, so that rejecting bad input costs little more than
+     * accepting good. Its message, which lists the tokens that were
+     * expected, is only worked out by {@link Throwable#getMessage},
+     * which parses the text again. The position counts characters
+     * rather than columns, so is unaffected by tabs. Statements read
+     * by {@link #nextStatement} do not fail fast, since their text is
+     * not kept. The default is <code>false</code>.
+     */
+    public void setFailFast(boolean failFast) {
+        settings = null;
+        this.failFast = failFast;
+    }
+
+    /** Get the most tokens in a statement, or <code>0</code> for no limit. */
+    public int getMaxTokenCount() {
+        return maxTokenCount;
+    }
+
+    /** Set the most tokens, including one or two of lookahead, that a
+     * statement may have. The default is <code>0</code>, meaning no
+     * limit.
+     * @see SQLParserLimitException.Limit#TOKEN_COUNT
+     */
+    public void setMaxTokenCount(int maxTokenCount) {
+        settings = null;
+        this.maxTokenCount = maxTokenCount;
+    }
+
+    /** Get the most levels of nested expressions and queries, or
+     * <code>0</code> for no limit.
+     */
+    public int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+
+    /** Set the most levels that expressions and queries may be nested
+     * inside one another, counting each parenthesized expression,
+     * argument, subquery and set operation. The default is
+     * <code>0</code>, meaning no limit other than the stack, running
+     * out of which fails the same way.
+     * @see SQLParserLimitException.Limit#NESTING_DEPTH
+     */
+    public void setMaxNestingDepth(int maxNestingDepth) {
+        settings = null;
+        this.maxNestingDepth = maxNestingDepth;
+    }
+
+    /** Get the most nodes in the tree for a statement, or
+     * <code>0</code> for no limit.
+     */
+    public int getMaxNodeCount() {
+        return maxNodeCount;
+    }
+
+    /** Set the most nodes that parsing a statement may make. Nodes
+     * not made because they are kept compactly do not count, nor do
+     * ones made after the parse, as when copying. Only nodes made by
+     * the default {@link NodeFactory} are counted. The default is
+     * <code>0</code>, meaning no limit.
+     * @see SQLParserLimitException.Limit#NODE_COUNT
+     */
+    public void setMaxNodeCount(int maxNodeCount) {
+        settings = null;
+        this.maxNodeCount = maxNodeCount;
+    }
+
+    /** Count a node made while parsing and check that the statement
+     * does not have too many.
+     */
+    void countNode() throws StandardException {
+        if (countingNodes && (++nodeCount > maxNodeCount))
+            throw new SQLParserLimitException(SQLParserLimitException.Limit.NODE_COUNT,
+                                              "Statement has more than " + maxNodeCount + " nodes",
+                                              parser.getToken(0).endOffset + 1);
+    }
+
+    /** Get the most milliseconds that a parse may take, or
+     * <code>0</code> for no limit.
+     */
+    public long getMaxParseMillis() {
+        return maxParseMillis;
+    }
+
+    /** Set the most time that a call to parse may take, which for
+     * {@link #nextStatement} is for that statement only. The clock is
+     * checked as tokens are read, every few dozen, so the limit is
+     * only approximate. The default is <code>0</code>, meaning no limit.
+     * @see SQLParserLimitException.Limit#PARSE_TIME
+     */
+    public void setMaxParseMillis(long maxParseMillis) {
+        settings = null;
+        this.maxParseMillis = maxParseMillis;
+    }
+
+    /** Make the parse in progress on another thread fail, when it
+     * next reads a token, with {@link
+     * SQLParserLimitException.Limit#CANCELLED}. Does nothing if this
+     * parser has not yet parsed anything. A parse started after the
+     * call is not affected.
+     */
+    public void cancel() {
+        RecyclingTokenManager tokenManager = this.tokenManager;
+        if (tokenManager != null)
+            tokenManager.cancel();
+    }
+
     /** Get maximum length of a string literal. */
     public int getMaxStringLiteralLength() {
         return maxStringLiteralLength;
     }
     /** Set maximum length of a string literal. */
     public void setMaxStringLiteralLength(int maxLength) {
+        settings = null;
         maxStringLiteralLength = maxLength;
     }
 
@@ -228,6 +992,7 @@ public class SQLParser implements SQLParserContext {
     }
     /** Set maximum length of an identifier. */
     public void setMaxIdentifierLength(int maxLength) {
+        settings = null;
         maxIdentifierLength = maxLength;
     }
 
@@ -248,6 +1013,7 @@ public class SQLParser implements SQLParserContext {
         return messageLocale;
     }
     public void setMessageLocale(String locale) {
+        settings = null;
         messageLocale = locale;
     }
 
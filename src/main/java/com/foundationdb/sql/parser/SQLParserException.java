@@ -30,4 +30,16 @@ public class SQLParserException extends StandardException
     public int getErrorPosition() {
         return errorPosition;
     }
+
+    /** The same error, found in text that began <code>offset</code>
+     * characters into a larger script.
+     */
+    SQLParserException withPositionOffset(int offset) {
+        return new SQLParserException(getMessage(), getCause(), 
+                                      shiftedPosition(offset));
+    }
+
+    protected int shiftedPosition(int offset) {
+        return (errorPosition > 0) ? errorPosition + offset : errorPosition;
+    }
 }
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+/**
+ * A statement was given up on because it exceeded one of the limits
+ * set on the {@link SQLParser}, or the parse was cancelled.
+ */
+public class SQLParserLimitException extends SQLParserException
+{
+    public enum Limit {
+        /** {@link SQLParser#setMaxTokenCount} */
+        TOKEN_COUNT,
+        /** {@link SQLParser#setMaxNestingDepth}, or the stack ran out. */
+        NESTING_DEPTH,
+        /** {@link SQLParser#setMaxNodeCount} */
+        NODE_COUNT,
+        /** {@link SQLParser#setMaxParseMillis} */
+        PARSE_TIME,
+        /** {@link SQLParser#cancel} */
+        CANCELLED
+    }
+
+    private final Limit limit;
+
+    public SQLParserLimitException(Limit limit, String msg, int errorPosition) {
+        super(msg, null, errorPosition);
+        this.limit = limit;
+    }
+
+    /** Get the limit that was exceeded. */
+    public Limit getLimit() {
+        return limit;
+    }
+
+    @Override
+    SQLParserException withPositionOffset(int offset) {
+        return new SQLParserLimitException(limit, getMessage(), 
+                                           shiftedPosition(offset));
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+/**
+ * Told by the parser what a statement refers to as it is parsed, for
+ * callers that want only that and not the tree.
+ * <p>
+ * Events come in the order that their tokens appear in the text,
+ * which is not always the order of the tree. For instance, the
+ * columns in a select list are reported before the tables in the
+ * <code>FROM</code> clause.
+ * @see SQLParser#scanStatements
+ */
+public interface SQLParserListener
+{
+    /**
+     * Called before each statement is parsed.
+     * @param kind The kind of statement, from its first token.
+     */
+    void onStatementStart(StatementClassification.Kind kind) throws StandardException;
+
+    /** Called once the whole statement has been parsed. */
+    void onStatementEnd() throws StandardException;
+
+    /**
+     * Called for a table that a query reads or that is the target of
+     * an <code>INSERT</code>, <code>UPDATE</code> or <code>DELETE</code>.
+     * Tables named only by DDL are not reported. As with columns, the
+     * name is not bound, so it may turn out to be a view or the name
+     * of a <code>WITH</code> query.
+     */
+    void onTableReference(TableName tableName) throws StandardException;
+
+    /**
+     * Called for a possibly qualified column name. The name has not
+     * been bound, so an unqualified one may belong to any table in
+     * scope, or to none.
+     */
+    void onColumnReference(ColumnReference columnReference) throws StandardException;
+
+    /**
+     * Called for a <code>?</code> or <code>$n</code> parameter.
+     * @param number The zero-based parameter number.
+     */
+    void onParameter(int number) throws StandardException;
+}
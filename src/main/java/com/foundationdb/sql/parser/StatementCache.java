@@ -0,0 +1,325 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded cache of parsed statements, keyed by SQL text together
+ * with the parser settings that affect the result.
+ * <p>
+ * Install with {@link SQLParser#setStatementCache}. The cache holds
+ * a copy of the parsed tree, which does not refer to the parser that
+ * made it, and hands each caller its own copy made with {@link
+ * NodeFactory#copyNode}, so that callers are free to modify what they
+ * get back.
+ * <p>
+ * The key is the exact SQL text, even when {@link
+ * SQLParser#setParameterizeLiterals} is on. Statements that differ only
+ * in their literals have the same template but separate entries.
+ * <p>
+ * Entries are evicted least recently used first, once either the
+ * number of entries or their total weight (the length of the SQL
+ * text) exceeds the configured limit. A single cache can be shared
+ * by several parsers, including ones on different threads.
+ */
+public class StatementCache
+{
+    private final int maxEntries;
+    private final long maxWeight;
+    private final Map<Key,Entry> entries;
+    private long weight;
+    private long hits, misses, evictions;
+
+    /**
+     * Make a new cache limited by number of entries only.
+     * @param maxEntries The maximum number of statements to keep.
+     */
+    public StatementCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Make a new cache.
+     * @param maxEntries The maximum number of statements to keep.
+     * @param maxWeight The maximum total length of the SQL text of
+     * the statements kept.
+     */
+    public StatementCache(int maxEntries, long maxWeight) {
+        if ((maxEntries <= 0) || (maxWeight <= 0))
+            throw new IllegalArgumentException("Cache limits must be positive");
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.entries = new LinkedHashMap<Key,Entry>(16, 0.75f, true);
+    }
+
+    static final class Key {
+        private final String sqlText;
+        private final Set<SQLParserFeature> features;
+        private final SQLParserContext.IdentifierCase identifierCase;
+        private final boolean parameterizeLiterals, lazyLiterals;
+        // The limits that a statement must have been parsed within
+        // and the sizes at which lists are kept compact.
+        private final long[] limits;
+        private final int hashCode;
+
+        Key(String sqlText, SQLParser parser) {
+            this.sqlText = sqlText;
+            this.features = EnumSet.copyOf(parser.getFeatures());
+            this.identifierCase = parser.getIdentifierCase();
+            this.parameterizeLiterals = parser.isParameterizeLiterals();
+            this.lazyLiterals = parser.isLazyLiterals();
+            this.limits = new long[] {
+                parser.getMaxTokenCount(),
+                parser.getMaxNestingDepth(),
+                parser.getMaxNodeCount(),
+                parser.getMaxParseMillis(),
+                parser.getMaxStringLiteralLength(),
+                parser.getMaxIdentifierLength(),
+                parser.getCompactInListMinimum(),
+                parser.getCompactValuesMinimum()
+            };
+            this.hashCode = ((((sqlText.hashCode() * 31 + features.hashCode()) * 31 +
+                               identifierCase.hashCode()) * 31 + Arrays.hashCode(limits)) * 2 +
+                             (parameterizeLiterals ? 1 : 0)) * 2 + (lazyLiterals ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key)obj;
+            return ((hashCode == other.hashCode) &&
+                    (identifierCase == other.identifierCase) &&
+                    (parameterizeLiterals == other.parameterizeLiterals) &&
+                    (lazyLiterals == other.lazyLiterals) &&
+                    Arrays.equals(limits, other.limits) &&
+                    sqlText.equals(other.sqlText) &&
+                    features.equals(other.features));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    static final class Entry {
+        private final StatementNode statement;
+        private final int nparameters;
+        private final Object[] parameterValues;
+
+        Entry(StatementNode statement, int nparameters, Object[] parameterValues) {
+            this.statement = statement;
+            this.nparameters = nparameters;
+            this.parameterValues = parameterValues;
+        }
+    }
+
+    /** The context of a cached tree, which answers what its nodes
+     * might ask without keeping the parser that made them reachable.
+     */
+    static final class DetachedContext implements SQLParserContext {
+        private final Set<SQLParserFeature> features;
+        private final IdentifierCase identifierCase;
+        private final NodeFactory nodeFactory;
+
+        DetachedContext(SQLParser parser) {
+            this.features = EnumSet.copyOf(parser.getFeatures());
+            this.identifierCase = parser.getIdentifierCase();
+            this.nodeFactory = parser.getNodeFactory();
+        }
+
+        // Nothing is parsed in this context.
+        public void checkStringLiteralLengthLimit(String image) {
+        }
+
+        public void checkIdentifierLengthLimit(String identifier) {
+        }
+
+        public void setReturnParameterFlag() {
+        }
+
+        public void setMessageLocale(String locale) {
+        }
+
+        public NodeFactory getNodeFactory() {
+            return nodeFactory;
+        }
+
+        public Map getPrintedObjectsMap() {
+            // Shared between threads, so none is kept.
+            return new HashMap();
+        }
+
+        public boolean hasFeature(SQLParserFeature feature) {
+            return features.contains(feature);
+        }
+
+        public IdentifierCase getIdentifierCase() {
+            return identifierCase;
+        }
+    }
+
+    /**
+     * Parse the given SQL with the given parser, or copy a previous
+     * result for the same SQL and parser settings.
+     */
+    public StatementNode parseStatement(SQLParser parser, String sqlText)
+            throws StandardException {
+        Key key = new Key(sqlText, parser);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null)
+                hits++;
+            else
+                misses++;
+        }
+        if (entry == null) {
+            // Parse outside the lock; a concurrent miss on the same
+            // text will just parse it twice.
+            StatementNode statement = parser.parseStatementUncached(sqlText);
+            // The caller gets what was parsed and the cache a copy.
+            StatementNode cached = (StatementNode)
+                parser.getNodeFactory().copyNode(statement, new DetachedContext(parser));
+            Object[] parameterValues = parser.getParameterValues();
+            if (parameterValues != null)
+                parameterValues = parameterValues.clone();
+            entry = new Entry(cached, parser.getParameterList().size(),
+                              parameterValues);
+            synchronized (this) {
+                if (entries.put(key, entry) == null)
+                    weight += sqlText.length();
+                evict();
+            }
+            return statement;
+        }
+        StatementNode copy = (StatementNode)
+            parser.getNodeFactory().copyNode(entry.statement, parser);
+        Object[] parameterValues = entry.parameterValues;
+        if (parameterValues != null)
+            parameterValues = parameterValues.clone();
+        parser.reinitFromCache(sqlText, copyParameters(copy, entry.nparameters),
+                               parameterValues);
+        return copy;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key,Entry>> iter = entries.entrySet().iterator();
+        while (((entries.size() > maxEntries) || (weight > maxWeight)) &&
+               iter.hasNext()) {
+            Key key = iter.next().getKey();
+            iter.remove();
+            weight -= key.sqlText.length();
+            evictions++;
+        }
+    }
+
+    /** Gather the parameters of a copied tree in number order. */
+    private static List<ParameterNode> copyParameters(StatementNode statement,
+                                                      int nparameters)
+            throws StandardException {
+        final List<ParameterNode> result = new ArrayList<ParameterNode>(nparameters);
+        if (nparameters > 0) {
+            statement.accept(new Visitor() {
+                    public Visitable visit(Visitable node) {
+                        if (node instanceof ParameterNode)
+                            result.add((ParameterNode)node);
+                        return node;
+                    }
+                    public boolean visitChildrenFirst(Visitable node) {
+                        return false;
+                    }
+                    public boolean stopTraversal() {
+                        return false;
+                    }
+                    public boolean skipChildren(Visitable node) {
+                        return false;
+                    }
+                });
+            Collections.sort(result, new Comparator<ParameterNode>() {
+                                 public int compare(ParameterNode p1, ParameterNode p2) {
+                                     return p1.getParameterNumber() - p2.getParameterNumber();
+                                 }
+                             });
+        }
+        return result;
+    }
+
+    /** Remove all entries. Statistics are not reset. */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /** Get the number of statements currently cached. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Get the total length of SQL text currently cached. */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /** Get the maximum number of statements kept. */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /** Get the maximum total length of SQL text kept. */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /** Get the number of requests satisfied from the cache. */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /** Get the number of requests that needed a real parse. */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /** Get the number of entries removed to stay within limits. */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized String toString() {
+        return "StatementCache(size=" + entries.size() +
+            ", weight=" + weight +
+            ", hits=" + hits +
+            ", misses=" + misses +
+            ", evictions=" + evictions + ")";
+    }
+
+}
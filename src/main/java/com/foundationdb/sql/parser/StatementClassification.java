@@ -0,0 +1,209 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+/**
+ * The kind of a statement and whether it only reads, as determined
+ * from its tokens by {@link SQLParser#classifyStatement} without
+ * parsing it.
+ * <p>
+ * Since the statement is not parsed, it is not known to be valid.
+ */
+public final class StatementClassification
+{
+    public enum Kind {
+        /** A query: <code>SELECT</code> or <code>VALUES</code>, possibly after <code>WITH</code>. */
+        SELECT,
+        /** <code>INSERT</code>, <code>UPDATE</code>, <code>DELETE</code> or <code>CALL</code>,
+         * possibly after <code>WITH</code>. */
+        DML,
+        /** Schema or privilege changes. */
+        DDL,
+        /** <code>BEGIN</code>, <code>COMMIT</code>, <code>ROLLBACK</code> and savepoints. */
+        TRANSACTION_CONTROL,
+        /** <code>SET</code> of a session or transaction property. */
+        SET,
+        /** Anything else recognized, such as cursor operations or <code>EXPLAIN</code>. */
+        OTHER,
+        /** Not a statement: empty or not lexically valid. */
+        UNKNOWN
+    }
+
+    private final Kind kind;
+    private final boolean readOnly;
+
+    private StatementClassification(Kind kind, boolean readOnly) {
+        this.kind = kind;
+        this.readOnly = readOnly;
+    }
+
+    private static final StatementClassification[] READ_WRITE, READ_ONLY;
+    static {
+        Kind[] kinds = Kind.values();
+        READ_WRITE = new StatementClassification[kinds.length];
+        READ_ONLY = new StatementClassification[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            READ_WRITE[i] = new StatementClassification(kinds[i], false);
+            READ_ONLY[i] = new StatementClassification(kinds[i], true);
+        }
+    }
+
+    public static StatementClassification valueOf(Kind kind, boolean readOnly) {
+        return (readOnly ? READ_ONLY : READ_WRITE)[kind.ordinal()];
+    }
+
+    public static final StatementClassification UNKNOWN = valueOf(Kind.UNKNOWN, false);
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** Does the statement neither change data or schema nor take locks
+     * for update? A query that advances a sequence with <code>NEXT
+     * VALUE FOR</code> is not read-only.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public String toString() {
+        return kind + (readOnly ? "(read-only)" : "");
+    }
+
+    /** Classify the statement from the tokens that the given token
+     * manager returns.
+     */
+    static StatementClassification classify(SQLGrammarTokenManager tokenManager) {
+        Token token = tokenManager.getNextToken();
+        while (token.kind == SQLGrammarConstants.LEFT_PAREN)
+            token = tokenManager.getNextToken();
+        Kind kind = kindOf(token.kind);
+        switch (kind) {
+        case SELECT:
+            return classifyQuery(token.kind == SQLGrammarConstants.WITH, tokenManager);
+        case OTHER:
+            switch (token.kind) {
+            case SQLGrammarConstants.EXPLAIN:
+            case SQLGrammarConstants.SHOW:
+            case SQLGrammarConstants.FETCH:
+            case SQLGrammarConstants.CLOSE:
+                return valueOf(kind, true);
+            }
+            /* else falls through */
+        default:
+            return valueOf(kind, false);
+        }
+    }
+
+    /** Get the kind of statement that begins with the given token,
+     * after any left parentheses.
+     */
+    static Kind kindOf(int tokenKind) {
+        switch (tokenKind) {
+        case SQLGrammarConstants.SELECT:
+        case SQLGrammarConstants.VALUES:
+        case SQLGrammarConstants.WITH:
+            return Kind.SELECT;
+        case SQLGrammarConstants.INSERT:
+        case SQLGrammarConstants.UPDATE:
+        case SQLGrammarConstants.DELETE:
+        case SQLGrammarConstants.CALL:
+            return Kind.DML;
+        case SQLGrammarConstants.CREATE:
+        case SQLGrammarConstants.DROP:
+        case SQLGrammarConstants.ALTER:
+        case SQLGrammarConstants.RENAME:
+        case SQLGrammarConstants.TRUNCATE:
+        case SQLGrammarConstants.GRANT:
+        case SQLGrammarConstants.REVOKE:
+            return Kind.DDL;
+        case SQLGrammarConstants.BEGIN:
+        case SQLGrammarConstants.COMMIT:
+        case SQLGrammarConstants.ROLLBACK:
+        case SQLGrammarConstants.SAVEPOINT:
+        case SQLGrammarConstants.RELEASE:
+            return Kind.TRANSACTION_CONTROL;
+        case SQLGrammarConstants.SET:
+            return Kind.SET;
+        case SQLGrammarConstants.EXPLAIN:
+        case SQLGrammarConstants.SHOW:
+        case SQLGrammarConstants.FETCH:
+        case SQLGrammarConstants.CLOSE:
+        case SQLGrammarConstants.DECLARE:
+        case SQLGrammarConstants.PREPARE:
+        case SQLGrammarConstants.EXECUTE:
+        case SQLGrammarConstants.DEALLOCATE:
+        case SQLGrammarConstants.COPY:
+        case SQLGrammarConstants.LOCK:
+            return Kind.OTHER;
+        default:
+            return Kind.UNKNOWN;
+        }
+    }
+
+    /** Look through the rest of a query. After <code>WITH</code>, the
+     * first statement verb outside the parentheses of the common
+     * table expressions gives the kind. Changing data anywhere, taking
+     * locks with <code>FOR UPDATE</code> or advancing a sequence with
+     * <code>NEXT VALUE FOR</code> makes it read-write.
+     */
+    private static StatementClassification classifyQuery(boolean with,
+                                                         SQLGrammarTokenManager tokenManager) {
+        Kind kind = with ? null : Kind.SELECT;
+        boolean readOnly = true;
+        int depth = 0;
+        int prevKind = -1, prevPrevKind = -1;
+        while (true) {
+            Token token = tokenManager.getNextToken();
+            switch (token.kind) {
+            case SQLGrammarConstants.EOF:
+            case SQLGrammarConstants.SEMICOLON:
+                if (kind == null)
+                    return UNKNOWN;
+                return valueOf(kind, readOnly && (kind == Kind.SELECT));
+            case SQLGrammarConstants.LEFT_PAREN:
+                depth++;
+                break;
+            case SQLGrammarConstants.RIGHT_PAREN:
+                if (depth > 0)
+                    depth--;
+                break;
+            case SQLGrammarConstants.SELECT:
+            case SQLGrammarConstants.VALUES:
+                if ((kind == null) && (depth == 0))
+                    kind = Kind.SELECT;
+                break;
+            case SQLGrammarConstants.INSERT:
+            case SQLGrammarConstants.UPDATE:
+            case SQLGrammarConstants.DELETE:
+                // Including FOR UPDATE.
+                if ((kind == null) && (depth == 0))
+                    kind = Kind.DML;
+                readOnly = false;
+                break;
+            case SQLGrammarConstants.FOR:
+                if ((prevKind == SQLGrammarConstants.VALUE) &&
+                    (prevPrevKind == SQLGrammarConstants.NEXT))
+                    readOnly = false;
+                break;
+            }
+            prevPrevKind = prevKind;
+            prevKind = token.kind;
+        }
+    }
+
+}
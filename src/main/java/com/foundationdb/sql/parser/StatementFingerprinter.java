@@ -0,0 +1,387 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+/**
+ * Hash the tokens of a statement so that statements differing only in
+ * their literals, white space, comments and the case of keywords and
+ * undelimited identifiers come out the same.
+ * <p>
+ * Literals and parameters all count as the same placeholder, taking
+ * with them any sign in front of a number. Numbers that are not values are kept:
+ * the lengths in a type such as <code>VARCHAR(10)</code> and column
+ * positions in <code>ORDER BY</code> and <code>GROUP BY</code>.
+ * Semicolons at the end do not count.
+ * <p>
+ * Two 64-bit hashes with different mixing are kept, to give 128
+ * bits. The characters of identifiers are hashed straight from the
+ * text, so nothing is allocated per token. Optionally, the same walk
+ * appends a normalized form of the text, with <code>?</code> for each
+ * placeholder.
+ */
+class StatementFingerprinter
+{
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    // Token kinds are hashed above any character.
+    private static final long KIND_BASE = 0x10000;
+    private static final int PLACEHOLDER = SQLGrammarConstants.QUESTION_MARK;
+
+    private long hash1, hash2;
+    private StringBuilder normalized;
+
+    /** Hash the tokens that the given token manager returns for the
+     * given text.
+     * @param fingerprint Filled with the hashes, if not <code>null</code>.
+     * @param normalized Appended with the normalized text, if not
+     * <code>null</code>.
+     * @return The first hash.
+     */
+    public long fingerprint(SQLGrammarTokenManager tokenManager, CharSequence sqlText,
+                            long[] fingerprint, StringBuilder normalized) {
+        this.hash1 = FNV_OFFSET;
+        this.hash2 = GOLDEN;
+        this.normalized = normalized;
+        int prevKind = -1;
+        int pendingKind = -1, pendingBegin = 0, pendingEnd = 0;
+        boolean inTypeArguments = false;
+        // A bit for each parenthesis depth that has an ORDER BY or
+        // GROUP BY list open at it, whose integers are ordinals.
+        int depth = 0;
+        long inByList = 0;
+        while (true) {
+            Token token = tokenManager.getNextToken();
+            int kind = token.kind;
+            if (kind == SQLGrammarConstants.EOF)
+                break;
+            if (pendingKind >= 0) {
+                // A semicolon is only hashed if something follows it,
+                // a sign only if it is not that of a number.
+                if (!((pendingKind != SQLGrammarConstants.SEMICOLON) && isNumber(kind)))
+                    addToken(pendingKind, sqlText, pendingBegin, pendingEnd);
+                pendingKind = -1;
+            }
+            switch (kind) {
+            case SQLGrammarConstants.PLUS_SIGN:
+            case SQLGrammarConstants.MINUS_SIGN:
+                if (isOperandEnd(prevKind)) {
+                    addToken(kind, sqlText, token.beginOffset, token.endOffset);
+                    break;
+                }
+                /* else falls through (maybe the sign of a number) */
+            case SQLGrammarConstants.SEMICOLON:
+                pendingKind = kind;
+                pendingBegin = token.beginOffset;
+                pendingEnd = token.endOffset;
+                if (kind == SQLGrammarConstants.SEMICOLON) {
+                    depth = 0;
+                    inByList = 0;
+                }
+                break;
+            case SQLGrammarConstants.UINT:
+            case SQLGrammarConstants.EXACT_NUMERIC:
+            case SQLGrammarConstants.LENGTH_MODIFIER:
+                if ((inTypeArguments ||
+                     (((inByList & depthBit(depth)) != 0) && 
+                      ((prevKind == SQLGrammarConstants.BY) ||
+                       (prevKind == SQLGrammarConstants.COMMA)))) &&
+                    isInteger(kind, sqlText, token.beginOffset, token.endOffset))
+                    addToken(kind, sqlText, token.beginOffset, token.endOffset);
+                else
+                    addPlaceholder();
+                break;
+            case SQLGrammarConstants.APPROXIMATE_NUMERIC:
+            case SQLGrammarConstants.SINGLEQUOTED_STRING:
+            case SQLGrammarConstants.DOUBLEQUOTED_STRING:
+            case SQLGrammarConstants.ESCAPEQUOTED_STRING:
+            case SQLGrammarConstants.DOUBLEDOLLAR_STRING:
+            case SQLGrammarConstants.HEX_STRING:
+            case SQLGrammarConstants.QUESTION_MARK:
+            case SQLGrammarConstants.DOLLAR_N:
+                addPlaceholder();
+                break;
+            case SQLGrammarConstants.LEFT_PAREN:
+                inTypeArguments = isSizedType(prevKind);
+                depth++;
+                addToken(kind, sqlText, token.beginOffset, token.endOffset);
+                break;
+            case SQLGrammarConstants.RIGHT_PAREN:
+                inTypeArguments = false;
+                if (depth > 0)
+                    depth--;
+                // Any list inside the parentheses ends with them.
+                inByList &= depthBit(depth + 1) - 1;
+                addToken(kind, sqlText, token.beginOffset, token.endOffset);
+                break;
+            case SQLGrammarConstants.BY:
+                inByList |= depthBit(depth);
+                addToken(kind, sqlText, token.beginOffset, token.endOffset);
+                break;
+            case SQLGrammarConstants.FROM:
+            case SQLGrammarConstants.WHERE:
+            case SQLGrammarConstants.HAVING:
+            case SQLGrammarConstants.WINDOW:
+            case SQLGrammarConstants.LIMIT:
+            case SQLGrammarConstants.OFFSET:
+            case SQLGrammarConstants.FETCH:
+            case SQLGrammarConstants.FOR:
+            case SQLGrammarConstants.UNION:
+            case SQLGrammarConstants.EXCEPT:
+            case SQLGrammarConstants.INTERSECT:
+            case SQLGrammarConstants.RETURNING:
+                inByList &= ~depthBit(depth);
+                addToken(kind, sqlText, token.beginOffset, token.endOffset);
+                break;
+            default:
+                addToken(kind, sqlText, token.beginOffset, token.endOffset);
+                break;
+            }
+            prevKind = kind;
+        }
+        if ((pendingKind >= 0) && (pendingKind != SQLGrammarConstants.SEMICOLON))
+            addToken(pendingKind, sqlText, pendingBegin, pendingEnd);
+        long result1 = finish(hash1), result2 = finish(hash2);
+        if (fingerprint != null) {
+            fingerprint[0] = result1;
+            if (fingerprint.length > 1)
+                fingerprint[1] = result2;
+        }
+        this.normalized = null;
+        return result1;
+    }
+
+    private static long depthBit(int depth) {
+        return (depth < 64) ? (1L << depth) : 0;
+    }
+
+    private static boolean isNumber(int kind) {
+        switch (kind) {
+        case SQLGrammarConstants.UINT:
+        case SQLGrammarConstants.EXACT_NUMERIC:
+        case SQLGrammarConstants.APPROXIMATE_NUMERIC:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Is the given number a size or position rather than a value? */
+    private static boolean isInteger(int kind, CharSequence sqlText, int begin, int end) {
+        switch (kind) {
+        case SQLGrammarConstants.UINT:
+        case SQLGrammarConstants.LENGTH_MODIFIER:
+            return true;
+        default:
+            for (int i = begin; i <= end; i++) {
+                char ch = sqlText.charAt(i);
+                if ((ch < '0') || (ch > '9'))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /** Can the given token end an operand, making a following sign
+     * binary? Anything can but an operator, a separator or a keyword
+     * that an expression follows. Any other keyword, such as one used
+     * as a name or <code>END</code>, keeps the sign as an operator; at
+     * worst, an unusual unary sign then gets hashed as well.
+     */
+    private static boolean isOperandEnd(int kind) {
+        switch (kind) {
+        case -1:                // Start of statement.
+        case SQLGrammarConstants.PERCENT:
+        case SQLGrammarConstants.AMPERSAND:
+        case SQLGrammarConstants.CARET:
+        case SQLGrammarConstants.VERTICAL_BAR:
+        case SQLGrammarConstants.TILDE:
+        case SQLGrammarConstants.LEFT_BRACE:
+        case SQLGrammarConstants.LEFT_PAREN:
+        case SQLGrammarConstants.LEFT_BRACKET:
+        case SQLGrammarConstants.ASTERISK:
+        case SQLGrammarConstants.PLUS_SIGN:
+        case SQLGrammarConstants.COMMA:
+        case SQLGrammarConstants.MINUS_SIGN:
+        case SQLGrammarConstants.SOLIDUS:
+        case SQLGrammarConstants.COLON:
+        case SQLGrammarConstants.SEMICOLON:
+        case SQLGrammarConstants.LESS_THAN_OPERATOR:
+        case SQLGrammarConstants.LESS_THAN_OR_EQUALS_OPERATOR:
+        case SQLGrammarConstants.EQUALS_OPERATOR:
+        case SQLGrammarConstants.NOT_EQUALS_OPERATOR:
+        case SQLGrammarConstants.NOT_EQUALS_OPERATOR2:
+        case SQLGrammarConstants.GREATER_THAN_OPERATOR:
+        case SQLGrammarConstants.GREATER_THAN_OR_EQUALS_OPERATOR:
+        case SQLGrammarConstants.DOUBLE_LESS:
+        case SQLGrammarConstants.DOUBLE_GREATER:
+        case SQLGrammarConstants.ASTERISK_ASTERISK:
+        case SQLGrammarConstants.EXCLAMATION_MARK:
+        case SQLGrammarConstants.CONCATENATION_OPERATOR:
+        case SQLGrammarConstants.DOUBLE_AMPERSAND:
+        case SQLGrammarConstants.SELECT:
+        case SQLGrammarConstants.DISTINCT:
+        case SQLGrammarConstants.ALL:
+        case SQLGrammarConstants.WHERE:
+        case SQLGrammarConstants.HAVING:
+        case SQLGrammarConstants.ON:
+        case SQLGrammarConstants.BY:
+        case SQLGrammarConstants.AND:
+        case SQLGrammarConstants.OR:
+        case SQLGrammarConstants.NOT:
+        case SQLGrammarConstants.BETWEEN:
+        case SQLGrammarConstants.LIKE:
+        case SQLGrammarConstants.CASE:
+        case SQLGrammarConstants.WHEN:
+        case SQLGrammarConstants.THEN:
+        case SQLGrammarConstants.ELSE:
+        case SQLGrammarConstants.LIMIT:
+        case SQLGrammarConstants.OFFSET:
+        case SQLGrammarConstants.DEFAULT:
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    /** Is the given token a type whose size can follow in parentheses? */
+    private static boolean isSizedType(int kind) {
+        switch (kind) {
+        case SQLGrammarConstants.CHAR:
+        case SQLGrammarConstants.CHARACTER:
+        case SQLGrammarConstants.VARCHAR:
+        case SQLGrammarConstants.VARYING:
+        case SQLGrammarConstants.NCHAR:
+        case SQLGrammarConstants.NVARCHAR:
+        case SQLGrammarConstants.DECIMAL:
+        case SQLGrammarConstants.DEC:
+        case SQLGrammarConstants.NUMERIC:
+        case SQLGrammarConstants.FLOAT:
+        case SQLGrammarConstants.DOUBLE:
+        case SQLGrammarConstants.REAL:
+        case SQLGrammarConstants.BINARY:
+        case SQLGrammarConstants.VARBINARY:
+        case SQLGrammarConstants.BIT:
+        case SQLGrammarConstants.BLOB:
+        case SQLGrammarConstants.CLOB:
+        case SQLGrammarConstants.NCLOB:
+        case SQLGrammarConstants.TEXT:
+        case SQLGrammarConstants.TIME:
+        case SQLGrammarConstants.TIMESTAMP:
+        case SQLGrammarConstants.DATETIME:
+        case SQLGrammarConstants.INTERVAL:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private void addPlaceholder() {
+        add(KIND_BASE + PLACEHOLDER);
+        if (normalized != null) {
+            space(PLACEHOLDER);
+            normalized.append('?');
+        }
+    }
+
+    /** Hash a token: its kind, then the characters of an identifier,
+     * undelimited and in lower case, or of a number that is kept.
+     * Offsets are inclusive. */
+    private void addToken(int kind, CharSequence sqlText, int begin, int end) {
+        add(KIND_BASE + kind);
+        switch (kind) {
+        case SQLGrammarConstants.IDENTIFIER:
+            for (int i = begin; i <= end; i++) {
+                add(Character.toLowerCase(sqlText.charAt(i)));
+            }
+            break;
+        case SQLGrammarConstants.UINT:
+        case SQLGrammarConstants.EXACT_NUMERIC:
+        case SQLGrammarConstants.LENGTH_MODIFIER:
+            for (int i = begin; i <= end; i++) {
+                add(sqlText.charAt(i));
+            }
+            break;
+        case SQLGrammarConstants.DOUBLEQUOTED_IDENTIFIER:
+        case SQLGrammarConstants.BACKQUOTED_IDENTIFIER:
+            for (int i = begin + 1; i < end; i++) {
+                char ch = sqlText.charAt(i);
+                add(ch);
+                if (ch == sqlText.charAt(begin))
+                    i++;        // Doubled quote.
+            }
+            break;
+        }
+        if (normalized != null) {
+            space(kind);
+            for (int i = begin; i <= end; i++) {
+                char ch = sqlText.charAt(i);
+                switch (kind) {
+                case SQLGrammarConstants.IDENTIFIER:
+                    ch = Character.toLowerCase(ch);
+                    break;
+                case SQLGrammarConstants.DOUBLEQUOTED_IDENTIFIER:
+                case SQLGrammarConstants.BACKQUOTED_IDENTIFIER:
+                    break;
+                default:
+                    ch = Character.toUpperCase(ch);
+                    break;
+                }
+                normalized.append(ch);
+            }
+        }
+    }
+
+    /** Separate tokens with a single space, save around
+     * punctuation. */
+    private void space(int kind) {
+        int length = normalized.length();
+        if (length == 0)
+            return;
+        switch (normalized.charAt(length - 1)) {
+        case '(':
+        case '.':
+        case ' ':
+            return;
+        }
+        switch (kind) {
+        case SQLGrammarConstants.RIGHT_PAREN:
+        case SQLGrammarConstants.COMMA:
+        case SQLGrammarConstants.PERIOD:
+        case SQLGrammarConstants.SEMICOLON:
+            return;
+        }
+        normalized.append(' ');
+    }
+
+    private void add(long value) {
+        hash1 = (hash1 ^ value) * FNV_PRIME;
+        hash2 = Long.rotateLeft(hash2 + value * GOLDEN, 29) * FNV_PRIME;
+    }
+
+    /** Spread the bits, as in the MurmurHash3 finalizer. */
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Find the statements in a script by scanning for top-level
+ * semicolons, without lexing it fully.
+ * <p>
+ * Semicolons inside quoted strings (including <code>E'...'</code> and
+ * <code>$$...$$</code>), delimited identifiers, line comments and
+ * (nested) bracketed comments do not count. Pieces containing nothing
+ * but white space and comments are not statements.
+ */
+public class StatementSplitter
+{
+    private final boolean doubleQuotedStrings;
+
+    public StatementSplitter() {
+        this(false);
+    }
+
+    /** Make a splitter that matches a parser with the given features. */
+    public StatementSplitter(Set<SQLParserFeature> features) {
+        this(features.contains(SQLParserFeature.DOUBLE_QUOTED_STRING));
+    }
+
+    /**
+     * @param doubleQuotedStrings Whether double quotes surround a
+     * string, which allows backslash escapes, rather than an identifier.
+     */
+    public StatementSplitter(boolean doubleQuotedStrings) {
+        this.doubleQuotedStrings = doubleQuotedStrings;
+    }
+
+    /**
+     * Split the given script.
+     * @return pairs of the offset of the first character of each
+     * statement and the offset just past its last, not counting
+     * surrounding white space and comments or the semicolon.
+     */
+    public int[] split(CharSequence sql) {
+        int[] result = new int[16];
+        int nresult = 0;
+        int length = sql.length();
+        int begin = -1, end = -1;
+        int i = 0;
+        while (true) {
+            if (i >= length) {
+                if (begin >= 0) {
+                    if (nresult + 2 > result.length)
+                        result = Arrays.copyOf(result, result.length * 2);
+                    result[nresult++] = begin;
+                    result[nresult++] = end;
+                }
+                break;
+            }
+            char ch = sql.charAt(i);
+            int next;
+            switch (ch) {
+            case ';':
+                if (begin >= 0) {
+                    if (nresult + 2 > result.length)
+                        result = Arrays.copyOf(result, result.length * 2);
+                    result[nresult++] = begin;
+                    result[nresult++] = end;
+                    begin = -1;
+                }
+                i++;
+                continue;
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+                i++;
+                continue;
+            case '-':
+                if ((i + 1 < length) && (sql.charAt(i + 1) == '-')) {
+                    i = skipLineComment(sql, i + 2, length);
+                    continue;
+                }
+                next = i + 1;
+                break;
+            case '/':
+                if ((i + 1 < length) && (sql.charAt(i + 1) == '*')) {
+                    i = skipBracketedComment(sql, i + 2, length);
+                    continue;
+                }
+                next = i + 1;
+                break;
+            case '\'':
+                next = skipQuoted(sql, i + 1, length, '\'', isEscapePrefix(sql, i));
+                break;
+            case '"':
+                next = skipQuoted(sql, i + 1, length, '"', doubleQuotedStrings);
+                break;
+            case '`':
+                next = skipQuoted(sql, i + 1, length, '`', false);
+                break;
+            case '$':
+                if ((i + 1 < length) && (sql.charAt(i + 1) == '$')) {
+                    next = skipDoubleDollar(sql, i + 2, length);
+                    break;
+                }
+                next = i + 1;
+                break;
+            default:
+                next = i + 1;
+                break;
+            }
+            if (begin < 0)
+                begin = i;
+            end = next;
+            i = next;
+        }
+        return Arrays.copyOf(result, nresult);
+    }
+
+    /** Is the quote at <code>index</code> the start of <code>E'...'</code>? */
+    private static boolean isEscapePrefix(CharSequence sql, int index) {
+        if (index < 1) return false;
+        char ch = sql.charAt(index - 1);
+        if ((ch != 'E') && (ch != 'e')) return false;
+        if (index < 2) return true;
+        return !isIdentifierPart(sql.charAt(index - 2));
+    }
+
+    private static boolean isIdentifierPart(char ch) {
+        return Character.isLetterOrDigit(ch) || (ch == '_') || (ch == '$');
+    }
+
+    private static int skipLineComment(CharSequence sql, int i, int length) {
+        while (i < length) {
+            char ch = sql.charAt(i++);
+            if ((ch == '\n') || (ch == '\r'))
+                break;
+        }
+        return i;
+    }
+
+    private static int skipBracketedComment(CharSequence sql, int i, int length) {
+        int depth = 1;
+        while (i < length) {
+            char ch = sql.charAt(i++);
+            if ((ch == '*') && (i < length) && (sql.charAt(i) == '/')) {
+                i++;
+                if (--depth == 0)
+                    break;
+            }
+            else if ((ch == '/') && (i < length) && (sql.charAt(i) == '*')) {
+                i++;
+                depth++;
+            }
+        }
+        return i;
+    }
+
+    /** Skip to just after the closing quote, which can be doubled to
+     * stand for itself or, if <code>backslash</code>, escaped.
+     */
+    private static int skipQuoted(CharSequence sql, int i, int length,
+                                  char quote, boolean backslash) {
+        while (i < length) {
+            char ch = sql.charAt(i++);
+            if (ch == quote) {
+                if ((i < length) && (sql.charAt(i) == quote))
+                    i++;
+                else
+                    break;
+            }
+            else if (backslash && (ch == '\\') && (i < length)) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static int skipDoubleDollar(CharSequence sql, int i, int length) {
+        while (i < length) {
+            char ch = sql.charAt(i++);
+            if ((ch == '$') && (i < length) && (sql.charAt(i) == '$'))
+                return i + 1;
+        }
+        return i;
+    }
+
+}
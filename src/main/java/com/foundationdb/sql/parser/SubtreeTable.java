@@ -0,0 +1,193 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of subtrees, so that structurally equal ones (see {@link
+ * QueryTreeNode#structurallyEquals}) can be found and kept only once.
+ * <p>
+ * Subtrees are added bottom up, so the children of a node have already
+ * been replaced by the subtree that stands for them when it is looked
+ * up. Comparing a node with a candidate then only needs to look at
+ * their own fields, and the hash of a node is worked out from those of
+ * its children, making adding a whole tree take time in proportion to
+ * its size.
+ * <p>
+ * {@link #intern} only finds repeated subtrees; {@link #share} also
+ * makes the tree refer to the first of them each time, so that it is
+ * no longer a tree. Such shared nodes have the offsets of that first
+ * occurrence. The nodes added must not change while in the table. A
+ * table is not safe to use from more than one thread at a time.
+ */
+public class SubtreeTable
+{
+    private final Map<Key,Entry> entries = new LinkedHashMap<Key,Entry>();
+    // The entry for every node added, including repeats.
+    private final Map<QueryTreeNode,Entry> entriesByNode = 
+        new IdentityHashMap<QueryTreeNode,Entry>();
+    private final NodeStructure structure = new NodeStructure() {
+            @Override
+            protected boolean equalNodes(QueryTreeNode n1, QueryTreeNode n2) {
+                Entry e1 = entriesByNode.get(n1), e2 = entriesByNode.get(n2);
+                if ((e1 != null) && (e2 != null))
+                    return (e1 == e2);
+                return super.equalNodes(n1, n2);
+            }
+        };
+
+    static class Entry {
+        final QueryTreeNode node;
+        int count;
+
+        Entry(QueryTreeNode node) {
+            this.node = node;
+        }
+    }
+
+    class Key {
+        final QueryTreeNode node;
+        final int hash;
+
+        Key(QueryTreeNode node) {
+            this.node = node;
+            this.hash = structure.hash(node);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof Key) &&
+                (hash == ((Key)other).hash) &&
+                structure.equal(node, ((Key)other).node);
+        }
+    }
+
+    /** Get the number of distinct subtrees. */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Remove all subtrees. */
+    public void clear() {
+        entries.clear();
+        entriesByNode.clear();
+    }
+
+    /**
+     * Add the given subtree and all those beneath it.
+     * @return The first subtree added that is structurally equal to
+     * the given one, which may be that one.
+     */
+    public QueryTreeNode intern(QueryTreeNode node) throws StandardException {
+        node.accept(new Adder(false));
+        return entriesByNode.get(node).node;
+    }
+
+    /**
+     * Add the given subtree and all those beneath it, replacing
+     * children that are repeats of earlier subtrees with those.
+     * @return The first subtree added that is structurally equal to
+     * the given one, which may be that one.
+     */
+    public QueryTreeNode share(QueryTreeNode node) throws StandardException {
+        return (QueryTreeNode)node.accept(new Adder(true));
+    }
+
+    /** Get the first subtree added that is structurally equal to the
+     * given one, or <code>null</code> if there is none. The given
+     * subtree is not added. */
+    public QueryTreeNode get(QueryTreeNode node) {
+        Entry entry = entriesByNode.get(node);
+        if (entry == null)
+            entry = entries.get(new Key(node));
+        return (entry == null) ? null : entry.node;
+    }
+
+    /** Get the number of times a subtree structurally equal to the
+     * given one has been added. */
+    public int getCount(QueryTreeNode node) {
+        Entry entry = entriesByNode.get(node);
+        if (entry == null)
+            entry = entries.get(new Key(node));
+        return (entry == null) ? 0 : entry.count;
+    }
+
+    /** Get the subtrees that have been added more than once, in the
+     * order they were first added. */
+    public List<QueryTreeNode> getRepeated() {
+        List<QueryTreeNode> result = new ArrayList<QueryTreeNode>();
+        for (Entry entry : entries.values()) {
+            if (entry.count > 1)
+                result.add(entry.node);
+        }
+        return result;
+    }
+
+    /** Add a node, whose children are already added. */
+    protected Entry add(QueryTreeNode node) {
+        Entry entry = entriesByNode.get(node);
+        if (entry == null) {
+            Key key = new Key(node);
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(node);
+                entries.put(key, entry);
+            }
+            entriesByNode.put(node, entry);
+        }
+        entry.count++;
+        return entry;
+    }
+
+    /** Add nodes bottom up, leaving compact literals as they are. */
+    class Adder implements CompactConstantsVisitor {
+        private final boolean share;
+
+        public Adder(boolean share) {
+            this.share = share;
+        }
+
+        public Visitable visit(Visitable node) {
+            Entry entry = add((QueryTreeNode)node);
+            return share ? entry.node : node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return true;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+    }
+
+}
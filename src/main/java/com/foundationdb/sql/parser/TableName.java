@@ -84,9 +84,20 @@ public class TableName extends QueryTreeNode
                       Object tableName, 
                       Object tokBeginOffset,
                       Object tokEndOffset) {
-        init(schemaName, tableName);
-        this.setBeginOffset(((Integer)tokBeginOffset).intValue());
-        this.setEndOffset(((Integer)tokEndOffset).intValue());
+        init((String)schemaName, (String)tableName,
+             ((Integer)tokBeginOffset).intValue(), ((Integer)tokEndOffset).intValue());
+    }
+
+    /** Typed version of the above, for {@link NodeFactory#getTableName}. */
+    public void init (String schemaName, 
+                      String tableName, 
+                      int tokBeginOffset,
+                      int tokEndOffset) {
+        hasSchema = schemaName != null;
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+        this.setBeginOffset(tokBeginOffset);
+        this.setEndOffset(tokEndOffset);
     }
 
     /**
@@ -706,6 +706,9 @@ public class NodeToString
     }
 
     protected String rowsResultSetNode(RowsResultSetNode node) throws StandardException {
+        ConstantRows constants = node.getConstantRows();
+        if (constants != null)
+            return constantRows(constants);
         StringBuilder str = new StringBuilder("VALUES");
         boolean first = true;
         for (RowResultSetNode row : node.getRows()) {
@@ -720,6 +723,23 @@ public class NodeToString
         return str.toString();
     }
 
+    protected String constantRows(ConstantRows constants) throws StandardException {
+        StringBuilder str = new StringBuilder("VALUES");
+        ConstantRows.Cursor cursor = constants.cursor();
+        while (cursor.next()) {
+            if (cursor.getRow() > 0)
+                str.append(", ");
+            str.append("(");
+            for (int i = 0; i < cursor.getColumnCount(); i++) {
+                if (i > 0)
+                    str.append(", ");
+                str.append(constantValue(cursor.getValue(i)));
+            }
+            str.append(")");
+        }
+        return str.toString();
+    }
+
     protected String resultColumnList(ResultColumnList node) throws StandardException {
         return nodeList(node);
     }
@@ -1115,9 +1135,22 @@ public class NodeToString
     }
 
     protected String inListOperatorNode(InListOperatorNode node) throws StandardException {
+        ConstantInList constants = node.getRightOperandConstants();
         return maybeParens(node.getLeftOperand()) +
             " " + (node.isNegated() ? "NOT IN" : "IN") + 
-            " (" + toString(node.getRightOperandList()) + ")";
+            " (" + ((constants != null) ? 
+                    constantInList(constants) :
+                    toString(node.getRightOperandList())) + ")";
+    }
+
+    protected String constantInList(ConstantInList constants) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < constants.size(); i++) {
+            if (i > 0)
+                str.append(", ");
+            str.append(constantValue(constants.getValue(i)));
+        }
+        return str.toString();
     }
 
     protected String valueNodeList(ValueNodeList node) throws StandardException {
@@ -1175,7 +1208,10 @@ public class NodeToString
     }
     
     protected String constantNode(ConstantNode node) throws StandardException {
-        Object value = node.getValue();
+        return constantValue(node.getValue());
+    }
+
+    protected String constantValue(Object value) throws StandardException {
         if (value == null)
             return "NULL";
         else if (value instanceof String)
@@ -24,6 +24,8 @@ public class ViewDefinition
 {
     private CreateViewNode definition;
     private FromSubquery subquery;
+    // Copy of subquery that shared copies are made from.
+    private volatile FromSubquery sharedSubquery;
 
     /**
      * Parse the given SQL as CREATE VIEW and remember the definition.
@@ -91,6 +93,34 @@ public class ViewDefinition
             parserContext.getNodeFactory().copyNode(subquery, parserContext);
     }
 
+    /**
+     * Get the view as an equivalent subquery belonging to the given
+     * context, which shares unchanged nodes with a copy of the
+     * definition kept for that if <code>share</code> is true. That
+     * copy is made the first time, so later changes to the subquery
+     * are not seen by shared copies.
+     * @see NodeFactory#copyNode(QueryTreeNode,SQLParserContext,boolean)
+     */
+    public FromSubquery copySubquery(SQLParserContext parserContext, boolean share) 
+            throws StandardException {
+        if (!share)
+            return copySubquery(parserContext);
+        FromSubquery shared = sharedSubquery;
+        if (shared == null) {
+            synchronized (this) {
+                shared = sharedSubquery;
+                if (shared == null) {
+                    shared = (FromSubquery)
+                        parserContext.getNodeFactory().shareNode(subquery, 
+                                                                 subquery.getParserContext());
+                    sharedSubquery = shared;
+                }
+            }
+        }
+        return (FromSubquery)
+            parserContext.getNodeFactory().copyNode(shared, parserContext, true);
+    }
+
     /**
      * @deprecated
      * @see #copySubquery
@@ -98,6 +128,7 @@ public class ViewDefinition
     @Deprecated
     public FromSubquery getSubquery(Visitor binder) throws StandardException {
         subquery = (FromSubquery)subquery.accept(binder);
+        sharedSubquery = null;
         return copySubquery(subquery.getParserContext());
     }
 
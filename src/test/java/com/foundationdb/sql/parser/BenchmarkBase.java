@@ -0,0 +1,123 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.TestBase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Support for the <code>*Benchmark</code> programs, which are run by
+ * hand (they have a <code>main</code>) rather than by surefire.
+ * <p>
+ * The workload is the test corpus: every statement under {@link
+ * SQLParserTest#RESOURCE_DIR} that parses successfully with default
+ * features.
+ */
+public abstract class BenchmarkBase
+{
+    protected BenchmarkBase() {
+    }
+
+    /** Load the statements of the test corpus. */
+    public static List<String> loadCorpus() throws IOException {
+        List<String> result = new ArrayList<String>();
+        SQLParser parser = new SQLParser();
+        for (File sqlFile : TestBase.listSQLFiles(SQLParserTest.RESOURCE_DIR)) {
+            if (TestBase.changeSuffix(sqlFile, ".features").exists() ||
+                TestBase.changeSuffix(sqlFile, ".fail").exists() ||
+                TestBase.changeSuffix(sqlFile, ".error").exists())
+                continue;
+            String sql = TestBase.fileContents(sqlFile);
+            try {
+                parser.parseStatement(sql);
+            }
+            catch (Exception ex) {
+                continue;
+            }
+            result.add(sql);
+        }
+        return result;
+    }
+
+    /** Something to be timed. */
+    public interface Task {
+        /** Run one iteration; return something to defeat dead code elimination. */
+        public Object run() throws Exception;
+    }
+
+    /** Run <code>task</code> for <code>warmupMillis</code> and then
+     * time it for <code>millis</code>.
+     * @return iterations per second
+     */
+    public static double rate(Task task, long warmupMillis, long millis) throws Exception {
+        runFor(task, warmupMillis);
+        long start = System.nanoTime();
+        long count = runFor(task, millis);
+        long elapsed = System.nanoTime() - start;
+        return count * 1.0e9 / elapsed;
+    }
+
+    protected static long runFor(Task task, long millis) throws Exception {
+        long end = System.nanoTime() + millis * 1000000L;
+        long count = 0;
+        int sink = 0;
+        do {
+            Object result = task.run();
+            if (result != null)
+                sink += System.identityHashCode(result) & 1;
+            count++;
+        } while (System.nanoTime() < end);
+        if (sink < 0) System.out.println(sink);
+        return count;
+    }
+
+    /** Get the number of bytes allocated by the current thread so far,
+     * or <code>-1</code> if the JVM cannot tell.
+     */
+    public static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = 
+            java.lang.management.ManagementFactory.getThreadMXBean();
+        try {
+            return ((com.sun.management.ThreadMXBean)bean)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        catch (Throwable ex) {
+            return -1;
+        }
+    }
+
+    /** Get the average number of bytes allocated by one iteration of
+     * <code>task</code>.
+     */
+    public static double allocation(Task task, int iterations) throws Exception {
+        task.run();
+        long start = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return (double)(allocatedBytes() - start) / iterations;
+    }
+
+    /** Get the number of milliseconds to run, from a system property. */
+    protected static long millisProperty(String name, long defaultValue) {
+        return Long.getLong(name, defaultValue);
+    }
+}
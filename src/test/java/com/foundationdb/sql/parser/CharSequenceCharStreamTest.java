@@ -0,0 +1,134 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.CharConversionException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+public class CharSequenceCharStreamTest extends StringCharStreamTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SQL = "SELECT x FROM t WHERE y = 'café 😀'";
+
+    @Before
+    @Override
+    public void openStreams() {
+        s1 = new UCode_CharStream(new StringReader(STRING), 1, 1);
+        // A CharBuffer over native memory.
+        CharBuffer chars = ByteBuffer.allocateDirect(STRING.length() * 2).asCharBuffer();
+        chars.put(STRING).flip();
+        s2 = new CharSequenceCharStream(chars);
+    }
+
+    @Test
+    public void testParseChars() throws Exception {
+        SQLParser parser = new SQLParser();
+        NodeToString unparser = new NodeToString();
+        char[] chars = ("xx" + SQL + "yy").toCharArray();
+        StatementNode stmt = parser.parseStatement(chars, 2, SQL.length());
+        assertEquals(SQL, unparser.toString(stmt));
+        assertEquals(SQL, parser.getSQLText());
+        stmt = parser.parseStatement(CharBuffer.wrap(chars, 2, SQL.length()));
+        assertEquals(SQL, unparser.toString(stmt));
+        try {
+            parser.parseStatement(new StringBuilder("SELECT x\nFROM"));
+            fail("Error expected");
+        }
+        catch (SQLParserException ex) {
+            assertEquals(14, ex.getErrorPosition());
+        }
+    }
+
+    @Test
+    public void testParseBytes() throws Exception {
+        SQLParser parser = new SQLParser();
+        NodeToString unparser = new NodeToString();
+        StatementNode stmt = parser.parseStatement(ByteBuffer.wrap(SQL.getBytes(UTF8)), UTF8);
+        assertEquals(SQL, unparser.toString(stmt));
+        assertEquals(SQL, parser.getSQLText());
+        File file = File.createTempFile("stmt", ".sql");
+        try {
+            FileOutputStream ostr = new FileOutputStream(file);
+            ostr.write(SQL.getBytes(UTF8));
+            ostr.close();
+            stmt = parser.parseStatement(file, UTF8);
+            assertEquals(SQL, unparser.toString(stmt));
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testByteBufferReader() throws Exception {
+        // One char at a time, so surrogate pairs are split.
+        ByteBufferReader reader = new ByteBufferReader(ByteBuffer.wrap(SQL.getBytes(UTF8)), UTF8);
+        StringBuilder str = new StringBuilder();
+        char[] buf = new char[1];
+        while (reader.read(buf, 0, 1) > 0)
+            str.append(buf[0]);
+        assertEquals(SQL, str.toString());
+    }
+
+    @Test
+    public void testDecodeError() throws Exception {
+        SQLParser parser = new SQLParser();
+        String good = "SELECT y FROM t WHERE z = '";
+        byte[] bytes = badBytes(good);
+        try {
+            parser.parseStatement(ByteBuffer.wrap(bytes), UTF8);
+            fail("Decode error expected");
+        }
+        catch (StandardException ex) {
+            assertTrue(ex.getCause() instanceof CharConversionException);
+            assertTrue(ex.getMessage(), ex.getMessage().contains("byte " + good.length()));
+        }
+        bytes = badBytes("SELECT x FROM t;\n" + good);
+        parser.beginStatements(new ByteBufferReader(ByteBuffer.wrap(bytes), UTF8));
+        assertNotNull(parser.nextStatement());
+        try {
+            parser.nextStatement();
+            fail("Decode error expected");
+        }
+        catch (StandardException ex) {
+            assertTrue(ex.getCause() instanceof CharConversionException);
+        }
+    }
+
+    /** The given text followed by a UTF-8 sequence cut short. */
+    private static byte[] badBytes(String good) {
+        byte[] goodBytes = good.getBytes(UTF8);
+        byte[] bytes = new byte[goodBytes.length + 2];
+        System.arraycopy(goodBytes, 0, bytes, 0, goodBytes.length);
+        bytes[goodBytes.length] = (byte)0xC3;
+        bytes[goodBytes.length + 1] = (byte)'\'';
+        return bytes;
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+/**
+ * Time and bytes allocated to parse a query with a long IN list of
+ * integers and one of strings, with and without {@link
+ * SQLParser#setCompactInListMinimum}.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.CompactInListBenchmark
+ * </pre>
+ */
+public class CompactInListBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        int size = Integer.getInteger("benchmark.size", 100000);
+        int iterations = Integer.getInteger("benchmark.iterations", 10);
+        long millis = millisProperty("benchmark.millis", 5000);
+        StringBuilder ints = new StringBuilder("SELECT * FROM t WHERE x IN (");
+        StringBuilder strings = new StringBuilder("SELECT * FROM t WHERE y IN (");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                ints.append(", ");
+                strings.append(", ");
+            }
+            ints.append(i * 7);
+            strings.append("'s").append(i).append("'");
+        }
+        ints.append(")");
+        strings.append(")");
+
+        for (int minimum : new int[] { 0, 100 }) {
+            final SQLParser parser = new SQLParser();
+            parser.setCompactInListMinimum(minimum);
+            String[] sqls = { ints.toString(), strings.toString() };
+            for (int i = 0; i < sqls.length; i++) {
+                final String sql = sqls[i];
+                Task task = new Task() {
+                        public Object run() throws Exception {
+                            return parser.parseStatement(sql);
+                        }
+                    };
+                double rate = rate(task, millis / 2, millis);
+                double bytes = allocation(task, iterations);
+                System.out.println(String.format("%-8s %-7s %8.2f ms/stmt  %12.0f bytes/stmt",
+                                                 (minimum > 0) ? "compact" : "nodes",
+                                                 (i == 0) ? "ints" : "strings",
+                                                 1000.0 / rate, bytes));
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+/**
+ * Time and bytes allocated to parse a multi-row <code>INSERT</code>
+ * of literals, with and without {@link SQLParser#setCompactValuesMinimum}.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.CompactValuesBenchmark
+ * </pre>
+ */
+public class CompactValuesBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        int nrows = Integer.getInteger("benchmark.rows", 100000);
+        int iterations = Integer.getInteger("benchmark.iterations", 10);
+        long millis = millisProperty("benchmark.millis", 5000);
+        StringBuilder str = new StringBuilder("INSERT INTO t(a, b, c, d) VALUES");
+        for (int i = 0; i < nrows; i++) {
+            if (i > 0)
+                str.append(",");
+            str.append("(").append(i).append(", 'name").append(i).append("', ")
+                .append(i % 100).append(".25, ").append((i % 10 == 0) ? "NULL" : "TRUE")
+                .append(")");
+        }
+        final String sql = str.toString();
+
+        for (int minimum : new int[] { 0, 100 }) {
+            final SQLParser parser = new SQLParser();
+            parser.setCompactValuesMinimum(minimum);
+            Task task = new Task() {
+                    public Object run() throws Exception {
+                        return parser.parseStatement(sql);
+                    }
+                };
+            double rate = rate(task, millis / 2, millis);
+            double bytes = allocation(task, iterations);
+            System.out.println(String.format("%-8s %8.2f ms/stmt  %8.0f bytes/row",
+                                             (minimum > 0) ? "compact" : "nodes",
+                                             1000.0 / rate, bytes / nrows));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parsing throughput of {@link ConcurrentSQLParser} as the number of
+ * threads grows, compared with sharing one {@link SQLParser} under a
+ * lock.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.ConcurrentSQLParserBenchmark [maxThreads]
+ * </pre>
+ */
+public class ConcurrentSQLParserBenchmark extends BenchmarkBase
+{
+    interface Parse {
+        public StatementNode parse(String sql) throws Exception;
+    }
+
+    static double run(final Parse parse, final List<String> corpus, 
+                      int nthreads, final long millis) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicLong total = new AtomicLong();
+        final long[] elapsed = new long[nthreads];
+        Thread[] threads = new Thread[nthreads];
+        for (int i = 0; i < nthreads; i++) {
+            final int n = i;
+            threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            long begin = System.nanoTime();
+                            long end = begin + millis * 1000000L;
+                            long count = 0;
+                            int index = n;
+                            do {
+                                for (int j = 0; j < 100; j++) {
+                                    parse.parse(corpus.get(index++ % corpus.size()));
+                                    count++;
+                                }
+                            } while (System.nanoTime() < end);
+                            elapsed[n] = System.nanoTime() - begin;
+                            total.addAndGet(count);
+                        }
+                        catch (Exception ex) {
+                            ex.printStackTrace();
+                        }
+                    }
+                };
+            threads[i].start();
+        }
+        start.countDown();
+        long maxElapsed = 0;
+        for (int i = 0; i < nthreads; i++) {
+            threads[i].join();
+            maxElapsed = Math.max(maxElapsed, elapsed[i]);
+        }
+        return total.get() * 1.0e9 / maxElapsed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) :
+            Runtime.getRuntime().availableProcessors();
+        long millis = millisProperty("benchmark.millis", 2000);
+        List<String> corpus = loadCorpus();
+
+        final ConcurrentSQLParser concurrent = new ConcurrentSQLParser();
+        Parse perThread = new Parse() {
+                public StatementNode parse(String sql) throws Exception {
+                    return concurrent.parseStatement(sql);
+                }
+            };
+        final SQLParser single = new SQLParser();
+        Parse locked = new Parse() {
+                public StatementNode parse(String sql) throws Exception {
+                    synchronized (single) {
+                        return single.parseStatement(sql);
+                    }
+                }
+            };
+
+        run(perThread, corpus, maxThreads, millis); // Warm up.
+        run(locked, corpus, maxThreads, millis);
+
+        System.out.println("threads  per-thread stmts/s  scaling  locked stmts/s");
+        double base = 0;
+        for (int nthreads = 1; nthreads <= maxThreads; 
+             nthreads = (nthreads < maxThreads && nthreads * 2 > maxThreads) ? maxThreads : nthreads * 2) {
+            double rate = run(perThread, corpus, nthreads, millis);
+            if (nthreads == 1) base = rate;
+            double lockedRate = run(locked, corpus, nthreads, millis);
+            System.out.println(String.format("%7d  %19.0f  %7.2f  %14.0f",
+                                             nthreads, rate, rate / base, lockedRate));
+        }
+    }
+}
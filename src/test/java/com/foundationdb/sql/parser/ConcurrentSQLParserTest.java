@@ -0,0 +1,199 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentSQLParserTest
+{
+    @Test
+    public void testSettingsCopied() throws Exception {
+        SQLParser template = new SQLParser();
+        template.getFeatures().remove(SQLParserFeature.INFIX_MOD);
+        template.setMaxIdentifierLength(10);
+        ConcurrentSQLParser concurrent = new ConcurrentSQLParser(template);
+        template.getFeatures().add(SQLParserFeature.INFIX_MOD);
+        SQLParser parser = concurrent.getParser();
+        assertNotSame(template, parser);
+        assertFalse(parser.hasFeature(SQLParserFeature.INFIX_MOD));
+        assertEquals(10, parser.getMaxIdentifierLength());
+        try {
+            concurrent.getFeatures().add(SQLParserFeature.INFIX_MOD);
+            fail("Shared features modified");
+        }
+        catch (UnsupportedOperationException ex) {
+        }
+    }
+
+    @Test
+    public void testParserPerThread() throws Exception {
+        final ConcurrentSQLParser concurrent = new ConcurrentSQLParser();
+        assertSame(concurrent.getParser(), concurrent.getParser());
+        final AtomicReference<SQLParser> other = new AtomicReference<SQLParser>();
+        Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    other.set(concurrent.getParser());
+                }
+            };
+        thread.start();
+        thread.join();
+        assertNotNull(other.get());
+        assertNotSame(concurrent.getParser(), other.get());
+    }
+
+    @Test
+    public void testConcurrentParses() throws Exception {
+        final ConcurrentSQLParser concurrent = new ConcurrentSQLParser();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int n = i;
+            threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            NodeToString unparser = new NodeToString();
+                            for (int j = 0; j < 500; j++) {
+                                String sql = "SELECT c" + n + " FROM t" + j + " WHERE x = $1";
+                                StatementNode stmt = concurrent.parseStatement(sql);
+                                assertEquals(sql, unparser.toString(stmt));
+                                assertEquals(1, concurrent.getParser().getParameterList().size());
+                            }
+                        }
+                        catch (Throwable ex) {
+                            failure.compareAndSet(null, ex);
+                        }
+                    }
+                };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            script.append("INSERT INTO t VALUES(").append(i).append(", 'a;b');\n")
+                .append("/* ; */ SELECT x FROM t WHERE y = ").append(i).append(";\n");
+        }
+        String sql = script.toString();
+        ConcurrentSQLParser concurrent = new ConcurrentSQLParser();
+        List<StatementNode> expected = new SQLParser().parseStatements(sql);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<StatementNode> actual = concurrent.parseStatements(sql, executor);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getBeginOffset(), actual.get(i).getBeginOffset());
+                assertEquals(expected.get(i).getEndOffset(), actual.get(i).getEndOffset());
+            }
+            String bad = sql + "SELECT FROM WHERE;" + sql;
+            try {
+                concurrent.parseStatements(bad, executor);
+                fail("Error expected");
+            }
+            catch (SQLParserException ex) {
+                assertEquals(sql.length() + "SELECT ".length() + 1, ex.getErrorPosition());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelCompact() throws Exception {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            script.append("SELECT x FROM t WHERE y IN (1, 2, 3, ").append(i).append(");\n")
+                .append("INSERT INTO t VALUES(1, 'a'), (2, 'b'), (").append(i).append(", 'c');\n");
+        }
+        SQLParser template = new SQLParser();
+        template.setCompactInListMinimum(2);
+        template.setCompactValuesMinimum(2);
+        ConcurrentSQLParser concurrent = new ConcurrentSQLParser(template);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<StatementNode> statements = concurrent.parseStatements(script.toString(), executor);
+            assertEquals(200, statements.size());
+            for (int i = 0; i < statements.size(); i += 2) {
+                SelectNode select = (SelectNode)((CursorNode)statements.get(i)).getResultSetNode();
+                InListOperatorNode in = (InListOperatorNode)select.getWhereClause();
+                assertNotNull(in.getRightOperandConstants());
+                InsertNode insert = (InsertNode)statements.get(i + 1);
+                assertNotNull(((RowsResultSetNode)insert.getResultSetNode()).getConstantRows());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelErrorKept() throws Exception {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            script.append("SELECT x FROM t WHERE y = ").append(i).append(";\n");
+        }
+        String sql = script.toString();
+        StringBuilder longer = new StringBuilder("SELECT x FROM t WHERE y IN (0");
+        for (int i = 1; i < 100; i++) {
+            longer.append(", ").append(i);
+        }
+        longer.append(");\n");
+        SQLParser template = new SQLParser();
+        template.setMaxTokenCount(50);
+        template.setFailFast(true);
+        ConcurrentSQLParser concurrent = new ConcurrentSQLParser(template);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            try {
+                concurrent.parseStatements(sql + longer + sql, executor);
+                fail("Limit expected");
+            }
+            catch (SQLParserLimitException ex) {
+                assertEquals(SQLParserLimitException.Limit.TOKEN_COUNT, ex.getLimit());
+                assertTrue(ex.getErrorPosition() > sql.length());
+            }
+            try {
+                concurrent.parseStatements(sql + "SELECT FROM WHERE;" + sql, executor);
+                fail("Error expected");
+            }
+            catch (SQLParser.FastFailException ex) {
+                assertEquals(sql.length() + "SELECT ".length() + 1, ex.getErrorPosition());
+                assertTrue(ex.getMessage().contains("FROM"));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.io.StringWriter;
+
+public class ConstantInListTest
+{
+    private SQLParser parser;
+    private NodeToString unparser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        parser.setCompactInListMinimum(1);
+        unparser = new NodeToString();
+    }
+
+    @Test
+    public void testCorpus() throws Exception {
+        SQLParser plain = new SQLParser();
+        for (File sqlFile : TestBase.listSQLFiles(SQLParserTest.RESOURCE_DIR)) {
+            if (TestBase.changeSuffix(sqlFile, ".features").exists())
+                continue;
+            String sql = TestBase.fileContents(sqlFile);
+            String caseName = sqlFile.getName();
+            StatementNode expected, actual;
+            try {
+                expected = plain.parseStatement(sql);
+            }
+            catch (StandardException ex) {
+                continue;
+            }
+            actual = parser.parseStatement(sql);
+            TestBase.assertEqualsWithoutHashes(caseName, 
+                                               unparser.toString(expected), unparser.toString(actual));
+            TestBase.assertEqualsWithoutHashes(caseName, treePrint(expected), treePrint(actual));
+            // Compare copies, since copying does not keep everything.
+            TestBase.assertEqualsWithoutHashes(caseName, 
+                                               treePrint(copy(plain, expected)),
+                                               treePrint(copy(parser, actual)));
+        }
+    }
+
+    protected static StatementNode copy(SQLParser parser, StatementNode stmt) 
+            throws StandardException {
+        return (StatementNode)parser.getNodeFactory().copyNode(stmt, parser);
+    }
+
+    protected static String treePrint(StatementNode stmt) {
+        StringWriter str = new StringWriter();
+        stmt.treePrint(str);
+        return str.toString();
+    }
+
+    @Test
+    public void testIntegers() throws Exception {
+        InListOperatorNode in = inList("SELECT * FROM t WHERE x IN (3, -1, 3000000000, +2, 3)");
+        ConstantInList constants = in.getRightOperandConstants();
+        assertNotNull(constants);
+        assertEquals(ConstantInList.Kind.LONG, constants.getKind());
+        assertEquals(5, constants.size());
+        assertEquals(-1L, constants.getLong(1));
+        assertEquals(Integer.valueOf(2), constants.getValue(3));
+        assertEquals(Long.valueOf(3000000000L), constants.getValue(2));
+        assertTrue(constants.contains(3000000000L));
+        assertFalse(constants.contains(4L));
+        assertFalse(constants.contains("3"));
+
+        ConstantInList sorted = constants.sortedDistinct();
+        assertTrue(sorted.isSorted());
+        assertEquals(4, sorted.size());
+        assertEquals(ConstantInList.of(-1L, 2L, 3L, 3000000000L), sorted);
+        assertTrue(sorted.contains(-1L));
+        assertFalse(sorted.contains(0L));
+        in.setRightOperandConstants(sorted);
+        assertEquals("x IN (-1, 2, 3, 3000000000)", unparser.toString(in));
+    }
+
+    @Test
+    public void testDoubles() throws Exception {
+        InListOperatorNode in = inList("SELECT * FROM t WHERE x IN (1e0, -2.5E1, 1e0)");
+        ConstantInList constants = in.getRightOperandConstants();
+        assertEquals(ConstantInList.Kind.DOUBLE, constants.getKind());
+        assertEquals(-25.0, constants.getDouble(1));
+        assertTrue(constants.contains(1.0));
+        assertEquals(2, constants.sortedDistinct().size());
+        assertEquals("x IN (1.000000e+00, -2.500000e+01, 1.000000e+00)", 
+                     unparser.toString(in));
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+        InListOperatorNode in = inList("SELECT * FROM t WHERE x IN ('a', 'it''s', 'b')");
+        ConstantInList constants = in.getRightOperandConstants();
+        assertEquals(ConstantInList.Kind.STRING, constants.getKind());
+        assertEquals("it's", constants.getString(1));
+        assertTrue(constants.contains("b"));
+        assertTrue(constants.sortedDistinct().contains("a"));
+        assertFalse(constants.sortedDistinct().contains("c"));
+        assertEquals("x IN ('a', 'it''s', 'b')", unparser.toString(in));
+    }
+
+    @Test
+    public void testNotCompact() throws Exception {
+        String[] sqls = {
+            "SELECT * FROM t WHERE x IN (1, 2.5)",
+            "SELECT * FROM t WHERE x IN (1, 1e0)",
+            "SELECT * FROM t WHERE x IN (1, '1')",
+            "SELECT * FROM t WHERE x IN (1, 99999999999999999999)",
+            "SELECT * FROM t WHERE x IN (1, y)",
+            "SELECT * FROM t WHERE x IN (1, 2 + 3)",
+            "SELECT * FROM t WHERE x IN (1, NULL)",
+            "SELECT * FROM t WHERE x IN (-'a')",
+            "SELECT * FROM t WHERE (x, y) IN ((1, 2), (3, 4))",
+        };
+        for (String sql : sqls) {
+            InListOperatorNode in = inList(sql);
+            assertNull(sql, in.getRightOperandConstants());
+            assertNotNull(sql, in.getRightOperandList());
+        }
+    }
+
+    @Test
+    public void testMinimum() throws Exception {
+        parser.setCompactInListMinimum(3);
+        assertNull(inList("SELECT * FROM t WHERE x IN (1, 2)").getRightOperandConstants());
+        assertNotNull(inList("SELECT * FROM t WHERE x IN (1, 2, 3)").getRightOperandConstants());
+        parser.setCompactInListMinimum(0);
+        assertNull(inList("SELECT * FROM t WHERE x IN (1, 2, 3)").getRightOperandConstants());
+        parser.setCompactInListMinimum(1);
+        parser.setParameterizeLiterals(true);
+        assertNull(inList("SELECT * FROM t WHERE x IN (1, 2, 3)").getRightOperandConstants());
+    }
+
+    @Test
+    public void testMaterialize() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT * FROM t WHERE x IN (1, 2, 3)");
+        final InListOperatorNode[] holder = new InListOperatorNode[1];
+        stmt.accept(new Visitor() {
+                public Visitable visit(Visitable node) {
+                    if (node instanceof InListOperatorNode)
+                        holder[0] = (InListOperatorNode)node;
+                    return node;
+                }
+                public boolean visitChildrenFirst(Visitable node) {
+                    return false;
+                }
+                public boolean stopTraversal() {
+                    return false;
+                }
+                public boolean skipChildren(Visitable node) {
+                    return (node instanceof InListOperatorNode);
+                }
+            });
+        InListOperatorNode in = holder[0];
+        // Skipping the children leaves the list compact.
+        assertNotNull(in.getRightOperandConstants());
+        StatementNode copy = copy(parser, stmt);
+        assertTrue(in.isEquivalent(inList(copy)));
+        assertSame(in.getRightOperandConstants(), inList(copy).getRightOperandConstants());
+        // Visiting them makes the nodes, which then replace the constants.
+        stmt.accept(new HasNodeVisitor(ParameterNode.class));
+        assertNull(in.getRightOperandConstants());
+        ValueNodeList list = in.getRightOperandList().getNodeList();
+        assertEquals(3, list.size());
+        assertEquals(Integer.valueOf(2), ((ConstantNode)list.get(1)).getValue());
+        assertTrue(in.isEquivalent(inList(copy)));
+        assertEquals("SELECT * FROM t WHERE x IN (1, 2, 3)", unparser.toString(stmt));
+    }
+
+    protected InListOperatorNode inList(String sql) throws StandardException {
+        return inList(parser.parseStatement(sql));
+    }
+
+    protected static InListOperatorNode inList(StatementNode stmt) {
+        CursorNode cursor = (CursorNode)stmt;
+        SelectNode select = (SelectNode)cursor.getResultSetNode();
+        return (InListOperatorNode)select.getWhereClause();
+    }
+
+}
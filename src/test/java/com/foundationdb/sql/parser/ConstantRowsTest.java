@@ -0,0 +1,191 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.math.BigDecimal;
+
+public class ConstantRowsTest
+{
+    private SQLParser parser;
+    private NodeToString unparser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        parser.setCompactValuesMinimum(1);
+        unparser = new NodeToString();
+    }
+
+    @Test
+    public void testCorpus() throws Exception {
+        SQLParser plain = new SQLParser();
+        for (File sqlFile : TestBase.listSQLFiles(SQLParserTest.RESOURCE_DIR)) {
+            if (TestBase.changeSuffix(sqlFile, ".features").exists())
+                continue;
+            String sql = TestBase.fileContents(sqlFile);
+            String caseName = sqlFile.getName();
+            StatementNode expected, actual;
+            try {
+                expected = plain.parseStatement(sql);
+            }
+            catch (StandardException ex) {
+                continue;
+            }
+            actual = parser.parseStatement(sql);
+            TestBase.assertEqualsWithoutHashes(caseName, 
+                                               unparser.toString(expected), unparser.toString(actual));
+            TestBase.assertEqualsWithoutHashes(caseName, 
+                                               ConstantInListTest.treePrint(expected),
+                                               ConstantInListTest.treePrint(actual));
+            // Compare copies, since copying does not keep everything.
+            TestBase.assertEqualsWithoutHashes(caseName, 
+                                               ConstantInListTest.treePrint(ConstantInListTest.copy(plain, expected)),
+                                               ConstantInListTest.treePrint(ConstantInListTest.copy(parser, actual)));
+        }
+    }
+
+    @Test
+    public void testSameTree() throws Exception {
+        SQLParser plain = new SQLParser();
+        String[] sqls = {
+            "INSERT INTO t VALUES (1, 'a', 1.5), (-2, 'b', 2.50), (3000000000, NULL, 99999999999999999999)",
+            "INSERT INTO t VALUES (1e0, TRUE), (+2.5e1, false), (NULL, NULL)",
+            "INSERT INTO t VALUES (1), (2), (3)",
+            "INSERT INTO t VALUES (1), (2), (3) RETURNING x",
+            "INSERT INTO t VALUES (1, 2), (3, 4), (x, 5)",
+            "INSERT INTO t VALUES (1, 2), (3, 4 + 5), (6, 7)",
+            "INSERT INTO t VALUES (1), (2) + 3",
+            "SELECT * FROM (VALUES (1, 'a'), (2, 'b')) AS v(x, y)",
+            "VALUES (1, 2), (3, 4) UNION VALUES (5, 6), (7, 8)",
+            "INSERT INTO t VALUES (DEFAULT, 1), (2, 3)",
+            "INSERT INTO t VALUES (DATE '2013-01-01'), (DATE '2013-01-02')",
+        };
+        for (String sql : sqls) {
+            StatementNode expected = plain.parseStatement(sql);
+            StatementNode actual = parser.parseStatement(sql);
+            assertEquals(sql, unparser.toString(expected), unparser.toString(actual));
+            TestBase.assertEqualsWithoutHashes(sql,
+                                               ConstantInListTest.treePrint(expected),
+                                               ConstantInListTest.treePrint(actual));
+        }
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        ConstantRows rows = constantRows("INSERT INTO t VALUES (1, 'a', 1.5, 1e0, TRUE), (-2, NULL, 2.50, -2e0, FALSE), (3000000000, 'c''d', 3, 3e0, NULL)");
+        assertNotNull(rows);
+        assertEquals(3, rows.getRowCount());
+        assertEquals(5, rows.getColumnCount());
+        assertEquals(ConstantRows.Kind.LONG, rows.getColumnKind(0));
+        assertNull(rows.getColumnKind(1));
+        assertNull(rows.getColumnKind(2));
+        assertEquals(ConstantRows.Kind.DOUBLE, rows.getColumnKind(3));
+        assertEquals(-2L, rows.getLong(1, 0));
+        assertEquals(Long.valueOf(3000000000L), rows.getValue(2, 0));
+        assertEquals(Integer.valueOf(1), rows.getValue(0, 0));
+        assertTrue(rows.isNull(1, 1));
+        assertEquals("c'd", rows.getString(2, 1));
+        assertEquals(new BigDecimal("2.50"), rows.getDecimal(1, 2));
+        assertEquals(ConstantRows.Kind.LONG, rows.getKind(2, 2));
+        assertEquals(-2.0, rows.getDouble(1, 3));
+        assertTrue(rows.getBoolean(0, 4));
+        assertTrue(rows.isNull(2, 4));
+        try {
+            rows.getString(0, 0);
+            fail("Wrong kind allowed");
+        }
+        catch (IllegalStateException ex) {
+        }
+
+        ConstantRows.Cursor cursor = rows.cursor();
+        long sum = 0;
+        int count = 0;
+        while (cursor.next()) {
+            sum += cursor.getLong(0);
+            count++;
+        }
+        assertEquals(3, count);
+        assertEquals(2999999999L, sum);
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testNotCompact() throws Exception {
+        String[] sqls = {
+            "INSERT INTO t VALUES (1, 2)",
+            "INSERT INTO t VALUES (1, 2), (3, x)",
+            "INSERT INTO t VALUES (1, 2), (3, 4), (5, 6 + 7)",
+            "INSERT INTO t VALUES (1), (2) + 3",
+        };
+        for (String sql : sqls) {
+            assertNull(sql, constantRows(sql));
+        }
+        parser.setCompactValuesMinimum(4);
+        assertNull(constantRows("INSERT INTO t VALUES (1), (2), (3)"));
+        assertNotNull(constantRows("INSERT INTO t VALUES (1), (2), (3), (4)"));
+        parser.setParameterizeLiterals(true);
+        assertNull(constantRows("INSERT INTO t VALUES (1), (2), (3), (4)"));
+    }
+
+    @Test
+    public void testRowSize() throws Exception {
+        try {
+            parser.parseStatement("INSERT INTO t VALUES (1, 2), (3)");
+            fail("Row size mismatch allowed");
+        }
+        catch (StandardException ex) {
+            assertEquals("Row value size is different", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testMaterialize() throws Exception {
+        StatementNode stmt = parser.parseStatement("INSERT INTO t VALUES (1, 'a'), (2, 'b')");
+        RowsResultSetNode rows = rowsNode(stmt);
+        StatementNode copy = ConstantInListTest.copy(parser, stmt);
+        assertSame(rows.getConstantRows(), rowsNode(copy).getConstantRows());
+        assertEquals(2, rows.getResultColumns().size());
+        stmt.accept(new HasNodeVisitor(ParameterNode.class));
+        assertNull(rows.getConstantRows());
+        assertEquals(2, rows.getRows().size());
+        rows.addRow(rows.getRows().get(0));
+        assertEquals("INSERT INTO t VALUES(1, 'a'), (2, 'b'), (1, 'a')", unparser.toString(stmt));
+        assertEquals("INSERT INTO t VALUES(1, 'a'), (2, 'b')", unparser.toString(copy));
+    }
+
+    protected ConstantRows constantRows(String sql) throws StandardException {
+        ResultSetNode rs = ((InsertNode)parser.parseStatement(sql)).getResultSetNode();
+        if (rs instanceof RowsResultSetNode)
+            return ((RowsResultSetNode)rs).getConstantRows();
+        return null;
+    }
+
+    protected static RowsResultSetNode rowsNode(StatementNode stmt) {
+        return (RowsResultSetNode)((InsertNode)stmt).getResultSetNode();
+    }
+
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.unparser.NodeToString;
+import com.foundationdb.sql.views.ViewDefinition;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class CopyOnWriteTest
+{
+    private SQLParser parser;
+    private NodeToString unparser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        unparser = new NodeToString();
+    }
+
+    /** Qualify unqualified column references, as binding might. */
+    static class Qualifier implements Visitor {
+        private final SQLParserContext pc;
+        private final boolean skipExpressions;
+
+        public Qualifier(SQLParserContext pc, boolean skipExpressions) {
+            this.pc = pc;
+            this.skipExpressions = skipExpressions;
+        }
+
+        public Visitable visit(Visitable node) throws StandardException {
+            if (node instanceof ColumnReference) {
+                ColumnReference column = (ColumnReference)node;
+                if (column.getTableNameNode() == null)
+                    column.setTableNameNode((TableName)
+                        pc.getNodeFactory().getNode(NodeTypes.TABLE_NAME, 
+                                                    null, "q", pc));
+            }
+            else if (node instanceof ResultColumn) {
+                ((QueryTreeNode)node).setUserData(Boolean.TRUE);
+            }
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return skipExpressions && (node instanceof ValueNode);
+        }
+    }
+
+    @Test
+    public void testView() throws Exception {
+        ViewDefinition view = new ViewDefinition("CREATE VIEW v AS SELECT a, b + 1 AS c FROM t WHERE d > 2",
+                                                 parser);
+        String original = unparser.toString(view.getSubquery());
+        SQLParser other = new SQLParser();
+        FromSubquery deep = view.copySubquery(other, false);
+        FromSubquery shared = view.copySubquery(other, true);
+        assertNotSame(view.getSubquery(), shared);
+        assertSame(other, shared.getParserContext());
+        // Shared copies share with each other, not with the definition.
+        assertNotSame(view.getSubquery().getSubquery(), shared.getSubquery());
+        assertSame(((SelectNode)view.copySubquery(other, true).getSubquery()).getResultColumns(),
+                   ((SelectNode)shared.getSubquery()).getResultColumns());
+        assertFalse(view.getSubquery().isShared());
+        assertEquals(original, unparser.toString(shared));
+
+        deep = (FromSubquery)deep.accept(new Qualifier(other, false));
+        shared = (FromSubquery)shared.accept(new Qualifier(other, false));
+        assertEquals(original, unparser.toString(view.getSubquery()));
+        assertEquals(unparser.toString(deep), unparser.toString(shared));
+        assertFalse(original.equals(unparser.toString(shared)));
+        SelectNode select = (SelectNode)shared.getSubquery();
+        assertNotSame(view.getSubquery().getSubquery(), select);
+        assertEquals(Boolean.TRUE, select.getResultColumns().get(0).getUserData());
+        assertNull(((SelectNode)view.getSubquery().getSubquery())
+                   .getResultColumns().get(0).getUserData());
+
+        // Another copy starts from the definition again.
+        FromSubquery again = view.copySubquery(other, true);
+        assertEquals(original, unparser.toString(again));
+    }
+
+    @Test
+    public void testSkipped() throws Exception {
+        StatementNode stmt = (StatementNode)
+            parser.getNodeFactory().shareNode(parser.parseStatement("SELECT a, b + 1 FROM t WHERE t.d > 2"), parser);
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        StatementNode copy = (StatementNode)
+            parser.getNodeFactory().copyNode(stmt, parser, true);
+        copy = (StatementNode)copy.accept(new Qualifier(parser, true));
+        SelectNode copySelect = (SelectNode)((CursorNode)copy).getResultSetNode();
+        assertNotSame(select, copySelect);
+        assertNotSame(select.getResultColumns(), copySelect.getResultColumns());
+        // Expressions are visited, but not what is under them, so
+        // only their children are copied.
+        BinaryOperatorNode where = (BinaryOperatorNode)select.getWhereClause();
+        BinaryOperatorNode copyWhere = (BinaryOperatorNode)copySelect.getWhereClause();
+        assertNotSame(where, copyWhere);
+        ColumnReference left = (ColumnReference)where.getLeftOperand();
+        ColumnReference copyLeft = (ColumnReference)copyWhere.getLeftOperand();
+        assertNotSame(left, copyLeft);
+        assertSame(left.getTableNameNode(), copyLeft.getTableNameNode());
+        assertNull(select.getResultColumns().get(1).getUserData());
+        assertEquals(Boolean.TRUE, copySelect.getResultColumns().get(1).getUserData());
+    }
+
+    /** A shared copy changed by a visitor is the same as a deep one,
+     * and the original is not changed. */
+    @Test
+    public void testCorpus() throws Exception {
+        SQLParser other = new SQLParser();
+        int count = 0;
+        for (String sql : BenchmarkBase.loadCorpus()) {
+            StatementNode stmt = parser.parseStatement(sql);
+            String original;
+            try {
+                original = unparser.toString(stmt);
+            }
+            catch (StandardException ex) {
+                continue;
+            }
+            NodeFactory nodeFactory = other.getNodeFactory();
+            QueryTreeNode snapshot = nodeFactory.shareNode(stmt, parser);
+            QueryTreeNode deep = nodeFactory.copyNode(stmt, other, false);
+            QueryTreeNode shared = nodeFactory.copyNode(snapshot, other, true);
+            deep = (QueryTreeNode)deep.accept(new Qualifier(other, false));
+            shared = (QueryTreeNode)shared.accept(new Qualifier(other, false));
+            assertEquals(sql, original, unparser.toString(stmt));
+            assertEquals(sql, original, unparser.toString(snapshot));
+            assertEquals(sql, unparser.toString(deep), unparser.toString(shared));
+            count++;
+        }
+        assertTrue(count > 0);
+    }
+
+    /** Only a copy is shared, so a visitor whose result is ignored
+     * still changes the original. */
+    @Test
+    public void testOriginalNotShared() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT a FROM t");
+        parser.getNodeFactory().shareNode(stmt, parser);
+        assertFalse(stmt.isShared());
+        // A tree that is not shared is copied deeply.
+        StatementNode copy = (StatementNode)
+            parser.getNodeFactory().copyNode(stmt, parser, true);
+        assertNotSame(((CursorNode)stmt).getResultSetNode(), 
+                      ((CursorNode)copy).getResultSetNode());
+        stmt.accept(new Qualifier(parser, false));
+        assertEquals("SELECT q.a AS a FROM t", unparser.toString(stmt));
+    }
+
+    /** Change children from the parent, as binding does. */
+    static class ParentChanger implements Visitor {
+        public Visitable visit(Visitable node) throws StandardException {
+            if (node instanceof SelectNode) {
+                SelectNode select = (SelectNode)node;
+                select.getResultColumns().get(0).setName("renamed");
+                for (FromTable table : select.getFromList()) {
+                    table.setUserData("bound");
+                }
+            }
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testParentChangesChildren() throws Exception {
+        ViewDefinition view = new ViewDefinition("CREATE VIEW v AS SELECT a FROM t, u",
+                                                 parser);
+        String original = unparser.toString(view.copySubquery(parser, true));
+        FromSubquery first = view.copySubquery(parser, true);
+        first = (FromSubquery)first.accept(new ParentChanger());
+        SelectNode select = (SelectNode)first.getSubquery();
+        assertEquals("renamed", select.getResultColumns().get(0).getName());
+        assertEquals("bound", select.getFromList().get(1).getUserData());
+        // Not seen by later copies, and no assertion that the shared
+        // tree changed.
+        FromSubquery second = view.copySubquery(parser, true);
+        assertEquals(original, unparser.toString(second));
+        select = (SelectNode)second.getSubquery();
+        assertNull(select.getFromList().get(0).getUserData());
+    }
+
+    @Test
+    public void testChangedShared() throws Exception {
+        StatementNode stmt = (StatementNode)
+            parser.getNodeFactory().shareNode(parser.parseStatement("SELECT a FROM t WHERE b = 1"), parser);
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        select.setWhereClause(null);
+        try {
+            parser.getNodeFactory().copyNode(stmt, parser, true);
+        }
+        catch (AssertionError ex) {
+            return;
+        }
+        fail("Change to shared tree not caught");
+    }
+
+}
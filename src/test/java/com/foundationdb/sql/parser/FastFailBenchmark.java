@@ -0,0 +1,75 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statements per second and bytes allocated per statement rejecting
+ * malformed input, the first halves of the statements of the test
+ * corpus, with and without {@link SQLParser#setFailFast}.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.FastFailBenchmark
+ * </pre>
+ */
+public class FastFailBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 20);
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> malformed = new ArrayList<String>();
+        SQLParser checker = new SQLParser();
+        for (String sql : loadCorpus()) {
+            sql = sql.substring(0, sql.length() / 2);
+            try {
+                checker.parseStatement(sql);
+            }
+            catch (StandardException ex) {
+                malformed.add(sql);
+            }
+        }
+        System.out.println(String.format("%d statements", malformed.size()));
+
+        for (boolean failFast : new boolean[] { false, true }) {
+            final SQLParser parser = new SQLParser();
+            parser.setFailFast(failFast);
+            Task task = new Task() {
+                    public Object run() throws Exception {
+                        Object result = null;
+                        for (String sql : malformed) {
+                            try {
+                                parser.parseStatement(sql);
+                            }
+                            catch (StandardException ex) {
+                                result = ex;
+                            }
+                        }
+                        return result;
+                    }
+                };
+            double rate = rate(task, millis / 2, millis) * malformed.size();
+            double bytes = allocation(task, iterations) / malformed.size();
+            System.out.println(String.format("%-10s %10.0f stmts/sec  %8.0f bytes/stmt",
+                                             failFast ? "fail fast" : "normal",
+                                             rate, bytes));
+        }
+    }
+}
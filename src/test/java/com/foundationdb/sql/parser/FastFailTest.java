@@ -0,0 +1,186 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FastFailTest
+{
+    private SQLParser plain, parser;
+
+    @Before
+    public void before() {
+        plain = new SQLParser();
+        parser = new SQLParser();
+        parser.setFailFast(true);
+    }
+
+    /** The statements of the corpus and their first halves, many of
+     * which are not valid.
+     */
+    static List<String> statements() throws Exception {
+        List<String> result = new ArrayList<String>();
+        for (File sqlFile : TestBase.listSQLFiles(SQLParserTest.RESOURCE_DIR)) {
+            if (TestBase.changeSuffix(sqlFile, ".features").exists())
+                continue;
+            String sql = TestBase.fileContents(sqlFile);
+            result.add(sql);
+            result.add(sql.substring(0, sql.length() / 2));
+        }
+        return result;
+    }
+
+    protected void checkSame(String sql, StandardException expected, StandardException actual) {
+        if (expected == null) {
+            assertNull(sql, actual);
+            return;
+        }
+        assertNotNull(sql, actual);
+        assertEquals(sql, expected instanceof SQLParserException, actual instanceof SQLParserException);
+        assertEquals(sql, expected.getMessage(), actual.getMessage());
+        if ((expected instanceof SQLParserException) && (sql.indexOf('\t') < 0))
+            assertEquals(sql, 
+                         ((SQLParserException)expected).getErrorPosition(),
+                         ((SQLParserException)actual).getErrorPosition());
+    }
+
+    @Test
+    public void testStatement() throws Exception {
+        int nerrors = 0;
+        for (String sql : statements()) {
+            StandardException expected = null, actual = null;
+            try {
+                plain.parseStatement(sql);
+            }
+            catch (StandardException ex) {
+                expected = ex;
+                nerrors++;
+            }
+            try {
+                parser.parseStatement(sql);
+            }
+            catch (StandardException ex) {
+                actual = ex;
+            }
+            checkSame(sql, expected, actual);
+        }
+        assertTrue(nerrors > 100);
+    }
+
+    @Test
+    public void testStatements() throws Exception {
+        for (String sql : statements()) {
+            StandardException expected = null, actual = null;
+            try {
+                plain.parseStatements(sql);
+            }
+            catch (StandardException ex) {
+                expected = ex;
+            }
+            try {
+                parser.parseStatements(sql);
+            }
+            catch (StandardException ex) {
+                actual = ex;
+            }
+            checkSame(sql, expected, actual);
+        }
+    }
+
+    @Test
+    public void testNoStackTrace() throws Exception {
+        try {
+            parser.parseStatement("SELECT * FROM t WHERE");
+            fail("expected a syntax error");
+        }
+        catch (SQLParserException ex) {
+            assertEquals(0, ex.getStackTrace().length);
+            assertEquals(22, ex.getErrorPosition());
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Encountered \"<EOF>\" at line 1, column 22."));
+        }
+    }
+
+    protected ConcurrentSQLParser errorSettings() throws Exception {
+        try {
+            parser.parseStatement("SELECT * FROM t WHERE");
+        }
+        catch (SQLParser.FastFailException ex) {
+            return ex.getSettings();
+        }
+        fail("expected a syntax error");
+        return null;
+    }
+
+    @Test
+    public void testSettingsShared() throws Exception {
+        ConcurrentSQLParser settings = errorSettings();
+        assertSame(settings, errorSettings());
+        parser.setMaxNodeCount(1000);
+        ConcurrentSQLParser changed = errorSettings();
+        assertNotSame(settings, changed);
+        assertEquals(1000, changed.getMaxNodeCount());
+        parser.getFeatures().remove(SQLParserFeature.INFIX_MOD);
+        settings = errorSettings();
+        assertNotSame(changed, settings);
+        assertFalse(settings.hasFeature(SQLParserFeature.INFIX_MOD));
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        parser.setRecycleTokens(true);
+        for (String sql : new String[] { "SELECT $$", "SELECT 1 +", "SELECT \"x" }) {
+            try {
+                parser.parseStatement(sql);
+                fail("expected an error from " + sql);
+            }
+            catch (SQLParserException ex) {
+            }
+            assertNotNull(parser.parseStatement("SELECT 1"));
+        }
+    }
+
+    @Test
+    public void testStreamAfterLexicalError() throws Exception {
+        parser.beginStatements(new StringReader("SELECT 1; SELECT 2; SELECT $$; SELECT 3"));
+        int nstatements = 0;
+        try {
+            while (parser.nextStatement() != null)
+                nstatements++;
+            fail("expected a lexical error");
+        }
+        catch (SQLParserException ex) {
+        }
+        assertTrue(nstatements > 0);
+        try {
+            parser.nextStatement();
+            fail("expected not to go on");
+        }
+        catch (IllegalStateException ex) {
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.unparser.NodeToString;
+
+import java.util.List;
+
+/**
+ * {@link SQLParser#fingerprintStatement} compared with parsing with
+ * literals turned into parameters and unparsing, over the test corpus.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.FingerprintBenchmark
+ * </pre>
+ */
+public class FingerprintBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 20);
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> corpus = loadCorpus();
+        final SQLParser parser = new SQLParser();
+        final SQLParser parameterizer = new SQLParser();
+        parameterizer.setParameterizeLiterals(true);
+        final NodeToString unparser = new NodeToString();
+        final long[] fingerprint = new long[2];
+
+        Task unparse = new Task() {
+                public Object run() throws Exception {
+                    Object last = null;
+                    for (String sql : corpus) {
+                        last = unparser.toString(parameterizer.parseStatement(sql));
+                    }
+                    return last;
+                }
+            };
+        Task hash = new Task() {
+                public Object run() throws Exception {
+                    long last = 0;
+                    for (String sql : corpus) {
+                        parser.fingerprintStatement(sql, fingerprint);
+                        last ^= fingerprint[0];
+                    }
+                    return last;
+                }
+            };
+        System.out.println(String.format("%d statements", corpus.size()));
+        // Alternate, since the first passes are still being compiled.
+        for (int i = 0; i < 4; i++) {
+            Task task = ((i % 2) == 0) ? unparse : hash;
+            double rate = rate(task, millis / 2, millis) * corpus.size();
+            double bytes = allocation(task, iterations) / corpus.size();
+            System.out.println(String.format("%-12s %10.0f stmts/sec  %8.0f bytes/stmt allocated",
+                                             ((i % 2) == 0) ? "parse+unparse" : "fingerprint",
+                                             rate, bytes));
+        }
+    }
+}
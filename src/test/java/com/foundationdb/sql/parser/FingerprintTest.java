@@ -0,0 +1,152 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class FingerprintTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+    }
+
+    protected void same(String sql1, String sql2) throws Exception {
+        assertEquals(sql1 + " / " + sql2,
+                     parser.normalizeStatement(sql1), parser.normalizeStatement(sql2));
+        long[] fp1 = new long[2], fp2 = new long[2];
+        parser.fingerprintStatement(sql1, fp1);
+        parser.fingerprintStatement(sql2, fp2);
+        assertEquals(sql1 + " / " + sql2, fp1[0], fp2[0]);
+        assertEquals(sql1 + " / " + sql2, fp1[1], fp2[1]);
+        assertEquals(fp1[0], parser.fingerprintStatement(sql1));
+    }
+
+    protected void different(String sql1, String sql2) throws Exception {
+        long[] fp1 = new long[2], fp2 = new long[2];
+        parser.fingerprintStatement(sql1, fp1);
+        parser.fingerprintStatement(sql2, fp2);
+        assertFalse(sql1 + " / " + sql2, fp1[0] == fp2[0]);
+        assertFalse(sql1 + " / " + sql2, fp1[1] == fp2[1]);
+    }
+
+    @Test
+    public void testLiterals() throws Exception {
+        same("SELECT * FROM t WHERE x = 1", "SELECT * FROM t WHERE x = 'abc'");
+        same("SELECT * FROM t WHERE x = -1.5e3", "SELECT * FROM t WHERE x = ?");
+        same("SELECT a + 1 FROM t", "SELECT a + 2 FROM t");
+        same("INSERT INTO t VALUES(1, 'x', X'00')", "INSERT INTO t VALUES($1, $2, $3)");
+        same("SELECT x FROM t LIMIT 10", "SELECT x FROM t LIMIT 20");
+        different("SELECT a + 1 FROM t", "SELECT a - 1 FROM t");
+        // Keywords that end an operand.
+        different("SELECT value + 1 FROM t", "SELECT value - 1 FROM t");
+        different("SELECT CASE WHEN a THEN b END + 1 FROM t",
+                  "SELECT CASE WHEN a THEN b END - 1 FROM t");
+        different("SELECT CURRENT_DATE + 1 FROM t", "SELECT CURRENT_DATE - 1 FROM t");
+        same("SELECT * FROM t WHERE -1 = x", "SELECT * FROM t WHERE 1 = x");
+        same("SELECT CASE WHEN a THEN -1 ELSE -2 END FROM t",
+             "SELECT CASE WHEN a THEN 1 ELSE 2 END FROM t");
+        different("SELECT * FROM t WHERE x = 1", "SELECT * FROM t WHERE x = NULL");
+        different("SELECT * FROM t WHERE x IN (1, 2)", "SELECT * FROM t WHERE x IN (1, 2, 3)");
+    }
+
+    @Test
+    public void testWhiteSpaceAndCase() throws Exception {
+        same("SELECT * FROM t WHERE x = 1;", 
+             "select *\n  from T -- comment\n  where /* hint */ X=1");
+        same("SELECT \"a\"\"b\" FROM t", "SELECT  \"a\"\"b\"  FROM  t");
+        different("SELECT \"X\" FROM t", "SELECT x FROM t");
+        different("SELECT x FROM t1", "SELECT x FROM t2");
+        different("SELECT x FROM t WHERE y = 1", "SELECT x FROM t WHERE z = 1");
+        different("SELECT x, y FROM t", "SELECT xy FROM t");
+    }
+
+    @Test
+    public void testStructuralNumbers() throws Exception {
+        different("SELECT x, y FROM t ORDER BY 1", "SELECT x, y FROM t ORDER BY 2");
+        different("SELECT x, y, COUNT(*) FROM t GROUP BY 1, 2",
+                  "SELECT x, y, COUNT(*) FROM t GROUP BY 2, 1");
+        same("SELECT x FROM t ORDER BY x + 1", "SELECT x FROM t ORDER BY x + 2");
+        same("SELECT rank() OVER (ORDER BY a), coalesce(b, 5) FROM t",
+             "SELECT rank() OVER (ORDER BY a), coalesce(b, 6) FROM t");
+        same("SELECT x FROM t ORDER BY CASE WHEN x IN (1, 2) THEN 0 ELSE 1 END",
+             "SELECT x FROM t ORDER BY CASE WHEN x IN (1, 3) THEN 0 ELSE 1 END");
+        different("SELECT x, rank() OVER (ORDER BY a) FROM t ORDER BY (x), 1",
+                  "SELECT x, rank() OVER (ORDER BY a) FROM t ORDER BY (x), 2");
+        different("SELECT CAST(x AS VARCHAR(10)) FROM t", 
+                  "SELECT CAST(x AS VARCHAR(20)) FROM t");
+        different("CREATE TABLE t(d DECIMAL(10,2))", "CREATE TABLE t(d DECIMAL(10,3))");
+        same("SELECT SUBSTR(x, 1, 2) FROM t", "SELECT SUBSTR(x, 3, 4) FROM t");
+    }
+
+    @Test
+    public void testNormalize() throws Exception {
+        assertEquals("SELECT a, \"B\" FROM s.tab WHERE col1 = ? AND col2 IN (?, ?) ORDER BY 1",
+                     parser.normalizeStatement("select A,\"B\" from S.Tab where COL1='x' and col2 in (1,-2) order by 1;"));
+        assertEquals("SELECT VALUE - ? FROM tab",
+                     parser.normalizeStatement("select value - 1 from tab"));
+        assertEquals("SELECT x - ? FROM tab",
+                     parser.normalizeStatement("SELECT x-1 FROM tab"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        try {
+            parser.fingerprintStatement("SELECT \"unterminated");
+            fail();
+        }
+        catch (StandardException ex) {
+        }
+        // Parser still usable after fingerprints.
+        StatementNode stmt = parser.parseStatement("SELECT x FROM t WHERE y = ?");
+        assertEquals(1, parser.getParameterList().size());
+        parser.fingerprintStatement("DELETE FROM t");
+        assertEquals(1, parser.getParameterList().size());
+        parser.parseStatement("INSERT INTO t VALUES(1)");
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        ConcurrentSQLParser concurrent = new ConcurrentSQLParser();
+        assertEquals(parser.fingerprintStatement("SELECT 1"),
+                     concurrent.fingerprintStatement("SELECT 2"));
+        assertEquals("SELECT ?", concurrent.normalizeStatement("select 3"));
+    }
+
+    /** The normalized text of every statement in the corpus has the
+     * same fingerprint and normalizes to itself. */
+    @Test
+    public void testCorpus() throws Exception {
+        for (String sql : BenchmarkBase.loadCorpus()) {
+            long[] fp1 = new long[2], fp2 = new long[2];
+            parser.fingerprintStatement(sql, fp1);
+            String normalized = parser.normalizeStatement(sql);
+            parser.fingerprintStatement(normalized, fp2);
+            assertEquals(sql, normalized, parser.normalizeStatement(normalized));
+            assertEquals(normalized, fp1[0], fp2[0]);
+            assertEquals(normalized, fp1[1], fp2[1]);
+        }
+    }
+
+}
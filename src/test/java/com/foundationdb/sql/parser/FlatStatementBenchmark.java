@@ -0,0 +1,102 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link FlatStatement} compared with keeping the tree of nodes, over
+ * the test corpus: the rate of parsing with and without flattening,
+ * and the heap taken by many statements kept along with their text.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.FlatStatementBenchmark
+ * </pre>
+ */
+public class FlatStatementBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 20);
+        int copies = Integer.getInteger("benchmark.copies", 200);
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> corpus = loadCorpus();
+        final SQLParser parser = new SQLParser();
+
+        Task tree = new Task() {
+                public Object run() throws Exception {
+                    Object last = null;
+                    for (String sql : corpus) {
+                        last = parser.parseStatement(sql);
+                    }
+                    return last;
+                }
+            };
+        Task flat = new Task() {
+                public Object run() throws Exception {
+                    Object last = null;
+                    for (String sql : corpus) {
+                        last = FlatStatement.parse(parser, sql);
+                    }
+                    return last;
+                }
+            };
+        System.out.println(String.format("%d statements", corpus.size()));
+        // Alternate, since the first passes are still being compiled.
+        for (int i = 0; i < 4; i++) {
+            Task task = ((i % 2) == 0) ? tree : flat;
+            double rate = rate(task, millis / 2, millis) * corpus.size();
+            double bytes = allocation(task, iterations) / corpus.size();
+            System.out.println(String.format("%-8s %10.0f stmts/sec  %8.0f bytes/stmt allocated",
+                                             ((i % 2) == 0) ? "tree" : "flat",
+                                             rate, bytes));
+        }
+
+        // Copies of the text, so that each statement keeps its own.
+        long base = usedHeap();
+        List<String> texts = new ArrayList<String>(corpus.size() * copies);
+        for (int i = 0; i < copies; i++) {
+            for (String sql : corpus) {
+                texts.add(new String(sql.toCharArray()));
+            }
+        }
+        long textBytes = usedHeap() - base;
+        base = usedHeap();
+        List<Object> kept = new ArrayList<Object>(texts.size());
+        for (String sql : texts) {
+            kept.add(parser.parseStatement(sql));
+        }
+        long treeBytes = usedHeap() - base;
+        kept.clear();
+        base = usedHeap();
+        for (String sql : texts) {
+            kept.add(FlatStatement.parse(parser, sql));
+        }
+        long flatBytes = usedHeap() - base;
+        double n = texts.size();
+        System.out.println(String.format("text %8.0f  tree %8.0f  flat %8.0f bytes/stmt retained",
+                                         textBytes / n, treeBytes / n, flatBytes / n));
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FlatStatementTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+    }
+
+    /** The node types of a tree in prefix order, with the name of
+     * each base table just after it.
+     */
+    static class TypeLister implements Visitor {
+        List<Integer> types = new ArrayList<Integer>();
+
+        public Visitable visit(Visitable node) {
+            types.add(((QueryTreeNode)node).getNodeType());
+            if ((node instanceof FromBaseTable) &&
+                (((FromBaseTable)node).getOrigTableName() != null))
+                types.add(NodeTypes.TABLE_NAME);
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testSelect() throws Exception {
+        String sql = "SELECT a, b + 1 FROM s.t x WHERE c = ?";
+        FlatStatement flat = FlatStatement.parse(parser, sql);
+        assertEquals(sql, flat.getSQLText());
+        FlatStatement.Cursor cursor = flat.cursor();
+        assertEquals(NodeTypes.CURSOR_NODE, cursor.getNodeType());
+        assertFalse(cursor.parent());
+        assertTrue(cursor.firstChild());
+        assertEquals(NodeTypes.SELECT_NODE, cursor.getNodeType());
+        List<String> names = new ArrayList<String>();
+        List<Object> values = new ArrayList<Object>();
+        while (cursor.next()) {
+            if (cursor.getNodeType() == NodeTypes.COLUMN_REFERENCE)
+                names.add(cursor.getName());
+            else if (cursor.getNodeType() == NodeTypes.TABLE_NAME)
+                names.add(cursor.getQualifier() + "." + cursor.getName());
+            else if (cursor.getNodeType() == NodeTypes.FROM_BASE_TABLE)
+                names.add("AS " + cursor.getName());
+            else if (cursor.getValue() != null)
+                values.add(cursor.getValue());
+        }
+        assertEquals("[a, b, AS x, s.t, c]", names.toString());
+        assertEquals("[1, 0]", values.toString());
+        assertFalse(cursor.next());
+        int node = cursor.getNode();
+        assertEquals(NodeTypes.PARAMETER_NODE, flat.getNodeType(node));
+        assertTrue(cursor.parent());
+        assertEquals(NodeTypes.BINARY_EQUALS_OPERATOR_NODE, cursor.getNodeType());
+        assertEquals("=", cursor.getName());
+        assertTrue(cursor.firstChild());
+        assertEquals("c", cursor.getName());
+        assertEquals(sql.indexOf("c ="), cursor.getBeginOffset());
+        assertEquals(sql.indexOf("c ="), cursor.getEndOffset());
+        assertTrue(cursor.nextSibling());
+        assertEquals(node, cursor.getNode());
+        assertFalse(cursor.nextSibling());
+        assertFalse(cursor.firstChild());
+    }
+
+    @Test
+    public void testToStatementNode() throws Exception {
+        String sql = "UPDATE t SET x = x + 1 WHERE y IN (1, 2, 3)";
+        NodeToString unparser = new NodeToString();
+        FlatStatement flat = FlatStatement.parse(parser, sql);
+        assertEquals(unparser.toString(parser.parseStatement(sql)),
+                     unparser.toString(flat.toStatementNode(parser)));
+        assertEquals(parser.getFeatures(), flat.getFeatures());
+        SQLParser other = new SQLParser();
+        other.getFeatures().remove(SQLParserFeature.INFIX_MOD);
+        try {
+            flat.toStatementNode(other);
+            fail("Parsed again with different features");
+        }
+        catch (StandardException ex) {
+        }
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        parser.setCompactInListMinimum(2);
+        parser.setCompactValuesMinimum(2);
+        String sql = "SELECT a FROM t WHERE b IN (1, 2, 3)";
+        StatementNode stmt = parser.parseStatement(sql);
+        InListOperatorNode inList = (InListOperatorNode)
+            ((SelectNode)((CursorNode)stmt).getResultSetNode()).getWhereClause();
+        FlatStatement flat = FlatStatement.of(sql, stmt);
+        // The constants are not made into nodes, for either.
+        assertNotNull(inList.getRightOperandConstants());
+        FlatStatement.Cursor cursor = flat.cursor();
+        while (cursor.getNodeType() != NodeTypes.IN_LIST_OPERATOR_NODE) {
+            assertTrue(cursor.next());
+        }
+        assertSame(inList.getRightOperandConstants(), cursor.getValue());
+        // Only the left operand is under it.
+        assertTrue(cursor.firstChild());
+        assertEquals(NodeTypes.ROW_CTOR_NODE, cursor.getNodeType());
+        assertFalse(cursor.nextSibling());
+
+        sql = "INSERT INTO t VALUES (1, 'x'), (2, 'y') RETURNING a";
+        stmt = parser.parseStatement(sql);
+        RowsResultSetNode rows = (RowsResultSetNode)((InsertNode)stmt).getResultSetNode();
+        flat = FlatStatement.of(sql, stmt);
+        assertNotNull(rows.getConstantRows());
+        cursor = flat.cursor();
+        while (cursor.getNodeType() != NodeTypes.ROWS_RESULT_SET_NODE) {
+            assertTrue(cursor.next());
+        }
+        assertSame(rows.getConstantRows(), cursor.getValue());
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testMoveOutside() throws Exception {
+        FlatStatement flat = FlatStatement.parse(parser, "VALUES 1");
+        flat.cursor().moveTo(flat.size());
+    }
+
+    @Test
+    public void testCorpus() throws Exception {
+        NodeToString unparser = new NodeToString();
+        for (File sqlFile : TestBase.listSQLFiles(SQLParserTest.RESOURCE_DIR)) {
+            if (TestBase.changeSuffix(sqlFile, ".features").exists())
+                continue;
+            String sql = TestBase.fileContents(sqlFile);
+            String caseName = sqlFile.getName();
+            StatementNode stmt;
+            try {
+                stmt = parser.parseStatement(sql);
+            }
+            catch (StandardException ex) {
+                continue;
+            }
+            FlatStatement flat = FlatStatement.of(sql, stmt);
+            TypeLister lister = new TypeLister();
+            stmt.accept(lister);
+            assertEquals(caseName, lister.types.size(), flat.size());
+            for (int i = 0; i < flat.size(); i++) {
+                assertEquals(caseName, (int)lister.types.get(i), flat.getNodeType(i));
+                // Children, found by siblings, cover just the subtree.
+                int end = i + 1;
+                for (int child = flat.getFirstChild(i); child >= 0; 
+                     child = flat.getNextSibling(child)) {
+                    assertEquals(caseName, end, child);
+                    assertEquals(caseName, i, flat.getParent(child));
+                    end = flat.getSubtreeEnd(child);
+                }
+                assertEquals(caseName, flat.getSubtreeEnd(i), end);
+            }
+            assertEquals(caseName, unparser.toString(stmt),
+                         unparser.toString(flat.toStatementNode(parser)));
+        }
+    }
+}
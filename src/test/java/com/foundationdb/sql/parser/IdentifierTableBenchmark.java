@@ -0,0 +1,86 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsing with and without an {@link IdentifierTable}: the rate, and
+ * the heap retained by the trees of the test corpus, as when they are
+ * kept in a {@link StatementCache}.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.IdentifierTableBenchmark
+ * </pre>
+ */
+public class IdentifierTableBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        long millis = millisProperty("benchmark.millis", 5000);
+        int copies = Integer.getInteger("benchmark.copies", 50);
+        final List<String> corpus = loadCorpus();
+
+        final SQLParser plainParser = new SQLParser();
+        plainParser.setIdentifierTable(null);
+        final SQLParser tableParser = new SQLParser();
+
+        double plainRate = rate(new Task() {
+                int index = 0;
+                public Object run() throws Exception {
+                    return plainParser.parseStatement(corpus.get(index++ % corpus.size()));
+                }
+            }, millis / 2, millis);
+        double tableRate = rate(new Task() {
+                int index = 0;
+                public Object run() throws Exception {
+                    return tableParser.parseStatement(corpus.get(index++ % corpus.size()));
+                }
+            }, millis / 2, millis);
+        long plainHeap = retained(new SQLParser() {{ setIdentifierTable(null); }}, corpus, copies);
+        long tableHeap = retained(new SQLParser(), corpus, copies);
+
+        System.out.println(String.format("%d statements x %d", corpus.size(), copies));
+        System.out.println(String.format("parse     plain %10.0f stmts/s  table %10.0f stmts/s  (%.2fx)",
+                                         plainRate, tableRate, tableRate / plainRate));
+        System.out.println(String.format("retained  plain %10d bytes    table %10d bytes    (%.1f%% less)",
+                                         plainHeap, tableHeap, 
+                                         100.0 * (plainHeap - tableHeap) / plainHeap));
+    }
+
+    /** Heap used by the trees from parsing <code>copies</code> copies of the corpus. */
+    static long retained(SQLParser parser, List<String> corpus, int copies) throws Exception {
+        long before = usedHeap();
+        List<StatementNode> trees = new ArrayList<StatementNode>(corpus.size() * copies);
+        for (int i = 0; i < copies; i++) {
+            for (String sql : corpus) {
+                // A new string each time, as if read from a client.
+                trees.add(parser.parseStatement(new String(sql)));
+            }
+        }
+        long after = usedHeap();
+        if (trees.size() < 0) System.out.println(trees);
+        return after - before;
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
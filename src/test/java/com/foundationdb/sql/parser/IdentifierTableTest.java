@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class IdentifierTableTest
+{
+    @Test
+    public void testIntern() {
+        IdentifierTable table = new IdentifierTable();
+        String sql = "SELECT customer_id FROM t WHERE customer_id = 1";
+        String s1 = table.intern(sql, 7, 18);
+        assertEquals("customer_id", s1);
+        assertSame(s1, table.intern(sql, 32, 43));
+        assertSame(s1, table.intern(new String("customer_id")));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testFold() {
+        IdentifierTable table = new IdentifierTable();
+        String upper = table.toUpperCase("Customer_Id");
+        assertEquals("CUSTOMER_ID", upper);
+        assertSame(upper, table.toUpperCase("customer_id"));
+        assertSame(upper, table.intern("CUSTOMER_ID"));
+        assertSame(upper, table.toUpperCase(upper));
+        String lower = table.toLowerCase("Customer_Id");
+        assertEquals("customer_id", lower);
+        assertSame(lower, table.toLowerCase("CUSTOMER_ID"));
+        String already = new String("ALREADY");
+        assertSame("Unchanged string kept as is", already, table.toUpperCase(already));
+    }
+
+    @Test
+    public void testNonASCII() {
+        IdentifierTable table = new IdentifierTable();
+        for (String name : new String[] { "straße", "café", "ıd", "ıd", "Δelta" }) {
+            assertEquals(name, name.toUpperCase(Locale.ENGLISH), table.toUpperCase(name));
+            assertEquals(name, name.toLowerCase(Locale.ENGLISH), table.toLowerCase(name));
+            assertSame(table.toUpperCase(name), table.toUpperCase(new String(name)));
+        }
+    }
+
+    @Test
+    public void testLimits() {
+        IdentifierTable table = new IdentifierTable(2);
+        table.intern("a");
+        table.intern("b");
+        String c = new String("c");
+        assertSame(c, table.intern(c));
+        assertNotSame(c, table.intern(new String("c")));
+        assertEquals(2, table.size());
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i <= IdentifierTable.MAX_LENGTH; i++) {
+            str.append('x');
+        }
+        String longName = str.toString();
+        assertEquals(longName.toUpperCase(), table.toUpperCase(longName));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void testGrow() {
+        IdentifierTable table = new IdentifierTable();
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            names.add(table.intern("name" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertSame(names.get(i), table.intern("name" + i));
+        }
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    public void testParser() throws Exception {
+        SQLParser parser = new SQLParser();
+        CursorNode s1 = (CursorNode)parser.parseStatement("SELECT customer_id FROM customers");
+        CursorNode s2 = (CursorNode)parser.parseStatement("select Customer_Id from \"customers\"");
+        SelectNode select1 = (SelectNode)s1.getResultSetNode();
+        SelectNode select2 = (SelectNode)s2.getResultSetNode();
+        String column1 = select1.getResultColumns().get(0).getExpression().getColumnName();
+        String column2 = select2.getResultColumns().get(0).getExpression().getColumnName();
+        assertEquals("customer_id", column1);
+        assertSame(column1, column2);
+        String table1 = select1.getFromList().get(0).getTableName().getTableName();
+        String table2 = select2.getFromList().get(0).getTableName().getTableName();
+        assertEquals("customers", table1);
+        assertSame(table1, table2);
+
+        parser.setIdentifierTable(null);
+        CursorNode s3 = (CursorNode)parser.parseStatement("SELECT customer_id FROM customers");
+        SelectNode select3 = (SelectNode)s3.getResultSetNode();
+        String column3 = select3.getResultColumns().get(0).getExpression().getColumnName();
+        assertEquals(column1, column3);
+        assertNotSame(column1, column3);
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.StringReader;
+
+public class LazyLinesCharStreamTest extends StringCharStreamTest
+{
+    @Before
+    @Override
+    public void openStreams() {
+        s1 = new UCode_CharStream(new StringReader(STRING), 1, 1);
+        CharSequenceCharStream lazy = new CharSequenceCharStream(STRING);
+        lazy.setLazyLines(true);
+        s2 = lazy;
+    }
+
+    @Test
+    public void testErrorPositions() throws Exception {
+        // Positions are worked out from line and column, which must
+        // come out the same as when tracked eagerly.
+        String[] sqls = {
+            "SELECT x\nFROM",
+            "SELECT x\r\n\tFROM t WHERE",
+            "SELECT x\rFROM\tt\tWHERE\n\ty = ",
+            "SELECT 'x\n\ty' FROM t WHERE y = #",
+            "SELECT\n x,\n\t\ty\n FROM t GROUP BY",
+        };
+        int[] positions = {
+            14, 31, 0, 40, 32
+        };
+        SQLParser parser = new SQLParser();
+        for (int i = 0; i < sqls.length; i++) {
+            try {
+                parser.parseStatement(sqls[i]);
+                fail("Error expected");
+            }
+            catch (SQLParserException ex) {
+                assertEquals(sqls[i], positions[i], ex.getErrorPosition());
+            }
+        }
+    }
+}
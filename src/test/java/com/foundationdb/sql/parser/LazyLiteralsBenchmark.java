@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statements per second and bytes allocated per statement with and
+ * without {@link SQLParser#setLazyLiterals}, for the test corpus and
+ * for <code>INSERT</code>s with many literals, whose values are never
+ * looked at.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.LazyLiteralsBenchmark
+ * </pre>
+ */
+public class LazyLiteralsBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 20);
+        long millis = millisProperty("benchmark.millis", 5000);
+        List<String> corpus = loadCorpus();
+        List<String> inserts = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            StringBuilder str = new StringBuilder("INSERT INTO t VALUES(");
+            for (int j = 0; j < 10; j++) {
+                if (j > 0) str.append(", ");
+                str.append(i * 1000 + j).append(", ")
+                    .append(i).append('.').append(j).append("5, ")
+                    .append("'value ").append(j).append(" of row ").append(i).append("'");
+            }
+            str.append(")");
+            inserts.add(str.toString());
+        }
+
+        for (boolean lazy : new boolean[] { false, true }) {
+            final SQLParser parser = new SQLParser();
+            parser.setLazyLiterals(lazy);
+            for (final List<String> workload : new List[] { corpus, inserts }) {
+                Task task = new Task() {
+                        public Object run() throws Exception {
+                            Object result = null;
+                            for (String sql : workload) {
+                                result = parser.parseStatement(sql);
+                            }
+                            return result;
+                        }
+                    };
+                double rate = rate(task, millis / 2, millis) * workload.size();
+                double bytes = allocation(task, iterations) / workload.size();
+                System.out.println(String.format("%-6s %-8s %10.0f stmts/sec  %8.0f bytes/stmt",
+                                                 lazy ? "lazy" : "eager",
+                                                 (workload == corpus) ? "corpus" : "inserts",
+                                                 rate, bytes));
+            }
+        }
+    }
+}
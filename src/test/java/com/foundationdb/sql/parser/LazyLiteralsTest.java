@@ -0,0 +1,142 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LazyLiteralsTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        parser.setLazyLiterals(true);
+    }
+
+    @Test
+    public void testCorpus() throws Exception {
+        SQLParser plain = new SQLParser();
+        NodeToString unparser = new NodeToString();
+        for (File sqlFile : TestBase.listSQLFiles(SQLParserTest.RESOURCE_DIR)) {
+            if (TestBase.changeSuffix(sqlFile, ".features").exists())
+                continue;
+            String sql = TestBase.fileContents(sqlFile);
+            String caseName = sqlFile.getName();
+            StatementNode expected, actual;
+            try {
+                expected = plain.parseStatement(sql);
+            }
+            catch (StandardException ex) {
+                continue;
+            }
+            actual = parser.parseStatement(sql);
+            // Types before anything is decoded.
+            List<ConstantNode> expectedConstants = constants(expected);
+            List<ConstantNode> actualConstants = constants(actual);
+            assertEquals(caseName, expectedConstants.size(), actualConstants.size());
+            for (int i = 0; i < expectedConstants.size(); i++) {
+                assertEquals(caseName, 
+                             expectedConstants.get(i).getType(), 
+                             actualConstants.get(i).getType());
+            }
+            TestBase.assertEqualsWithoutHashes(caseName, 
+                                               ConstantInListTest.treePrint(expected),
+                                               ConstantInListTest.treePrint(actual));
+            TestBase.assertEqualsWithoutHashes(caseName, 
+                                               unparser.toString(expected), 
+                                               unparser.toString(actual));
+        }
+    }
+
+    @Test
+    public void testDecoded() throws Exception {
+        String[] literals = {
+            "0", "17", "-17", "007", "2147483647", "2147483648", "-2147483648", "-2147483649",
+            "9223372036854775807", "-9223372036854775808", "9223372036854775808",
+            "1.5", "-1.50", ".5", "-.5", "5.", "00000000000000000000001",
+            "''", "'abc'", "'it''s'", "''''", "'a''''b'''", "'\uD834\uDD1E'",
+        };
+        SQLParser plain = new SQLParser();
+        for (String literal : literals) {
+            String sql = "SELECT " + literal;
+            ConstantNode expected = constants(plain.parseStatement(sql)).get(0);
+            ConstantNode actual = constants(parser.parseStatement(sql)).get(0);
+            assertTrue(literal, actual.value instanceof LiteralText);
+            assertEquals(literal, expected.getNodeType(), actual.getNodeType());
+            assertEquals(literal, expected.getType(), actual.getType());
+            assertEquals(literal, expected.getValue(), actual.getValue());
+            assertEquals(literal, expected.getValue().getClass(), actual.getValue().getClass());
+            assertFalse(literal, actual.value instanceof LiteralText);
+        }
+    }
+
+    @Test
+    public void testEagerKinds() throws Exception {
+        // Approximate numbers are checked for range when parsed, so
+        // are never put off; nor are strings with backslash escapes.
+        ConstantNode constant = constants(parser.parseStatement("SELECT 1e0")).get(0);
+        assertEquals(Double.valueOf(1.0), constant.value);
+        constant = constants(parser.parseStatement("SELECT E'a\\tb'")).get(0);
+        assertEquals("a\tb", constant.value);
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT a FROM t WHERE b = 'x''y' AND c = 1.25");
+        StatementNode copy = ConstantInListTest.copy(parser, stmt);
+        List<ConstantNode> constants = constants(copy);
+        assertEquals("x'y", constants.get(0).getValue());
+        assertEquals(new BigDecimal("1.25"), constants.get(1).getValue());
+        assertTrue(constants(stmt).get(0).value instanceof LiteralText);
+    }
+
+    protected static List<ConstantNode> constants(StatementNode stmt) 
+            throws StandardException {
+        final List<ConstantNode> result = new ArrayList<ConstantNode>();
+        stmt.accept(new Visitor() {
+                public Visitable visit(Visitable node) {
+                    if (node instanceof ConstantNode)
+                        result.add((ConstantNode)node);
+                    return node;
+                }
+                public boolean visitChildrenFirst(Visitable node) {
+                    return false;
+                }
+                public boolean stopTraversal() {
+                    return false;
+                }
+                public boolean skipChildren(Visitable node) {
+                    return false;
+                }
+            });
+        return result;
+    }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.util.Arrays;
+
+public class LiteralParameterizerTest
+{
+    private SQLParser parser;
+    private NodeToString unparser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        parser.setParameterizeLiterals(true);
+        unparser = new NodeToString();
+    }
+
+    @Test
+    public void testSameTemplate() throws Exception {
+        StatementNode s1 = parser.parseStatement("SELECT a FROM t WHERE b = 17 AND c = 'x'");
+        assertEquals("[17, x]", Arrays.toString(parser.getParameterValues()));
+        StatementNode s2 = parser.parseStatement("SELECT a FROM t WHERE b = 42 AND c = 'y'");
+        assertEquals("[42, y]", Arrays.toString(parser.getParameterValues()));
+        assertEquals(unparser.toString(s1), unparser.toString(s2));
+        assertEquals(2, parser.getParameterList().size());
+    }
+
+    @Test
+    public void testAfterExplicit() throws Exception {
+        parser.parseStatement("SELECT a FROM t WHERE b = ? AND c = 3");
+        assertEquals("[null, 3]", Arrays.toString(parser.getParameterValues()));
+        assertEquals(0, parser.getParameterList().get(0).getParameterNumber());
+        assertEquals(1, parser.getParameterList().get(1).getParameterNumber());
+    }
+
+    @Test
+    public void testOrdinalsKept() throws Exception {
+        StatementNode s = parser.parseStatement("SELECT a, COUNT(*) FROM t GROUP BY 1 ORDER BY 2");
+        assertNull(parser.getParameterValues());
+        assertEquals("SELECT a, COUNT(*) FROM t GROUP BY 1 ORDER BY 2",
+                     unparser.toString(s));
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        parser.setStatementCache(new StatementCache(10));
+        parser.parseStatement("INSERT INTO t VALUES(1, 'a')");
+        parser.parseStatement("INSERT INTO t VALUES(1, 'a')");
+        assertEquals("[1, a]", Arrays.toString(parser.getParameterValues()));
+        assertEquals(2, parser.getParameterList().size());
+    }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Check that no method, in particular none generated by JavaCC or
+ * {@link NodeFactoryGenerator}, is so big that HotSpot will not
+ * compile it (<code>-XX:HugeMethodLimit</code>, 8000 bytes of
+ * bytecode). Such a method is interpreted however hot it gets, so
+ * the grammar needs to be restructured if this fails.
+ * <p>
+ * Static initializers only run once and so are not counted.
+ */
+public class MethodSizeTest
+{
+    public static final int HUGE_METHOD_LIMIT = 8000;
+
+    @Test
+    public void testNoHugeMethods() throws Exception {
+        File dir = new File(SQLGrammar.class.getResource("SQLGrammar.class").toURI())
+            .getParentFile();
+        List<String> huge = new ArrayList<String>();
+        for (File classFile : dir.listFiles()) {
+            if (classFile.getName().endsWith(".class"))
+                hugeMethods(classFile, huge);
+        }
+        assertTrue("Methods over " + HUGE_METHOD_LIMIT + " bytes: " + huge, huge.isEmpty());
+    }
+
+    @Test
+    public void testGeneratedClassesChecked() throws Exception {
+        // Make sure the class file reading is actually finding code.
+        List<String> sizes = new ArrayList<String>();
+        File classFile = new File(SQLGrammar.class.getResource("SQLGrammar.class").toURI());
+        methodSizes(classFile, 1000, sizes);
+        assertFalse(sizes.isEmpty());
+    }
+
+    protected static void hugeMethods(File classFile, List<String> into) throws IOException {
+        methodSizes(classFile, HUGE_METHOD_LIMIT + 1, into);
+    }
+
+    /** Add the names of the methods whose code is at least
+     * <code>minSize</code> bytes.
+     */
+    protected static void methodSizes(File classFile, int minSize, List<String> into) 
+            throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(classFile)));
+        try {
+            in.readInt();       // magic
+            in.readUnsignedShort(); // minor_version
+            in.readUnsignedShort(); // major_version
+            int ncp = in.readUnsignedShort();
+            String[] utf8 = new String[ncp];
+            for (int i = 1; i < ncp; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                case 1:         // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 3:         // Integer
+                case 4:         // Float
+                case 9:         // Fieldref
+                case 10:        // Methodref
+                case 11:        // InterfaceMethodref
+                case 12:        // NameAndType
+                case 17:        // Dynamic
+                case 18:        // InvokeDynamic
+                    in.readInt();
+                    break;
+                case 5:         // Long
+                case 6:         // Double
+                    in.readLong();
+                    i++;        // Takes two entries.
+                    break;
+                case 7:         // Class
+                case 8:         // String
+                case 16:        // MethodType
+                case 19:        // Module
+                case 20:        // Package
+                    in.readUnsignedShort();
+                    break;
+                case 15:        // MethodHandle
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                default:
+                    throw new IOException(classFile + ": unknown constant pool tag " + tag);
+                }
+            }
+            in.readUnsignedShort(); // access_flags
+            in.readUnsignedShort(); // this_class
+            in.readUnsignedShort(); // super_class
+            int ninterfaces = in.readUnsignedShort();
+            for (int i = 0; i < ninterfaces; i++) {
+                in.readUnsignedShort();
+            }
+            int nfields = in.readUnsignedShort();
+            for (int i = 0; i < nfields; i++) {
+                in.readUnsignedShort(); // access_flags
+                in.readUnsignedShort(); // name_index
+                in.readUnsignedShort(); // descriptor_index
+                skipAttributes(in);
+            }
+            int nmethods = in.readUnsignedShort();
+            for (int i = 0; i < nmethods; i++) {
+                in.readUnsignedShort(); // access_flags
+                String name = utf8[in.readUnsignedShort()];
+                String descriptor = utf8[in.readUnsignedShort()];
+                int nattributes = in.readUnsignedShort();
+                for (int j = 0; j < nattributes; j++) {
+                    String attribute = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if ("Code".equals(attribute)) {
+                        in.readUnsignedShort(); // max_stack
+                        in.readUnsignedShort(); // max_locals
+                        int codeLength = in.readInt();
+                        if ((codeLength >= minSize) && !"<clinit>".equals(name))
+                            into.add(classFile.getName().replace(".class", "") + "." + 
+                                     name + descriptor + " (" + codeLength + ")");
+                        length -= 8;
+                    }
+                    skipFully(in, length);
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int nattributes = in.readUnsignedShort();
+        for (int i = 0; i < nattributes; i++) {
+            in.readUnsignedShort(); // attribute_name_index
+            skipFully(in, in.readInt());
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0)
+                throw new IOException("Unexpected end of class file");
+            length -= skipped;
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node creation by the generated {@link NodeFactoryImpl} compared with
+ * the reflective one it replaced: once per type with a fresh factory
+ * (cold), over and over (steady), and parsing the test corpus.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.NodeFactoryBenchmark
+ * </pre>
+ */
+public class NodeFactoryBenchmark extends BenchmarkBase
+{
+    /** Lookup by <code>Class.forName</code>, cached per factory. */
+    static class ReflectiveNodeFactory extends NodeFactory {
+        private final NodeFactoryImpl names = new NodeFactoryImpl();
+        private final Class[] classes = new Class[NodeTypes.FINAL_VALUE+1];
+
+        public QueryTreeNode getNode(int nodeType, SQLParserContext pc)
+                throws StandardException {
+            try {
+                Class nodeClass = classes[nodeType];
+                if (nodeClass == null) {
+                    nodeClass = Class.forName(names.nodeName(nodeType));
+                    classes[nodeType] = nodeClass;
+                }
+                QueryTreeNode retval = (QueryTreeNode)nodeClass.newInstance();
+                retval.setParserContext(pc);
+                retval.setNodeType(nodeType);
+                return retval;
+            }
+            catch (Exception ex) {
+                throw new StandardException(ex);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> corpus = loadCorpus();
+        final int[] nodeTypes = nodeTypes();
+
+        double reflectiveCold = rate(new Task() {
+                public Object run() throws Exception {
+                    return allNodes(new ReflectiveNodeFactory(), nodeTypes);
+                }
+            }, millis / 2, millis);
+        double generatedCold = rate(new Task() {
+                public Object run() throws Exception {
+                    return allNodes(new NodeFactoryImpl(), nodeTypes);
+                }
+            }, millis / 2, millis);
+        final NodeFactory reflective = new ReflectiveNodeFactory();
+        double reflectiveSteady = rate(new Task() {
+                public Object run() throws Exception {
+                    return allNodes(reflective, nodeTypes);
+                }
+            }, millis / 2, millis);
+        final NodeFactory generated = new NodeFactoryImpl();
+        double generatedSteady = rate(new Task() {
+                public Object run() throws Exception {
+                    return allNodes(generated, nodeTypes);
+                }
+            }, millis / 2, millis);
+        final SQLParser reflectiveParser = new SQLParser();
+        reflectiveParser.setNodeFactory(reflective);
+        double reflectiveParse = rate(new Task() {
+                int index = 0;
+                public Object run() throws Exception {
+                    return reflectiveParser.parseStatement(corpus.get(index++ % corpus.size()));
+                }
+            }, millis / 2, millis);
+        final SQLParser generatedParser = new SQLParser();
+        double generatedParse = rate(new Task() {
+                int index = 0;
+                public Object run() throws Exception {
+                    return generatedParser.parseStatement(corpus.get(index++ % corpus.size()));
+                }
+            }, millis / 2, millis);
+
+        System.out.println(String.format("%d node types, %d statements", 
+                                         nodeTypes.length, corpus.size()));
+        System.out.println(String.format("cold    reflective %10.0f/s  generated %10.0f/s  (%.1fx)",
+                                         reflectiveCold, generatedCold, 
+                                         generatedCold / reflectiveCold));
+        System.out.println(String.format("steady  reflective %10.0f/s  generated %10.0f/s  (%.1fx)",
+                                         reflectiveSteady, generatedSteady, 
+                                         generatedSteady / reflectiveSteady));
+        System.out.println(String.format("parse   reflective %10.0f/s  generated %10.0f/s  (%.2fx)",
+                                         reflectiveParse, generatedParse, 
+                                         generatedParse / reflectiveParse));
+    }
+
+    /** The node types that can be made. */
+    static int[] nodeTypes() {
+        List<Integer> types = new ArrayList<Integer>();
+        for (int nodeType = 0; nodeType <= NodeTypes.FINAL_VALUE; nodeType++) {
+            if (NodeConstructors.newNode(nodeType) != null)
+                types.add(nodeType);
+        }
+        int[] result = new int[types.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = types.get(i);
+        }
+        return result;
+    }
+
+    static Object allNodes(NodeFactory factory, int[] nodeTypes) throws StandardException {
+        Object last = null;
+        for (int nodeType : nodeTypes) {
+            last = factory.getNode(nodeType, null);
+        }
+        return last;
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generate {@link NodeConstructors} from the mapping of node types to
+ * class names in {@link NodeFactoryImpl#nodeName}.
+ * <p>
+ * Run with no arguments from the top of the project to rewrite the
+ * source file; {@link NodeFactoryGeneratorTest} fails the build if it
+ * is out of date.
+ */
+public class NodeFactoryGenerator
+{
+    public static final File SOURCE_FILE = 
+        new File("src/main/java/com/foundationdb/sql/parser/NodeConstructors.java");
+
+    /** Get the source of <code>NodeConstructors</code>. */
+    public static String generate() throws Exception {
+        // Class name -> node type names, both in order.
+        Map<String,List<String>> classTypes = new TreeMap<String,List<String>>();
+        NodeFactoryImpl factory = new NodeFactoryImpl();
+        for (Field field : NodeTypes.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) ||
+                (field.getType() != int.class))
+                continue;
+            String typeName = field.getName();
+            if (typeName.equals("FINAL_VALUE") || typeName.equals("MAX_NODE_TYPE"))
+                continue;
+            String className;
+            try {
+                className = factory.nodeName(field.getInt(null));
+            }
+            catch (StandardException ex) {
+                continue;       // Not implemented.
+            }
+            // Some names are left over from Derby for classes that are not here.
+            if (!isConcreteClass(className))
+                continue;
+            List<String> typeNames = classTypes.get(className);
+            if (typeNames == null) {
+                typeNames = new ArrayList<String>();
+                classTypes.put(className, typeNames);
+            }
+            typeNames.add(typeName);
+        }
+        for (List<String> typeNames : classTypes.values()) {
+            Collections.sort(typeNames);
+        }
+
+        StringBuilder str = new StringBuilder();
+        str.append("/**\n");
+        str.append(" * Copyright 2011-2013 FoundationDB, LLC\n");
+        str.append(" *\n");
+        str.append(" * Licensed under the Apache License, Version 2.0 (the \"License\");\n");
+        str.append(" * you may not use this file except in compliance with the License.\n");
+        str.append(" * You may obtain a copy of the License at\n");
+        str.append(" *\n");
+        str.append(" *     http://www.apache.org/licenses/LICENSE-2.0\n");
+        str.append(" *\n");
+        str.append(" * Unless required by applicable law or agreed to in writing, software\n");
+        str.append(" * distributed under the License is distributed on an \"AS IS\" BASIS,\n");
+        str.append(" * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n");
+        str.append(" * See the License for the specific language governing permissions and\n");
+        str.append(" * limitations under the License.\n");
+        str.append(" */\n");
+        str.append("\n");
+        str.append("package com.foundationdb.sql.parser;\n");
+        str.append("\n");
+        str.append("/**\n");
+        str.append(" * Construct nodes by type without reflection.\n");
+        str.append(" * <p>\n");
+        str.append(" * GENERATED by <code>NodeFactoryGenerator</code> (in the tests) from\n");
+        str.append(" * {@link NodeFactoryImpl#nodeName}. Do not edit.\n");
+        str.append(" */\n");
+        str.append("final class NodeConstructors\n");
+        str.append("{\n");
+        str.append("    private NodeConstructors() {\n");
+        str.append("    }\n");
+        str.append("\n");
+        str.append("    /** Make a new node of the given type, or <code>null</code> if unknown. */\n");
+        str.append("    static QueryTreeNode newNode(int nodeType) {\n");
+        str.append("        switch (nodeType) {\n");
+        String packagePrefix = NodeConstructors.class.getPackage().getName() + ".";
+        for (Map.Entry<String,List<String>> entry : classTypes.entrySet()) {
+            String className = entry.getKey();
+            if (className.startsWith(packagePrefix))
+                className = className.substring(packagePrefix.length());
+            for (String typeName : entry.getValue()) {
+                str.append("        case NodeTypes.").append(typeName).append(":\n");
+            }
+            str.append("            return new ").append(className).append("();\n");
+        }
+        str.append("        default:\n");
+        str.append("            return null;\n");
+        str.append("        }\n");
+        str.append("    }\n");
+        str.append("}\n");
+        return str.toString();
+    }
+
+    static boolean isConcreteClass(String className) {
+        try {
+            return !Modifier.isAbstract(Class.forName(className).getModifiers());
+        }
+        catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File file = (args.length > 0) ? new File(args[0]) : SOURCE_FILE;
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(generate());
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class NodeFactoryGeneratorTest
+{
+    @Test
+    public void testUpToDate() throws Exception {
+        assertEquals("NodeConstructors.java is out of date; run NodeFactoryGenerator",
+                     NodeFactoryGenerator.generate(),
+                     TestBase.fileContents(NodeFactoryGenerator.SOURCE_FILE));
+    }
+
+    @Test
+    public void testAllTypes() throws Exception {
+        NodeFactoryImpl factory = new NodeFactoryImpl();
+        for (int nodeType = 0; nodeType <= NodeTypes.FINAL_VALUE; nodeType++) {
+            String nodeName;
+            try {
+                nodeName = factory.nodeName(nodeType);
+            }
+            catch (StandardException ex) {
+                nodeName = null;
+            }
+            if ((nodeName == null) || !NodeFactoryGenerator.isConcreteClass(nodeName)) {
+                assertNull(NodeConstructors.newNode(nodeType));
+                continue;
+            }
+            QueryTreeNode node = factory.getNode(nodeType, null);
+            assertEquals(nodeName, node.getClass().getName());
+            assertEquals(nodeType, node.getNodeType());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Reading the test corpus back from a memory-mapped file written by
+ * {@link NodeSerializer} compared with parsing it again.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.NodeSerializerBenchmark
+ * </pre>
+ */
+public class NodeSerializerBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 20);
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> corpus = loadCorpus();
+        final SQLParser parser = new SQLParser();
+        final NodeSerializer serializer = new NodeSerializer();
+
+        File file = File.createTempFile("corpus", ".bin");
+        file.deleteOnExit();
+        OutputStream ostr = new FileOutputStream(file);
+        int nbytes = 0, ntext = 0;
+        for (String sql : corpus) {
+            byte[] bytes = serializer.serialize(parser.parseStatement(sql));
+            ostr.write(bytes);
+            nbytes += bytes.length;
+            ntext += sql.length();
+        }
+        ostr.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final ByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 
+                                                       0, raf.length());
+        raf.close();
+
+        Task parse = new Task() {
+                public Object run() throws Exception {
+                    Object last = null;
+                    for (String sql : corpus) {
+                        last = parser.parseStatement(sql);
+                    }
+                    return last;
+                }
+            };
+        Task deserialize = new Task() {
+                public Object run() throws Exception {
+                    ByteBuffer buffer = mapped.duplicate();
+                    Object last = null;
+                    while (buffer.hasRemaining()) {
+                        last = serializer.deserialize(buffer, parser);
+                    }
+                    return last;
+                }
+            };
+        System.out.println(String.format("%d statements, %.0f bytes/stmt serialized, %.0f chars/stmt text",
+                                         corpus.size(), 
+                                         (double)nbytes / corpus.size(),
+                                         (double)ntext / corpus.size()));
+        // Alternate, since the first passes are still being compiled.
+        for (int i = 0; i < 4; i++) {
+            Task task = ((i % 2) == 0) ? parse : deserialize;
+            double rate = rate(task, millis / 2, millis) * corpus.size();
+            double bytes = allocation(task, iterations) / corpus.size();
+            System.out.println(String.format("%-12s %10.0f stmts/sec  %8.0f bytes/stmt",
+                                             ((i % 2) == 0) ? "parse" : "deserialize",
+                                             rate, bytes));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runner.RunWith;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+@RunWith(Parameterized.class)
+public class NodeSerializerTest extends TestBase
+{
+    protected SQLParser parser;
+    protected String[] featureLines;
+    protected NodeSerializer serializer;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        if (featureLines != null)
+            parseFeatures(featureLines, parser.getFeatures());
+        serializer = new NodeSerializer();
+    }
+
+    @Parameters(name="{0}")
+    public static Collection<Object[]> queries() throws Exception {
+        return sqlAndExpectedAndExtra(SQLParserTest.RESOURCE_DIR, ".features");
+    }
+
+    public NodeSerializerTest(String caseName, String sql,
+                              String expected, String error, String[] featureLines) {
+        super(caseName, sql, expected, error);
+        this.featureLines = featureLines;
+    }
+
+    protected String getTree(QueryTreeNode node) throws IOException {
+        StringWriter str = new StringWriter();
+        node.treePrint(str);
+        return str.toString().trim();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        StatementNode stmt;
+        try {
+            stmt = parser.parseStatement(sql);
+        }
+        catch (StandardException ex) {
+            return;
+        }
+        byte[] bytes = serializer.serialize(stmt);
+        QueryTreeNode copy;
+        // Separate, since printing remembers nodes by equality.
+        SQLParser context = new SQLParser();
+        File file = File.createTempFile("nodes", ".bin");
+        try {
+            OutputStream ostr = new FileOutputStream(file);
+            try {
+                serializer.serialize(stmt, ostr);
+                serializer.serialize(stmt, ostr);
+            }
+            finally {
+                ostr.close();
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 
+                                                         0, raf.length());
+                copy = serializer.deserialize(buffer, context);
+                assertEquals(caseName, bytes.length, buffer.position());
+                serializer.deserialize(buffer, context);
+                assertFalse(caseName, buffer.hasRemaining());
+            }
+            finally {
+                raf.close();
+            }
+        }
+        finally {
+            file.delete();
+        }
+        assertTrue(caseName, copy instanceof StatementNode);
+        assertNotSame(stmt, copy);
+        assertSame(context, copy.getParserContext());
+        assertEqualsWithoutHashes(caseName, getTree(stmt), getTree(copy));
+        // Everything written is read back the same.
+        assertTrue(caseName, Arrays.equals(bytes, serializer.serialize(copy)));
+    }
+
+    @Test
+    public void testCorrupt() throws Exception {
+        StatementNode stmt;
+        try {
+            stmt = parser.parseStatement(sql);
+        }
+        catch (StandardException ex) {
+            return;
+        }
+        byte[] bytes = serializer.serialize(stmt);
+        SQLParser context = new SQLParser();
+        // A damaged tree is refused, not misread into something
+        // unbounded or some other exception.
+        for (int i = 12; i < bytes.length; i++) {
+            byte[] damaged = bytes.clone();
+            damaged[i] = (byte)0xFF;
+            try {
+                serializer.deserialize(damaged, context);
+            }
+            catch (StandardException ex) {
+            }
+            try {
+                serializer.deserialize(Arrays.copyOf(bytes, i), context);
+                fail(caseName + " truncated at " + i);
+            }
+            catch (StandardException ex) {
+            }
+        }
+    }
+
+}
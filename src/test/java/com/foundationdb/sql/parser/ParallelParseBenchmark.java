@@ -0,0 +1,74 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Time to load a large script with {@link SQLParser#parseStatements}
+ * and with {@link ConcurrentSQLParser#parseStatements(String,ExecutorService)}.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.ParallelParseBenchmark [nstatements]
+ * </pre>
+ */
+public class ParallelParseBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        int nstatements = (args.length > 0) ? Integer.parseInt(args[0]) : 50000;
+        long millis = millisProperty("benchmark.millis", 5000);
+        List<String> corpus = loadCorpus();
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < nstatements; i++) {
+            str.append(corpus.get(i % corpus.size())).append(";\n");
+        }
+        final String script = str.toString();
+
+        final SQLParser serial = new SQLParser();
+        final ConcurrentSQLParser concurrent = new ConcurrentSQLParser();
+        int nthreads = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+        try {
+            double serialRate = rate(new Task() {
+                    public Object run() throws Exception {
+                        return serial.parseStatements(script);
+                    }
+                }, millis / 2, millis);
+            double parallelRate = rate(new Task() {
+                    public Object run() throws Exception {
+                        return concurrent.parseStatements(script, executor);
+                    }
+                }, millis / 2, millis);
+            final StatementSplitter splitter = new StatementSplitter();
+            double splitRate = rate(new Task() {
+                    public Object run() throws Exception {
+                        return splitter.split(script);
+                    }
+                }, millis / 2, millis);
+            System.out.println(String.format("%d statements, %d chars, %d threads",
+                                             nstatements, script.length(), nthreads));
+            System.out.println(String.format("serial    %10.1f ms", 1000.0 / serialRate));
+            System.out.println(String.format("parallel  %10.1f ms  (%.2fx)", 
+                                             1000.0 / parallelRate, parallelRate / serialRate));
+            System.out.println(String.format("split     %10.1f ms", 1000.0 / splitRate));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
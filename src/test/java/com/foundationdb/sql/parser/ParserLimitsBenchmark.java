@@ -0,0 +1,58 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import java.util.List;
+
+/**
+ * Statements per second parsing the test corpus with no limits and
+ * with all the limits set high enough never to be reached. The two
+ * alternate, since the first few passes are still warming up.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.ParserLimitsBenchmark
+ * </pre>
+ */
+public class ParserLimitsBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> corpus = loadCorpus();
+        for (int pass = 0; pass < 8; pass++) {
+            boolean limited = ((pass % 2) == 1);
+            final SQLParser parser = new SQLParser();
+            if (limited) {
+                parser.setMaxTokenCount(100000);
+                parser.setMaxNestingDepth(1000);
+                parser.setMaxNodeCount(100000);
+                parser.setMaxParseMillis(10000);
+            }
+            Task task = new Task() {
+                    public Object run() throws Exception {
+                        Object result = null;
+                        for (String sql : corpus) {
+                            result = parser.parseStatement(sql);
+                        }
+                        return result;
+                    }
+                };
+            double rate = rate(task, millis / 2, millis) * corpus.size();
+            System.out.println(String.format("%-10s %10.0f stmts/sec",
+                                             limited ? "limited" : "unlimited", rate));
+        }
+    }
+}
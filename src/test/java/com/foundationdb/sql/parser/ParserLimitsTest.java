@@ -0,0 +1,150 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.SQLParserLimitException.Limit;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class ParserLimitsTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+    }
+
+    protected void checkLimit(String sql, Limit limit) throws Exception {
+        try {
+            parser.parseStatement(sql);
+            fail("expected " + limit);
+        }
+        catch (SQLParserLimitException ex) {
+            assertEquals(limit, ex.getLimit());
+        }
+    }
+
+    protected static String nested(int depth) {
+        StringBuilder str = new StringBuilder("SELECT ");
+        for (int i = 0; i < depth; i++)
+            str.append('(');
+        str.append('1');
+        for (int i = 0; i < depth; i++)
+            str.append(')');
+        return str.toString();
+    }
+
+    protected static String selectList(int n) {
+        StringBuilder str = new StringBuilder("SELECT ");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) str.append(',');
+            str.append(i);
+        }
+        return str.toString();
+    }
+
+    @Test
+    public void testTokenCount() throws Exception {
+        parser.setMaxTokenCount(100);
+        parser.parseStatement(selectList(20));
+        checkLimit(selectList(100), Limit.TOKEN_COUNT);
+        // Each statement counts separately.
+        parser.parseStatements(selectList(20) + ";" + selectList(20) + ";" + selectList(20));
+        parser.setMaxTokenCount(0);
+        parser.parseStatement(selectList(100));
+    }
+
+    @Test
+    public void testNestingDepth() throws Exception {
+        parser.setMaxNestingDepth(20);
+        parser.parseStatement(nested(10));
+        checkLimit(nested(30), Limit.NESTING_DEPTH);
+        checkLimit("SELECT * FROM t WHERE x IN (SELECT y FROM u WHERE z = " + nested(20).substring(7) + ")",
+                   Limit.NESTING_DEPTH);
+        parser.parseStatement(nested(10));
+    }
+
+    @Test
+    public void testStackOverflow() throws Exception {
+        checkLimit(nested(20000), Limit.NESTING_DEPTH);
+        assertNotNull(parser.parseStatement(nested(10)));
+    }
+
+    @Test
+    public void testNodeCount() throws Exception {
+        parser.setMaxNodeCount(100);
+        StatementNode stmt = parser.parseStatement(selectList(10));
+        checkLimit(selectList(100), Limit.NODE_COUNT);
+        stmt = parser.parseStatement(selectList(20));
+        // Copying after the parse does not count.
+        for (int i = 0; i < 10; i++)
+            parser.getNodeFactory().copyNode(stmt, parser);
+    }
+
+    @Test
+    public void testParseTime() throws Exception {
+        parser.setMaxParseMillis(1);
+        checkLimit(selectList(200000), Limit.PARSE_TIME);
+        parser.setMaxParseMillis(0);
+        parser.parseStatement(selectList(10));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        parser.cancel();
+        parser.parseStatement("SELECT 1");
+        try {
+            parser.scanStatements("SELECT a, b, c, d FROM t", new SQLParserListener() {
+                    public void onStatementStart(StatementClassification.Kind kind) {
+                    }
+                    public void onStatementEnd() {
+                    }
+                    public void onTableReference(TableName tableName) {
+                    }
+                    public void onColumnReference(ColumnReference columnReference) {
+                        parser.cancel();
+                    }
+                    public void onParameter(int number) {
+                    }
+                });
+            fail("expected to be cancelled");
+        }
+        catch (SQLParserLimitException ex) {
+            assertEquals(Limit.CANCELLED, ex.getLimit());
+        }
+        parser.parseStatement("SELECT 1");
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        parser.setMaxTokenCount(100);
+        parser.setMaxNestingDepth(20);
+        parser.setMaxNodeCount(1000);
+        parser.setMaxParseMillis(5000);
+        ConcurrentSQLParser concurrent = new ConcurrentSQLParser(parser);
+        SQLParser copy = concurrent.getParser();
+        assertEquals(100, copy.getMaxTokenCount());
+        assertEquals(20, copy.getMaxNestingDepth());
+        assertEquals(1000, copy.getMaxNodeCount());
+        assertEquals(5000, copy.getMaxParseMillis());
+    }
+}
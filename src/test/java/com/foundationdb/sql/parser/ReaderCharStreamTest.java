@@ -0,0 +1,141 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+public class ReaderCharStreamTest extends StringCharStreamTest
+{
+    @Before
+    @Override
+    public void openStreams() {
+        s1 = new UCode_CharStream(new StringReader(STRING), 1, 1);
+        // Small enough to need refilling and compacting.
+        s2 = new ReaderCharStream(new StringReader(STRING), 4);
+    }
+
+    @Override
+    protected char beginToken() {
+        // Let go of everything before the new token.
+        ((ReaderCharStream)s2).release(s2.getBeginOffset());
+        return super.beginToken();
+    }
+
+    @Test
+    public void testStatements() throws Exception {
+        SQLParser parser = new SQLParser();
+        NodeToString unparser = new NodeToString();
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            script.append("INSERT INTO t VALUES(").append(i).append(", 'abc');\n");
+        }
+        script.append("CREATE VIEW v AS SELECT x FROM t;\n");
+        script.append(";SELECT * FROM v");
+        String sql = script.toString();
+        parser.beginStatements(new StringReader(sql));
+        for (int i = 0; i < 1000; i++) {
+            StatementNode stmt = parser.nextStatement();
+            assertEquals("INSERT INTO t VALUES(" + i + ", 'abc')", unparser.toString(stmt));
+            assertEquals(sql.substring(stmt.getBeginOffset(), stmt.getEndOffset() + 1),
+                         unparser.toString(stmt));
+        }
+        CreateViewNode view = (CreateViewNode)parser.nextStatement();
+        assertEquals("CREATE VIEW v AS SELECT x FROM t", view.getQueryExpression());
+        StatementNode stmt = parser.nextStatement();
+        assertEquals("SELECT * FROM v", sql.substring(stmt.getBeginOffset(), stmt.getEndOffset() + 1));
+        assertNull(parser.nextStatement());
+        assertNull(parser.nextStatement());
+    }
+
+    @Test
+    public void testErrorPosition() throws Exception {
+        SQLParser parser = new SQLParser();
+        String sql = "SELECT 1;\nSELECT 2;\nSELECT FROM WHERE;\nSELECT 4";
+        parser.beginStatements(Channels.newChannel(new ByteArrayInputStream(sql.getBytes("UTF-8"))),
+                               Charset.forName("UTF-8"));
+        parser.nextStatement();
+        StatementNode stmt = parser.nextStatement();
+        assertEquals(10, stmt.getBeginOffset());
+        try {
+            parser.nextStatement();
+            fail("Error expected");
+        }
+        catch (SQLParserException ex) {
+            assertEquals(sql.indexOf("FROM") + 1, ex.getErrorPosition());
+        }
+    }
+
+    /** Gives the text and then fails instead of ending. */
+    static class FailingReader extends Reader {
+        private final Reader text;
+
+        public FailingReader(String text) {
+            this.text = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int nc = text.read(cbuf, off, len);
+            if (nc < 0)
+                throw new IOException("Connection reset");
+            return nc;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testReadError() throws Exception {
+        SQLParser parser = new SQLParser();
+        parser.beginStatements(new FailingReader("INSERT INTO t VALUES(1);\nINSERT INTO t VALUES(2);\n"));
+        assertNotNull(parser.nextStatement());
+        assertNotNull(parser.nextStatement());
+        try {
+            parser.nextStatement();
+            fail("Read error expected");
+        }
+        catch (StandardException ex) {
+            assertFalse(ex instanceof SQLParserException);
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+        parser.beginStatements(new FailingReader("INSERT INTO t VALUES(1);\nINSERT INTO t VALUES("));
+        assertNotNull(parser.nextStatement());
+        try {
+            parser.nextStatement();
+            fail("Read error expected");
+        }
+        catch (StandardException ex) {
+            assertFalse(ex instanceof SQLParserException);
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.List;
+
+public class RecyclingTokenManagerTest
+{
+    @Test
+    public void testNodesHaveNoTokens() throws Exception {
+        for (int nodeType = 0; nodeType <= NodeTypes.FINAL_VALUE; nodeType++) {
+            QueryTreeNode node = NodeConstructors.newNode(nodeType);
+            if (node == null) continue;
+            for (Class<?> c = node.getClass(); c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    Class<?> type = field.getType();
+                    while (type.isArray())
+                        type = type.getComponentType();
+                    assertFalse(c.getName() + "." + field.getName() + " holds a token",
+                                BaseToken.class.isAssignableFrom(type));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCorpus() throws Exception {
+        SQLParser plain = new SQLParser();
+        SQLParser recycling = new SQLParser();
+        recycling.setRecycleTokens(true);
+        for (File sqlFile : TestBase.listSQLFiles(SQLParserTest.RESOURCE_DIR)) {
+            if (TestBase.changeSuffix(sqlFile, ".features").exists())
+                continue;
+            String sql = TestBase.fileContents(sqlFile);
+            String caseName = sqlFile.getName();
+            TestBase.assertEqualsWithoutHashes(caseName, parse(plain, sql), parse(recycling, sql));
+        }
+    }
+
+    protected static String parse(SQLParser parser, String sql) throws Exception {
+        try {
+            StatementNode stmt = parser.parseStatement(sql);
+            StringWriter str = new StringWriter();
+            stmt.treePrint(str);
+            return str.toString();
+        }
+        catch (StandardException ex) {
+            return ex.getMessage();
+        }
+    }
+
+    @Test
+    public void testScript() throws Exception {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            script.append("INSERT INTO t(x, y) VALUES(").append(i).append(", 'abc');\n");
+        }
+        script.append("SELECT x FROM t WHERE y = 'abc' ORDER BY x");
+        String sql = script.toString();
+        SQLParser parser = new SQLParser();
+        parser.setRecycleTokens(true);
+        NodeToString unparser = new NodeToString();
+        List<StatementNode> stmts = parser.parseStatements(sql);
+        assertEquals(1001, stmts.size());
+        for (int i = 0; i < 1000; i++) {
+            StatementNode stmt = stmts.get(i);
+            assertEquals("INSERT INTO t(x, y) VALUES(" + i + ", 'abc')", unparser.toString(stmt));
+            assertEquals(unparser.toString(stmt), 
+                         sql.substring(stmt.getBeginOffset(), stmt.getEndOffset() + 1));
+        }
+        // A ring big enough for one statement, not the whole script.
+        assertTrue(parser.getTokenManager().getCapacity() <= 64);
+
+        parser.beginStatements(new StringReader(sql));
+        for (int i = 0; i < 1000; i++) {
+            StatementNode stmt = parser.nextStatement();
+            assertEquals("INSERT INTO t(x, y) VALUES(" + i + ", 'abc')", unparser.toString(stmt));
+        }
+        assertEquals("SELECT x FROM t WHERE y = 'abc' ORDER BY x", 
+                     unparser.toString(parser.nextStatement()));
+        assertNull(parser.nextStatement());
+        assertTrue(parser.getTokenManager().getCapacity() <= 64);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        SQLParser parser = new SQLParser();
+        parser.setRecycleTokens(true);
+        parser.parseStatement("SELECT a, b, c FROM t");
+        int capacity = parser.getTokenManager().getCapacity();
+        for (int i = 0; i < 100; i++) {
+            parser.parseStatement("SELECT a, b, c FROM t WHERE a = " + i);
+        }
+        assertEquals(capacity, parser.getTokenManager().getCapacity());
+    }
+
+    @Test
+    public void testErrorKeepsTokens() throws Exception {
+        SQLParser parser = new SQLParser();
+        parser.setRecycleTokens(true);
+        Token token = null;
+        try {
+            parser.parseStatement("SELECT x FROM WHERE");
+            fail("Error expected");
+        }
+        catch (SQLParserException ex) {
+            token = ((ParseException)ex.getCause()).currentToken;
+        }
+        assertEquals("FROM", token.image);
+        for (int i = 0; i < 10; i++) {
+            parser.parseStatement("SELECT a, b, c FROM t WHERE a = " + i);
+        }
+        assertEquals("FROM", token.image);
+        assertEquals("WHERE", token.next.image);
+    }
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.List;
+
+/**
+ * {@link SQLParser#scanStatements} compared with a full parse
+ * followed by a {@link Visitor} that finds the same tables and
+ * columns, over the test corpus.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.ScanStatementsBenchmark
+ * </pre>
+ */
+public class ScanStatementsBenchmark extends BenchmarkBase
+{
+    static class Counter implements Visitor, SQLParserListener {
+        int ntables, ncolumns;
+
+        public Visitable visit(Visitable node) throws StandardException {
+            if (node instanceof FromBaseTable)
+                onTableReference(((FromBaseTable)node).getOrigTableName());
+            else if (node instanceof InsertNode)
+                onTableReference(((InsertNode)node).getTargetTableName());
+            else if (node instanceof ColumnReference)
+                onColumnReference((ColumnReference)node);
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+
+        public void onStatementStart(StatementClassification.Kind kind) {
+        }
+        public void onStatementEnd() {
+        }
+        public void onTableReference(TableName tableName) {
+            ntables++;
+        }
+        public void onColumnReference(ColumnReference columnReference) {
+            ncolumns++;
+        }
+        public void onParameter(int number) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 20);
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> corpus = loadCorpus();
+        final SQLParser parser = new SQLParser();
+        final Counter counter = new Counter();
+
+        Task visit = new Task() {
+                public Object run() throws Exception {
+                    for (String sql : corpus) {
+                        parser.parseStatement(sql).accept(counter);
+                    }
+                    return counter;
+                }
+            };
+        Task scan = new Task() {
+                public Object run() throws Exception {
+                    for (String sql : corpus) {
+                        parser.scanStatements(sql, counter);
+                    }
+                    return counter;
+                }
+            };
+        System.out.println(String.format("%d statements", corpus.size()));
+        for (int i = 0; i < 2; i++) {
+            Task task = (i == 0) ? visit : scan;
+            double rate = rate(task, millis / 2, millis) * corpus.size();
+            double bytes = allocation(task, iterations) / corpus.size();
+            System.out.println(String.format("%-16s %10.0f stmts/sec  %8.0f bytes/stmt",
+                                             (i == 0) ? "parse + visit" : "scan",
+                                             rate, bytes));
+        }
+    }
+}
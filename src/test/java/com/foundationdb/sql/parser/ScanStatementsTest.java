@@ -0,0 +1,181 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+import com.foundationdb.sql.parser.StatementClassification.Kind;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class ScanStatementsTest
+{
+    private SQLParser parser;
+    private Recorder recorder;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        recorder = new Recorder();
+    }
+
+    static class Recorder implements SQLParserListener {
+        List<String> events = new ArrayList<String>();
+        List<String> tables = new ArrayList<String>();
+        int nparameters;
+
+        public void onStatementStart(Kind kind) {
+            events.add("start " + kind);
+        }
+
+        public void onStatementEnd() {
+            events.add("end");
+        }
+
+        public void onTableReference(TableName tableName) {
+            events.add("table " + tableName);
+            tables.add(tableName.toString());
+        }
+
+        public void onColumnReference(ColumnReference columnReference) {
+            events.add("column " + columnReference.getSQLColumnName());
+        }
+
+        public void onParameter(int number) {
+            events.add("parameter " + number);
+            nparameters++;
+        }
+    }
+
+    /** Find the tables that a parsed statement reads or writes. The
+     * target of a searched update is found twice.
+     */
+    static class TableFinder implements Visitor {
+        Set<String> tables = new TreeSet<String>();
+
+        public Visitable visit(Visitable node) throws StandardException {
+            if (node instanceof FromBaseTable)
+                tables.add(((FromBaseTable)node).getOrigTableName().toString());
+            else if ((node instanceof DMLModStatementNode) &&
+                     (((DMLModStatementNode)node).getTargetTableName() != null))
+                tables.add(((DMLModStatementNode)node).getTargetTableName().toString());
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testSelect() throws Exception {
+        parser.scanStatements("SELECT a, t.b FROM s.t, u WHERE c = ? AND d IN (SELECT e FROM v)", 
+                              recorder);
+        assertEquals(Arrays.asList("start SELECT",
+                                   "column a", "column t.b",
+                                   "table s.t", "table u",
+                                   "column c", "parameter 0",
+                                   "column d", "column e", "table v",
+                                   "end"),
+                     recorder.events);
+    }
+
+    @Test
+    public void testModifications() throws Exception {
+        parser.scanStatements("INSERT INTO t(x, y) VALUES($2, $1); " +
+                              "UPDATE s.t SET x = x + 1 WHERE y = 2; " +
+                              "DELETE FROM u WHERE z IS NULL",
+                              recorder);
+        assertEquals(Arrays.asList("start DML",
+                                   "table t", "column x", "column y",
+                                   "parameter 1", "parameter 0",
+                                   "end",
+                                   "start DML",
+                                   "table s.t", "column x", "column x", "column y",
+                                   "end",
+                                   "start DML",
+                                   "table u", "column z",
+                                   "end"),
+                     recorder.events);
+    }
+
+    @Test
+    public void testOthers() throws Exception {
+        parser.scanStatements("(SELECT 1); CREATE TABLE t(x INT); COMMIT", recorder);
+        assertEquals(Arrays.asList("start SELECT", "end",
+                                   "start DDL", "end",
+                                   "start TRANSACTION_CONTROL", "end"),
+                     recorder.events);
+    }
+
+    @Test
+    public void testError() throws Exception {
+        try {
+            parser.scanStatements("SELECT x FROM", recorder);
+            fail("expected a syntax error");
+        }
+        catch (SQLParserException ex) {
+        }
+        assertEquals(Arrays.asList("start SELECT", "column x"), recorder.events);
+        // The listener is not kept for the next parse.
+        parser.parseStatement("SELECT y FROM t");
+        assertEquals(2, recorder.events.size());
+    }
+
+    @Test
+    public void testCorpus() throws Exception {
+        SQLParser plain = new SQLParser();
+        for (File sqlFile : TestBase.listSQLFiles(SQLParserTest.RESOURCE_DIR)) {
+            if (TestBase.changeSuffix(sqlFile, ".features").exists())
+                continue;
+            String sql = TestBase.fileContents(sqlFile);
+            String caseName = sqlFile.getName();
+            StatementNode stmt;
+            try {
+                stmt = plain.parseStatement(sql);
+            }
+            catch (StandardException ex) {
+                continue;
+            }
+            recorder = new Recorder();
+            parser.scanStatements(sql, recorder);
+            assertEquals(caseName, "start " + parser.classifyStatement(sql).getKind(),
+                         recorder.events.get(0));
+            assertEquals(caseName, "end", recorder.events.get(recorder.events.size() - 1));
+            assertEquals(caseName, plain.getParameterList().size(), recorder.nparameters);
+            TableFinder finder = new TableFinder();
+            stmt.accept(finder);
+            assertEquals(caseName, finder.tables, new TreeSet<String>(recorder.tables));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.lang.ref.WeakReference;
+
+public class StatementCacheTest
+{
+    private SQLParser parser;
+    private StatementCache cache;
+    private NodeToString unparser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        cache = new StatementCache(2);
+        parser.setStatementCache(cache);
+        unparser = new NodeToString();
+    }
+
+    @Test
+    public void testHitReturnsCopy() throws Exception {
+        String sql = "SELECT a FROM t WHERE b = ? AND c = ?";
+        StatementNode s1 = parser.parseStatement(sql);
+        StatementNode s2 = parser.parseStatement(sql);
+        assertNotSame(s1, s2);
+        assertEquals(unparser.toString(s1), unparser.toString(s2));
+        assertEquals(2, parser.getParameterList().size());
+        assertEquals(0, parser.getParameterList().get(0).getParameterNumber());
+        assertEquals(1, parser.getParameterList().get(1).getParameterNumber());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testParserNotKept() throws Exception {
+        String sql = "SELECT a FROM t WHERE b = ?";
+        SQLParser other = new SQLParser();
+        other.setStatementCache(cache);
+        other.parseStatement(sql);
+        WeakReference<SQLParser> ref = new WeakReference<SQLParser>(other);
+        other = null;
+        for (int i = 0; (i < 50) && (ref.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("Cached tree keeps its parser", ref.get());
+        StatementNode stmt = parser.parseStatement(sql);
+        assertSame(parser, stmt.getParserContext());
+        assertEquals(1, parser.getParameterList().size());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testFeaturesInKey() throws Exception {
+        String sql = "SELECT a % b FROM t";
+        parser.parseStatement(sql);
+        parser.getFeatures().remove(SQLParserFeature.INFIX_MOD);
+        try {
+            parser.parseStatement(sql);
+            fail("Cached result ignoring changed features");
+        }
+        catch (SQLParserException ex) {
+        }
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testLimitsInKey() throws Exception {
+        String sql = "SELECT a FROM t WHERE b IN (1, 2, 3)";
+        parser.parseStatement(sql);
+        parser.setMaxTokenCount(5);
+        try {
+            parser.parseStatement(sql);
+            fail("Cached result ignoring changed limit");
+        }
+        catch (SQLParserLimitException ex) {
+            assertEquals(SQLParserLimitException.Limit.TOKEN_COUNT, ex.getLimit());
+        }
+        parser.setMaxTokenCount(0);
+        parser.setCompactInListMinimum(2);
+        parser.parseStatement(sql);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        parser.parseStatement("SELECT 1");
+        parser.parseStatement("SELECT 2");
+        parser.parseStatement("SELECT 1");
+        parser.parseStatement("SELECT 3");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        parser.parseStatement("SELECT 1");
+        assertEquals(2, cache.getHitCount());
+        parser.parseStatement("SELECT 2");
+        assertEquals(4, cache.getMissCount());
+    }
+
+}
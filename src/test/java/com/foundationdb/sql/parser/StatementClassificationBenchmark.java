@@ -0,0 +1,52 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.util.List;
+
+/**
+ * {@link SQLParser#classifyStatement} compared with a full parse, over
+ * the test corpus.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.StatementClassificationBenchmark
+ * </pre>
+ */
+public class StatementClassificationBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> corpus = loadCorpus();
+        final SQLParser parser = new SQLParser();
+
+        double parseRate = rate(new Task() {
+                int index = 0;
+                public Object run() throws Exception {
+                    return parser.parseStatement(corpus.get(index++ % corpus.size()));
+                }
+            }, millis / 2, millis);
+        double classifyRate = rate(new Task() {
+                int index = 0;
+                public Object run() throws Exception {
+                    return parser.classifyStatement(corpus.get(index++ % corpus.size()));
+                }
+            }, millis / 2, millis);
+        System.out.println(String.format("%d statements", corpus.size()));
+        System.out.println(String.format("parse     %12.0f stmts/s", parseRate));
+        System.out.println(String.format("classify  %12.0f stmts/s  (%.1fx)", 
+                                         classifyRate, classifyRate / parseRate));
+    }
+}
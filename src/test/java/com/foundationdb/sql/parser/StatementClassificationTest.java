@@ -0,0 +1,87 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.parser.StatementClassification.Kind;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+public class StatementClassificationTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+    }
+
+    protected void check(String sql, Kind kind, boolean readOnly) throws Exception {
+        StatementClassification classification = parser.classifyStatement(sql);
+        assertEquals(sql, kind, classification.getKind());
+        assertEquals(sql, readOnly, classification.isReadOnly());
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        check("SELECT * FROM t", Kind.SELECT, true);
+        check("/* hint */ -- comment\n ((SELECT 1) UNION (SELECT 2))", Kind.SELECT, true);
+        check("VALUES(1, 2)", Kind.SELECT, true);
+        check("SELECT * FROM t WHERE x = 'FOR UPDATE' FOR UPDATE", Kind.SELECT, false);
+        check("SELECT NEXT VALUE FOR s", Kind.SELECT, false);
+        check("SELECT x AS next, value FROM t", Kind.SELECT, true);
+    }
+
+    @Test
+    public void testWith() throws Exception {
+        check("WITH x AS (SELECT 1) SELECT * FROM x", Kind.SELECT, true);
+        check("WITH x(a, b) AS (VALUES(1, 2)), y AS (SELECT a FROM x) SELECT * FROM y",
+              Kind.SELECT, true);
+        check("WITH x AS (SELECT 1) DELETE FROM t WHERE a IN (SELECT * FROM x)", Kind.DML, false);
+        check("WITH x AS (SELECT 1) INSERT INTO t SELECT * FROM x", Kind.DML, false);
+        check("WITH x AS (DELETE FROM t RETURNING a) SELECT * FROM x", Kind.SELECT, false);
+        check("WITH x AS (SELECT 1)", Kind.UNKNOWN, false);
+    }
+
+    @Test
+    public void testOthers() throws Exception {
+        check("INSERT INTO t VALUES(1)", Kind.DML, false);
+        check("update t set x = 1", Kind.DML, false);
+        check("DELETE FROM t", Kind.DML, false);
+        check("CREATE TABLE t(x INT)", Kind.DDL, false);
+        check("DROP INDEX i", Kind.DDL, false);
+        check("ALTER TABLE t ADD COLUMN y INT", Kind.DDL, false);
+        check("BEGIN", Kind.TRANSACTION_CONTROL, false);
+        check("COMMIT WORK", Kind.TRANSACTION_CONTROL, false);
+        check("ROLLBACK", Kind.TRANSACTION_CONTROL, false);
+        check("SET SCHEMA s", Kind.SET, false);
+        check("EXPLAIN SELECT 1", Kind.OTHER, true);
+        check("", Kind.UNKNOWN, false);
+        check("FROB", Kind.UNKNOWN, false);
+        check("SELECT \"unterminated", Kind.UNKNOWN, false);
+    }
+
+    @Test
+    public void testInterleaved() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT x FROM t WHERE y = ?");
+        check("DELETE FROM t", Kind.DML, false);
+        assertEquals(1, parser.getParameterList().size());
+        parser.parseStatement("INSERT INTO t VALUES(1)");
+    }
+
+}
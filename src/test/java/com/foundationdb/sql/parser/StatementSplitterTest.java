@@ -0,0 +1,67 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StatementSplitterTest
+{
+    protected static List<String> split(StatementSplitter splitter, String sql) {
+        int[] bounds = splitter.split(sql);
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < bounds.length; i += 2) {
+            result.add(sql.substring(bounds[i], bounds[i+1]));
+        }
+        return result;
+    }
+
+    @Test
+    public void testSimple() {
+        assertEquals("[SELECT 1, SELECT 2]",
+                     split(new StatementSplitter(), " SELECT 1 ;\n;SELECT 2").toString());
+        assertEquals("[]", 
+                     split(new StatementSplitter(), " ; -- only a comment;\n /* ; */").toString());
+    }
+
+    @Test
+    public void testQuoted() {
+        StatementSplitter splitter = new StatementSplitter();
+        assertEquals("[SELECT 'a;''b', SELECT \"x;\"\"y\", SELECT `p;q`]",
+                     split(splitter, "SELECT 'a;''b';SELECT \"x;\"\"y\";SELECT `p;q`").toString());
+        assertEquals("[SELECT E'\\';', SELECT $$;$$]",
+                     split(splitter, "SELECT E'\\';';SELECT $$;$$").toString());
+        // Only an escape string when E is not the end of an identifier.
+        assertEquals("[SELECT some'\\', x']",
+                     split(splitter, "SELECT some'\\';x'").toString());
+        assertEquals("[SELECT \"\\\", x\"]",
+                     split(splitter, "SELECT \"\\\";x\"").toString());
+        assertEquals("[SELECT \"\\\";x\"]",
+                     split(new StatementSplitter(true), "SELECT \"\\\";x\"").toString());
+    }
+
+    @Test
+    public void testComments() {
+        assertEquals("[SELECT 1 /* a /* ; */ ; */ + 2, SELECT 3]",
+                     split(new StatementSplitter(), 
+                           "SELECT 1 /* a /* ; */ ; */ + 2; SELECT 3 -- ;x\n").toString());
+    }
+
+}
@@ -31,9 +31,9 @@ public class StringCharStreamTest
     // Simplest test is comparing against existing JavaCC-inspired implementation.
     // Except that the stream also fixes a few bugs having to do with position at EOF,
 
-    private CharStream s1, s2;
-    private static final String STRING = "abc xyz\n1\t2\t3\r\nxxx   yyy\rz";
-    private static final char EOF = (char)0;
+    protected CharStream s1, s2;
+    protected static final String STRING = "abc xyz\n1\t2\t3\r\nxxx   yyy\rz";
+    protected static final char EOF = (char)0;
 
     @Before
     public void openStreams() {
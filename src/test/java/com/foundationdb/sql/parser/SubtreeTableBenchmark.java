@@ -0,0 +1,99 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import java.util.List;
+
+/**
+ * Time to add trees to a {@link SubtreeTable}, over the test corpus
+ * and for single statements of growing size, to show that it is in
+ * proportion to the number of nodes.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.SubtreeTableBenchmark
+ * </pre>
+ */
+public class SubtreeTableBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> corpus = loadCorpus();
+        final SQLParser parser = new SQLParser();
+        final StatementNode[] stmts = new StatementNode[corpus.size()];
+        for (int i = 0; i < stmts.length; i++) {
+            stmts[i] = parser.parseStatement(corpus.get(i));
+        }
+
+        Task intern = new Task() {
+                public Object run() throws Exception {
+                    SubtreeTable table = new SubtreeTable();
+                    for (StatementNode stmt : stmts) {
+                        table.intern(stmt);
+                    }
+                    return table;
+                }
+            };
+        System.out.println(String.format("%d statements", corpus.size()));
+        for (int i = 0; i < 2; i++) {
+            double rate = rate(intern, millis / 2, millis) * stmts.length;
+            System.out.println(String.format("intern %12.0f stmts/s", rate));
+        }
+
+        for (int nterms : new int[] { 100, 300, 1000, 3000 }) {
+            StringBuilder sql = new StringBuilder("SELECT * FROM t WHERE ");
+            for (int i = 0; i < nterms; i++) {
+                if (i > 0) sql.append(" OR ");
+                sql.append("(a + ").append(i % 10).append(" > b AND c = d)");
+            }
+            final StatementNode stmt = parser.parseStatement(sql.toString());
+            final int[] nnodes = new int[1];
+            stmt.accept(new NodeCounter(nnodes));
+            double rate = rate(new Task() {
+                    public Object run() throws Exception {
+                        SubtreeTable table = new SubtreeTable();
+                        table.intern(stmt);
+                        return table;
+                    }
+                }, millis / 2, millis);
+            System.out.println(String.format("%6d terms %8d nodes %10.0f ns/node",
+                                             nterms, nnodes[0], 1.0e9 / rate / nnodes[0]));
+        }
+    }
+
+    static class NodeCounter implements Visitor {
+        private final int[] count;
+
+        public NodeCounter(int[] count) {
+            this.count = count;
+        }
+
+        public Visitable visit(Visitable node) {
+            count[0]++;
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+    }
+}
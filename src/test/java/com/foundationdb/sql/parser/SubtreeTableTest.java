@@ -0,0 +1,166 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import org.junit.Before;
+import org.junit.Test;
+import static junit.framework.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SubtreeTableTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+    }
+
+    protected void same(String sql1, String sql2) throws Exception {
+        StatementNode stmt1 = parser.parseStatement(sql1);
+        StatementNode stmt2 = new SQLParser().parseStatement(sql2);
+        assertTrue(sql1 + " / " + sql2, stmt1.structurallyEquals(stmt2));
+        assertTrue(sql2 + " / " + sql1, stmt2.structurallyEquals(stmt1));
+        assertEquals(sql1 + " / " + sql2, 
+                     stmt1.structuralHashCode(), stmt2.structuralHashCode());
+    }
+
+    protected void different(String sql1, String sql2) throws Exception {
+        StatementNode stmt1 = parser.parseStatement(sql1);
+        StatementNode stmt2 = new SQLParser().parseStatement(sql2);
+        assertFalse(sql1 + " / " + sql2, stmt1.structurallyEquals(stmt2));
+        assertFalse(sql1 + " / " + sql2, 
+                    stmt1.structuralHashCode() == stmt2.structuralHashCode());
+    }
+
+    @Test
+    public void testEquality() throws Exception {
+        same("SELECT a, b FROM t WHERE c = 1", "select A,B\n  from T where C=1");
+        same("INSERT INTO t VALUES(1, 'x')", "INSERT INTO t VALUES (1,'x')");
+        same("CREATE TABLE t(x INT PRIMARY KEY, y VARCHAR(10))",
+             "CREATE TABLE t (x INT PRIMARY KEY,  y VARCHAR(10))");
+        different("SELECT a FROM t WHERE c = 1", "SELECT a FROM t WHERE c = 2");
+        different("SELECT a FROM t WHERE c = 1", "SELECT a FROM t WHERE c = '1'");
+        different("SELECT a FROM t", "SELECT DISTINCT a FROM t");
+        different("SELECT a FROM t ORDER BY a", "SELECT a FROM t ORDER BY a DESC");
+        different("CREATE TABLE t(y VARCHAR(10))", "CREATE TABLE t(y VARCHAR(20))");
+    }
+
+    @Test
+    public void testLazyLiterals() throws Exception {
+        parser.setLazyLiterals(true);
+        same("SELECT 1.5, 'abc', 10000000000", "SELECT 1.5, 'abc', 10000000000");
+    }
+
+    /** Compact literals are compared as they are, not made into nodes. */
+    @Test
+    public void testCompact() throws Exception {
+        parser.setCompactInListMinimum(2);
+        parser.setCompactValuesMinimum(2);
+        SubtreeTable table = new SubtreeTable();
+        String[] sqls = {
+            "SELECT a FROM t WHERE b IN (1, 2, 3)",
+            "SELECT c FROM t WHERE b IN (1, 2, 3)",
+            "SELECT c FROM t WHERE b IN (1, 2, 4)",
+            "INSERT INTO t VALUES (1, 'x'), (2, 'y')",
+            "INSERT INTO u VALUES (1, 'x'), (2, 'y')"
+        };
+        List<StatementNode> stmts = new ArrayList<StatementNode>();
+        for (String sql : sqls) {
+            stmts.add((StatementNode)table.share(parser.parseStatement(sql)));
+        }
+        List<ValueNode> wheres = new ArrayList<ValueNode>();
+        for (int i = 0; i < 3; i++) {
+            SelectNode select = (SelectNode)((CursorNode)stmts.get(i)).getResultSetNode();
+            InListOperatorNode inList = (InListOperatorNode)select.getWhereClause();
+            assertNotNull(inList.getRightOperandConstants());
+            wheres.add(inList);
+        }
+        assertSame(wheres.get(0), wheres.get(1));
+        assertNotSame(wheres.get(0), wheres.get(2));
+        RowsResultSetNode rows1 = (RowsResultSetNode)((InsertNode)stmts.get(3)).getResultSetNode();
+        RowsResultSetNode rows2 = (RowsResultSetNode)((InsertNode)stmts.get(4)).getResultSetNode();
+        assertNotNull(rows1.getConstantRows());
+        assertSame(rows1, rows2);
+    }
+
+    @Test
+    public void testCorpus() throws Exception {
+        List<String> corpus = BenchmarkBase.loadCorpus();
+        SQLParser other = new SQLParser();
+        List<StatementNode> stmts = new ArrayList<StatementNode>();
+        for (String sql : corpus) {
+            StatementNode stmt1 = parser.parseStatement(sql);
+            StatementNode stmt2 = other.parseStatement(sql);
+            assertTrue(sql, stmt1.structurallyEquals(stmt2));
+            assertEquals(sql, stmt1.structuralHashCode(), stmt2.structuralHashCode());
+            stmts.add(stmt1);
+        }
+        // Only a few are different ways of writing the same thing.
+        int nequal = 0;
+        for (int i = 0; i < stmts.size(); i++) {
+            for (int j = i + 1; j < stmts.size(); j++) {
+                if (stmts.get(i).structurallyEquals(stmts.get(j))) {
+                    assertEquals(stmts.get(i).structuralHashCode(), 
+                                 stmts.get(j).structuralHashCode());
+                    nequal++;
+                }
+            }
+        }
+        assertTrue(nequal < stmts.size() / 10);
+    }
+
+    @Test
+    public void testRepeated() throws Exception {
+        SubtreeTable table = new SubtreeTable();
+        StatementNode stmt = parser.parseStatement("SELECT a + 1 FROM t WHERE a + 1 > 2 OR a + 1 < 0");
+        assertSame(stmt, table.intern(stmt));
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        ValueNode expr = select.getResultColumns().get(0).getExpression();
+        assertEquals(3, table.getCount(expr));
+        assertTrue(table.getRepeated().contains(expr));
+        OrNode or = (OrNode)select.getWhereClause();
+        ValueNode expr2 = ((BinaryOperatorNode)or.getLeftOperand()).getLeftOperand();
+        assertNotSame(expr, expr2);
+        assertSame(expr, table.get(expr2));
+
+        StatementNode again = new SQLParser().parseStatement(
+            "SELECT a+1 FROM t WHERE a+1 > 2 OR a+1 < 0");
+        int size = table.size();
+        assertSame(stmt, table.intern(again));
+        assertEquals(size, table.size());
+        assertNull(table.get(parser.parseStatement("SELECT a + 2 FROM t")));
+    }
+
+    @Test
+    public void testShare() throws Exception {
+        SubtreeTable table = new SubtreeTable();
+        StatementNode stmt = parser.parseStatement("SELECT a + 1 FROM t WHERE a + 1 > 2 OR a + 1 < 0");
+        String before = stmt.toString();
+        assertSame(stmt, table.share(stmt));
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        ValueNode expr = select.getResultColumns().get(0).getExpression();
+        OrNode or = (OrNode)select.getWhereClause();
+        assertSame(expr, ((BinaryOperatorNode)or.getLeftOperand()).getLeftOperand());
+        assertSame(expr, ((BinaryOperatorNode)or.getRightOperand()).getLeftOperand());
+        assertEquals(before, stmt.toString());
+    }
+
+}
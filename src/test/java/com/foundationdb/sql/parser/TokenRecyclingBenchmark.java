@@ -0,0 +1,79 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Bytes allocated per statement with and without {@link
+ * SQLParser#setRecycleTokens}, parsing the test corpus one statement
+ * at a time, and parsing a script of many <code>INSERT</code>s, both
+ * all at once and streamed.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.TokenRecyclingBenchmark
+ * </pre>
+ */
+public class TokenRecyclingBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 20);
+        final List<String> corpus = loadCorpus();
+        StringBuilder str = new StringBuilder();
+        final int nstatements = 10000;
+        for (int i = 0; i < nstatements; i++) {
+            str.append("INSERT INTO t(a, b, c) VALUES(").append(i)
+                .append(", 'abc', x + ").append(i % 7).append(");\n");
+        }
+        final String script = str.toString();
+
+        for (boolean recycle : new boolean[] { false, true }) {
+            final SQLParser parser = new SQLParser();
+            parser.setRecycleTokens(recycle);
+            double corpusBytes = allocation(new Task() {
+                    public Object run() throws Exception {
+                        Object result = null;
+                        for (String sql : corpus) {
+                            result = parser.parseStatement(sql);
+                        }
+                        return result;
+                    }
+                }, iterations) / corpus.size();
+            double scriptBytes = allocation(new Task() {
+                    public Object run() throws Exception {
+                        return parser.parseStatements(script);
+                    }
+                }, iterations) / nstatements;
+            double streamBytes = allocation(new Task() {
+                    public Object run() throws Exception {
+                        parser.beginStatements(new StringReader(script));
+                        Object result = null;
+                        while (true) {
+                            StatementNode stmt = parser.nextStatement();
+                            if (stmt == null) break;
+                            result = stmt;
+                        }
+                        return result;
+                    }
+                }, iterations) / nstatements;
+            System.out.println(String.format("%-9s corpus %8.0f  script %8.0f  stream %8.0f  bytes/stmt",
+                                             recycle ? "recycle" : "plain",
+                                             corpusBytes, scriptBytes, streamBytes));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import java.util.List;
+
+/**
+ * The typed {@link NodeFactory} methods compared with the generic
+ * <code>getNode</code> / <code>init(Object...)</code> path, plus the
+ * rate and allocation of parsing the test corpus, which uses them.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.TypedNodeBenchmark
+ * </pre>
+ */
+public class TypedNodeBenchmark extends BenchmarkBase
+{
+    public static void main(String[] args) throws Exception {
+        long millis = millisProperty("benchmark.millis", 5000);
+        final List<String> corpus = loadCorpus();
+        final SQLParser parser = new SQLParser();
+        final NodeFactory factory = parser.getNodeFactory();
+        final int offset = 1000;  // Outside Integer cache.
+
+        // a.b = ? AND c > 'x'
+        Task generic = new Task() {
+                public Object run() throws Exception {
+                    TableName a = (TableName)
+                        factory.getNode(NodeTypes.TABLE_NAME, null, "a",
+                                        new Integer(offset), new Integer(offset + 1), parser);
+                    ValueNode left = (ValueNode)
+                        factory.getNode(NodeTypes.COLUMN_REFERENCE, "b", a,
+                                        new Integer(offset + 2), new Integer(offset + 3), parser);
+                    ValueNode right = (ValueNode)
+                        factory.getNode(NodeTypes.PARAMETER_NODE, new Integer(offset), null, parser);
+                    ValueNode eq = (ValueNode)
+                        factory.getNode(NodeTypes.BINARY_EQUALS_OPERATOR_NODE, left, right, parser);
+                    left = (ValueNode)
+                        factory.getNode(NodeTypes.COLUMN_REFERENCE, "c", null,
+                                        new Integer(offset + 4), new Integer(offset + 5), parser);
+                    right = (ValueNode)
+                        factory.getNode(NodeTypes.CHAR_CONSTANT_NODE, "x", parser);
+                    ValueNode gt = (ValueNode)
+                        factory.getNode(NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE, left, right, parser);
+                    return factory.getNode(NodeTypes.AND_NODE, eq, gt, parser);
+                }
+            };
+        Task typed = new Task() {
+                public Object run() throws Exception {
+                    TableName a = factory.getTableName(NodeTypes.TABLE_NAME, null, "a",
+                                                       offset, offset + 1, parser);
+                    ValueNode left = factory.getColumnReference("b", a, 
+                                                                offset + 2, offset + 3, parser);
+                    ValueNode right = factory.getParameterNode(offset, parser);
+                    ValueNode eq = factory.getBinaryOperatorNode(NodeTypes.BINARY_EQUALS_OPERATOR_NODE, 
+                                                                 left, right, parser);
+                    left = factory.getColumnReference("c", null, offset + 4, offset + 5, parser);
+                    right = factory.getCharConstantNode("x", parser);
+                    ValueNode gt = factory.getBinaryOperatorNode(NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE, 
+                                                                 left, right, parser);
+                    return factory.getBinaryOperatorNode(NodeTypes.AND_NODE, eq, gt, parser);
+                }
+            };
+        Task parse = new Task() {
+                int index = 0;
+                public Object run() throws Exception {
+                    return parser.parseStatement(corpus.get(index++ % corpus.size()));
+                }
+            };
+
+        double genericRate = rate(generic, millis / 2, millis);
+        double typedRate = rate(typed, millis / 2, millis);
+        double genericBytes = allocation(generic, 100000);
+        double typedBytes = allocation(typed, 100000);
+        double parseRate = rate(parse, millis / 2, millis);
+        double parseBytes = allocation(parse, corpus.size() * 20);
+        System.out.println(String.format("predicate  generic %10.0f/s %6.0f bytes  typed %10.0f/s %6.0f bytes  (%.2fx)",
+                                         genericRate, genericBytes, typedRate, typedBytes,
+                                         typedRate / genericRate));
+        System.out.println(String.format("parse %d statements  %10.0f stmts/s %8.0f bytes/stmt",
+                                         corpus.size(), parseRate, parseBytes));
+    }
+}
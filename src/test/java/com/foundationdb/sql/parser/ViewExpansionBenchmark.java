@@ -0,0 +1,98 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.views.ViewDefinition;
+
+/**
+ * Expanding a view with many columns, with a deep copy and with one
+ * that shares what is not visited. After the copy, a visitor either
+ * sets user data on every column and table, as binding would, or
+ * only looks at the tables, or there is no visitor at all.
+ * <pre>
+ * java -cp ... com.foundationdb.sql.parser.ViewExpansionBenchmark
+ * </pre>
+ */
+public class ViewExpansionBenchmark extends BenchmarkBase
+{
+    enum Binding { NONE, TABLES, ALL };
+
+    public static void main(String[] args) throws Exception {
+        int ncolumns = Integer.getInteger("benchmark.columns", 200);
+        int iterations = Integer.getInteger("benchmark.iterations", 1000);
+        long millis = millisProperty("benchmark.millis", 5000);
+        StringBuilder sql = new StringBuilder("CREATE VIEW v AS SELECT ");
+        for (int i = 0; i < ncolumns; i++) {
+            if (i > 0) sql.append(", ");
+            if ((i % 2) == 0)
+                sql.append("c").append(i);
+            else
+                sql.append("c").append(i).append(" + 1 AS x").append(i);
+        }
+        sql.append(" FROM t1 INNER JOIN t2 ON t1.id = t2.id WHERE c0 > 10");
+        final ViewDefinition view = new ViewDefinition(sql.toString(), new SQLParser());
+        final SQLParser parser = new SQLParser();
+
+        System.out.println(String.format("%d columns", ncolumns));
+        for (final Binding binding : Binding.values()) {
+            // Alternate, since the first passes are still being compiled.
+            for (int i = 0; i < 4; i++) {
+                final boolean share = ((i % 2) == 1);
+                Task task = new Task() {
+                        public Object run() throws Exception {
+                            FromSubquery copy = view.copySubquery(parser, share);
+                            if (binding != Binding.NONE)
+                                copy = (FromSubquery)copy.accept(new Binder(binding == Binding.TABLES));
+                            return copy;
+                        }
+                    };
+                double rate = rate(task, millis / 2, millis);
+                double bytes = allocation(task, iterations);
+                System.out.println(String.format("%-6s %-6s %12.0f views/s %10.0f bytes/view",
+                                                 binding, share ? "shared" : "deep",
+                                                 rate, bytes));
+            }
+        }
+    }
+
+    static class Binder implements Visitor {
+        private final boolean tablesOnly;
+
+        public Binder(boolean tablesOnly) {
+            this.tablesOnly = tablesOnly;
+        }
+
+        public Visitable visit(Visitable node) throws StandardException {
+            if ((node instanceof FromBaseTable) || (node instanceof ColumnReference))
+                ((QueryTreeNode)node).setUserData(this);
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return tablesOnly && ((node instanceof ResultColumnList) || 
+                                  (node instanceof ValueNode));
+        }
+    }
+}
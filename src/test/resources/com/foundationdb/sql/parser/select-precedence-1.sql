@@ -0,0 +1 @@
+SELECT a + b * c - d / e || f, a - b - c, a * b + c * d - e, - a * b, (a + b) * c FROM t
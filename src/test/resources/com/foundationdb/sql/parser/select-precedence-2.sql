@@ -0,0 +1 @@
+SELECT * FROM t WHERE a AND b OR c AND NOT d OR e AND f IS TRUE OR g = 1 + 2 * 3 AND h BETWEEN 1 AND 2
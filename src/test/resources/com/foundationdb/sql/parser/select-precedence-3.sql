@@ -0,0 +1 @@
+SELECT a & b | c ^ d << 2 >> 1 + 3 * 4 % 5 DIV 6, ~a + b FROM t WHERE a = 1 && b = 2 || c = 3